@@ -1,9 +1,13 @@
 package com.expensetracker.app;
 
 import org.springframework.boot.SpringApplication;
+import com.expensetracker.app.config.ImportProperties;
+import com.expensetracker.app.config.PagingProperties;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 
 @SpringBootApplication
+@EnableConfigurationProperties({PagingProperties.class, ImportProperties.class})
 public class AppApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,260 @@
+package com.expensetracker.app.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Size- and TTL-bounded LRU cache with hit/miss counters. Entries past their
+ * TTL are treated as misses and dropped on access; once the cache is full the
+ * least recently used entry is evicted. Null values are never cached. Loads
+ * through {@link #get} are timed for the load-latency statistics. Entries
+ * carried over from a previous run are {@link #restore restored} and flagged
+ * until a caller {@link #claimRestored claims} them for revalidation.
+ */
+public class TtlCache<K, V> {
+
+    @FunctionalInterface
+    public interface Loader<K, V> {
+        V load(K key) throws Exception;
+    }
+
+    private record Entry<V>(V value, long expiresAt, boolean restored) {}
+
+    private final String name;
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    private final LinkedHashMap<K, Entry<V>> entries;
+    // Versions, all guarded by entries. Every invalidation takes the next
+    // stamp; a key's version is the stamp of its last invalidation or of the
+    // last invalidateAll, whichever is later. Stamps are kept for the most
+    // recently invalidated keys only: a forgotten stamp raises the floor that
+    // every unrecorded key falls back to, so versions never go back and at
+    // worst a load of another key isn't cached.
+    private long stamps;
+    private long clearedAt;
+    private long forgottenFloor;
+    private final LinkedHashMap<K, Long> invalidatedAt;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder restored = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private final LongAccumulator maxLoadNanos = new LongAccumulator(Math::max, 0);
+
+    public TtlCache(String name, int maxSize, Duration ttl) {
+        this(name, maxSize, ttl, System::nanoTime);
+    }
+
+    TtlCache(String name, int maxSize, Duration ttl, LongSupplier clock) {
+        if (maxSize <= 0) throw new IllegalArgumentException("maxSize must be positive");
+        this.name = name;
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > TtlCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.invalidatedAt = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Long> eldest) {
+                if (size() > TtlCache.this.maxSize) {
+                    forgottenFloor = Math.max(forgottenFloor, eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public V getIfPresent(K key) {
+        long now = clock.getAsLong();
+        synchronized (entries) {
+            Entry<V> e = entries.get(key);
+            if (e != null && e.expiresAt() - now > 0) {
+                hits.increment();
+                return e.value();
+            }
+            if (e != null) {
+                entries.remove(key);
+                expirations.increment();
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Returns the cached value or loads and caches it. Concurrent misses on the
+     * same key may each call the loader; the last result wins. A result is not
+     * cached if the key was invalidated while it was loading.
+     */
+    public V get(K key, Loader<K, V> loader) throws Exception {
+        V cached = getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        long version = version(key);
+        long started = clock.getAsLong();
+        V loaded;
+        try {
+            loaded = loader.load(key);
+        } catch (Exception e) {
+            loadFailures.increment();
+            throw e;
+        } finally {
+            long elapsed = clock.getAsLong() - started;
+            loads.increment();
+            loadNanos.add(elapsed);
+            maxLoadNanos.accumulate(elapsed);
+        }
+        putIfCurrent(key, loaded, version);
+        return loaded;
+    }
+
+    /**
+     * Changes whenever the key is invalidated. Read it before fetching a value
+     * from the source and pass it to {@link #putIfCurrent}, so a value that
+     * may predate a concurrent write of the same key isn't cached.
+     */
+    public long version(K key) {
+        synchronized (entries) {
+            return versionOf(key);
+        }
+    }
+
+    /** Caches the value unless the key was invalidated since {@code version} was read. */
+    public void putIfCurrent(K key, V value, long version) {
+        if (key == null || value == null) return;
+        long expiresAt = clock.getAsLong() + ttlNanos;
+        synchronized (entries) {
+            if (version == versionOf(key)) {
+                entries.put(key, new Entry<>(value, expiresAt, false));
+            }
+        }
+    }
+
+    private long versionOf(K key) {
+        return Math.max(clearedAt, invalidatedAt.getOrDefault(key, forgottenFloor));
+    }
+
+    public void put(K key, V value) {
+        if (key == null || value == null) return;
+        long expiresAt = clock.getAsLong() + ttlNanos;
+        synchronized (entries) {
+            entries.put(key, new Entry<>(value, expiresAt, false));
+        }
+    }
+
+    /**
+     * Caches a value carried over from a previous run, unless the key is
+     * already cached. The value may be out of date, so it stays flagged until
+     * {@link #claimRestored} hands it to exactly one caller to check.
+     */
+    public void restore(K key, V value) {
+        if (key == null || value == null) return;
+        long expiresAt = clock.getAsLong() + ttlNanos;
+        synchronized (entries) {
+            if (!entries.containsKey(key)) {
+                entries.put(key, new Entry<>(value, expiresAt, true));
+                restored.increment();
+            }
+        }
+    }
+
+    /**
+     * The value of a restored entry, returned once, after which it counts as a
+     * regular entry; null for any other entry or key.
+     */
+    public V claimRestored(K key) {
+        synchronized (entries) {
+            Entry<V> e = entries.get(key);
+            if (e == null || !e.restored()) {
+                return null;
+            }
+            entries.put(key, new Entry<>(e.value(), e.expiresAt(), false));
+            return e.value();
+        }
+    }
+
+    /** The live entries, least recently used first, so restoring them in order keeps their recency. */
+    public List<Map.Entry<K, V>> snapshot() {
+        long now = clock.getAsLong();
+        List<Map.Entry<K, V>> live = new ArrayList<>();
+        synchronized (entries) {
+            for (Map.Entry<K, Entry<V>> e : entries.entrySet()) {
+                if (e.getValue().expiresAt() - now > 0) {
+                    live.add(Map.entry(e.getKey(), e.getValue().value()));
+                }
+            }
+        }
+        return live;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public void invalidate(K key) {
+        synchronized (entries) {
+            entries.remove(key);
+            // Re-inserted, so the key counts as the most recently invalidated
+            invalidatedAt.remove(key);
+            invalidatedAt.put(key, ++stamps);
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+            invalidatedAt.clear();
+            clearedAt = ++stamps;
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        long h = hits.sum();
+        long m = misses.sum();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("name", name);
+        stats.put("size", size());
+        stats.put("maxSize", maxSize);
+        stats.put("ttlSeconds", Duration.ofNanos(ttlNanos).toSeconds());
+        stats.put("hits", h);
+        stats.put("misses", m);
+        stats.put("hitRate", h + m == 0 ? 0.0 : (double) h / (h + m));
+        stats.put("evictions", evictions.sum());
+        stats.put("expirations", expirations.sum());
+        stats.put("restored", restored.sum());
+        long l = loads.sum();
+        stats.put("loads", l);
+        stats.put("loadFailures", loadFailures.sum());
+        stats.put("averageLoadMillis", l == 0 ? 0.0 : loadNanos.sum() / 1e6 / l);
+        stats.put("maxLoadMillis", maxLoadNanos.get() / 1e6);
+        return stats;
+    }
+}
@@ -1,6 +1,7 @@
 package com.expensetracker.app.config;
 
 import com.expensetracker.app.services.SecurityService;
+import com.expensetracker.app.services.TokenService;
 
 import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
@@ -8,10 +9,16 @@ import java.io.IOException;
 
 public class AuthenticationFilter implements Filter {
 
+    private static final String BEARER_PREFIX = "Bearer ";
+
     private final SecurityService securityService;
+    private final TokenService tokenService;
+    private final boolean allowUserIdHeader;
 
-    public AuthenticationFilter(SecurityService securityService) {
+    public AuthenticationFilter(SecurityService securityService, TokenService tokenService, boolean allowUserIdHeader) {
         this.securityService = securityService;
+        this.tokenService = tokenService;
+        this.allowUserIdHeader = allowUserIdHeader;
     }
 
     @Override
@@ -19,9 +26,23 @@ public class AuthenticationFilter implements Filter {
             throws IOException, ServletException {
         
         HttpServletRequest httpRequest = (HttpServletRequest) request;
+        String authorization = httpRequest.getHeader("Authorization");
         String userId = httpRequest.getHeader("X-User-Id");
-        
-        if (userId != null && !userId.isBlank()) {
+
+        // Clients that stored the login "token" in X-User-Id keep working once it becomes a signed token
+        String token = null;
+        if (authorization != null && authorization.startsWith(BEARER_PREFIX)) {
+            token = authorization.substring(BEARER_PREFIX.length()).trim();
+        } else if (userId != null && userId.startsWith(TokenService.TOKEN_PREFIX)) {
+            token = userId;
+        }
+
+        if (token != null) {
+            // The signature proves who issued it; the user record says whether it was revoked since
+            tokenService.verify(token)
+                    .filter(securityService::isCurrent)
+                    .ifPresent(securityService::setCurrentPrincipal);
+        } else if (allowUserIdHeader && userId != null && !userId.isBlank()) {
             securityService.setCurrentUser(userId);
         }
         
@@ -31,4 +52,4 @@ public class AuthenticationFilter implements Filter {
             securityService.clearCurrentUser();
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,35 @@
+package com.expensetracker.app.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor for fanning out independent reads within a request, also used to
+ * run expense change listeners after an async write. Follows
+ * {@code spring.threads.virtual.enabled}: with virtual threads every task gets
+ * its own virtual thread, otherwise a fixed pool of {@code app.fan-out.threads}
+ * platform threads is used. Tasks must not fork onto this executor again and
+ * wait for the result, which could exhaust the fixed pool.
+ */
+@Configuration
+public class ConcurrencyConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService fanOutExecutor(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                                          @Value("${app.fan-out.threads:16}") int threads) {
+        if (virtualThreads) {
+            return Executors.newVirtualThreadPerTaskExecutor();
+        }
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "fan-out-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+}
@@ -1,6 +1,8 @@
 package com.expensetracker.app.config;
 
 import com.expensetracker.app.services.SecurityService;
+import com.expensetracker.app.services.TokenService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -9,8 +11,10 @@ import org.springframework.context.annotation.Configuration;
 public class FilterConfig {
 
     @Bean
-    public AuthenticationFilter authenticationFilter(SecurityService securityService) {
-        return new AuthenticationFilter(securityService);
+    public AuthenticationFilter authenticationFilter(SecurityService securityService,
+                                                     TokenService tokenService,
+                                                     @Value("${app.auth.allow-user-id-header:false}") boolean allowUserIdHeader) {
+        return new AuthenticationFilter(securityService, tokenService, allowUserIdHeader);
     }
 
     @Bean
@@ -4,6 +4,7 @@ import com.google.auth.oauth2.GoogleCredentials;
 import com.google.firebase.FirebaseApp;
 import com.google.firebase.FirebaseOptions;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.core.io.ClassPathResource;
 
 import javax.annotation.PostConstruct;
@@ -13,7 +14,10 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
+// Firestore clients are created without going through this bean, so it must
+// stay eager when the fast-start profile makes everything else lazy
 @Configuration
+@Lazy(false)
 public class FirebaseConfig {
 
     private static final String CREDENTIALS_FILE = "firebase-service-account.json";
@@ -64,18 +68,18 @@ public class FirebaseConfig {
                     }
                 } else {
                     System.err.println("Firebase credentials not provided. Set GOOGLE_APPLICATION_CREDENTIALS or add " + CREDENTIALS_FILE + " to resources.");
-                    System.err.println("Continuing without Firebase (using in-memory storage if applicable).");
+                    System.err.println("Continuing without Firebase. Set app.storage=memory to use in-memory storage.");
                 }
             } else {
                 System.out.println("Firebase already initialized.");
             }
         } catch (IOException e) {
             System.err.println("Failed to initialize Firebase: " + e.getMessage());
-            System.err.println("Application will use in-memory storage instead.");
+            System.err.println("Set app.storage=memory to run with in-memory storage instead.");
         } catch (Exception e) {
             System.err.println("Unexpected error initializing Firebase: " + e.getMessage());
             e.printStackTrace();
-            System.err.println("Application will use in-memory storage instead.");
+            System.err.println("Set app.storage=memory to run with in-memory storage instead.");
         }
     }
 }
\ No newline at end of file
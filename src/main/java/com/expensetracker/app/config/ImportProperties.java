@@ -0,0 +1,31 @@
+package com.expensetracker.app.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Bulk import tuning ({@code app.import.*}): rows per write batch and how many
+ * batches may be committing at once. As with {@link PagingProperties}, a
+ * controller built without Spring uses a fresh instance.
+ */
+@ConfigurationProperties("app.import")
+public class ImportProperties {
+
+    private int batchSize = 250;
+    private int maxInFlight = 4;
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+}
@@ -0,0 +1,50 @@
+package com.expensetracker.app.config;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.config.ConfigDataEnvironmentPostProcessor;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the relational database out of the context unless
+ * {@code app.storage=jpa}. The JPA starter is always on the classpath, so
+ * without this every storage mode would open an embedded H2 database and
+ * have Hibernate update its schema at startup. Runs after the application
+ * properties are loaded, and adds to any exclusions configured there.
+ */
+public class JpaAutoConfigurationExclusion implements EnvironmentPostProcessor, Ordered {
+
+    static final List<String> AUTO_CONFIGURATIONS = List.of(
+            "org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration",
+            "org.springframework.boot.autoconfigure.jdbc.DataSourceTransactionManagerAutoConfiguration",
+            "org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration",
+            "org.springframework.boot.autoconfigure.data.jpa.JpaRepositoriesAutoConfiguration");
+
+    private static final String EXCLUDE = "spring.autoconfigure.exclude";
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        if ("jpa".equals(environment.getProperty("app.storage", "firestore"))) {
+            return;
+        }
+        Set<String> excluded = new LinkedHashSet<>(
+                Binder.get(environment).bind(EXCLUDE, Bindable.listOf(String.class)).orElse(List.of()));
+        excluded.addAll(AUTO_CONFIGURATIONS);
+        environment.getPropertySources().addFirst(
+                new MapPropertySource("jpaAutoConfigurationExclusion", Map.of(EXCLUDE, String.join(",", excluded))));
+    }
+
+    @Override
+    public int getOrder() {
+        return ConfigDataEnvironmentPostProcessor.ORDER + 1;
+    }
+}
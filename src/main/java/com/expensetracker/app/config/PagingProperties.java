@@ -0,0 +1,70 @@
+package com.expensetracker.app.config;
+
+import com.expensetracker.app.repositories.Page;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Page sizes shared by the controllers: {@code app.pagination.*} for the
+ * cursor-paged listings and {@code app.streaming.page-size} for the NDJSON
+ * exports. The defaults here are the only ones; a controller built without
+ * Spring uses a fresh instance.
+ */
+@ConfigurationProperties("app")
+public class PagingProperties {
+
+    private final Pagination pagination = new Pagination();
+    private final Streaming streaming = new Streaming();
+
+    public Pagination getPagination() {
+        return pagination;
+    }
+
+    public Streaming getStreaming() {
+        return streaming;
+    }
+
+    /** The page size for a requested limit, defaulted and capped. */
+    public int pageSize(Integer requested) {
+        return Page.size(requested, pagination.getDefaultSize(), pagination.getMaxSize());
+    }
+
+    public int streamPageSize() {
+        return streaming.getPageSize();
+    }
+
+    public static class Pagination {
+
+        private int defaultSize = Page.DEFAULT_SIZE;
+        private int maxSize = Page.MAX_SIZE;
+
+        public int getDefaultSize() {
+            return defaultSize;
+        }
+
+        public void setDefaultSize(int defaultSize) {
+            this.defaultSize = defaultSize;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+        }
+    }
+
+    public static class Streaming {
+
+        // Documents fetched per round trip
+        private int pageSize = 500;
+
+        public int getPageSize() {
+            return pageSize;
+        }
+
+        public void setPageSize(int pageSize) {
+            this.pageSize = pageSize;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.expensetracker.app.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+
+/**
+ * Startup warm-up. Application runners finish before readiness is reported,
+ * so traffic only arrives once it's done. See the {@code fast-start} profile
+ * for the rest of the startup-optimized mode.
+ */
+@Configuration
+public class StartupConfig {
+
+    @Bean
+    @Lazy(false)
+    @ConditionalOnProperty(name = "app.warm-up.enabled", havingValue = "true", matchIfMissing = true)
+    public StartupWarmUp startupWarmUp(ApplicationContext context, ObjectMapper objectMapper,
+                                       @Value("${app.storage:firestore}") String storage,
+                                       @Value("${app.warm-up.timeout-seconds:10}") long timeoutSeconds) {
+        return new StartupWarmUp(context, objectMapper, "firestore".equals(storage), Duration.ofSeconds(timeoutSeconds));
+    }
+
+    /**
+     * With {@code spring.aot.enabled} the conditions on {@code app.storage} and
+     * {@code app.warm-up.enabled} were evaluated when the image was built, and
+     * the beans chosen then are used whatever the properties say now. Refuses
+     * to start when they disagree instead of silently running with the
+     * build's choice. Without AOT the beans always match the properties.
+     */
+    @Bean
+    @Lazy(false)
+    public SmartInitializingSingleton aotConditionsCheck(Environment environment, StorageConfig.Engine engine,
+                                                         ObjectProvider<StartupWarmUp> warmUp) {
+        return () -> {
+            String storage = environment.getProperty("app.storage", "firestore");
+            if (!storage.equals(engine.name())) {
+                throw new IllegalStateException("app.storage is " + storage + " but the " + engine.name()
+                        + " engine was built in ahead of time; start without spring.aot.enabled (APP_FAST_START=false)");
+            }
+            boolean warmUpEnabled = environment.getProperty("app.warm-up.enabled", Boolean.class, true);
+            if (warmUpEnabled != (warmUp.getIfAvailable() != null)) {
+                throw new IllegalStateException("app.warm-up.enabled is " + warmUpEnabled + " but the image was built with "
+                        + !warmUpEnabled + "; start without spring.aot.enabled (APP_FAST_START=false)");
+            }
+        };
+    }
+}
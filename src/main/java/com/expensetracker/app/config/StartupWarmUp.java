@@ -0,0 +1,105 @@
+package com.expensetracker.app.config;
+
+import com.expensetracker.app.models.Expense;
+import com.expensetracker.app.models.Goal;
+import com.expensetracker.app.models.User;
+import com.expensetracker.app.models.enums.UserRole;
+import com.expensetracker.app.repositories.ExpenseRepository;
+import com.expensetracker.app.repositories.GoalRepository;
+import com.expensetracker.app.repositories.UserRepository;
+import com.expensetracker.app.services.SecurityService;
+import com.expensetracker.app.services.TokenService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.cloud.Timestamp;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.cloud.FirestoreClient;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.ApplicationContext;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Work done once before the application reports itself ready, so the first
+ * real requests don't pay for it: creating the lazily initialized request
+ * path beans, a round trip of each model through the JSON mapper, and one
+ * read that opens the Firestore channel. Failures are logged and don't hold
+ * up startup.
+ */
+public class StartupWarmUp implements ApplicationRunner {
+
+    // Created on first use under lazy initialization; the first request would otherwise build them
+    private static final List<Class<?>> REQUEST_PATH = List.of(
+            SecurityService.class, TokenService.class,
+            UserRepository.class, ExpenseRepository.class, GoalRepository.class);
+
+    private final ApplicationContext context;
+    private final ObjectMapper objectMapper;
+    private final boolean firestore;
+    private final Duration timeout;
+
+    public StartupWarmUp(ApplicationContext context, ObjectMapper objectMapper, boolean firestore, Duration timeout) {
+        this.context = context;
+        this.objectMapper = objectMapper;
+        this.firestore = firestore;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long started = System.nanoTime();
+        step("beans", () -> REQUEST_PATH.forEach(context::getBean));
+        step("json", this::roundTripModels);
+        if (firestore) {
+            step("firestore", this::openFirestoreChannel);
+        }
+        System.out.println("Warm-up finished in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)
+                + " ms; ready " + ManagementFactory.getRuntimeMXBean().getUptime() + " ms after JVM start");
+    }
+
+    private void roundTripModels() throws Exception {
+        Expense expense = new Expense();
+        expense.setDescription("warm-up");
+        expense.setAmount(new BigDecimal("1.00"));
+        expense.setCategory("Food");
+        expense.setDate(Timestamp.now());
+        Goal goal = new Goal();
+        goal.setTitle("warm-up");
+        goal.setTargetAmount(BigDecimal.TEN);
+        goal.setStartDate(Timestamp.now());
+        User user = new User();
+        user.setName("warm-up");
+        user.setRole(UserRole.USER);
+        for (Object model : List.of(expense, goal, user)) {
+            objectMapper.readValue(objectMapper.writeValueAsBytes(model), model.getClass());
+        }
+    }
+
+    // A document that doesn't exist still costs one read, but sets up the
+    // gRPC channel, TLS session and credentials the first query would need
+    private void openFirestoreChannel() throws Exception {
+        if (FirebaseApp.getApps().isEmpty()) {
+            return;
+        }
+        FirestoreClient.getFirestore().collection("users").document("warm-up").get()
+                .get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private interface Step {
+        void run() throws Exception;
+    }
+
+    private static void step(String name, Step step) {
+        long started = System.nanoTime();
+        try {
+            step.run();
+            System.out.println("Warm-up " + name + ": " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + " ms");
+        } catch (Exception e) {
+            System.err.println("Warm-up " + name + " failed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.expensetracker.app.config;
+
+import com.expensetracker.app.repositories.storage.ExpenseStore;
+import com.expensetracker.app.repositories.storage.GoalStore;
+import com.expensetracker.app.repositories.storage.UserStore;
+import com.expensetracker.app.repositories.storage.cache.EntityCaches;
+import com.expensetracker.app.repositories.storage.firestore.FirestoreChangeFeed;
+import com.expensetracker.app.repositories.storage.firestore.FirestoreExpenseStore;
+import com.expensetracker.app.repositories.storage.firestore.FirestoreGoalStore;
+import com.expensetracker.app.repositories.storage.firestore.FirestoreUserStore;
+import com.expensetracker.app.repositories.storage.jpa.JpaExpenseStore;
+import com.expensetracker.app.repositories.storage.jpa.JpaGoalStore;
+import com.expensetracker.app.repositories.storage.jpa.JpaUserStore;
+import com.expensetracker.app.repositories.storage.log.IngestBuffer;
+import com.expensetracker.app.repositories.storage.log.LogStructuredStorage;
+import com.expensetracker.app.repositories.storage.memory.InMemoryExpenseStore;
+import com.expensetracker.app.repositories.storage.memory.InMemoryGoalStore;
+import com.expensetracker.app.repositories.storage.memory.InMemoryUserStore;
+import com.expensetracker.app.repositories.storage.replica.Replica;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Selects the storage engine behind the repositories with {@code app.storage}:
+ * {@code firestore} (default), {@code memory}, {@code log} (embedded,
+ * persisted under {@code app.storage.log.dir}) or {@code jpa} (the relational
+ * database configured through {@code spring.datasource.*}).
+ */
+@Configuration
+public class StorageConfig {
+
+    /** The engine whose beans were registered; fixed at build time with AOT. */
+    public record Engine(String name) {
+    }
+
+    // Only the Firestore engine reads over the network, so only its stores are wrapped
+    @Bean
+    public EntityCaches entityCaches(@Value("${app.cache.entities.enabled:true}") boolean enabled,
+                                     @Value("${app.cache.entities.max-size:10000}") int maxSize,
+                                     @Value("${app.cache.entities.ttl-seconds:30}") long ttlSeconds) {
+        return new EntityCaches(enabled, maxSize, Duration.ofSeconds(ttlSeconds));
+    }
+
+    @Configuration
+    @ConditionalOnProperty(name = "app.storage", havingValue = "firestore", matchIfMissing = true)
+    static class FirestoreStorage {
+
+        @Bean
+        public Engine storageEngine() {
+            return new Engine("firestore");
+        }
+
+        // Closed on shutdown, which stops its snapshot listeners
+        @Bean
+        public Replica replica(@Value("${app.firestore.replica.enabled:false}") boolean enabled,
+                               @Value("${app.firestore.replica.max-users:1000}") int maxUsers,
+                               @Value("${app.firestore.replica.idle-minutes:30}") long idleMinutes) {
+            return new Replica(new FirestoreChangeFeed(), enabled, maxUsers, Duration.ofMinutes(idleMinutes));
+        }
+
+        // With the ingest buffer on, the returned store is closed on shutdown
+        // (inferred destroy method), which gives the drainer a last attempt
+        @Bean
+        public ExpenseStore expenseStore(EntityCaches caches, Replica replica,
+                                         @Value("${app.firestore.aggregate-totals:true}") boolean aggregateTotals,
+                                         @Value("${app.firestore.rollups:true}") boolean rollups,
+                                         @Value("${app.ingest.enabled:false}") boolean ingest,
+                                         @Value("${app.ingest.dir:./data/ingest}") String ingestDir,
+                                         @Value("${app.ingest.fsync:true}") boolean ingestFsync,
+                                         @Value("${app.ingest.max-pending:10000}") int ingestMaxPending,
+                                         @Value("${app.ingest.batch-size:250}") int ingestBatchSize,
+                                         @Value("${app.ingest.compact-after-bytes:16777216}") long ingestCompactAfterBytes,
+                                         @Value("${app.ingest.retry-backoff-millis:200}") long ingestRetryBackoffMillis,
+                                         @Value("${app.ingest.max-attempts:10}") int ingestMaxAttempts) throws IOException {
+            ExpenseStore store = replica.expenses(caches.expenses(new FirestoreExpenseStore(aggregateTotals, rollups)));
+            if (!ingest) {
+                return store;
+            }
+            return new IngestBuffer(store, Path.of(ingestDir), ingestFsync, ingestMaxPending, ingestBatchSize,
+                    ingestCompactAfterBytes, Duration.ofMillis(ingestRetryBackoffMillis), ingestMaxAttempts);
+        }
+
+        @Bean
+        public GoalStore goalStore(EntityCaches caches, Replica replica,
+                                   @Value("${app.firestore.progress-shards.max:16}") int maxShards,
+                                   @Value("${app.firestore.progress-shards.writes-per-second:1}") double writesPerShardPerSecond) {
+            return replica.goals(caches.goals(new FirestoreGoalStore(maxShards, writesPerShardPerSecond)));
+        }
+
+        @Bean
+        public UserStore userStore(EntityCaches caches) {
+            return caches.users(new FirestoreUserStore());
+        }
+    }
+
+    @Configuration
+    @ConditionalOnProperty(name = "app.storage", havingValue = "memory")
+    static class InMemoryStorage {
+
+        @Bean
+        public Engine storageEngine() {
+            return new Engine("memory");
+        }
+
+        @Bean
+        public ExpenseStore expenseStore() {
+            return new InMemoryExpenseStore();
+        }
+
+        @Bean
+        public GoalStore goalStore() {
+            return new InMemoryGoalStore();
+        }
+
+        @Bean
+        public UserStore userStore() {
+            return new InMemoryUserStore();
+        }
+    }
+
+    @Configuration
+    @ConditionalOnProperty(name = "app.storage", havingValue = "log")
+    static class LogStorage {
+
+        @Bean
+        public Engine storageEngine() {
+            return new Engine("log");
+        }
+
+        @Bean(destroyMethod = "close")
+        public LogStructuredStorage logStructuredStorage(
+                @Value("${app.storage.log.dir:./data}") String dir,
+                @Value("${app.storage.log.fsync:true}") boolean fsync,
+                @Value("${app.storage.log.compact-after-bytes:67108864}") long compactAfterBytes,
+                @Value("${app.storage.log.compaction-check-seconds:60}") long compactionCheckSeconds) throws IOException {
+            return new LogStructuredStorage(Path.of(dir), fsync, compactAfterBytes, Duration.ofSeconds(compactionCheckSeconds));
+        }
+
+        @Bean
+        public ExpenseStore expenseStore(LogStructuredStorage storage) {
+            return storage.expenseStore();
+        }
+
+        @Bean
+        public GoalStore goalStore(LogStructuredStorage storage) {
+            return storage.goalStore();
+        }
+
+        @Bean
+        public UserStore userStore(LogStructuredStorage storage) {
+            return storage.userStore();
+        }
+    }
+
+    @Configuration
+    @ConditionalOnProperty(name = "app.storage", havingValue = "jpa")
+    static class JpaStorage {
+
+        @Bean
+        public Engine storageEngine() {
+            return new Engine("jpa");
+        }
+
+        @Bean
+        public ExpenseStore expenseStore() {
+            return new JpaExpenseStore();
+        }
+
+        @Bean
+        public GoalStore goalStore() {
+            return new JpaGoalStore();
+        }
+
+        @Bean
+        public UserStore userStore() {
+            return new JpaUserStore();
+        }
+    }
+}
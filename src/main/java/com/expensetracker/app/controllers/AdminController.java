@@ -0,0 +1,133 @@
+package com.expensetracker.app.controllers;
+
+import com.expensetracker.app.models.User;
+import com.expensetracker.app.repositories.ExpenseRepository;
+import com.expensetracker.app.repositories.GoalRepository;
+import com.expensetracker.app.repositories.UserRepository;
+import com.expensetracker.app.repositories.storage.cache.EntityCaches;
+import com.expensetracker.app.services.AccountDeletion;
+import com.expensetracker.app.services.Archival;
+import com.expensetracker.app.services.SecurityService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+@RestController
+@RequestMapping("/admin")
+public class AdminController {
+
+    private final SecurityService securityService;
+    private final ExpenseRepository expenseRepository;
+    private final GoalRepository goalRepository;
+    private final EntityCaches entityCaches;
+    private final UserRepository userRepository;
+    private final AccountDeletion accountDeletion;
+    private final Archival archival;
+
+    public AdminController(SecurityService securityService, ExpenseRepository expenseRepository, GoalRepository goalRepository,
+                           EntityCaches entityCaches, UserRepository userRepository, AccountDeletion accountDeletion,
+                           Archival archival) {
+        this.securityService = securityService;
+        this.expenseRepository = expenseRepository;
+        this.goalRepository = goalRepository;
+        this.entityCaches = entityCaches;
+        this.userRepository = userRepository;
+        this.accountDeletion = accountDeletion;
+        this.archival = archival;
+    }
+
+    // GET /admin/cache/principals - hit/miss counters of the principal cache
+    @GetMapping("/cache/principals")
+    public ResponseEntity<Map<String, Object>> principalCacheStats() {
+        securityService.requireAdmin();
+        return ResponseEntity.ok(securityService.getPrincipalCacheStats());
+    }
+
+    // GET /admin/cache/entities - hit rate, evictions and load latency of the by-id caches
+    @GetMapping("/cache/entities")
+    public ResponseEntity<List<Map<String, Object>>> entityCacheStats() {
+        securityService.requireAdmin();
+        return ResponseEntity.ok(entityCaches.stats());
+    }
+
+    // POST /admin/expenses/backfill-aggregate-fields - run once before relying on server-side totals
+    @PostMapping("/expenses/backfill-aggregate-fields")
+    public ResponseEntity<Map<String, Object>> backfillExpenseAggregateFields() {
+        securityService.requireAdmin();
+        return ResponseEntity.ok(Map.of("updated", expenseRepository.backfillAggregateFields()));
+    }
+
+    // POST /admin/expenses/rebuild-rollups - run once before relying on monthly rollups; safe while writes continue
+    @PostMapping("/expenses/rebuild-rollups")
+    public ResponseEntity<Map<String, Object>> rebuildExpenseRollups() {
+        securityService.requireAdmin();
+        return ResponseEntity.ok(Map.of("rollups", expenseRepository.rebuildRollups()));
+    }
+
+    // POST /admin/goals/backfill-progress-shards - run once so goal listings read progress shards in bulk
+    @PostMapping("/goals/backfill-progress-shards")
+    public ResponseEntity<Map<String, Object>> backfillGoalProgressShards() {
+        securityService.requireAdmin();
+        return ResponseEntity.ok(Map.of("updated", goalRepository.backfillProgressShards()));
+    }
+
+    // POST /admin/goals/recompute-progress - run once after upgrading so goals last synced by goalId alone
+    // count their category's expenses too
+    @PostMapping("/goals/recompute-progress")
+    public ResponseEntity<Map<String, Object>> recomputeGoalProgress() {
+        securityService.requireAdmin();
+        return ResponseEntity.ok(Map.of("goals", goalRepository.recomputeAllProgress()));
+    }
+
+    // GET /admin/users/{userId}/deletion - progress of the cascade to the user's goals and expenses
+    @GetMapping("/users/{userId}/deletion")
+    public ResponseEntity<AccountDeletion.Progress> accountDeletionProgress(@PathVariable String userId) {
+        securityService.requireAdmin();
+        return accountDeletion.progress(userId)
+                .map(ResponseEntity::ok)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "No deletion recorded for user " + userId));
+    }
+
+    // POST /admin/users/{userId}/deletion - re-run the cascade for a deleted user, e.g. after a failure
+    @PostMapping("/users/{userId}/deletion")
+    public ResponseEntity<AccountDeletion.Progress> restartAccountDeletion(@PathVariable String userId)
+            throws ExecutionException, InterruptedException {
+        securityService.requireAdmin();
+        User user = userRepository.findById(userId);
+        if (user == null || !user.isDeleted()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "User " + userId + " is not deleted");
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(accountDeletion.start(userId));
+    }
+
+    // GET /admin/archive - documents reclaimed by archival and listing latency around its batches
+    @GetMapping("/archive")
+    public ResponseEntity<Map<String, Object>> archiveStats() {
+        securityService.requireAdmin();
+        return ResponseEntity.ok(archival.stats());
+    }
+
+    // POST /admin/archive/run - archive now instead of waiting for the interval
+    @PostMapping("/archive/run")
+    public ResponseEntity<Map<String, Object>> runArchival() {
+        securityService.requireAdmin();
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of("started", archival.runNow()));
+    }
+
+    // GET /admin/expenses/verify-rollups?userId=... - rollups that disagree with the raw expenses
+    @GetMapping("/expenses/verify-rollups")
+    public ResponseEntity<Map<String, Object>> verifyExpenseRollups(@RequestParam String userId) {
+        securityService.requireAdmin();
+        return ResponseEntity.ok(expenseRepository.verifyRollups(userId));
+    }
+}
@@ -3,12 +3,12 @@ package com.expensetracker.app.controllers;
 import com.expensetracker.app.models.User;
 import com.expensetracker.app.repositories.UserRepository;
 import com.expensetracker.app.services.SecurityService;
+import com.expensetracker.app.services.TokenService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -17,10 +17,12 @@ public class AuthController {
 
     private final UserRepository userRepository;
     private final SecurityService securityService;
+    private final TokenService tokenService;
 
-    public AuthController(UserRepository userRepository, SecurityService securityService) {
+    public AuthController(UserRepository userRepository, SecurityService securityService, TokenService tokenService) {
         this.userRepository = userRepository;
         this.securityService = securityService;
+        this.tokenService = tokenService;
     }
 
     public static class LoginRequest {
@@ -39,14 +41,9 @@ public class AuthController {
         if (req == null || req.email == null || req.password == null) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", "email and password are required"));
         }
-        List<User> all = userRepository.findAll();
-        for (User u : all) {
-            if (req.email.equalsIgnoreCase(u.getEmail()) && req.password.equals(u.getPassword())) {
-                Map<String, Object> resp = new HashMap<>();
-                resp.put("token", u.getId()); // simple token: userId
-                resp.put("user", u);
-                return ResponseEntity.ok(resp);
-            }
+        User u = userRepository.findByEmail(req.email);
+        if (u != null && req.password.equals(u.getPassword())) {
+            return ResponseEntity.ok(tokenResponse(u));
         }
         return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "invalid credentials"));
     }
@@ -58,10 +55,7 @@ public class AuthController {
         }
         User u = new User(req.name, req.email, req.password);
         User saved = userRepository.createUser(u);
-        Map<String, Object> resp = new HashMap<>();
-        resp.put("token", saved.getId());
-        resp.put("user", saved);
-        return ResponseEntity.status(HttpStatus.CREATED).body(resp);
+        return ResponseEntity.status(HttpStatus.CREATED).body(tokenResponse(saved));
     }
 
     @GetMapping("/me")
@@ -73,4 +67,12 @@ public class AuthController {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", se.getMessage()));
         }
     }
+
+    private Map<String, Object> tokenResponse(User u) {
+        Map<String, Object> resp = new HashMap<>();
+        resp.put("token", tokenService.issue(u)); // signed: userId, role, expiry
+        resp.put("expiresIn", tokenService.getTtl().toSeconds());
+        resp.put("user", u);
+        return resp;
+    }
 }
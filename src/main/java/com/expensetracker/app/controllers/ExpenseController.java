@@ -1,22 +1,42 @@
 package com.expensetracker.app.controllers;
 
+import com.expensetracker.app.config.ImportProperties;
+import com.expensetracker.app.config.PagingProperties;
 import com.expensetracker.app.models.Expense;
+import com.expensetracker.app.repositories.ExpenseImport;
 import com.expensetracker.app.repositories.ExpenseRepository;
+import com.expensetracker.app.repositories.Page;
+import com.expensetracker.app.repositories.storage.MonthlyRollup;
+import com.expensetracker.app.services.Principal;
 import com.expensetracker.app.services.SecurityService;
 import com.google.cloud.Timestamp;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.http.HttpStatus;
 import com.expensetracker.app.dto.ExpenseRequest;
 import com.expensetracker.app.dto.ApiResponse;
+import com.expensetracker.app.dto.ExpenseImportRows;
+import com.expensetracker.app.dto.Ndjson;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/expenses")
@@ -25,17 +45,110 @@ public class ExpenseController {
     private final ExpenseRepository expenseRepository;
     private final SecurityService securityService;
 
+    private final PagingProperties paging;
+    private final ImportProperties imports;
+    private final ObjectMapper objectMapper;
+
+    // Built directly: default paging and import settings and a plain mapper
     public ExpenseController(ExpenseRepository expenseRepository, SecurityService securityService) {
+        this(expenseRepository, securityService, new PagingProperties(), new ImportProperties(), Ndjson.defaultMapper());
+    }
+
+    @Autowired
+    public ExpenseController(ExpenseRepository expenseRepository, SecurityService securityService,
+                             PagingProperties paging, ImportProperties imports, ObjectMapper objectMapper) {
         this.expenseRepository = expenseRepository;
         this.securityService = securityService;
+        this.paging = paging;
+        this.imports = imports;
+        this.objectMapper = objectMapper;
     }
 
     // GET /expenses/user/{userId}
     @GetMapping("/user/{userId}")
-    public ResponseEntity<List<Expense>> getExpensesByUserId(@PathVariable String userId) {
+    public CompletableFuture<ResponseEntity<List<Expense>>> getExpensesByUserId(@PathVariable String userId) {
+        securityService.validateUserAccess(userId);
+        return expenseRepository.findByUserIdAsync(userId).thenApply(ResponseEntity::ok);
+    }
+
+    // GET /expenses/user/{userId}/page?cursor=...&limit=...
+    @GetMapping("/user/{userId}/page")
+    public ResponseEntity<Page<Expense>> getExpensePageByUserId(@PathVariable String userId,
+                                                                @RequestParam(required = false) String cursor,
+                                                                @RequestParam(required = false) Integer limit) {
+        securityService.validateUserAccess(userId);
+        int size = paging.pageSize(limit);
+        return ResponseEntity.ok(expenseRepository.findPageByUserId(userId, cursor, size));
+    }
+
+    // GET /expenses/user/{userId}/monthly?from=yyyy-MM&to=yyyy-MM: totals per month and category
+    @GetMapping("/user/{userId}/monthly")
+    public ResponseEntity<List<MonthlyRollup>> getMonthlyTotals(@PathVariable String userId,
+                                                                @RequestParam(required = false) String from,
+                                                                @RequestParam(required = false) String to) {
+        securityService.validateUserAccess(userId);
+        return ResponseEntity.ok(expenseRepository.findMonthlyRollups(userId, from, to));
+    }
+
+    // GET /expenses/user/{userId}/stream: the full history as NDJSON, one expense per line
+    @GetMapping(value = "/user/{userId}/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamExpensesByUserId(@PathVariable String userId) {
+        securityService.validateUserAccess(userId);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(Ndjson.pages(objectMapper, cursor -> expenseRepository.findPageByUserId(userId, cursor, paging.streamPageSize())));
+    }
+
+    // POST /expenses/user/{userId}/import: CSV with a header row or NDJSON, one
+    // expense per row; returns how many were imported and why the others failed
+    @PostMapping(value = "/user/{userId}/import", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<ExpenseImport.Report> importExpenses(@PathVariable String userId,
+                                                               @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentTypeHeader,
+                                                               InputStream body) throws IOException {
         securityService.validateUserAccess(userId);
-        List<Expense> expenses = expenseRepository.findByUserId(userId);
-        return ResponseEntity.ok(expenses);
+        MediaType contentType = MediaType.parseMediaType(contentTypeHeader);
+        Reader reader = new InputStreamReader(body, contentType.getCharset() != null ? contentType.getCharset() : StandardCharsets.UTF_8);
+        Iterator<ExpenseImportRows.Row> rows = MediaType.APPLICATION_NDJSON.isCompatibleWith(contentType)
+                ? ExpenseImportRows.ndjson(objectMapper, reader)
+                : ExpenseImportRows.csv(reader);
+        ExpenseImport run = expenseRepository.startImport(imports.getBatchSize(), imports.getMaxInFlight());
+        while (rows.hasNext()) {
+            ExpenseImportRows.Row row = rows.next();
+            if (row.error() != null) {
+                run.reject(row.number(), row.error());
+                continue;
+            }
+            ExpenseRequest request = row.request();
+            if (request.getUserId() != null && !request.getUserId().equals(userId)) {
+                run.reject(row.number(), "userId must be " + userId + " or left out");
+                continue;
+            }
+            Timestamp date;
+            try {
+                date = parseDate(request.getDate());
+            } catch (DateTimeParseException e) {
+                run.reject(row.number(), "Invalid date format. Use MM/dd/yyyy (e.g. 10/02/2025)");
+                continue;
+            }
+            Expense expense = new Expense();
+            expense.setDescription(request.getDescription());
+            expense.setAmount(request.getAmount());
+            expense.setCategory(request.getCategory());
+            expense.setDate(date);
+            expense.setUserId(userId);
+            expense.setGoalId(request.getGoalId());
+            run.add(row.number(), expense);
+        }
+        return ResponseEntity.ok(run.finish());
+    }
+
+    // MM/dd/yyyy as the start of that day in UTC; null when missing
+    private static Timestamp parseDate(String date) {
+        if (date == null || date.isBlank()) {
+            return null;
+        }
+        LocalDate ld = LocalDate.parse(date, DateTimeFormatter.ofPattern("MM/dd/yyyy"));
+        return Timestamp.of(java.util.Date.from(ld.atStartOfDay(ZoneOffset.UTC).toInstant()));
     }
 
     // POST /expenses
@@ -49,9 +162,7 @@ public class ExpenseController {
         }
         Timestamp ts;
         try {
-            DateTimeFormatter fmt = DateTimeFormatter.ofPattern("MM/dd/yyyy");
-            LocalDate ld = LocalDate.parse(body.getDate(), fmt);
-            ts = Timestamp.of(java.util.Date.from(ld.atStartOfDay(ZoneOffset.UTC).toInstant()));
+            ts = parseDate(body.getDate());
         } catch (DateTimeParseException e) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid date format. Use MM/dd/yyyy (e.g. 10/02/2025)");
         }
@@ -90,14 +201,15 @@ public class ExpenseController {
 
     // GET /expenses/{id}
     @GetMapping("/{id}")
-    public ResponseEntity<Expense> getExpenseById(@PathVariable String id) {
-        Optional<Expense> expenseOpt = expenseRepository.findById(id);
-        if (expenseOpt.isEmpty()) {
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Expense not found");
-        }
-        Expense expense = expenseOpt.get();
-        securityService.validateUserAccess(expense.getUserId());
-        return ResponseEntity.ok(expense);
+    public CompletableFuture<ResponseEntity<Expense>> getExpenseById(@PathVariable String id) {
+        // The continuation runs off the request thread, so capture the caller first
+        Principal caller = securityService.currentPrincipal();
+        return expenseRepository.findByIdAsync(id).thenApply(expenseOpt -> {
+            Expense expense = expenseOpt.orElseThrow(
+                    () -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Expense not found"));
+            caller.validateAccess(expense.getUserId());
+            return ResponseEntity.ok(expense);
+        });
     }
 
     // PUT /expenses/{id}
@@ -118,9 +230,7 @@ public class ExpenseController {
         toUpdate.setCategory(body.getCategory());
         if (body.getDate() != null && !body.getDate().isBlank()) {
             try {
-                DateTimeFormatter fmt = DateTimeFormatter.ofPattern("MM/dd/yyyy");
-                LocalDate ld = LocalDate.parse(body.getDate(), fmt);
-                toUpdate.setDate(Timestamp.of(java.util.Date.from(ld.atStartOfDay(ZoneOffset.UTC).toInstant())));
+                toUpdate.setDate(parseDate(body.getDate()));
             } catch (DateTimeParseException e) {
                 throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid date format. Use MM/dd/yyyy (e.g. 10/02/2025)");
             }
@@ -1,12 +1,19 @@
 package com.expensetracker.app.controllers;
 
+import com.expensetracker.app.config.PagingProperties;
 import com.expensetracker.app.dto.ApiResponse;
+import com.expensetracker.app.dto.Ndjson;
 import com.expensetracker.app.models.Goal;
 import com.expensetracker.app.models.enums.GoalMode;
 import com.expensetracker.app.repositories.GoalRepository;
+import com.expensetracker.app.repositories.Page;
 import com.expensetracker.app.dto.GoalRequest;
 import com.google.cloud.Timestamp;
 import com.expensetracker.app.services.SecurityService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -19,6 +26,7 @@ import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/goals")
@@ -27,9 +35,21 @@ public class GoalController {
     private final GoalRepository goalRepository;
     private final SecurityService securityService;
 
+    private final PagingProperties paging;
+
+    // Spring's configured mapper; the default covers controllers built directly
+    @Autowired(required = false)
+    private ObjectMapper objectMapper = Ndjson.defaultMapper();
+
     public GoalController(GoalRepository goalRepository, SecurityService securityService) {
+        this(goalRepository, securityService, new PagingProperties());
+    }
+
+    @Autowired
+    public GoalController(GoalRepository goalRepository, SecurityService securityService, PagingProperties paging) {
         this.goalRepository = goalRepository;
         this.securityService = securityService;
+        this.paging = paging;
     }
 
     // GET /goals
@@ -44,32 +64,37 @@ public class GoalController {
         }
     }
 
+    // GET /goals/stream: every goal as NDJSON, one per line
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllGoals() {
+        securityService.requireAdmin();
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(Ndjson.pages(objectMapper, cursor -> goalRepository.findPage(cursor, paging.streamPageSize())));
+    }
+
     // GET /goals/{id}
     @GetMapping("/{id}")
-    public ResponseEntity<Goal> getGoalById(@PathVariable String id) {
-        try {
-            Optional<Goal> goal = goalRepository.findById(id);
-            if (goal.isPresent()) {
-                return ResponseEntity.ok(goal.get());
-            } else {
-                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Goal not found");
-            }
-        } catch (ResponseStatusException ex) {
-            throw ex;
-        } catch (Exception e) {
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to get goal", e);
-        }
+    public CompletableFuture<ResponseEntity<Goal>> getGoalById(@PathVariable String id) {
+        return goalRepository.findByIdAsync(id)
+                .thenApply(goal -> goal.map(ResponseEntity::ok)
+                        .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Goal not found")));
     }
 
     // GET /goals/user/{userId}
     @GetMapping("/user/{userId}")
-    public ResponseEntity<List<Goal>> getGoalsByUserId(@PathVariable String userId) {
-        try {
-            List<Goal> goals = goalRepository.findByUserId(userId);
-            return ResponseEntity.ok(goals);
-        } catch (Exception e) {
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to get goals for user", e);
-        }
+    public CompletableFuture<ResponseEntity<List<Goal>>> getGoalsByUserId(@PathVariable String userId) {
+        return goalRepository.findByUserIdAsync(userId).thenApply(ResponseEntity::ok);
+    }
+
+    // GET /goals/user/{userId}/page?cursor=...&limit=...
+    @GetMapping("/user/{userId}/page")
+    public ResponseEntity<Page<Goal>> getGoalPageByUserId(@PathVariable String userId,
+                                                          @RequestParam(required = false) String cursor,
+                                                          @RequestParam(required = false) Integer limit) {
+        securityService.validateUserAccess(userId);
+        int size = paging.pageSize(limit);
+        return ResponseEntity.ok(goalRepository.findPageByUserId(userId, cursor, size));
     }
 
     // GET /goals/user/{userId}/active
@@ -211,7 +236,8 @@ public class GoalController {
         }
     }
 
-    // PUT /goals/{id}/sync - recompute currentAmount from expenses linked by goalId
+    // PUT /goals/{id}/sync - recompute currentAmount from the expenses that count toward the goal:
+    // those in its window matching its category, plus those linked by goalId
     @PutMapping("/{id}/sync")
     public ResponseEntity<ApiResponse<Goal>> syncGoal(@PathVariable String id) {
         try {
@@ -1,5 +1,6 @@
 package com.expensetracker.app.controllers;
 
+import com.expensetracker.app.config.PagingProperties;
 import com.expensetracker.app.dto.ExpenseRequest;
 import com.expensetracker.app.dto.GoalRequest;
 import com.expensetracker.app.models.Expense;
@@ -7,11 +8,16 @@ import com.expensetracker.app.models.Goal;
 import com.expensetracker.app.models.User;
 import com.expensetracker.app.repositories.ExpenseRepository;
 import com.expensetracker.app.repositories.GoalRepository;
+import com.expensetracker.app.repositories.Page;
+import com.expensetracker.app.services.FanOut;
 import com.expensetracker.app.services.SecurityService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api")
@@ -20,11 +26,17 @@ public class MobileApiController {
     private final SecurityService securityService;
     private final ExpenseRepository expenseRepository;
     private final GoalRepository goalRepository;
+    private final FanOut fanOut;
 
-    public MobileApiController(SecurityService securityService, ExpenseRepository expenseRepository, GoalRepository goalRepository) {
+    private final PagingProperties paging;
+
+    public MobileApiController(SecurityService securityService, ExpenseRepository expenseRepository,
+                               GoalRepository goalRepository, FanOut fanOut, PagingProperties paging) {
         this.securityService = securityService;
         this.expenseRepository = expenseRepository;
         this.goalRepository = goalRepository;
+        this.fanOut = fanOut;
+        this.paging = paging;
     }
 
     @GetMapping("/user")
@@ -33,6 +45,21 @@ public class MobileApiController {
         return ResponseEntity.ok(u);
     }
 
+    // GET /api/summary: profile, expenses and goals for the home screen in one round-trip
+    @GetMapping("/summary")
+    public ResponseEntity<Map<String, Object>> summary() {
+        String userId = securityService.getCurrentUserId();
+        CompletableFuture<User> user = fanOut.fork(securityService::getCurrentUser);
+        CompletableFuture<List<Expense>> expenses = fanOut.fork(() -> expenseRepository.findByUserId(userId));
+        CompletableFuture<List<Goal>> goals = fanOut.fork(() -> goalRepository.findByUserId(userId));
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("user", FanOut.join(user));
+        body.put("expenses", FanOut.join(expenses));
+        body.put("goals", FanOut.join(goals));
+        return ResponseEntity.ok(body);
+    }
+
     @GetMapping("/expenses")
     public ResponseEntity<List<Expense>> myExpenses() {
         String userId = securityService.getCurrentUserId();
@@ -40,6 +67,14 @@ public class MobileApiController {
         return ResponseEntity.ok(expenses);
     }
 
+    @GetMapping("/expenses/page")
+    public ResponseEntity<Page<Expense>> myExpensePage(@RequestParam(required = false) String cursor,
+                                                       @RequestParam(required = false) Integer limit) {
+        String userId = securityService.getCurrentUserId();
+        int size = paging.pageSize(limit);
+        return ResponseEntity.ok(expenseRepository.findPageByUserId(userId, cursor, size));
+    }
+
     @PostMapping("/expenses")
     public ResponseEntity<Expense> createExpense(@RequestBody ExpenseRequest body) {
         String userId = securityService.getCurrentUserId();
@@ -55,6 +90,14 @@ public class MobileApiController {
         return ResponseEntity.ok(goals);
     }
 
+    @GetMapping("/goals/page")
+    public ResponseEntity<Page<Goal>> myGoalPage(@RequestParam(required = false) String cursor,
+                                                 @RequestParam(required = false) Integer limit) {
+        String userId = securityService.getCurrentUserId();
+        int size = paging.pageSize(limit);
+        return ResponseEntity.ok(goalRepository.findPageByUserId(userId, cursor, size));
+    }
+
     @PostMapping("/goals")
     public ResponseEntity<Goal> createGoal(@RequestBody GoalRequest body) {
         String userId = securityService.getCurrentUserId();
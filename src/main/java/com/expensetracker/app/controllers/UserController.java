@@ -9,6 +9,7 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.http.ResponseEntity;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/users")
@@ -24,21 +25,16 @@ public class UserController {
 
     // GET /users
     @GetMapping
-    public ResponseEntity<List<User>> getAllUsers() throws Exception {
+    public CompletableFuture<ResponseEntity<List<User>>> getAllUsers() {
         securityService.requireAdmin();
-        List<User> users = userRepository.findAll();
-        return ResponseEntity.ok(users);
+        return userRepository.findAllAsync().thenApply(ResponseEntity::ok);
     }
 
     // GET /users/{id}
     @GetMapping("/{id}")
-    public ResponseEntity<User> getUserById(@PathVariable String id) throws Exception {
-        User user = userRepository.findById(id);
-        if (user != null) {
-            return ResponseEntity.ok(user);
-        } else {
-            return ResponseEntity.notFound().build();
-        }
+    public CompletableFuture<ResponseEntity<User>> getUserById(@PathVariable String id) {
+        return userRepository.findByIdAsync(id)
+                .thenApply(user -> user != null ? ResponseEntity.ok(user) : ResponseEntity.notFound().<User>build());
     }
 
     // POST /users
@@ -56,6 +52,14 @@ public class UserController {
         return ResponseEntity.ok(new ApiResponse<>("User updated successfully", savedUser));
     }
 
+    // POST /users/email-index/rebuild - backfill email claims for users created before the index
+    @PostMapping("/email-index/rebuild")
+    public ResponseEntity<ApiResponse<Integer>> rebuildEmailIndex() throws Exception {
+        securityService.requireAdmin();
+        int written = userRepository.rebuildEmailIndex();
+        return ResponseEntity.ok(new ApiResponse<>("Email index rebuilt", written));
+    }
+
     // DELETE /users/{id}
     @DeleteMapping("/{id}")
     public ResponseEntity<ApiResponse<Void>> deleteUser(@PathVariable String id) throws Exception {
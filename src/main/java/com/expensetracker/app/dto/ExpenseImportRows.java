@@ -0,0 +1,249 @@
+package com.expensetracker.app.dto;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Request bodies for bulk imports, read one row at a time so a large upload
+ * is never held in memory. Rows are numbered from 1, not counting the CSV
+ * header; a row that can't be parsed carries an error instead of a request.
+ * A row longer than {@link #MAX_ROW_CHARS} is reported that way too, and
+ * reading resumes on the next line.
+ */
+public final class ExpenseImportRows {
+
+    /** Longest row accepted; guards against an unterminated quote swallowing the body. */
+    public static final int MAX_ROW_CHARS = 64 * 1024;
+
+    public record Row(long number, ExpenseRequest request, String error) {
+    }
+
+    private ExpenseImportRows() {
+    }
+
+    /**
+     * CSV with a header row naming the columns: description, amount, category,
+     * date (MM/dd/yyyy) and optionally goalId and userId, in any order and
+     * case. Fields may be quoted, with {@code ""} for a quote inside.
+     */
+    public static Iterator<Row> csv(Reader body) {
+        BufferedReader in = new BufferedReader(body);
+        List<String> header = readRecord(in);
+        if (header == null) {
+            return new RowIterator(() -> null);
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        for (String required : List.of("description", "amount", "category", "date")) {
+            if (!columns.containsKey(required)) {
+                throw new IllegalArgumentException("CSV header is missing the '" + required + "' column");
+            }
+        }
+        long[] number = {0};
+        return new RowIterator(() -> {
+            List<String> fields;
+            try {
+                fields = readRecord(in);
+            } catch (RowTooLongException e) {
+                return new Row(++number[0], null, e.getMessage());
+            }
+            if (fields == null) {
+                return null;
+            }
+            long n = ++number[0];
+            ExpenseRequest request = new ExpenseRequest();
+            request.setDescription(field(fields, columns, "description"));
+            request.setCategory(field(fields, columns, "category"));
+            request.setDate(field(fields, columns, "date"));
+            request.setGoalId(field(fields, columns, "goalid"));
+            request.setUserId(field(fields, columns, "userid"));
+            String amount = field(fields, columns, "amount");
+            if (amount != null) {
+                try {
+                    request.setAmount(new BigDecimal(amount));
+                } catch (NumberFormatException e) {
+                    return new Row(n, null, "Invalid amount '" + amount + "'");
+                }
+            }
+            return new Row(n, request, null);
+        });
+    }
+
+    /** One JSON object per line, with the same fields as a single create. */
+    public static Iterator<Row> ndjson(ObjectMapper mapper, Reader body) {
+        BufferedReader in = new BufferedReader(body);
+        ObjectReader reader = mapper.readerFor(ExpenseRequest.class);
+        long[] number = {0};
+        return new RowIterator(() -> {
+            String line;
+            do {
+                try {
+                    line = readLine(in);
+                } catch (RowTooLongException e) {
+                    return new Row(++number[0], null, e.getMessage());
+                }
+                if (line == null) {
+                    return null;
+                }
+            } while (line.isBlank());
+            long n = ++number[0];
+            try {
+                return new Row(n, reader.readValue(line), null);
+            } catch (JsonProcessingException e) {
+                return new Row(n, null, "Invalid JSON: " + e.getOriginalMessage());
+            }
+        });
+    }
+
+    // Blank fields count as missing so validation reports them as required
+    private static String field(List<String> fields, Map<String, Integer> columns, String name) {
+        Integer i = columns.get(name);
+        if (i == null || i >= fields.size()) {
+            return null;
+        }
+        String value = fields.get(i).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static String readLine(BufferedReader in) {
+        StringBuilder line = new StringBuilder();
+        try {
+            int c;
+            while ((c = in.read()) != -1 && c != '\n') {
+                if (line.length() == MAX_ROW_CHARS) {
+                    skipLine(in);
+                    throw new RowTooLongException();
+                }
+                line.append((char) c);
+            }
+            if (c == -1 && line.isEmpty()) {
+                return null;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        int end = line.length();
+        return end > 0 && line.charAt(end - 1) == '\r' ? line.substring(0, end - 1) : line.toString();
+    }
+
+    // Reads the next non-blank record, following quoted fields across line breaks
+    private static List<String> readRecord(BufferedReader in) {
+        try {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            boolean any = false;
+            int length = 0;
+            int c;
+            while ((c = in.read()) != -1) {
+                if (++length > MAX_ROW_CHARS) {
+                    // Most likely an unterminated quote, so quoting is ignored when skipping
+                    if (c != '\n') {
+                        skipLine(in);
+                    }
+                    throw new RowTooLongException();
+                }
+                if (quoted) {
+                    if (c != '"') {
+                        field.append((char) c);
+                    } else {
+                        in.mark(1);
+                        if (in.read() == '"') {
+                            field.append('"');
+                        } else {
+                            in.reset();
+                            quoted = false;
+                        }
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                    any = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                    any = true;
+                } else if (c == '\n') {
+                    if (any) {
+                        break;
+                    }
+                    field.setLength(0);
+                    length = 0;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                    any |= !Character.isWhitespace(c);
+                }
+            }
+            if (c == -1 && !any) {
+                return null;
+            }
+            fields.add(field.toString());
+            return fields;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void skipLine(BufferedReader in) throws IOException {
+        int c;
+        do {
+            c = in.read();
+        } while (c != -1 && c != '\n');
+    }
+
+    // An IllegalArgumentException so an over-long CSV header still rejects the body
+    private static final class RowTooLongException extends IllegalArgumentException {
+        RowTooLongException() {
+            super("Row is longer than " + MAX_ROW_CHARS + " characters");
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowSource {
+        Row next();
+    }
+
+    private static final class RowIterator implements Iterator<Row> {
+        private final RowSource source;
+        private Row next;
+        private boolean done;
+
+        RowIterator(RowSource source) {
+            this.source = source;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !done) {
+                next = source.next();
+                done = next == null;
+            }
+            return next != null;
+        }
+
+        @Override
+        public Row next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Row row = next;
+            next = null;
+            return row;
+        }
+    }
+}
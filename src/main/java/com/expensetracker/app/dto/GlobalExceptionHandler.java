@@ -8,6 +8,7 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 
 @RestControllerAdvice
@@ -48,6 +49,18 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(body);
     }
 
+    // Failures of async controller results arrive wrapped by the future's stages
+    @ExceptionHandler(CompletionException.class)
+    public ResponseEntity<ApiError> handleCompletion(CompletionException ex, HttpServletRequest req) {
+        Throwable cause = ex.getCause();
+        if (cause instanceof DuplicateEmailException dup) return handleDuplicateEmail(dup, req);
+        if (cause instanceof IllegalArgumentException iae) return handleIllegalArgument(iae, req);
+        if (cause instanceof SecurityException se) return handleSecurity(se, req);
+        if (cause instanceof ResponseStatusException rse) return handleResponseStatus(rse, req);
+        ApiError body = new ApiError(HttpStatus.INTERNAL_SERVER_ERROR, cause != null ? cause.getMessage() : ex.getMessage(), req.getRequestURI());
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(body);
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ApiError> handleGeneric(Exception ex, HttpServletRequest req) {
         ApiError body = new ApiError(HttpStatus.INTERNAL_SERVER_ERROR, ex.getMessage(), req.getRequestURI());
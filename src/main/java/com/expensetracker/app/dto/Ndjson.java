@@ -0,0 +1,53 @@
+package com.expensetracker.app.dto;
+
+import com.expensetracker.app.config.JacksonConfig;
+import com.expensetracker.app.repositories.Page;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.function.Function;
+
+/**
+ * Newline-delimited JSON bodies for exports: one document per line, written
+ * page by page so only the current page is held in memory.
+ */
+public final class Ndjson {
+
+    private Ndjson() {
+    }
+
+    /**
+     * Streams every page of a cursor-paginated listing. {@code fetch} receives
+     * the cursor of the next page (null for the first) and runs on the async
+     * request thread, after the controller has returned. The output is
+     * flushed after each page so clients start receiving the first page
+     * immediately.
+     */
+    public static <T> StreamingResponseBody pages(ObjectMapper mapper, Function<String, Page<T>> fetch) {
+        ObjectWriter writer = mapper.writer();
+        return out -> {
+            String cursor = null;
+            do {
+                Page<T> page = fetch.apply(cursor);
+                for (T item : page.items()) {
+                    out.write(writer.writeValueAsBytes(item));
+                    out.write('\n');
+                }
+                out.flush();
+                cursor = page.nextCursor();
+            } while (cursor != null);
+        };
+    }
+
+    /** Mapper equivalent to the application's, for controllers built outside Spring. */
+    public static ObjectMapper defaultMapper() {
+        return JsonMapper.builder()
+                .findAndAddModules()
+                .addModule(new JacksonConfig().firestoreTimestampModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+    }
+}
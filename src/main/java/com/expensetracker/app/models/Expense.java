@@ -1,9 +1,11 @@
 package com.expensetracker.app.models;
 
+import jakarta.persistence.*;
 import lombok.*;
 import com.google.cloud.Timestamp;
 import com.google.cloud.firestore.annotation.Exclude;
 import com.google.cloud.firestore.annotation.IgnoreExtraProperties;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
@@ -17,6 +19,12 @@ import com.expensetracker.app.models.enums.ExpenseCategory;
 @NoArgsConstructor
 @AllArgsConstructor
 @IgnoreExtraProperties
+@Entity
+@Table(name = "expenses", indexes = {
+        @Index(name = "idx_expenses_user_date", columnList = "userId, date"),
+        @Index(name = "idx_expenses_goal_date", columnList = "goalId, date"),
+        @Index(name = "idx_expenses_user_category_date", columnList = "userId, category, date")
+})
 public class Expense extends BaseEntity {
 
     private String description;
@@ -77,6 +85,27 @@ public class Expense extends BaseEntity {
         this.userId = userId;
     }
 
+    /**
+     * The amount in whole cents, stored next to {@code amount} so totals can be
+     * summed as exact integers by the database. Null when the amount isn't a
+     * whole number of cents.
+     */
+    @JsonIgnore
+    public Long getAmountCents() {
+        return toCents(amount);
+    }
+
+    public static Long toCents(BigDecimal amount) {
+        if (amount == null) {
+            return null;
+        }
+        try {
+            return amount.movePointRight(2).longValueExact();
+        } catch (ArithmeticException e) {
+            return null;
+        }
+    }
+
     // Helper methods for LocalDateTime conversion 
     @Exclude
     public LocalDateTime getDateAsLocalDateTime() {
@@ -1,5 +1,6 @@
 package com.expensetracker.app.models;
 
+import jakarta.persistence.*;
 import lombok.*;
 import com.google.cloud.Timestamp;
 import com.google.cloud.firestore.annotation.Exclude;
@@ -23,6 +24,8 @@ import java.time.ZoneId;
 @NoArgsConstructor
 @AllArgsConstructor
 @IgnoreExtraProperties
+@Entity
+@Table(name = "goals", indexes = @Index(name = "idx_goals_user", columnList = "userId"))
 public class Goal extends BaseEntity {
 
     private String userId;
@@ -38,7 +41,9 @@ public class Goal extends BaseEntity {
     private Timestamp endDate;   
     private String category;
     private boolean isCompleted = false;
+    @Enumerated(EnumType.STRING)
     private GoalMode mode = GoalMode.LIMIT;
+    @Enumerated(EnumType.STRING)
     private GoalStatus status = GoalStatus.ACTIVE;
 
     public String getUserId() {
@@ -1,6 +1,8 @@
 package com.expensetracker.app.models;
 
 import com.expensetracker.app.models.enums.UserRole;
+import com.google.cloud.Timestamp;
+import jakarta.persistence.*;
 import lombok.*;
 
 /**
@@ -10,12 +12,19 @@ import lombok.*;
 @EqualsAndHashCode(callSuper = false)
 @NoArgsConstructor
 @AllArgsConstructor
+@Entity
+@Table(name = "users")
 public class User extends BaseEntity {
 
     private String name;
     private String email;
     private String password;
+    @Enumerated(EnumType.STRING)
     private UserRole role = UserRole.USER; // Default role
+    // Access tokens issued up to this instant are refused; set on role changes and deletes
+    private Timestamp tokensRevokedAt;
+    // Set with deletedAt and cleared once the goals and expenses are deleted too
+    private Boolean deletionPending;
 
     // Explicit constructor for Firestore
     public User(String name, String email, String password) {
@@ -57,6 +66,22 @@ public class User extends BaseEntity {
     public void setRole(UserRole role) {
         this.role = role;
     }
+
+    public Timestamp getTokensRevokedAt() {
+        return tokensRevokedAt;
+    }
+
+    public void setTokensRevokedAt(Timestamp tokensRevokedAt) {
+        this.tokensRevokedAt = tokensRevokedAt;
+    }
+
+    public Boolean getDeletionPending() {
+        return deletionPending;
+    }
+
+    public void setDeletionPending(Boolean deletionPending) {
+        this.deletionPending = deletionPending;
+    }
     
     @Override
     public String toString() {
@@ -0,0 +1,11 @@
+package com.expensetracker.app.repositories;
+
+import com.expensetracker.app.models.Expense;
+
+/**
+ * Published by {@link ExpenseRepository} after an expense was written.
+ * {@code before} is null for a new expense and {@code after} is null once it
+ * has been deleted.
+ */
+public record ExpenseChange(Expense before, Expense after) {
+}
@@ -0,0 +1,144 @@
+package com.expensetracker.app.repositories;
+
+import com.expensetracker.app.models.Expense;
+import com.expensetracker.app.repositories.storage.ExpenseStore;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * One bulk import, fed row by row as the body is parsed. Valid rows are
+ * written in batches with at most {@code maxInFlight} batches outstanding, so
+ * neither the body nor the whole import is held in memory; a failed batch
+ * reports each of its rows. Imported expenses are not published one by one;
+ * once every batch is done, each user who got new expenses is announced
+ * once. Not thread-safe: one caller adds the rows and then calls
+ * {@link #finish()}.
+ */
+public final class ExpenseImport {
+
+    /** Caps the report; further errors are only counted. */
+    public static final int MAX_REPORTED_ERRORS = 1000;
+
+    public record RowError(long row, String message) {
+    }
+
+    public record Report(long received, long imported, long failed, List<RowError> errors) {
+    }
+
+    private final ExpenseStore store;
+    private final Consumer<Expense> validator;
+    private final Consumer<String> onImported;
+    private final int batchSize;
+    private final int maxInFlight;
+
+    private final Deque<CompletableFuture<Void>> inFlight = new ArrayDeque<>();
+    private final List<Expense> batch = new ArrayList<>();
+    private final List<Long> batchRows = new ArrayList<>();
+    private final List<RowError> errors = new ArrayList<>();
+    private final AtomicLong imported = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final Set<String> importedUserIds = ConcurrentHashMap.newKeySet();
+    private long received;
+
+    ExpenseImport(ExpenseStore store, Consumer<Expense> validator, Consumer<String> onImported,
+                  int batchSize, int maxInFlight) {
+        if (batchSize <= 0 || maxInFlight <= 0) {
+            throw new IllegalArgumentException("Batch size and in-flight limit must be positive");
+        }
+        this.store = store;
+        this.validator = validator;
+        this.onImported = onImported;
+        this.batchSize = batchSize;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Queues a parsed row. It is checked against the same rules as a single
+     * create; a rejected row is reported and the import goes on.
+     */
+    public void add(long row, Expense expense) {
+        received++;
+        try {
+            validator.accept(expense);
+        } catch (IllegalArgumentException e) {
+            error(row, e.getMessage());
+            return;
+        }
+        // Imported rows are always new expenses
+        expense.setId(UUID.randomUUID().toString());
+        batch.add(expense);
+        batchRows.add(row);
+        if (batch.size() == batchSize) {
+            flush();
+        }
+    }
+
+    /** Reports a row that couldn't be parsed. */
+    public void reject(long row, String message) {
+        received++;
+        error(row, message);
+    }
+
+    /**
+     * Writes what is left, waits for every batch, announces the users who got
+     * new expenses and returns the report.
+     */
+    public Report finish() {
+        flush();
+        while (!inFlight.isEmpty()) {
+            inFlight.poll().join();
+        }
+        importedUserIds.forEach(onImported);
+        List<RowError> sorted;
+        synchronized (errors) {
+            sorted = new ArrayList<>(errors);
+        }
+        sorted.sort(Comparator.comparingLong(RowError::row));
+        return new Report(received, imported.get(), failed.get(), sorted);
+    }
+
+    private void flush() {
+        if (batch.isEmpty()) {
+            return;
+        }
+        // Waits for the oldest batch once the limit is reached, which also
+        // slows the parser down to the speed of the store
+        while (inFlight.size() >= maxInFlight) {
+            inFlight.poll().join();
+        }
+        List<Expense> expenses = List.copyOf(batch);
+        List<Long> rows = List.copyOf(batchRows);
+        batch.clear();
+        batchRows.clear();
+        inFlight.add(store.saveAllAsync(expenses).handle((v, t) -> {
+            if (t != null) {
+                Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+                rows.forEach(row -> error(row, "Failed to save: " + cause.getMessage()));
+                return null;
+            }
+            imported.addAndGet(expenses.size());
+            expenses.forEach(e -> importedUserIds.add(e.getUserId()));
+            return null;
+        }));
+    }
+
+    private void error(long row, String message) {
+        failed.incrementAndGet();
+        synchronized (errors) {
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new RowError(row, message));
+            }
+        }
+    }
+}
@@ -2,23 +2,89 @@ package com.expensetracker.app.repositories;
 
 import com.expensetracker.app.models.Expense;
 import com.expensetracker.app.models.enums.ExpenseCategory;
+import com.expensetracker.app.repositories.storage.ExpenseStore;
+import com.expensetracker.app.repositories.storage.MonthlyRollup;
+import com.expensetracker.app.repositories.storage.PageCursor;
+import com.expensetracker.app.repositories.storage.StoreFutures;
+import com.expensetracker.app.repositories.storage.firestore.FirestoreExpenseStore;
 import com.google.cloud.Timestamp;
-import com.google.cloud.firestore.Firestore;
-import com.google.cloud.firestore.Query;
-import com.google.cloud.firestore.QueryDocumentSnapshot;
-import com.google.firebase.cloud.FirestoreClient;
-import com.google.api.gax.rpc.FailedPreconditionException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Repository;
-import java.util.stream.Collectors;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 @Repository
 public class ExpenseRepository {
 
-    private static final String COLLECTION_NAME = "expenses";
+    // Expenses per soft-delete call when deleting in bulk
+    public static final int DELETE_BATCH_SIZE = 500;
+
+    private final ExpenseStore store;
+    // Runs change listeners for the async writes
+    private final Executor listenerExecutor;
+
+    // Notified after every successful create, update or soft delete
+    private final List<Consumer<ExpenseChange>> changeListeners = new CopyOnWriteArrayList<>();
+    // Notified once per user after a bulk import instead of once per expense
+    private final List<Consumer<String>> importListeners = new CopyOnWriteArrayList<>();
+
+    public ExpenseRepository() {
+        this(new FirestoreExpenseStore());
+    }
+
+    // Without an executor, async listeners run on whichever thread completes the save
+    public ExpenseRepository(ExpenseStore store) {
+        this(store, Runnable::run);
+    }
+
+    @Autowired
+    public ExpenseRepository(ExpenseStore store, @Qualifier("fanOutExecutor") Executor listenerExecutor) {
+        this.store = store;
+        this.listenerExecutor = listenerExecutor;
+    }
+
+    public void addExpenseChangeListener(Consumer<ExpenseChange> listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * Called with a user's id once a bulk import has added expenses for them.
+     * Imported expenses are not published as {@link ExpenseChange}s.
+     */
+    public void addExpenseImportListener(Consumer<String> listener) {
+        importListeners.add(listener);
+    }
+
+    // The expense write has already succeeded, so a failing listener is logged
+    // rather than reported to the caller; goal progress can be repaired by a sync
+    private void publish(Expense before, Expense after) {
+        ExpenseChange change = new ExpenseChange(before, after);
+        for (Consumer<ExpenseChange> listener : changeListeners) {
+            try {
+                listener.accept(change);
+            } catch (RuntimeException e) {
+                System.err.println("Expense change listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void publishImported(String userId) {
+        for (Consumer<String> listener : importListeners) {
+            try {
+                listener.accept(userId);
+            } catch (RuntimeException e) {
+                System.err.println("Expense import listener failed: " + e.getMessage());
+            }
+        }
+    }
 
     public Expense createExpense(Expense expense) {
         validate(expense);
@@ -26,30 +92,27 @@ public class ExpenseRepository {
             expense.setId(UUID.randomUUID().toString());
         }
         try {
-            Firestore db = FirestoreClient.getFirestore();
-            db.collection(COLLECTION_NAME)
-              .document(expense.getId())
-              .set(expense)
-              .get();
-            return expense;
+            store.save(expense);
         } catch (Exception e) {
             throw new RuntimeException("Failed to create expense: " + e.getMessage(), e);
         }
+        publish(null, expense);
+        return expense;
+    }
+
+    /**
+     * Starts a bulk import of new expenses for the caller to feed row by row.
+     * Import listeners hear about each affected user once it has finished.
+     */
+    public ExpenseImport startImport(int batchSize, int maxInFlight) {
+        return new ExpenseImport(store, this::validate, this::publishImported, batchSize, maxInFlight);
     }
 
     public Optional<Expense> findById(String id) {
         try {
-            Firestore db = FirestoreClient.getFirestore();
-            Expense expense = db.collection(COLLECTION_NAME)
-                    .document(id)
-                    .get()
-                    .get()
-                    .toObject(Expense.class);
-            if (expense != null) {
-                expense.setId(id);
-                if (expense.getDeletedAt() != null) return Optional.empty();
-            }
-            return Optional.ofNullable(expense);
+            Optional<Expense> expense = store.findById(id);
+            if (expense.isPresent() && expense.get().getDeletedAt() != null) return Optional.empty();
+            return expense;
         } catch (Exception e) {
             throw new RuntimeException("Failed to find expense by id: " + e.getMessage(), e);
         }
@@ -57,44 +120,29 @@ public class ExpenseRepository {
 
     public List<Expense> findByUserId(String userId) {
         try {
-            Firestore db = FirestoreClient.getFirestore();
-            List<QueryDocumentSnapshot> docs = db.collection(COLLECTION_NAME)
-                    .whereEqualTo("userId", userId)
-                    .whereEqualTo("deletedAt", null)
-                    .get()
-                    .get()
-                    .getDocuments();
-            List<Expense> list = new ArrayList<>();
-            for (QueryDocumentSnapshot d : docs) {
-                Expense exp = d.toObject(Expense.class);
-                if (exp != null) {
-                    exp.setId(d.getId());
-                    list.add(exp);
-                }
-            }
-            return list;
+            return store.findByUserId(userId);
         } catch (Exception e) {
             throw new RuntimeException("Failed to find expenses by userId: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * One page of the user's expenses, ordered by date then id. Pass the
+     * previous page's {@code nextCursor} to continue; null starts over.
+     */
+    public Page<Expense> findPageByUserId(String userId, String cursor, int limit) {
+        PageCursor after = cursor != null && !cursor.isBlank() ? PageCursor.decode(cursor) : null;
+        try {
+            List<Expense> fetched = store.findPageByUserId(userId, after, limit + 1);
+            return Page.of(fetched, limit, e -> PageCursor.of(e.getDate(), e.getId()));
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to page expenses by userId: " + e.getMessage(), e);
+        }
+    }
+
     public List<Expense> findAll() {
         try {
-            Firestore db = FirestoreClient.getFirestore();
-            List<QueryDocumentSnapshot> docs = db.collection(COLLECTION_NAME)
-                    .whereEqualTo("deletedAt", null)
-                    .get()
-                    .get()
-                    .getDocuments();
-            List<Expense> list = new ArrayList<>();
-            for (QueryDocumentSnapshot d : docs) {
-                Expense exp = d.toObject(Expense.class);
-                if (exp != null) {
-                    exp.setId(d.getId());
-                    list.add(exp);
-                }
-            }
-            return list;
+            return store.findAll();
         } catch (Exception e) {
             throw new RuntimeException("Failed to list expenses: " + e.getMessage(), e);
         }
@@ -102,22 +150,7 @@ public class ExpenseRepository {
 
     public List<Expense> findByUserIdAndDateRange(String userId, Timestamp startDate, Timestamp endDate) {
         try {
-            Firestore db = FirestoreClient.getFirestore();
-            Query q = db.collection(COLLECTION_NAME)
-                    .whereEqualTo("userId", userId)
-                    .whereEqualTo("deletedAt", null)
-                    .whereGreaterThanOrEqualTo("date", startDate)
-                    .whereLessThanOrEqualTo("date", endDate);
-            List<QueryDocumentSnapshot> docs = q.get().get().getDocuments();
-            List<Expense> list = new ArrayList<>();
-            for (QueryDocumentSnapshot d : docs) {
-                Expense exp = d.toObject(Expense.class);
-                if (exp != null) {
-                    exp.setId(d.getId());
-                    list.add(exp);
-                }
-            }
-            return list;
+            return store.findByUserIdAndDateRange(userId, startDate, endDate);
         } catch (Exception e) {
             throw new RuntimeException("Failed to query expenses by date range: " + e.getMessage(), e);
         }
@@ -156,13 +189,11 @@ public class ExpenseRepository {
                 return existingOpt;
             }
 
-            Firestore db = FirestoreClient.getFirestore();
-            db.collection(COLLECTION_NAME)
-              .document(id)
-              .update(updates)
-              .get();
+            store.update(id, updates);
 
-            return findById(id);
+            Optional<Expense> updated = findById(id);
+            publish(existing, updated.orElse(null));
+            return updated;
         } catch (Exception e) {
             throw new RuntimeException("Failed to update expense: " + e.getMessage(), e);
         }
@@ -172,11 +203,11 @@ public class ExpenseRepository {
         try {
             Optional<Expense> existingOpt = findById(id);
             if (existingOpt.isEmpty()) return false;
-            Firestore db = FirestoreClient.getFirestore();
             Map<String, Object> updates = new HashMap<>();
             updates.put("deletedAt", Timestamp.now());
             updates.put("updatedAt", Timestamp.now());
-            db.collection(COLLECTION_NAME).document(id).update(updates).get();
+            store.update(id, updates);
+            publish(existingOpt.get(), null);
             return true;
         } catch (Exception e) {
             throw new RuntimeException("Failed to delete expense: " + e.getMessage(), e);
@@ -184,51 +215,38 @@ public class ExpenseRepository {
     }
 
     public void deleteByUserId(String userId) {
+        deleteByUserId(userId, true, deleted -> {});
+    }
+
+    /**
+     * Soft-deletes all of the user's expenses, {@link #DELETE_BATCH_SIZE} per
+     * store call, and returns how many there were. {@code progress} gets the
+     * running count after each batch. Without {@code publishChanges} goal
+     * progress isn't adjusted, which suits deleting the user's goals as well.
+     */
+    public int deleteByUserId(String userId, boolean publishChanges, IntConsumer progress) {
         try {
-            for (Expense e : findByUserId(userId)) {
-                deleteById(e.getId());
+            List<Expense> expenses = findByUserId(userId);
+            Timestamp now = Timestamp.now();
+            int deleted = 0;
+            for (int from = 0; from < expenses.size(); from += DELETE_BATCH_SIZE) {
+                List<Expense> batch = expenses.subList(from, Math.min(from + DELETE_BATCH_SIZE, expenses.size()));
+                store.softDeleteAll(batch, now);
+                if (publishChanges) {
+                    batch.forEach(e -> publish(e, null));
+                }
+                deleted += batch.size();
+                progress.accept(deleted);
             }
+            return deleted;
         } catch (Exception e) {
             throw new RuntimeException("Failed to delete expenses by userId: " + e.getMessage(), e);
         }
     }
 
-      public List<Expense> findByGoalId(String goalId) {
+    public List<Expense> findByGoalId(String goalId) {
         try {
-            Firestore db = FirestoreClient.getFirestore();
-            List<QueryDocumentSnapshot> docs = db.collection(COLLECTION_NAME)
-                    .whereEqualTo("goalId", goalId)
-                    .get()
-                    .get()
-                    .getDocuments();
-            List<Expense> list = new ArrayList<>();
-            for (QueryDocumentSnapshot d : docs) {
-                Expense exp = d.toObject(Expense.class);
-                if (exp != null) {
-                    exp.setId(d.getId());
-
-                    if (exp.getAmount() == null) {
-                        Object amt = d.get("amount");
-                        if (amt instanceof Number n) exp.setAmount(new BigDecimal(n.toString()));
-                        else if (amt instanceof String s) {
-                            try { exp.setAmount(new BigDecimal(s)); } catch (Exception ignore) {}
-                        }
-                    }
-                    if (exp.getDate() == null) {
-                        Timestamp ts = d.get("date", Timestamp.class);
-                        if (ts != null) exp.setDate(ts);
-                    }
-                    if (exp.getGoalId() == null) {
-                        String gid = d.getString("goalId");
-                        if (gid != null) exp.setGoalId(gid);
-                    }
-
-                    if (exp.getDeletedAt() == null) {
-                        list.add(exp);
-                    }
-                }
-            }
-            return list;
+            return store.findByGoalId(goalId);
         } catch (Exception e) {
             throw new RuntimeException("Failed to find expenses by goalId: " + e.getMessage(), e);
         }
@@ -236,69 +254,34 @@ public class ExpenseRepository {
 
     public List<Expense> findByGoalIdAndDateRange(String goalId, Timestamp startDate, Timestamp endDate) {
         try {
-            Firestore db = FirestoreClient.getFirestore();
-            Query q = db.collection(COLLECTION_NAME)
-                    .whereEqualTo("goalId", goalId)
-                    .whereGreaterThanOrEqualTo("date", startDate)
-                    .whereLessThanOrEqualTo("date", endDate);
-            List<QueryDocumentSnapshot> docs = q.get().get().getDocuments();
-            List<Expense> list = new ArrayList<>();
-            for (QueryDocumentSnapshot d : docs) {
-                Expense exp = d.toObject(Expense.class);
-                if (exp != null) {
-                    exp.setId(d.getId());
-
-                    if (exp.getAmount() == null) {
-                        Object amt = d.get("amount");
-                        if (amt instanceof Number n) exp.setAmount(new BigDecimal(n.toString()));
-                        else if (amt instanceof String s) {
-                            try { exp.setAmount(new BigDecimal(s)); } catch (Exception ignore) {}
-                        }
-                    }
-                    if (exp.getDate() == null) {
-                        Timestamp ts = d.get("date", Timestamp.class);
-                        if (ts != null) exp.setDate(ts);
-                    }
-                    if (exp.getGoalId() == null) {
-                        String gid = d.getString("goalId");
-                        if (gid != null) exp.setGoalId(gid);
-                    }
-
-                    if (exp.getDeletedAt() == null) {
-                        list.add(exp);
-                    }
-                }
-            }
-            return list;
+            return store.findByGoalIdAndDateRange(goalId, startDate, endDate);
         } catch (Exception e) {
-            if (e.getCause() instanceof FailedPreconditionException || e instanceof FailedPreconditionException) {
-                List<Expense> allByGoal = findByGoalId(goalId);
-                return allByGoal.stream()
-                        .filter(ex -> ex.getDate() != null
-                                && ex.getDate().compareTo(startDate) >= 0
-                                && ex.getDate().compareTo(endDate) <= 0)
-                        .collect(Collectors.toList());
-            }
             throw new RuntimeException("Failed to find expenses by goalId in date range: " + e.getMessage(), e);
         }
     }
 
     public BigDecimal calculateTotalByGoal(String goalId, Timestamp startDate, Timestamp endDate) {
-        List<Expense> items;
-        if (startDate != null && endDate != null) {
-            items = findByGoalIdAndDateRange(goalId, startDate, endDate);
-        } else {
-            items = findByGoalId(goalId);
+        try {
+            return store.sumAmountByGoalId(goalId, startDate, endDate);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to total expenses by goalId: " + e.getMessage(), e);
         }
-        return items.stream()
-                .map(Expense::getAmount)
-                .filter(Objects::nonNull)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
     }
+
     public BigDecimal calculateTotalByUserIdAndDateRange(String userId, Timestamp startDate, Timestamp endDate) {
-        return findByUserIdAndDateRange(userId, startDate, endDate).stream()
-                .map(Expense::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        try {
+            return store.sumAmountByUserIdAndDateRange(userId, startDate, endDate);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to total expenses by date range: " + e.getMessage(), e);
+        }
+    }
+
+    public BigDecimal calculateTotalByUserIdCategoryAndDateRange(String userId, String category, Timestamp startDate, Timestamp endDate) {
+        try {
+            return store.sumAmountByUserIdCategoryAndDateRange(userId, category, startDate, endDate);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to total expenses by category: " + e.getMessage(), e);
+        }
     }
 
     public BigDecimal calculateTotalByUserIdAndDateRange(String userId, LocalDateTime startDate, LocalDateTime endDate) {
@@ -309,6 +292,36 @@ public class ExpenseRepository {
         );
     }
 
+    // Non-blocking variants: the returned futures complete on the storage
+    // client's threads, so callers must not rely on request-bound state there
+
+    public CompletableFuture<Expense> createExpenseAsync(Expense expense) {
+        validate(expense);
+        if (expense.getId() == null || expense.getId().isEmpty()) {
+            expense.setId(UUID.randomUUID().toString());
+        }
+        // Listeners block on their own writes, so they run off the storage client's threads
+        return StoreFutures.describeFailure(store.saveAsync(expense), "Failed to create expense")
+                .thenApplyAsync(v -> {
+                    publish(null, expense);
+                    return expense;
+                }, listenerExecutor);
+    }
+
+    public CompletableFuture<Optional<Expense>> findByIdAsync(String id) {
+        return StoreFutures.describeFailure(store.findByIdAsync(id), "Failed to find expense by id")
+                .thenApply(expense -> expense.filter(e -> e.getDeletedAt() == null));
+    }
+
+    public CompletableFuture<List<Expense>> findByUserIdAsync(String userId) {
+        return StoreFutures.describeFailure(store.findByUserIdAsync(userId), "Failed to find expenses by userId");
+    }
+
+    public CompletableFuture<List<Expense>> findByUserIdAndDateRangeAsync(String userId, Timestamp startDate, Timestamp endDate) {
+        return StoreFutures.describeFailure(store.findByUserIdAndDateRangeAsync(userId, startDate, endDate),
+                "Failed to query expenses by date range");
+    }
+
     private void validate(Expense expense) {
         if (expense.getUserId() == null) {
             throw new IllegalArgumentException("User ID is required");
@@ -329,4 +342,79 @@ public class ExpenseRepository {
             throw new IllegalArgumentException("Date is required");
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * The user's totals per month and category from {@code fromMonth} to
+     * {@code toMonth} ({@code yyyy-MM}, inclusive; null leaves that end open).
+     */
+    public List<MonthlyRollup> findMonthlyRollups(String userId, String fromMonth, String toMonth) {
+        if (fromMonth != null) MonthlyRollup.parse(fromMonth);
+        if (toMonth != null) MonthlyRollup.parse(toMonth);
+        try {
+            return store.findRollups(userId, fromMonth, toMonth);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to read monthly rollups: " + e.getMessage(), e);
+        }
+    }
+
+    /** Rebuilds stored monthly rollups from the expenses; returns how many were written. */
+    public int rebuildRollups() {
+        try {
+            return store.rebuildRollups();
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to rebuild monthly rollups: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Compares the user's rollups with the same totals computed from the raw
+     * expenses. Lists every month and category where they disagree.
+     */
+    public Map<String, Object> verifyRollups(String userId) {
+        try {
+            Map<String, MonthlyRollup> expected = new TreeMap<>();
+            MonthlyRollup.of(store.findByUserId(userId)).forEach(r -> expected.put(r.key(), r));
+            Map<String, MonthlyRollup> actual = new TreeMap<>();
+            store.findRollups(userId, null, null).forEach(r -> actual.put(r.key(), r));
+
+            Set<String> keys = new TreeSet<>(expected.keySet());
+            keys.addAll(actual.keySet());
+            List<Map<String, Object>> mismatches = new ArrayList<>();
+            for (String key : keys) {
+                MonthlyRollup want = expected.get(key);
+                MonthlyRollup got = actual.get(key);
+                if (want != null && got != null && want.sum().compareTo(got.sum()) == 0 && want.count() == got.count()) {
+                    continue;
+                }
+                MonthlyRollup any = want != null ? want : got;
+                Map<String, Object> mismatch = new LinkedHashMap<>();
+                mismatch.put("month", any.month());
+                mismatch.put("category", any.category());
+                mismatch.put("expectedSum", want != null ? want.sum() : BigDecimal.ZERO);
+                mismatch.put("expectedCount", want != null ? want.count() : 0);
+                mismatch.put("actualSum", got != null ? got.sum() : BigDecimal.ZERO);
+                mismatch.put("actualCount", got != null ? got.count() : 0);
+                mismatches.add(mismatch);
+            }
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("userId", userId);
+            result.put("checked", keys.size());
+            result.put("mismatches", mismatches);
+            return result;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to verify monthly rollups: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Adds the fields that server-side totals rely on to expenses written
+     * before they existed. Returns the number of expenses updated.
+     */
+    public int backfillAggregateFields() {
+        try {
+            return store.backfillAggregateFields();
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to backfill expense totals fields: " + e.getMessage(), e);
+        }
+    }
+}
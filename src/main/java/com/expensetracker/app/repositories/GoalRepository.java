@@ -4,24 +4,43 @@ import com.expensetracker.app.models.Expense;
 import com.expensetracker.app.models.Goal;
 import com.expensetracker.app.models.enums.GoalMode;
 import com.expensetracker.app.models.enums.GoalStatus;
+import com.expensetracker.app.repositories.storage.Entities;
+import com.expensetracker.app.repositories.storage.GoalStore;
+import com.expensetracker.app.repositories.storage.PageCursor;
+import com.expensetracker.app.repositories.storage.StoreFutures;
+import com.expensetracker.app.repositories.storage.firestore.FirestoreGoalStore;
 import com.google.cloud.Timestamp;
-import com.google.cloud.firestore.Firestore;
-import com.google.cloud.firestore.QueryDocumentSnapshot;
-import com.google.firebase.cloud.FirestoreClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntConsumer;
 import java.util.stream.Collectors;
 
+// Eager even under lazy initialization: goal progress follows expense writes
+// only once the constructor has registered its listener
 @Repository
+@Lazy(false)
 public class GoalRepository {
 
-    private static final String COLLECTION_NAME = "goals";
+    private final GoalStore store;
     private final ExpenseRepository expenseRepository;
 
     public GoalRepository(ExpenseRepository expenseRepository) {
+        this(new FirestoreGoalStore(), expenseRepository);
+    }
+
+    @Autowired
+    public GoalRepository(GoalStore store, ExpenseRepository expenseRepository) {
+        this.store = store;
         this.expenseRepository = expenseRepository;
+        // Progress follows expense writes; sync and updateGoalProgress remain as the repair path
+        expenseRepository.addExpenseChangeListener(this::applyExpenseChange);
+        // A bulk import costs one recompute of the user's goals rather than one update per row
+        expenseRepository.addExpenseImportListener(this::updateAllGoalProgressForUser);
     }
 
     public Goal save(Goal goal) {
@@ -33,8 +52,7 @@ public class GoalRepository {
             goal.setCurrentAmount(BigDecimal.ZERO);
         }
         try {
-            Firestore db = FirestoreClient.getFirestore();
-            db.collection(COLLECTION_NAME).document(goal.getId()).set(goal).get();
+            store.save(goal);
             return goal;
         } catch (Exception e) {
             throw new RuntimeException("Failed to save goal: " + e.getMessage(), e);
@@ -43,13 +61,9 @@ public class GoalRepository {
 
     public Optional<Goal> findById(String id) {
         try {
-            Firestore db = FirestoreClient.getFirestore();
-            Goal goal = db.collection(COLLECTION_NAME).document(id).get().get().toObject(Goal.class);
-            if (goal != null) {
-                goal.setId(id);
-                if (goal.getDeletedAt() != null) return Optional.empty();
-            }
-            return Optional.ofNullable(goal);
+            Optional<Goal> goal = store.findById(id);
+            if (goal.isPresent() && goal.get().getDeletedAt() != null) return Optional.empty();
+            return goal;
         } catch (Exception e) {
             throw new RuntimeException("Failed to find goal: " + e.getMessage(), e);
         }
@@ -57,40 +71,49 @@ public class GoalRepository {
 
     public List<Goal> findByUserId(String userId) {
         try {
-            Firestore db = FirestoreClient.getFirestore();
-            List<QueryDocumentSnapshot> docs = db.collection(COLLECTION_NAME)
-                    .whereEqualTo("userId", userId)
-                    .whereEqualTo("deletedAt", null)
-                    .get().get().getDocuments();
-            List<Goal> list = new ArrayList<>();
-            for (QueryDocumentSnapshot d : docs) {
-                Goal g = d.toObject(Goal.class);
-                if (g != null) {
-                    g.setId(d.getId());
-                    list.add(g);
-                }
-            }
-            return list;
+            return store.findByUserId(userId);
         } catch (Exception e) {
             throw new RuntimeException("Failed to find goals by userId: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * One page of the user's goals, ordered by start date then id. Pass the
+     * previous page's {@code nextCursor} to continue; null starts over.
+     */
+    public Page<Goal> findPageByUserId(String userId, String cursor, int limit) {
+        PageCursor after = cursor != null && !cursor.isBlank() ? PageCursor.decode(cursor) : null;
+        try {
+            List<Goal> fetched = store.findPageByUserId(userId, after, limit + 1);
+            return Page.of(fetched, limit, g -> PageCursor.of(g.getStartDate(), g.getId()));
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to page goals by userId: " + e.getMessage(), e);
+        }
+    }
+
+    /** Like {@link #findPageByUserId} across all users. */
+    public Page<Goal> findPage(String cursor, int limit) {
+        PageCursor after = cursor != null && !cursor.isBlank() ? PageCursor.decode(cursor) : null;
+        try {
+            List<Goal> fetched = store.findPage(after, limit + 1);
+            return Page.of(fetched, limit, g -> PageCursor.of(g.getStartDate(), g.getId()));
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to page goals: " + e.getMessage(), e);
+        }
+    }
+
+    public CompletableFuture<Optional<Goal>> findByIdAsync(String id) {
+        return StoreFutures.describeFailure(store.findByIdAsync(id), "Failed to find goal")
+                .thenApply(goal -> goal.filter(g -> g.getDeletedAt() == null));
+    }
+
+    public CompletableFuture<List<Goal>> findByUserIdAsync(String userId) {
+        return StoreFutures.describeFailure(store.findByUserIdAsync(userId), "Failed to find goals by userId");
+    }
+
     public List<Goal> findAll() {
         try {
-            Firestore db = FirestoreClient.getFirestore();
-            List<QueryDocumentSnapshot> docs = db.collection(COLLECTION_NAME)
-                    .whereEqualTo("deletedAt", null)
-                    .get().get().getDocuments();
-            List<Goal> list = new ArrayList<>();
-            for (QueryDocumentSnapshot d : docs) {
-                Goal g = d.toObject(Goal.class);
-                if (g != null) {
-                    g.setId(d.getId());
-                    list.add(g);
-                }
-            }
-            return list;
+            return store.findAll();
         } catch (Exception e) {
             throw new RuntimeException("Failed to list goals: " + e.getMessage(), e);
         }
@@ -99,78 +122,270 @@ public class GoalRepository {
     public List<Goal> findActiveGoalsByUserId(String userId) {
         Date now = Timestamp.now().toDate();
         return findByUserId(userId).stream()
-                .filter(g -> !g.isCompleted())
-                .filter(g -> g.getStartDate().toDate().before(now) && g.getEndDate().toDate().after(now))
+                .filter(g -> isActive(g, now))
                 .collect(Collectors.toList());
     }
 
+    private static boolean isActive(Goal g, Date now) {
+        return !g.isCompleted() && g.getStartDate().toDate().before(now) && g.getEndDate().toDate().after(now);
+    }
+
     public Goal updateGoalProgress(String goalId) {
-        Goal goal = findById(goalId).orElseThrow(() -> new IllegalArgumentException("Goal not found: " + goalId));
+        return recompute(goalId, "Failed to persist goal progress");
+    }
 
-        BigDecimal totalExpenses = expenseRepository.calculateTotalByUserIdAndDateRange(
-                goal.getUserId(),
-                goal.getStartDate(),
-                goal.getEndDate()
-        );
-
-        if (goal.getCategory() != null && !goal.getCategory().trim().isEmpty()) {
-            totalExpenses = expenseRepository.findByUserIdAndDateRange(
-                    goal.getUserId(),
-                    goal.getStartDate(),
-                    goal.getEndDate()
-            ).stream()
-             .filter(e -> e.getCategory().equalsIgnoreCase(goal.getCategory()))
-             .map(Expense::getAmount)
-             .reduce(BigDecimal.ZERO, BigDecimal::add);
-        }
-
-        goal.setCurrentAmount(totalExpenses);
-        if (goal.getCurrentAmount().compareTo(goal.getTargetAmount()) >= 0) {
-            goal.setCompleted(true);
+    /**
+     * Recomputes every goal of the user in one pass: the expenses covering the
+     * union of the goal windows are read once and swept in date order against
+     * the goals whose window is open at each date. Only goals whose progress or
+     * status changed are written, together in one batch.
+     */
+    public List<Goal> updateAllGoalProgressForUser(String userId) {
+        List<Goal> goals = findByUserId(userId);
+        if (goals.isEmpty()) {
+            return goals;
+        }
+
+        List<Expense> expenses = new ArrayList<>(expensesCovering(userId, goals));
+        expenses.removeIf(e -> e.getDate() == null);
+        expenses.sort(Comparator.comparing(Expense::getDate));
+
+        // Goals enter the sweep at their start date and leave after their end date
+        List<Goal> byStart = new ArrayList<>(goals);
+        byStart.sort(Comparator.comparing(Goal::getStartDate, Comparator.nullsFirst(Comparator.naturalOrder())));
+        PriorityQueue<Goal> open = new PriorityQueue<>(
+                Comparator.comparing(Goal::getEndDate, Comparator.nullsLast(Comparator.naturalOrder())));
+        Map<String, BigDecimal> totals = new HashMap<>();
+        goals.forEach(g -> totals.put(g.getId(), BigDecimal.ZERO));
+
+        int next = 0;
+        for (Expense e : expenses) {
+            while (next < byStart.size() && (byStart.get(next).getStartDate() == null
+                    || byStart.get(next).getStartDate().compareTo(e.getDate()) <= 0)) {
+                open.add(byStart.get(next++));
+            }
+            while (!open.isEmpty() && open.peek().getEndDate() != null
+                    && open.peek().getEndDate().compareTo(e.getDate()) < 0) {
+                open.poll();
+            }
+            for (Goal g : open) {
+                if (counts(g, e)) {
+                    totals.merge(g.getId(), e.getAmount(), BigDecimal::add);
+                }
+            }
+        }
+
+        // Only goals whose amount moved are rewritten whole; a status that
+        // merely catches up is a plain field update
+        List<Goal> changed = new ArrayList<>();
+        List<Goal> restated = new ArrayList<>();
+        for (Goal g : goals) {
+            BigDecimal previousAmount = g.getCurrentAmount();
+            GoalStatus previousStatus = g.getStatus();
+            boolean previouslyCompleted = g.isCompleted();
+            g.setCurrentAmount(totals.get(g.getId()));
+            applyStatus(g);
+            if (previousAmount == null || previousAmount.compareTo(g.getCurrentAmount()) != 0) {
+                changed.add(g);
+            } else if (previousStatus != g.getStatus() || previouslyCompleted != g.isCompleted()) {
+                restated.add(g);
+            }
         }
         try {
-            Firestore db = FirestoreClient.getFirestore();
-            db.collection(COLLECTION_NAME).document(goal.getId()).set(goal).get();
-            return goal;
+            store.saveAll(changed);
+            for (Goal g : restated) {
+                Map<String, Object> updates = new HashMap<>();
+                updates.put("completed", g.isCompleted());
+                if (g.getStatus() != null) updates.put("status", g.getStatus());
+                updates.put("updatedAt", Timestamp.now());
+                store.update(g.getId(), updates);
+            }
         } catch (Exception e) {
             throw new RuntimeException("Failed to persist goal progress: " + e.getMessage(), e);
         }
+        return goals;
     }
 
-    public List<Goal> updateAllGoalProgressForUser(String userId) {
-        return findByUserId(userId).stream()
-                .map(g -> updateGoalProgress(g.getId()))
-                .collect(Collectors.toList());
+    // The user's expenses dated within any of the goals' windows, in one read
+    private List<Expense> expensesCovering(String userId, List<Goal> goals) {
+        Timestamp start = null;
+        Timestamp end = null;
+        for (Goal g : goals) {
+            if (g.getStartDate() == null || g.getEndDate() == null) {
+                return expenseRepository.findByUserId(userId);
+            }
+            if (start == null || g.getStartDate().compareTo(start) < 0) start = g.getStartDate();
+            if (end == null || g.getEndDate().compareTo(end) > 0) end = g.getEndDate();
+        }
+        return expenseRepository.findByUserIdAndDateRange(userId, start, end);
     }
 
+    /**
+     * Recomputes the goal's progress with the same rule expense writes apply:
+     * the user's expenses in the goal's window that match its category or are
+     * linked to it. It used to count only expenses linked by goalId, so goals
+     * last synced that way are brought in line by {@link #recomputeAllProgress}.
+     */
     public Goal sync(String goalId) {
-        Goal goal = findById(goalId).orElseThrow(() -> new IllegalArgumentException("Goal not found: " + goalId));
+        return recompute(goalId, "Failed to sync goal");
+    }
 
-        BigDecimal total = (goal.getStartDate() != null && goal.getEndDate() != null)
-                ? expenseRepository.calculateTotalByGoal(goalId, goal.getStartDate(), goal.getEndDate())
-                : expenseRepository.calculateTotalByGoal(goalId, null, null);
+    /**
+     * Recomputes the progress of every goal, user by user, and returns how many
+     * goals were looked at. Run once after upgrading from the goalId-only sync;
+     * afterwards expense writes keep progress under the current rule.
+     */
+    public int recomputeAllProgress() {
+        Set<String> userIds = new LinkedHashSet<>();
+        int goals = 0;
+        Page<Goal> page = findPage(null, ExpenseRepository.DELETE_BATCH_SIZE);
+        while (true) {
+            page.items().forEach(g -> userIds.add(g.getUserId()));
+            goals += page.items().size();
+            if (page.nextCursor() == null) {
+                break;
+            }
+            page = findPage(page.nextCursor(), ExpenseRepository.DELETE_BATCH_SIZE);
+        }
+        userIds.forEach(this::updateAllGoalProgressForUser);
+        return goals;
+    }
 
-        if (total == null) total = BigDecimal.ZERO;
-        goal.setCurrentAmount(total);
+    /**
+     * Recomputes the goal's progress from its expenses. Expense writes keep
+     * progress current on their own, so this only repairs drift, e.g. after a
+     * failed listener or a change to the goal's window or category.
+     */
+    private Goal recompute(String goalId, String failure) {
+        Goal goal = findById(goalId).orElseThrow(() -> new IllegalArgumentException("Goal not found: " + goalId));
 
-        if (goal.getTargetAmount() != null) {
-            int cmp = total.compareTo(goal.getTargetAmount());
-            if (goal.getMode() == GoalMode.LIMIT) {
-                goal.setStatus(cmp > 0 ? GoalStatus.EXCEEDED : GoalStatus.UNDER_LIMIT);
-            } else if (goal.getMode() == GoalMode.INVESTMENT) {
-                goal.setStatus(cmp >= 0 ? GoalStatus.SURPASSED : GoalStatus.ACTIVE);
-            }
-            if (cmp >= 0) {
-                goal.setCompleted(true);
+        BigDecimal total;
+        if (goal.getStartDate() == null || goal.getEndDate() == null) {
+            total = expenseRepository.findByUserId(goal.getUserId()).stream()
+                    .filter(e -> counts(goal, e))
+                    .map(Expense::getAmount)
+                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+        } else if (hasCategory(goal)) {
+            total = expenseRepository.calculateTotalByUserIdCategoryAndDateRange(
+                    goal.getUserId(), goal.getCategory(), goal.getStartDate(), goal.getEndDate());
+            // Expenses linked to the goal count even when filed under another category
+            for (Expense e : expenseRepository.findByGoalIdAndDateRange(goalId, goal.getStartDate(), goal.getEndDate())) {
+                if (goal.getUserId().equals(e.getUserId()) && !goal.getCategory().equalsIgnoreCase(e.getCategory())) {
+                    total = total.add(e.getAmount());
+                }
             }
+        } else {
+            total = expenseRepository.calculateTotalByUserIdAndDateRange(
+                    goal.getUserId(), goal.getStartDate(), goal.getEndDate());
         }
 
+        goal.setCurrentAmount(total != null ? total : BigDecimal.ZERO);
+        applyStatus(goal);
         try {
-            Firestore db = FirestoreClient.getFirestore();
-            db.collection(COLLECTION_NAME).document(goal.getId()).set(goal).get();
+            store.save(goal);
             return goal;
         } catch (Exception e) {
-            throw new RuntimeException("Failed to sync goal: " + e.getMessage(), e);
+            throw new RuntimeException(failure + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Moves each affected goal's progress by the change in what the expense
+     * contributes to it, so a write costs one increment per goal instead of a
+     * rescan of the goal's window. Only goals still open at the expense's
+     * dates are looked at, and the goal itself is only rewritten when the
+     * candidate's amount plus what the increment wrote calls for a different
+     * status. Concurrent writes can leave that estimate stale; the status is
+     * re-checked against the stored goal before it's written, and sync repairs
+     * anything missed.
+     */
+    private void applyExpenseChange(ExpenseChange change) {
+        Map<String, Goal> candidates = new LinkedHashMap<>();
+        try {
+            for (Expense e : Arrays.asList(change.before(), change.after())) {
+                if (e != null && e.getUserId() != null && e.getDate() != null) {
+                    store.findOpenByUserIdAt(e.getUserId(), e.getDate()).forEach(g -> candidates.putIfAbsent(g.getId(), g));
+                }
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to find goals for expense: " + e.getMessage(), e);
+        }
+
+        for (Goal g : candidates.values()) {
+            BigDecimal delta = contribution(g, change.after()).subtract(contribution(g, change.before()));
+            if (delta.signum() == 0) {
+                continue;
+            }
+            try {
+                BigDecimal written = store.incrementProgress(g.getId(), delta);
+                Goal estimate = Entities.copy(g);
+                estimate.setCurrentAmount((g.getCurrentAmount() != null ? g.getCurrentAmount() : BigDecimal.ZERO).add(written));
+                if (written.signum() != 0 && statusChanges(estimate)) {
+                    // Rare, so the status write can afford to serialize on the goal
+                    store.compute(g.getId(), current -> {
+                        if (!statusChanges(current)) {
+                            return null;
+                        }
+                        applyStatus(current);
+                        Map<String, Object> updates = new HashMap<>();
+                        updates.put("completed", current.isCompleted());
+                        if (current.getStatus() != null) updates.put("status", current.getStatus());
+                        updates.put("updatedAt", Timestamp.now());
+                        return updates;
+                    });
+                }
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to apply expense to goal: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    // Whether the goal's stored status disagrees with its current progress
+    private static boolean statusChanges(Goal goal) {
+        if (goal.getTargetAmount() == null || goal.getCurrentAmount() == null) {
+            return false;
+        }
+        Goal updated = Entities.copy(goal);
+        applyStatus(updated);
+        return updated.getStatus() != goal.getStatus() || updated.isCompleted() != goal.isCompleted();
+    }
+
+    private static BigDecimal contribution(Goal goal, Expense expense) {
+        return expense != null && counts(goal, expense) ? expense.getAmount() : BigDecimal.ZERO;
+    }
+
+    // An expense counts towards a goal when it's the same user's, dated inside the
+    // goal's window, and either matches the goal's category or is linked to the goal
+    private static boolean counts(Goal goal, Expense e) {
+        if (e.getDeletedAt() != null || e.getAmount() == null || !Objects.equals(goal.getUserId(), e.getUserId())) {
+            return false;
+        }
+        if (e.getDate() == null
+                || (goal.getStartDate() != null && e.getDate().compareTo(goal.getStartDate()) < 0)
+                || (goal.getEndDate() != null && e.getDate().compareTo(goal.getEndDate()) > 0)) {
+            return false;
+        }
+        return !hasCategory(goal)
+                || goal.getCategory().equalsIgnoreCase(e.getCategory())
+                || goal.getId().equals(e.getGoalId());
+    }
+
+    private static boolean hasCategory(Goal goal) {
+        return goal.getCategory() != null && !goal.getCategory().trim().isEmpty();
+    }
+
+    private static void applyStatus(Goal goal) {
+        if (goal.getTargetAmount() == null) {
+            return;
+        }
+        int cmp = goal.getCurrentAmount().compareTo(goal.getTargetAmount());
+        if (goal.getMode() == GoalMode.LIMIT) {
+            goal.setStatus(cmp > 0 ? GoalStatus.EXCEEDED : GoalStatus.UNDER_LIMIT);
+        } else if (goal.getMode() == GoalMode.INVESTMENT) {
+            goal.setStatus(cmp >= 0 ? GoalStatus.SURPASSED : GoalStatus.ACTIVE);
+        }
+        if (cmp >= 0) {
+            goal.setCompleted(true);
         }
     }
 
@@ -194,8 +409,7 @@ public class GoalRepository {
 
             if (updates.size() <= 1) return existingOpt; // only updatedAt
 
-            Firestore db = FirestoreClient.getFirestore();
-            db.collection(COLLECTION_NAME).document(id).update(updates).get();
+            store.update(id, updates);
             return findById(id);
         } catch (Exception e) {
             throw new RuntimeException("Failed to update goal: " + e.getMessage(), e);
@@ -206,11 +420,10 @@ public class GoalRepository {
         try {
             Optional<Goal> existingOpt = findById(id);
             if (existingOpt.isEmpty()) return false;
-            Firestore db = FirestoreClient.getFirestore();
             Map<String, Object> updates = new HashMap<>();
             updates.put("deletedAt", Timestamp.now());
             updates.put("updatedAt", Timestamp.now());
-            db.collection(COLLECTION_NAME).document(id).update(updates).get();
+            store.update(id, updates);
             return true;
         } catch (Exception e) {
             throw new RuntimeException("Failed to delete goal: " + e.getMessage(), e);
@@ -218,22 +431,56 @@ public class GoalRepository {
     }
 
     public void deleteByUserId(String userId) {
-        for (Goal g : findByUserId(userId)) {
-            deleteById(g.getId());
+        deleteByUserId(userId, deleted -> {});
+    }
+
+    /**
+     * Soft-deletes all of the user's goals, {@link ExpenseRepository#DELETE_BATCH_SIZE}
+     * per store call, and returns how many there were. {@code progress} gets
+     * the running count after each batch.
+     */
+    public int deleteByUserId(String userId, IntConsumer progress) {
+        try {
+            List<Goal> goals = store.findByUserId(userId);
+            Timestamp now = Timestamp.now();
+            int deleted = 0;
+            for (int from = 0; from < goals.size(); from += ExpenseRepository.DELETE_BATCH_SIZE) {
+                List<Goal> batch = goals.subList(from, Math.min(from + ExpenseRepository.DELETE_BATCH_SIZE, goals.size()));
+                store.softDeleteAll(batch, now);
+                deleted += batch.size();
+                progress.accept(deleted);
+            }
+            return deleted;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to delete goals by userId: " + e.getMessage(), e);
         }
     }
 
     public Map<String, Object> getGoalAnalytics(String userId) {
         List<Goal> userGoals = findByUserId(userId);
+        Date now = Timestamp.now().toDate();
         Map<String, Object> analytics = new HashMap<>();
         analytics.put("totalGoals", userGoals.size());
         analytics.put("completedGoals", userGoals.stream().filter(Goal::isCompleted).count());
-        analytics.put("activeGoals", (long) findActiveGoalsByUserId(userId).size());
+        analytics.put("activeGoals", userGoals.stream().filter(g -> isActive(g, now)).count());
         analytics.put("totalTargetAmount", userGoals.stream().map(Goal::getTargetAmount).reduce(BigDecimal.ZERO, BigDecimal::add));
         analytics.put("totalCurrentAmount", userGoals.stream().map(Goal::getCurrentAmount).reduce(BigDecimal.ZERO, BigDecimal::add));
         return analytics;
     }
 
+    /**
+     * Adds the goal id to progress shards written before they carried it, so
+     * listings can read shards for many goals at once. Returns the number of
+     * shards updated.
+     */
+    public int backfillProgressShards() {
+        try {
+            return store.backfillProgressShards();
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to backfill goal progress shards: " + e.getMessage(), e);
+        }
+    }
+
     private void validate(Goal goal) {
         if (goal.getUserId() == null) throw new IllegalArgumentException("User ID is required");
         if (goal.getTitle() == null || goal.getTitle().trim().isEmpty()) throw new IllegalArgumentException("Title is required");
@@ -0,0 +1,36 @@
+package com.expensetracker.app.repositories;
+
+import com.expensetracker.app.repositories.storage.PageCursor;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a cursor-paginated listing. {@code nextCursor} is null on the
+ * last page.
+ */
+public record Page<T>(List<T> items, String nextCursor) {
+
+    public static final int DEFAULT_SIZE = 50;
+    public static final int MAX_SIZE = 200;
+
+    /**
+     * Builds a page from up to {@code limit + 1} items; the extra item only
+     * signals that another page exists.
+     */
+    static <T> Page<T> of(List<T> fetched, int limit, Function<T, PageCursor> key) {
+        if (fetched.size() <= limit) {
+            return new Page<>(fetched, null);
+        }
+        List<T> items = fetched.subList(0, limit);
+        return new Page<>(List.copyOf(items), key.apply(items.get(limit - 1)).encode());
+    }
+
+    /** Applies the default to a missing size and caps it at {@code max}. */
+    public static int size(Integer requested, int defaultSize, int max) {
+        if (requested == null || requested <= 0) {
+            return Math.min(defaultSize, max);
+        }
+        return Math.min(requested, max);
+    }
+}
@@ -0,0 +1,9 @@
+package com.expensetracker.app.repositories;
+
+/**
+ * Published by {@link UserRepository} after a user document was written.
+ * {@code roleChanged} and {@code deleted} flag the changes that affect what
+ * the user is allowed to do.
+ */
+public record UserChange(String userId, boolean roleChanged, boolean deleted) {
+}
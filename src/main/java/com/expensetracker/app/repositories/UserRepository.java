@@ -1,114 +1,96 @@
 package com.expensetracker.app.repositories;
 
 import com.expensetracker.app.models.User;
-import com.expensetracker.app.exceptions.DuplicateEmailException;
-import com.google.cloud.firestore.Firestore;
-import com.google.cloud.firestore.QueryDocumentSnapshot;
-import com.google.firebase.cloud.FirestoreClient;
-import com.google.cloud.Timestamp; 
+import com.expensetracker.app.repositories.storage.StoreFutures;
+import com.expensetracker.app.repositories.storage.UserStore;
+import com.expensetracker.app.repositories.storage.firestore.FirestoreUserStore;
+import com.google.cloud.Timestamp;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Map; 
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
 
 @Repository
 public class UserRepository {
 
-    private static final String COLLECTION_NAME = "users";
-    private static final String DELETED_AT_FIELD = "deletedAt";
+    private final UserStore store;
 
-    public List<User> findAll() throws ExecutionException, InterruptedException {
-        Firestore dbFirestore = FirestoreClient.getFirestore();
-        List<User> users = new ArrayList<>();
-
-        // Only retrieve documents where deletedAt == null
-        List<QueryDocumentSnapshot> documents = dbFirestore.collection(COLLECTION_NAME)
-                .whereEqualTo(DELETED_AT_FIELD, null)
-                .get()
-                .get()
-                .getDocuments();
-
-        for (QueryDocumentSnapshot document : documents) {
-            User user = document.toObject(User.class);
-            if (user != null) {
-                user.setId(document.getId());
-                users.add(user);
-            }
-        }
+    // Notified after every successful update or soft delete
+    private final List<Consumer<UserChange>> changeListeners = new CopyOnWriteArrayList<>();
 
-        return users;
+    public UserRepository() {
+        this(new FirestoreUserStore());
+    }
+
+    @Autowired
+    public UserRepository(UserStore store) {
+        this.store = store;
+    }
+
+    public void addUserChangeListener(Consumer<UserChange> listener) {
+        changeListeners.add(listener);
+    }
+
+    public List<User> findAll() throws ExecutionException, InterruptedException {
+        return store.findAll();
     }
 
     public User findById(String id) throws ExecutionException, InterruptedException {
-        Firestore dbFirestore = FirestoreClient.getFirestore();
-        User user = dbFirestore.collection(COLLECTION_NAME)
-                .document(id)
-                .get()
-                .get()
-                .toObject(User.class);
+        return store.findById(id);
+    }
 
-        if (user != null) {
-            user.setId(id);
-        }
+    public CompletableFuture<List<User>> findAllAsync() {
+        return StoreFutures.describeFailure(store.findAllAsync(), "Failed to list users");
+    }
 
-        return user;
+    public CompletableFuture<User> findByIdAsync(String id) {
+        return StoreFutures.describeFailure(store.findByIdAsync(id), "Failed to find user");
     }
 
-    public User createUser(User user) throws ExecutionException, InterruptedException {
-        Firestore dbFirestore = FirestoreClient.getFirestore();
+    /**
+     * Looks a user up through the email index instead of scanning users.
+     * Returns null for unknown or soft-deleted users.
+     */
+    public User findByEmail(String email) throws ExecutionException, InterruptedException {
+        if (email == null || email.isBlank()) {
+            return null;
+        }
+        return store.findByEmail(email);
+    }
 
+    public User createUser(User user) throws ExecutionException, InterruptedException {
         if (user.getId() == null || user.getId().isEmpty()) {
             user.setId(java.util.UUID.randomUUID().toString());
         }
 
-        List<QueryDocumentSnapshot> documents = dbFirestore.collection(COLLECTION_NAME)
-                .whereEqualTo("email", user.getEmail())
-                .get()
-                .get()
-                .getDocuments();
-        if (!documents.isEmpty()) {
-            throw new DuplicateEmailException("Email already exists");
-        }
-
-        dbFirestore.collection(COLLECTION_NAME)
-                .document(user.getId())
-                .set(user)
-                .get();
+        // Claims the email and writes the user atomically
+        store.create(user);
 
         return user;
     }
 
      public User update(User user) throws ExecutionException, InterruptedException {
-        Firestore dbFirestore = FirestoreClient.getFirestore();
-
         if (user.getId() == null || user.getId().isEmpty()) {
             throw new IllegalArgumentException("User ID is required for update");
         }
 
-        if (user.getEmail() != null) {
-            List<QueryDocumentSnapshot> emailDocs = dbFirestore.collection(COLLECTION_NAME)
-                    .whereEqualTo("email", user.getEmail())
-                    .get()
-                    .get()
-                    .getDocuments();
-
-            for (QueryDocumentSnapshot doc : emailDocs) {
-                if (!doc.getId().equals(user.getId())) {
-                    throw new DuplicateEmailException("Email already exists");
-                }
-            }
-        }
-
         Map<String, Object> updates = new HashMap<>();
 
         if (user.getName() != null) updates.put("name", user.getName());
         if (user.getEmail() != null) updates.put("email", user.getEmail());
         if (user.getPassword() != null) updates.put("password", user.getPassword());
         if (user.getRole() != null) updates.put("role", user.getRole());
-        if (user.getDeletedAt() != null) updates.put("deletedAt", user.getDeletedAt());
+        if (user.getDeletedAt() != null) {
+            updates.put("deletedAt", user.getDeletedAt());
+            // In the same write, so a cascade cut short by a restart is found again
+            updates.put("deletionPending", true);
+        }
 
         updates.put("updatedAt", Timestamp.now());
 
@@ -116,14 +98,12 @@ public class UserRepository {
             return findById(user.getId());
         }
 
-        dbFirestore.collection(COLLECTION_NAME)
-                .document(user.getId())
-                .update(updates)
-                .get();
+        UserChange change = store.update(user.getId(), updates);
+        changeListeners.forEach(l -> l.accept(change));
 
         return findById(user.getId());
     }
-    
+
     public void deleteById(String id) throws ExecutionException, InterruptedException {
         User user = findById(id);
         if (user != null) {
@@ -132,4 +112,26 @@ public class UserRepository {
         }
     }
 
-}
\ No newline at end of file
+    /** Soft-deleted users whose goals and expenses haven't all been deleted yet. */
+    public List<User> findDeletionPending() throws ExecutionException, InterruptedException {
+        return store.findDeletionPending();
+    }
+
+    /** Records that the user's goals and expenses have been deleted. */
+    public void markDeletionCascaded(String id) throws ExecutionException, InterruptedException {
+        Map<String, Object> updates = new HashMap<>();
+        updates.put("deletionPending", false);
+        updates.put("updatedAt", Timestamp.now());
+        store.update(id, updates);
+    }
+
+    /**
+     * Writes an email index entry for every live user that doesn't have one yet.
+     * Needed once for accounts created before the index existed; returns the
+     * number of entries written.
+     */
+    public int rebuildEmailIndex() throws ExecutionException, InterruptedException {
+        return store.rebuildEmailIndex();
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.expensetracker.app.repositories.storage;
+
+import com.expensetracker.app.models.BaseEntity;
+import com.expensetracker.app.models.Expense;
+import com.expensetracker.app.models.Goal;
+import com.expensetracker.app.models.User;
+import com.expensetracker.app.models.enums.GoalMode;
+import com.expensetracker.app.models.enums.GoalStatus;
+import com.expensetracker.app.models.enums.UserRole;
+import com.google.cloud.Timestamp;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Copies and field-map patches for the models, for stores that keep entities
+ * in memory instead of round-tripping them through a document database.
+ * Patch maps use the same field names the repositories send to Firestore.
+ */
+public final class Entities {
+
+    private Entities() {
+    }
+
+    public static Expense copy(Expense src) {
+        Expense copy = new Expense();
+        copyBase(src, copy);
+        copy.setDescription(src.getDescription());
+        copy.setAmount(src.getAmount());
+        if (src.getCategory() != null) copy.setCategory(src.getCategory());
+        copy.setDate(src.getDate());
+        copy.setUserId(src.getUserId());
+        copy.setGoalId(src.getGoalId());
+        return copy;
+    }
+
+    public static Goal copy(Goal src) {
+        Goal copy = new Goal();
+        copyBase(src, copy);
+        copy.setUserId(src.getUserId());
+        copy.setTitle(src.getTitle());
+        copy.setDescription(src.getDescription());
+        copy.setTargetAmount(src.getTargetAmount());
+        copy.setCurrentAmount(src.getCurrentAmount());
+        copy.setStartDate(src.getStartDate());
+        copy.setEndDate(src.getEndDate());
+        copy.setCategory(src.getCategory());
+        copy.setCompleted(src.isCompleted());
+        copy.setMode(src.getMode());
+        copy.setStatus(src.getStatus());
+        return copy;
+    }
+
+    public static User copy(User src) {
+        User copy = new User();
+        copyBase(src, copy);
+        copy.setName(src.getName());
+        copy.setEmail(src.getEmail());
+        copy.setPassword(src.getPassword());
+        copy.setRole(src.getRole());
+        copy.setTokensRevokedAt(src.getTokensRevokedAt());
+        copy.setDeletionPending(src.getDeletionPending());
+        return copy;
+    }
+
+    public static void apply(Expense target, Map<String, Object> updates) {
+        for (Map.Entry<String, Object> e : updates.entrySet()) {
+            Object v = e.getValue();
+            switch (e.getKey()) {
+                case "description" -> target.setDescription((String) v);
+                case "amount" -> target.setAmount((BigDecimal) v);
+                case "category" -> target.setCategory((String) v);
+                case "date" -> target.setDate((Timestamp) v);
+                case "userId" -> target.setUserId((String) v);
+                case "goalId" -> target.setGoalId((String) v);
+                default -> applyBase(target, e.getKey(), v);
+            }
+        }
+    }
+
+    public static void apply(Goal target, Map<String, Object> updates) {
+        for (Map.Entry<String, Object> e : updates.entrySet()) {
+            Object v = e.getValue();
+            switch (e.getKey()) {
+                case "userId" -> target.setUserId((String) v);
+                case "title" -> target.setTitle((String) v);
+                case "description" -> target.setDescription((String) v);
+                case "targetAmount" -> target.setTargetAmount((BigDecimal) v);
+                case "currentAmount" -> target.setCurrentAmount((BigDecimal) v);
+                case "startDate" -> target.setStartDate((Timestamp) v);
+                case "endDate" -> target.setEndDate((Timestamp) v);
+                case "category" -> target.setCategory((String) v);
+                case "completed" -> target.setCompleted((Boolean) v);
+                case "mode" -> target.setMode((GoalMode) v);
+                case "status" -> target.setStatus((GoalStatus) v);
+                default -> applyBase(target, e.getKey(), v);
+            }
+        }
+    }
+
+    public static void apply(User target, Map<String, Object> updates) {
+        for (Map.Entry<String, Object> e : updates.entrySet()) {
+            Object v = e.getValue();
+            switch (e.getKey()) {
+                case "name" -> target.setName((String) v);
+                case "email" -> target.setEmail((String) v);
+                case "password" -> target.setPassword((String) v);
+                case "role" -> target.setRole((UserRole) v);
+                case "tokensRevokedAt" -> target.setTokensRevokedAt((Timestamp) v);
+                case "deletionPending" -> target.setDeletionPending((Boolean) v);
+                default -> applyBase(target, e.getKey(), v);
+            }
+        }
+    }
+
+    private static void copyBase(BaseEntity src, BaseEntity copy) {
+        copy.setId(src.getId());
+        copy.setCreatedAt(src.getCreatedAt());
+        copy.setUpdatedAt(src.getUpdatedAt());
+        copy.setDeletedAt(src.getDeletedAt());
+    }
+
+    private static void applyBase(BaseEntity target, String field, Object value) {
+        switch (field) {
+            case "createdAt" -> target.setCreatedAt((Timestamp) value);
+            case "updatedAt" -> target.setUpdatedAt((Timestamp) value);
+            case "deletedAt" -> target.setDeletedAt((Timestamp) value);
+            default -> throw new IllegalArgumentException("Unknown field '" + field + "'");
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.expensetracker.app.repositories.storage;
+
+import com.expensetracker.app.models.Expense;
+import com.google.cloud.Timestamp;
+
+import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Persistence operations behind {@link com.expensetracker.app.repositories.ExpenseRepository}.
+ * Validation and business rules stay in the repository; implementations only
+ * store and query documents. All list queries exclude soft-deleted expenses and
+ * date ranges are inclusive on both ends.
+ */
+public interface ExpenseStore {
+
+    void save(Expense expense) throws ExecutionException, InterruptedException;
+
+    /** Returns the expense even if it was soft-deleted. */
+    Optional<Expense> findById(String id) throws ExecutionException, InterruptedException;
+
+    List<Expense> findByUserId(String userId) throws ExecutionException, InterruptedException;
+
+    List<Expense> findAll() throws ExecutionException, InterruptedException;
+
+    List<Expense> findByUserIdAndDateRange(String userId, Timestamp startDate, Timestamp endDate)
+            throws ExecutionException, InterruptedException;
+
+    List<Expense> findByGoalId(String goalId) throws ExecutionException, InterruptedException;
+
+    List<Expense> findByGoalIdAndDateRange(String goalId, Timestamp startDate, Timestamp endDate)
+            throws ExecutionException, InterruptedException;
+
+    /** Applies a partial update; keys are model field names. */
+    void update(String id, Map<String, Object> updates) throws ExecutionException, InterruptedException;
+
+    /**
+     * Soft-deletes the expenses as they were just read, setting deletedAt and
+     * updatedAt to {@code deletedAt}. The default updates them one by one;
+     * engines that can write many documents per round trip batch them.
+     */
+    default void softDeleteAll(List<Expense> expenses, Timestamp deletedAt) throws ExecutionException, InterruptedException {
+        for (Expense expense : expenses) {
+            update(expense.getId(), Map.of("deletedAt", deletedAt, "updatedAt", deletedAt));
+        }
+    }
+
+    /**
+     * Up to {@code limit} of the user's expenses ordered by date, then id,
+     * starting after {@code after} (from the beginning when null). The default
+     * sorts the full listing; engines with an ordered index seek instead.
+     */
+    default List<Expense> findPageByUserId(String userId, PageCursor after, int limit)
+            throws ExecutionException, InterruptedException {
+        return findByUserId(userId).stream()
+                .filter(e -> after == null || PageCursor.of(e.getDate(), e.getId()).compareTo(after) > 0)
+                .sorted(Comparator.comparing((Expense e) -> PageCursor.of(e.getDate(), e.getId())))
+                .limit(limit)
+                .toList();
+    }
+
+    // Asynchronous variants. The defaults run the blocking call and return its
+    // outcome; engines backed by a network client override them to compose the
+    // client's futures without holding the caller's thread.
+
+    default CompletableFuture<Void> saveAsync(Expense expense) {
+        return StoreFutures.completed(() -> { save(expense); return null; });
+    }
+
+    default CompletableFuture<Optional<Expense>> findByIdAsync(String id) {
+        return StoreFutures.completed(() -> findById(id));
+    }
+
+    default CompletableFuture<List<Expense>> findByUserIdAsync(String userId) {
+        return StoreFutures.completed(() -> findByUserId(userId));
+    }
+
+    default CompletableFuture<List<Expense>> findByUserIdAndDateRangeAsync(String userId, Timestamp startDate, Timestamp endDate) {
+        return StoreFutures.completed(() -> findByUserIdAndDateRange(userId, startDate, endDate));
+    }
+
+    default CompletableFuture<Void> updateAsync(String id, Map<String, Object> updates) {
+        return StoreFutures.completed(() -> { update(id, updates); return null; });
+    }
+
+    /**
+     * Creates a batch of new expenses. Engines that can commit several
+     * documents together do so all-or-nothing; the default saves them one by
+     * one and fails at the first error.
+     */
+    default CompletableFuture<Void> saveAllAsync(List<Expense> expenses) {
+        return StoreFutures.completed(() -> {
+            for (Expense expense : expenses) {
+                save(expense);
+            }
+            return null;
+        });
+    }
+
+    // Totals. The defaults add up the matching expenses in memory; engines
+    // that can aggregate where the data lives override them.
+
+    default BigDecimal sumAmountByUserIdAndDateRange(String userId, Timestamp startDate, Timestamp endDate)
+            throws ExecutionException, InterruptedException {
+        return sum(findByUserIdAndDateRange(userId, startDate, endDate));
+    }
+
+    /** {@code category} is matched case-insensitively. */
+    default BigDecimal sumAmountByUserIdCategoryAndDateRange(String userId, String category, Timestamp startDate, Timestamp endDate)
+            throws ExecutionException, InterruptedException {
+        return sum(findByUserIdAndDateRange(userId, startDate, endDate).stream()
+                .filter(e -> e.getCategory() != null && e.getCategory().equalsIgnoreCase(category))
+                .toList());
+    }
+
+    /** Sums all of the goal's expenses when either bound is null. */
+    default BigDecimal sumAmountByGoalId(String goalId, Timestamp startDate, Timestamp endDate)
+            throws ExecutionException, InterruptedException {
+        return sum(startDate != null && endDate != null
+                ? findByGoalIdAndDateRange(goalId, startDate, endDate)
+                : findByGoalId(goalId));
+    }
+
+    /**
+     * The user's monthly rollups from {@code fromMonth} to {@code toMonth}
+     * inclusive ({@code yyyy-MM}; a null bound is open). The default rolls up
+     * the raw expenses; engines that maintain rollups read them instead.
+     */
+    default List<MonthlyRollup> findRollups(String userId, String fromMonth, String toMonth)
+            throws ExecutionException, InterruptedException {
+        List<Expense> expenses = fromMonth != null && toMonth != null
+                ? findByUserIdAndDateRange(userId, MonthlyRollup.startOf(fromMonth), MonthlyRollup.endOf(toMonth))
+                : findByUserId(userId).stream()
+                        .filter(e -> e.getDate() != null
+                                && (fromMonth == null || MonthlyRollup.monthOf(e.getDate()).compareTo(fromMonth) >= 0)
+                                && (toMonth == null || MonthlyRollup.monthOf(e.getDate()).compareTo(toMonth) <= 0))
+                        .toList();
+        return MonthlyRollup.of(expenses);
+    }
+
+    /**
+     * Rebuilds stored rollups from the raw expenses; returns how many were
+     * written. Engines that don't store rollups have nothing to do.
+     */
+    default int rebuildRollups() throws ExecutionException, InterruptedException {
+        return 0;
+    }
+
+    /**
+     * Brings documents written by older versions up to date with what the
+     * engine's aggregate queries need; returns how many were changed. Engines
+     * that total typed columns have nothing to do.
+     */
+    default int backfillAggregateFields() throws ExecutionException, InterruptedException {
+        return 0;
+    }
+
+    /**
+     * How many live expenses the user has. The default lists them; engines
+     * that can count where the data lives do so.
+     */
+    default long countByUserId(String userId) throws ExecutionException, InterruptedException {
+        return findByUserId(userId).size();
+    }
+
+    /**
+     * Up to {@code limit} expenses soft-deleted before {@code cutoff}, oldest
+     * deletion first. Engines that don't archive return none; the embedded
+     * engine drops deleted expenses at compaction instead.
+     */
+    default List<Expense> findDeletedBefore(Timestamp cutoff, int limit) throws ExecutionException, InterruptedException {
+        return List.of();
+    }
+
+    /**
+     * Moves soft-deleted expenses out of the live collection into the
+     * engine's archive. Only called with expenses from {@link #findDeletedBefore}.
+     */
+    default void archive(List<Expense> deleted) throws ExecutionException, InterruptedException {
+    }
+
+    private static BigDecimal sum(List<Expense> expenses) {
+        return expenses.stream()
+                .map(Expense::getAmount)
+                .filter(Objects::nonNull)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+}
@@ -0,0 +1,151 @@
+package com.expensetracker.app.repositories.storage;
+
+import com.expensetracker.app.models.Goal;
+import com.google.cloud.Timestamp;
+
+import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+/**
+ * Persistence operations behind {@link com.expensetracker.app.repositories.GoalRepository}.
+ * List queries exclude soft-deleted goals.
+ */
+public interface GoalStore {
+
+    /** Creates the goal or overwrites it entirely. */
+    void save(Goal goal) throws ExecutionException, InterruptedException;
+
+    /** Saves each goal; engines that can write them in one round trip override this. */
+    default void saveAll(List<Goal> goals) throws ExecutionException, InterruptedException {
+        for (Goal goal : goals) {
+            save(goal);
+        }
+    }
+
+    /**
+     * Soft-deletes the goals, setting deletedAt and updatedAt to
+     * {@code deletedAt}. The default updates them one by one; engines that
+     * can write many documents per round trip batch them.
+     */
+    default void softDeleteAll(List<Goal> goals, Timestamp deletedAt) throws ExecutionException, InterruptedException {
+        for (Goal goal : goals) {
+            update(goal.getId(), Map.of("deletedAt", deletedAt, "updatedAt", deletedAt));
+        }
+    }
+
+    /** Returns the goal even if it was soft-deleted. */
+    Optional<Goal> findById(String id) throws ExecutionException, InterruptedException;
+
+    List<Goal> findByUserId(String userId) throws ExecutionException, InterruptedException;
+
+    /**
+     * The user's live goals still open at {@code date}, i.e. ending on or
+     * after it; what an expense dated then can count towards. The default
+     * filters the user's goals; engines that can range over end dates do.
+     */
+    default List<Goal> findOpenByUserIdAt(String userId, Timestamp date) throws ExecutionException, InterruptedException {
+        return findByUserId(userId).stream()
+                .filter(g -> g.getEndDate() == null || g.getEndDate().compareTo(date) >= 0)
+                .toList();
+    }
+
+    List<Goal> findAll() throws ExecutionException, InterruptedException;
+
+    /** Applies a partial update; keys are model field names. */
+    void update(String id, Map<String, Object> updates) throws ExecutionException, InterruptedException;
+
+    /**
+     * Applies the updates {@code change} derives from the goal's current state,
+     * atomically with respect to other writes of the same goal. Does nothing if
+     * the goal doesn't exist or {@code change} returns no updates. The default
+     * reads then updates, for engines without a cheaper way to serialize.
+     */
+    default void compute(String id, Function<Goal, Map<String, Object>> change)
+            throws ExecutionException, InterruptedException {
+        Optional<Goal> goal = findById(id);
+        if (goal.isEmpty()) {
+            return;
+        }
+        Map<String, Object> updates = change.apply(goal.get());
+        if (updates != null && !updates.isEmpty()) {
+            update(id, updates);
+        }
+    }
+
+    /**
+     * Adds {@code delta} to the goal's {@code currentAmount} and returns what
+     * was added: {@code delta}, or zero when the engine can tell the goal is
+     * missing or deleted. The goal isn't read back. Engines where concurrent
+     * increments to one goal would contend override this; the default goes
+     * through {@link #compute}.
+     */
+    default BigDecimal incrementProgress(String id, BigDecimal delta) throws ExecutionException, InterruptedException {
+        boolean[] applied = {false};
+        compute(id, g -> {
+            applied[0] = g.getDeletedAt() == null;
+            return applied[0] ? Map.of("currentAmount",
+                    (g.getCurrentAmount() != null ? g.getCurrentAmount() : BigDecimal.ZERO).add(delta)) : null;
+        });
+        return applied[0] ? delta : BigDecimal.ZERO;
+    }
+
+    /**
+     * Up to {@code limit} of the user's goals ordered by start date, then id,
+     * starting after {@code after} (from the beginning when null).
+     */
+    default List<Goal> findPageByUserId(String userId, PageCursor after, int limit)
+            throws ExecutionException, InterruptedException {
+        return findByUserId(userId).stream()
+                .filter(g -> after == null || PageCursor.of(g.getStartDate(), g.getId()).compareTo(after) > 0)
+                .sorted(Comparator.comparing((Goal g) -> PageCursor.of(g.getStartDate(), g.getId())))
+                .limit(limit)
+                .toList();
+    }
+
+    /** Like {@link #findPageByUserId} across all users' live goals. */
+    default List<Goal> findPage(PageCursor after, int limit) throws ExecutionException, InterruptedException {
+        return findAll().stream()
+                .filter(g -> after == null || PageCursor.of(g.getStartDate(), g.getId()).compareTo(after) > 0)
+                .sorted(Comparator.comparing((Goal g) -> PageCursor.of(g.getStartDate(), g.getId())))
+                .limit(limit)
+                .toList();
+    }
+
+    // Asynchronous variants; see ExpenseStore
+
+    default CompletableFuture<Optional<Goal>> findByIdAsync(String id) {
+        return StoreFutures.completed(() -> findById(id));
+    }
+
+    default CompletableFuture<List<Goal>> findByUserIdAsync(String userId) {
+        return StoreFutures.completed(() -> findByUserId(userId));
+    }
+
+    // Archival; see ExpenseStore
+
+    default long countByUserId(String userId) throws ExecutionException, InterruptedException {
+        return findByUserId(userId).size();
+    }
+
+    /**
+     * Brings progress shards written by older versions up to date with what
+     * the engine's listings need; returns how many were changed. Engines
+     * without shards have nothing to do.
+     */
+    default int backfillProgressShards() throws ExecutionException, InterruptedException {
+        return 0;
+    }
+
+    default List<Goal> findDeletedBefore(Timestamp cutoff, int limit) throws ExecutionException, InterruptedException {
+        return List.of();
+    }
+
+    default void archive(List<Goal> deleted) throws ExecutionException, InterruptedException {
+    }
+}
@@ -0,0 +1,81 @@
+package com.expensetracker.app.repositories.storage;
+
+import com.expensetracker.app.models.Expense;
+import com.google.cloud.Timestamp;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Total and number of a user's live expenses in one category and calendar
+ * month ({@code yyyy-MM}, UTC).
+ */
+public record MonthlyRollup(String userId, String month, String category, BigDecimal sum, long count) {
+
+    /** Identifies the rollup an expense falls into. */
+    public static String key(String userId, String month, String category) {
+        return userId + "_" + month + "_" + category;
+    }
+
+    public String key() {
+        return key(userId, month, category);
+    }
+
+    public static String monthOf(Timestamp date) {
+        return YearMonth.from(date.toDate().toInstant().atZone(ZoneOffset.UTC)).toString();
+    }
+
+    /** First instant of the month. */
+    public static Timestamp startOf(String month) {
+        return Timestamp.ofTimeSecondsAndNanos(parse(month).atDay(1).atStartOfDay().toEpochSecond(ZoneOffset.UTC), 0);
+    }
+
+    /** Last instant of the month, for inclusive range ends. */
+    public static Timestamp endOf(String month) {
+        long next = parse(month).plusMonths(1).atDay(1).atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+        return Timestamp.ofTimeSecondsAndNanos(next - 1, 999_999_999);
+    }
+
+    public static String nextMonth(String month) {
+        return parse(month).plusMonths(1).toString();
+    }
+
+    public static String previousMonth(String month) {
+        return parse(month).minusMonths(1).toString();
+    }
+
+    public static YearMonth parse(String month) {
+        try {
+            return YearMonth.parse(month);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid month '" + month + "', expected yyyy-MM");
+        }
+    }
+
+    /** Rolls up the live expenses among {@code expenses}, ordered by month then category. */
+    public static List<MonthlyRollup> of(Collection<Expense> expenses) {
+        Map<String, MonthlyRollup> rollups = new TreeMap<>();
+        for (Expense e : expenses) {
+            if (e.getDeletedAt() != null || e.getDate() == null || e.getAmount() == null) {
+                continue;
+            }
+            MonthlyRollup one = new MonthlyRollup(e.getUserId(), monthOf(e.getDate()), e.getCategory(), e.getAmount(), 1);
+            rollups.merge(one.key(), one, MonthlyRollup::plus);
+        }
+        List<MonthlyRollup> list = new ArrayList<>(rollups.values());
+        list.sort(Comparator.comparing(MonthlyRollup::month).thenComparing(MonthlyRollup::category));
+        return list;
+    }
+
+    public MonthlyRollup plus(MonthlyRollup other) {
+        return new MonthlyRollup(userId, month, category, sum.add(other.sum), count + other.count);
+    }
+}
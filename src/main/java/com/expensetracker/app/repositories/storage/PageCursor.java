@@ -0,0 +1,47 @@
+package com.expensetracker.app.repositories.storage;
+
+import com.google.cloud.Timestamp;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position in a listing ordered by date, then id: the key of the last item
+ * returned. A missing date sorts first, as in the date indexes. Clients see it
+ * only as an opaque token.
+ */
+public record PageCursor(Timestamp date, String id) implements Comparable<PageCursor> {
+
+    private static final String VERSION = "c1";
+
+    public static PageCursor of(Timestamp date, String id) {
+        return new PageCursor(date != null ? date : Timestamp.MIN_VALUE, id);
+    }
+
+    public String encode() {
+        String raw = VERSION + "|" + date.getSeconds() + "|" + date.getNanos() + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** @throws IllegalArgumentException if the token wasn't produced by {@link #encode()} */
+    public static PageCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 4);
+            if (parts.length != 4 || !VERSION.equals(parts[0])) {
+                throw new IllegalArgumentException("Invalid page cursor");
+            }
+            Timestamp date = Timestamp.ofTimeSecondsAndNanos(Long.parseLong(parts[1]), Integer.parseInt(parts[2]));
+            return new PageCursor(date, parts[3]);
+        } catch (IllegalArgumentException e) {
+            // Also covers bad base64 and NumberFormatException
+            throw new IllegalArgumentException("Invalid page cursor", e);
+        }
+    }
+
+    @Override
+    public int compareTo(PageCursor other) {
+        int cmp = date.compareTo(other.date);
+        return cmp != 0 ? cmp : id.compareTo(other.id);
+    }
+}
@@ -0,0 +1,68 @@
+package com.expensetracker.app.repositories.storage;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Helpers for the asynchronous store methods.
+ */
+public final class StoreFutures {
+
+    @FunctionalInterface
+    public interface Call<T> {
+        T call() throws Exception;
+    }
+
+    private StoreFutures() {
+    }
+
+    /**
+     * Runs a store call on the calling thread and returns its outcome as a
+     * future. Used by engines whose calls don't wait on I/O.
+     */
+    public static <T> CompletableFuture<T> completed(Call<T> call) {
+        try {
+            return CompletableFuture.completedFuture(call.call());
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Re-throws a failure of {@code future} as a RuntimeException whose message
+     * starts with {@code message}, matching the synchronous repository methods.
+     * Validation and access errors pass through unchanged.
+     */
+    public static <T> CompletableFuture<T> describeFailure(CompletableFuture<T> future, String message) {
+        return future.exceptionallyCompose(t -> {
+            Throwable cause = unwrap(t);
+            if (cause instanceof IllegalArgumentException || cause instanceof SecurityException) {
+                return CompletableFuture.failedFuture(cause);
+            }
+            return CompletableFuture.failedFuture(new RuntimeException(message + ": " + cause.getMessage(), cause));
+        });
+    }
+
+    /**
+     * Waits for {@code future} and rethrows its failure unwrapped, so callers
+     * see the same exceptions as from the synchronous methods.
+     */
+    public static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof RuntimeException re) throw re;
+            if (cause instanceof Error err) throw err;
+            throw new RuntimeException(cause.getMessage(), cause);
+        }
+    }
+
+    public static Throwable unwrap(Throwable t) {
+        while ((t instanceof CompletionException || t instanceof ExecutionException) && t.getCause() != null) {
+            t = t.getCause();
+        }
+        return t;
+    }
+}
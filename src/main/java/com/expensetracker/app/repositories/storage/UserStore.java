@@ -0,0 +1,75 @@
+package com.expensetracker.app.repositories.storage;
+
+import com.expensetracker.app.models.User;
+import com.expensetracker.app.repositories.UserChange;
+import com.google.cloud.Timestamp;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Persistence operations behind {@link com.expensetracker.app.repositories.UserRepository},
+ * including the email index: each normalized email is owned by at most one
+ * live user, and claiming it is atomic with the user write.
+ */
+public interface UserStore {
+
+    /** Live users only. */
+    List<User> findAll() throws ExecutionException, InterruptedException;
+
+    /** Returns the user even if soft-deleted, or null. */
+    User findById(String id) throws ExecutionException, InterruptedException;
+
+    /** Resolves the owner of an email through the index; null if unknown or deleted. */
+    User findByEmail(String email) throws ExecutionException, InterruptedException;
+
+    /** @throws com.expensetracker.app.exceptions.DuplicateEmailException if the email is taken */
+    void create(User user) throws ExecutionException, InterruptedException;
+
+    /**
+     * Applies a partial update, moving the email claim when "email" changes and
+     * releasing it when "deletedAt" is set. A role change or delete also sets
+     * "tokensRevokedAt" in the same write; see {@link #withTokensRevoked}.
+     *
+     * @throws com.expensetracker.app.exceptions.DuplicateEmailException if the new email is taken
+     */
+    UserChange update(String id, Map<String, Object> updates) throws ExecutionException, InterruptedException;
+
+    /** Soft-deleted users whose goals and expenses are still to be deleted. */
+    List<User> findDeletionPending() throws ExecutionException, InterruptedException;
+
+    /** Claims emails of live users that have no index entry; returns the number written. */
+    int rebuildEmailIndex() throws ExecutionException, InterruptedException;
+
+    // Asynchronous variants; see ExpenseStore
+
+    default CompletableFuture<List<User>> findAllAsync() {
+        return StoreFutures.completed(this::findAll);
+    }
+
+    default CompletableFuture<User> findByIdAsync(String id) {
+        return StoreFutures.completed(() -> findById(id));
+    }
+
+    /**
+     * The updates plus a "tokensRevokedAt" of now, unless they carry one
+     * already. Stored on the user, so access tokens issued before a role
+     * change or delete are refused on every instance and across restarts.
+     */
+    static Map<String, Object> withTokensRevoked(Map<String, Object> updates) {
+        if (updates.containsKey("tokensRevokedAt")) {
+            return updates;
+        }
+        Map<String, Object> stamped = new HashMap<>(updates);
+        stamped.put("tokensRevokedAt", Timestamp.now());
+        return stamped;
+    }
+
+    static String normalizeEmail(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,206 @@
+package com.expensetracker.app.repositories.storage.cache;
+
+import com.expensetracker.app.cache.TtlCache;
+import com.expensetracker.app.models.Expense;
+import com.expensetracker.app.repositories.storage.Entities;
+import com.expensetracker.app.repositories.storage.ExpenseStore;
+import com.expensetracker.app.repositories.storage.MonthlyRollup;
+import com.expensetracker.app.repositories.storage.PageCursor;
+import com.google.cloud.Timestamp;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Serves {@link #findById} from a read-through cache in front of another
+ * engine. Saves populate the cache, updates patch a cached copy, and every
+ * other call goes straight to the engine; new store methods must be forwarded
+ * here too. Entries are copies in both directions, so callers can't change
+ * what's cached.
+ */
+public class CachingExpenseStore implements ExpenseStore {
+
+    private final ExpenseStore delegate;
+    private final TtlCache<String, Expense> cache;
+
+    public CachingExpenseStore(ExpenseStore delegate, TtlCache<String, Expense> cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    @Override
+    public void save(Expense expense) throws ExecutionException, InterruptedException {
+        cache.invalidate(expense.getId());
+        long token = cache.version(expense.getId());
+        delegate.save(expense);
+        cache.putIfCurrent(expense.getId(), Entities.copy(expense), token);
+    }
+
+    @Override
+    public long countByUserId(String userId) throws ExecutionException, InterruptedException {
+        return delegate.countByUserId(userId);
+    }
+
+    @Override
+    public List<Expense> findDeletedBefore(Timestamp cutoff, int limit) throws ExecutionException, InterruptedException {
+        return delegate.findDeletedBefore(cutoff, limit);
+    }
+
+    @Override
+    public void archive(List<Expense> deleted) throws ExecutionException, InterruptedException {
+        deleted.forEach(e -> cache.invalidate(e.getId()));
+        delegate.archive(deleted);
+    }
+
+    @Override
+    public void softDeleteAll(List<Expense> expenses, Timestamp deletedAt) throws ExecutionException, InterruptedException {
+        expenses.forEach(e -> cache.invalidate(e.getId()));
+        delegate.softDeleteAll(expenses, deletedAt);
+    }
+
+    @Override
+    public Optional<Expense> findById(String id) throws ExecutionException, InterruptedException {
+        Expense cached = Loads.through(cache, id, key -> delegate.findById(key).orElse(null));
+        return Optional.ofNullable(cached).map(Entities::copy);
+    }
+
+    @Override
+    public List<Expense> findByUserId(String userId) throws ExecutionException, InterruptedException {
+        return delegate.findByUserId(userId);
+    }
+
+    @Override
+    public List<Expense> findAll() throws ExecutionException, InterruptedException {
+        return delegate.findAll();
+    }
+
+    @Override
+    public List<Expense> findByUserIdAndDateRange(String userId, Timestamp startDate, Timestamp endDate)
+            throws ExecutionException, InterruptedException {
+        return delegate.findByUserIdAndDateRange(userId, startDate, endDate);
+    }
+
+    @Override
+    public List<Expense> findByGoalId(String goalId) throws ExecutionException, InterruptedException {
+        return delegate.findByGoalId(goalId);
+    }
+
+    @Override
+    public List<Expense> findByGoalIdAndDateRange(String goalId, Timestamp startDate, Timestamp endDate)
+            throws ExecutionException, InterruptedException {
+        return delegate.findByGoalIdAndDateRange(goalId, startDate, endDate);
+    }
+
+    @Override
+    public void update(String id, Map<String, Object> updates) throws ExecutionException, InterruptedException {
+        Expense cached = cache.getIfPresent(id);
+        cache.invalidate(id);
+        long token = cache.version(id);
+        delegate.update(id, updates);
+        patch(id, cached, updates, token);
+    }
+
+    @Override
+    public List<Expense> findPageByUserId(String userId, PageCursor after, int limit)
+            throws ExecutionException, InterruptedException {
+        return delegate.findPageByUserId(userId, after, limit);
+    }
+
+    @Override
+    public CompletableFuture<Void> saveAsync(Expense expense) {
+        cache.invalidate(expense.getId());
+        long token = cache.version(expense.getId());
+        Expense image = Entities.copy(expense);
+        return delegate.saveAsync(expense).thenRun(() -> cache.putIfCurrent(image.getId(), image, token));
+    }
+
+    // Imported expenses aren't cached up front so a large import doesn't
+    // evict the working set
+    @Override
+    public CompletableFuture<Void> saveAllAsync(List<Expense> expenses) {
+        expenses.forEach(e -> cache.invalidate(e.getId()));
+        return delegate.saveAllAsync(expenses);
+    }
+
+    @Override
+    public CompletableFuture<Optional<Expense>> findByIdAsync(String id) {
+        Expense cached = cache.getIfPresent(id);
+        if (cached != null) {
+            Loads.revalidateIfRestored(cache, id, key -> delegate.findById(key).orElse(null));
+            return CompletableFuture.completedFuture(Optional.of(Entities.copy(cached)));
+        }
+        long token = cache.version(id);
+        return delegate.findByIdAsync(id).thenApply(found -> {
+            found.ifPresent(e -> cache.putIfCurrent(id, Entities.copy(e), token));
+            return found;
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<Expense>> findByUserIdAsync(String userId) {
+        return delegate.findByUserIdAsync(userId);
+    }
+
+    @Override
+    public CompletableFuture<List<Expense>> findByUserIdAndDateRangeAsync(String userId, Timestamp startDate, Timestamp endDate) {
+        return delegate.findByUserIdAndDateRangeAsync(userId, startDate, endDate);
+    }
+
+    @Override
+    public CompletableFuture<Void> updateAsync(String id, Map<String, Object> updates) {
+        Expense cached = cache.getIfPresent(id);
+        cache.invalidate(id);
+        long token = cache.version(id);
+        return delegate.updateAsync(id, updates).thenRun(() -> patch(id, cached, updates, token));
+    }
+
+    @Override
+    public BigDecimal sumAmountByUserIdAndDateRange(String userId, Timestamp startDate, Timestamp endDate)
+            throws ExecutionException, InterruptedException {
+        return delegate.sumAmountByUserIdAndDateRange(userId, startDate, endDate);
+    }
+
+    @Override
+    public BigDecimal sumAmountByUserIdCategoryAndDateRange(String userId, String category, Timestamp startDate, Timestamp endDate)
+            throws ExecutionException, InterruptedException {
+        return delegate.sumAmountByUserIdCategoryAndDateRange(userId, category, startDate, endDate);
+    }
+
+    @Override
+    public BigDecimal sumAmountByGoalId(String goalId, Timestamp startDate, Timestamp endDate)
+            throws ExecutionException, InterruptedException {
+        return delegate.sumAmountByGoalId(goalId, startDate, endDate);
+    }
+
+    @Override
+    public List<MonthlyRollup> findRollups(String userId, String fromMonth, String toMonth)
+            throws ExecutionException, InterruptedException {
+        return delegate.findRollups(userId, fromMonth, toMonth);
+    }
+
+    @Override
+    public int rebuildRollups() throws ExecutionException, InterruptedException {
+        return delegate.rebuildRollups();
+    }
+
+    @Override
+    public int backfillAggregateFields() throws ExecutionException, InterruptedException {
+        int updated = delegate.backfillAggregateFields();
+        cache.invalidateAll();
+        return updated;
+    }
+
+    // The written fields are known, so a cached copy is patched instead of re-read
+    private void patch(String id, Expense cached, Map<String, Object> updates, long token) {
+        if (cached == null) {
+            return;
+        }
+        Expense next = Entities.copy(cached);
+        Entities.apply(next, updates);
+        cache.putIfCurrent(id, next, token);
+    }
+}
@@ -0,0 +1,153 @@
+package com.expensetracker.app.repositories.storage.cache;
+
+import com.expensetracker.app.cache.TtlCache;
+import com.expensetracker.app.models.Goal;
+import com.expensetracker.app.repositories.storage.Entities;
+import com.expensetracker.app.repositories.storage.GoalStore;
+import com.expensetracker.app.repositories.storage.PageCursor;
+import com.google.cloud.Timestamp;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+/** Read-through goal cache in front of another engine; see {@link CachingExpenseStore}. */
+public class CachingGoalStore implements GoalStore {
+
+    private final GoalStore delegate;
+    private final TtlCache<String, Goal> cache;
+
+    public CachingGoalStore(GoalStore delegate, TtlCache<String, Goal> cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    @Override
+    public void save(Goal goal) throws ExecutionException, InterruptedException {
+        cache.invalidate(goal.getId());
+        long token = cache.version(goal.getId());
+        delegate.save(goal);
+        cache.putIfCurrent(goal.getId(), Entities.copy(goal), token);
+    }
+
+    @Override
+    public void saveAll(List<Goal> goals) throws ExecutionException, InterruptedException {
+        Map<String, Long> tokens = new HashMap<>();
+        for (Goal g : goals) {
+            cache.invalidate(g.getId());
+            tokens.put(g.getId(), cache.version(g.getId()));
+        }
+        delegate.saveAll(goals);
+        goals.forEach(g -> cache.putIfCurrent(g.getId(), Entities.copy(g), tokens.get(g.getId())));
+    }
+
+    @Override
+    public long countByUserId(String userId) throws ExecutionException, InterruptedException {
+        return delegate.countByUserId(userId);
+    }
+
+    @Override
+    public int backfillProgressShards() throws ExecutionException, InterruptedException {
+        return delegate.backfillProgressShards();
+    }
+
+    @Override
+    public List<Goal> findDeletedBefore(Timestamp cutoff, int limit) throws ExecutionException, InterruptedException {
+        return delegate.findDeletedBefore(cutoff, limit);
+    }
+
+    @Override
+    public void archive(List<Goal> deleted) throws ExecutionException, InterruptedException {
+        deleted.forEach(g -> cache.invalidate(g.getId()));
+        delegate.archive(deleted);
+    }
+
+    @Override
+    public void softDeleteAll(List<Goal> goals, Timestamp deletedAt) throws ExecutionException, InterruptedException {
+        goals.forEach(g -> cache.invalidate(g.getId()));
+        delegate.softDeleteAll(goals, deletedAt);
+    }
+
+    @Override
+    public Optional<Goal> findById(String id) throws ExecutionException, InterruptedException {
+        Goal cached = Loads.through(cache, id, key -> delegate.findById(key).orElse(null));
+        return Optional.ofNullable(cached).map(Entities::copy);
+    }
+
+    @Override
+    public List<Goal> findByUserId(String userId) throws ExecutionException, InterruptedException {
+        return delegate.findByUserId(userId);
+    }
+
+    @Override
+    public List<Goal> findOpenByUserIdAt(String userId, Timestamp date) throws ExecutionException, InterruptedException {
+        return delegate.findOpenByUserIdAt(userId, date);
+    }
+
+    @Override
+    public List<Goal> findAll() throws ExecutionException, InterruptedException {
+        return delegate.findAll();
+    }
+
+    @Override
+    public void update(String id, Map<String, Object> updates) throws ExecutionException, InterruptedException {
+        Goal cached = cache.getIfPresent(id);
+        cache.invalidate(id);
+        long token = cache.version(id);
+        delegate.update(id, updates);
+        if (cached != null) {
+            Goal next = Entities.copy(cached);
+            Entities.apply(next, updates);
+            cache.putIfCurrent(id, next, token);
+        }
+    }
+
+    // The outcome depends on the stored goal, so the next read reloads it
+    @Override
+    public void compute(String id, Function<Goal, Map<String, Object>> change)
+            throws ExecutionException, InterruptedException {
+        cache.invalidate(id);
+        delegate.compute(id, change);
+    }
+
+    @Override
+    public BigDecimal incrementProgress(String id, BigDecimal delta) throws ExecutionException, InterruptedException {
+        cache.invalidate(id);
+        return delegate.incrementProgress(id, delta);
+    }
+
+    @Override
+    public List<Goal> findPageByUserId(String userId, PageCursor after, int limit)
+            throws ExecutionException, InterruptedException {
+        return delegate.findPageByUserId(userId, after, limit);
+    }
+
+    @Override
+    public List<Goal> findPage(PageCursor after, int limit) throws ExecutionException, InterruptedException {
+        return delegate.findPage(after, limit);
+    }
+
+    @Override
+    public CompletableFuture<Optional<Goal>> findByIdAsync(String id) {
+        Goal cached = cache.getIfPresent(id);
+        if (cached != null) {
+            Loads.revalidateIfRestored(cache, id, key -> delegate.findById(key).orElse(null));
+            return CompletableFuture.completedFuture(Optional.of(Entities.copy(cached)));
+        }
+        long token = cache.version(id);
+        return delegate.findByIdAsync(id).thenApply(found -> {
+            found.ifPresent(g -> cache.putIfCurrent(id, Entities.copy(g), token));
+            return found;
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<Goal>> findByUserIdAsync(String userId) {
+        return delegate.findByUserIdAsync(userId);
+    }
+}
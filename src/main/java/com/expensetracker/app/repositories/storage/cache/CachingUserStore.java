@@ -0,0 +1,94 @@
+package com.expensetracker.app.repositories.storage.cache;
+
+import com.expensetracker.app.cache.TtlCache;
+import com.expensetracker.app.models.User;
+import com.expensetracker.app.repositories.UserChange;
+import com.expensetracker.app.repositories.storage.Entities;
+import com.expensetracker.app.repositories.storage.UserStore;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/** Read-through user cache in front of another engine; see {@link CachingExpenseStore}. */
+public class CachingUserStore implements UserStore {
+
+    private final UserStore delegate;
+    private final TtlCache<String, User> cache;
+
+    public CachingUserStore(UserStore delegate, TtlCache<String, User> cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    @Override
+    public List<User> findAll() throws ExecutionException, InterruptedException {
+        return delegate.findAll();
+    }
+
+    @Override
+    public List<User> findDeletionPending() throws ExecutionException, InterruptedException {
+        return delegate.findDeletionPending();
+    }
+
+    @Override
+    public User findById(String id) throws ExecutionException, InterruptedException {
+        User cached = Loads.through(cache, id, delegate::findById);
+        return cached != null ? Entities.copy(cached) : null;
+    }
+
+    @Override
+    public User findByEmail(String email) throws ExecutionException, InterruptedException {
+        return delegate.findByEmail(email);
+    }
+
+    @Override
+    public void create(User user) throws ExecutionException, InterruptedException {
+        cache.invalidate(user.getId());
+        long token = cache.version(user.getId());
+        delegate.create(user);
+        cache.putIfCurrent(user.getId(), Entities.copy(user), token);
+    }
+
+    @Override
+    public UserChange update(String id, Map<String, Object> updates) throws ExecutionException, InterruptedException {
+        User cached = cache.getIfPresent(id);
+        cache.invalidate(id);
+        long token = cache.version(id);
+        UserChange change = delegate.update(id, updates);
+        // The store stamped a token revocation the cached copy can't know about
+        if (cached != null && !change.roleChanged() && !change.deleted()) {
+            User next = Entities.copy(cached);
+            Entities.apply(next, updates);
+            cache.putIfCurrent(id, next, token);
+        }
+        return change;
+    }
+
+    @Override
+    public int rebuildEmailIndex() throws ExecutionException, InterruptedException {
+        return delegate.rebuildEmailIndex();
+    }
+
+    @Override
+    public CompletableFuture<List<User>> findAllAsync() {
+        return delegate.findAllAsync();
+    }
+
+    @Override
+    public CompletableFuture<User> findByIdAsync(String id) {
+        User cached = cache.getIfPresent(id);
+        if (cached != null) {
+            Loads.revalidateIfRestored(cache, id, delegate::findById);
+            return CompletableFuture.completedFuture(Entities.copy(cached));
+        }
+        long token = cache.version(id);
+        return delegate.findByIdAsync(id).thenApply(found -> {
+            if (found != null) {
+                cache.putIfCurrent(id, Entities.copy(found), token);
+            }
+            return found;
+        });
+    }
+}
@@ -0,0 +1,74 @@
+package com.expensetracker.app.repositories.storage.cache;
+
+import com.expensetracker.app.cache.TtlCache;
+import com.expensetracker.app.models.BaseEntity;
+import com.expensetracker.app.models.Expense;
+import com.expensetracker.app.models.Goal;
+import com.expensetracker.app.models.User;
+import com.expensetracker.app.repositories.storage.ExpenseStore;
+import com.expensetracker.app.repositories.storage.GoalStore;
+import com.expensetracker.app.repositories.storage.UserStore;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The by-id caches put in front of remote engines. Entries live at most the
+ * TTL, which bounds how stale a read can be after another instance writes.
+ */
+public class EntityCaches {
+
+    private final boolean enabled;
+    private final TtlCache<String, Expense> expenses;
+    private final TtlCache<String, Goal> goals;
+    private final TtlCache<String, User> users;
+
+    public EntityCaches(boolean enabled, int maxSize, Duration ttl) {
+        this.enabled = enabled;
+        this.expenses = new TtlCache<>("expenses", maxSize, ttl);
+        this.goals = new TtlCache<>("goals", maxSize, ttl);
+        this.users = new TtlCache<>("users", maxSize, ttl);
+    }
+
+    public ExpenseStore expenses(ExpenseStore store) {
+        return enabled ? new CachingExpenseStore(store, expenses) : store;
+    }
+
+    public GoalStore goals(GoalStore store) {
+        return enabled ? new CachingGoalStore(store, goals) : store;
+    }
+
+    public UserStore users(UserStore store) {
+        return enabled ? new CachingUserStore(store, users) : store;
+    }
+
+    /**
+     * Every live cached expense and goal, least recently used first within
+     * each cache. Users are left out: a saved copy lacks the password and
+     * could outlive a revocation, so they are always read afresh.
+     */
+    public List<BaseEntity> snapshot() {
+        List<BaseEntity> entities = new ArrayList<>();
+        expenses.snapshot().forEach(e -> entities.add(e.getValue()));
+        goals.snapshot().forEach(e -> entities.add(e.getValue()));
+        return entities;
+    }
+
+    /** Caches an expense or goal saved by a previous run; it's checked against the store on its first hit. */
+    public void restore(BaseEntity entity) {
+        if (!enabled) {
+            return;
+        }
+        if (entity instanceof Expense e) {
+            expenses.restore(e.getId(), e);
+        } else if (entity instanceof Goal g) {
+            goals.restore(g.getId(), g);
+        }
+    }
+
+    public List<Map<String, Object>> stats() {
+        return List.of(expenses.stats(), goals.stats(), users.stats());
+    }
+}
@@ -0,0 +1,59 @@
+package com.expensetracker.app.repositories.storage.cache;
+
+import com.expensetracker.app.cache.TtlCache;
+import com.expensetracker.app.models.BaseEntity;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+final class Loads {
+
+    private Loads() {
+    }
+
+    interface StoreRead<V> {
+        V read(String id) throws ExecutionException, InterruptedException;
+    }
+
+    // Reads through the cache, keeping the store's checked exceptions
+    static <V extends BaseEntity> V through(TtlCache<String, V> cache, String id, StoreRead<V> read)
+            throws ExecutionException, InterruptedException {
+        V value;
+        try {
+            value = cache.get(id, read::read);
+        } catch (ExecutionException | InterruptedException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ExecutionException(e);
+        }
+        revalidateIfRestored(cache, id, read);
+        return value;
+    }
+
+    /**
+     * The first hit on an entry restored from a previous run is served as is
+     * while the stored document is read in the background; if its
+     * {@code updatedAt} moved on, the entry is replaced.
+     */
+    static <V extends BaseEntity> void revalidateIfRestored(TtlCache<String, V> cache, String id, StoreRead<V> read) {
+        V restored = cache.claimRestored(id);
+        if (restored == null) {
+            return;
+        }
+        long token = cache.version(id);
+        CompletableFuture.runAsync(() -> {
+            try {
+                V current = read.read(id);
+                if (current == null) {
+                    cache.invalidate(id);
+                } else if (!Objects.equals(current.getUpdatedAt(), restored.getUpdatedAt())) {
+                    cache.putIfCurrent(id, current, token);
+                }
+            } catch (Exception e) {
+                cache.invalidate(id);
+                System.err.println("Failed to revalidate restored " + cache.name() + " entry " + id + ": " + e.getMessage());
+            }
+        });
+    }
+}
@@ -0,0 +1,84 @@
+package com.expensetracker.app.repositories.storage.firestore;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongSupplier;
+
+/**
+ * Picks the shard a counter increment goes to. Each counter starts on one
+ * shard and doubles, up to {@code maxShards}, while its observed write rate
+ * exceeds what the shards can sustain; it halves again once traffic drops.
+ * Readers sum every shard document that exists, so the count only steers
+ * writers and may differ between instances.
+ */
+public final class AdaptiveShards {
+
+    private static final long WINDOW_NANOS = 1_000_000_000L;
+    // Rates are only a hint, so past this many counters they start over
+    private static final int MAX_TRACKED = 10_000;
+
+    private final int maxShards;
+    private final double writesPerShardPerSecond;
+    private final LongSupplier nanoClock;
+    private final Map<String, Rate> rates = new ConcurrentHashMap<>();
+
+    public AdaptiveShards(int maxShards, double writesPerShardPerSecond) {
+        this(maxShards, writesPerShardPerSecond, System::nanoTime);
+    }
+
+    public AdaptiveShards(int maxShards, double writesPerShardPerSecond, LongSupplier nanoClock) {
+        if (maxShards < 1) {
+            throw new IllegalArgumentException("maxShards must be at least 1");
+        }
+        this.maxShards = maxShards;
+        this.writesPerShardPerSecond = writesPerShardPerSecond;
+        this.nanoClock = nanoClock;
+    }
+
+    /** Records a write to the counter and returns the shard index it should go to. */
+    public int next(String counter) {
+        if (rates.size() > MAX_TRACKED) {
+            rates.clear();
+        }
+        int shards = rates.computeIfAbsent(counter, k -> new Rate(nanoClock.getAsLong())).record(nanoClock.getAsLong());
+        return shards == 1 ? 0 : ThreadLocalRandom.current().nextInt(shards);
+    }
+
+    /** The number of shards writes to the counter are currently spread over. */
+    public int shards(String counter) {
+        Rate rate = rates.get(counter);
+        return rate == null ? 1 : rate.shards();
+    }
+
+    private final class Rate {
+        private long windowStart;
+        private int writes;
+        private int shards = 1;
+
+        Rate(long now) {
+            this.windowStart = now;
+        }
+
+        synchronized int record(long now) {
+            long elapsed = now - windowStart;
+            if (elapsed >= WINDOW_NANOS) {
+                double perSecond = writes * (double) WINDOW_NANOS / elapsed;
+                double capacity = shards * writesPerShardPerSecond;
+                if (perSecond > capacity) {
+                    shards = Math.min(maxShards, shards * 2);
+                } else if (perSecond < capacity / 4) {
+                    shards = Math.max(1, shards / 2);
+                }
+                windowStart = now;
+                writes = 0;
+            }
+            writes++;
+            return shards;
+        }
+
+        synchronized int shards() {
+            return shards;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.expensetracker.app.repositories.storage.firestore;
+
+import com.expensetracker.app.models.BaseEntity;
+import com.expensetracker.app.models.Expense;
+import com.expensetracker.app.models.Goal;
+import com.expensetracker.app.models.User;
+import com.expensetracker.app.models.enums.GoalMode;
+import com.expensetracker.app.models.enums.GoalStatus;
+import com.expensetracker.app.models.enums.UserRole;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.DocumentSnapshot;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Turns documents into models field by field instead of through the
+ * client's reflective {@code toObject}. Each document's fields are decoded
+ * once and read by name, so there is no bean introspection per read and no
+ * second pass over fields the mapper couldn't convert.
+ *
+ * <p>Reads are lenient the way the old fallback was: amounts stored as
+ * numbers or strings are both accepted, enum names are matched ignoring
+ * case, and a field of the wrong type or an unknown enum name is left at the
+ * model's default rather than failing the whole listing. Field
+ * names are the bean property names the documents are written with.
+ */
+public final class DocumentMappers {
+
+    private DocumentMappers() {
+    }
+
+    /** Null when the document doesn't exist. */
+    public static Expense expense(DocumentSnapshot d) {
+        Map<String, Object> fields = d.getData();
+        if (fields == null) {
+            return null;
+        }
+        Expense expense = new Expense();
+        base(d, fields, expense);
+        expense.setDescription(string(fields.get("description")));
+        expense.setAmount(decimal(fields.get("amount")));
+        String category = string(fields.get("category"));
+        if (category != null) {
+            expense.setCategory(category);
+        }
+        expense.setDate(timestamp(fields.get("date")));
+        expense.setUserId(string(fields.get("userId")));
+        expense.setGoalId(string(fields.get("goalId")));
+        return expense;
+    }
+
+    /** Null when the document doesn't exist. Progress shards are not folded in. */
+    public static Goal goal(DocumentSnapshot d) {
+        Map<String, Object> fields = d.getData();
+        if (fields == null) {
+            return null;
+        }
+        Goal goal = new Goal();
+        base(d, fields, goal);
+        goal.setUserId(string(fields.get("userId")));
+        goal.setTitle(string(fields.get("title")));
+        goal.setDescription(string(fields.get("description")));
+        goal.setTargetAmount(decimal(fields.get("targetAmount")));
+        BigDecimal current = decimal(fields.get("currentAmount"));
+        if (current != null) {
+            goal.setCurrentAmount(current);
+        }
+        goal.setStartDate(timestamp(fields.get("startDate")));
+        goal.setEndDate(timestamp(fields.get("endDate")));
+        goal.setCategory(string(fields.get("category")));
+        if (fields.get("completed") instanceof Boolean completed) {
+            goal.setCompleted(completed);
+        }
+        GoalMode mode = constant(GoalMode.class, fields.get("mode"));
+        if (mode != null) {
+            goal.setMode(mode);
+        }
+        GoalStatus status = constant(GoalStatus.class, fields.get("status"));
+        if (status != null) {
+            goal.setStatus(status);
+        }
+        return goal;
+    }
+
+    /** Null when the document doesn't exist. */
+    public static User user(DocumentSnapshot d) {
+        Map<String, Object> fields = d.getData();
+        if (fields == null) {
+            return null;
+        }
+        User user = new User();
+        base(d, fields, user);
+        user.setName(string(fields.get("name")));
+        user.setEmail(string(fields.get("email")));
+        user.setPassword(string(fields.get("password")));
+        UserRole role = constant(UserRole.class, fields.get("role"));
+        if (role != null) {
+            user.setRole(role);
+        }
+        user.setTokensRevokedAt(timestamp(fields.get("tokensRevokedAt")));
+        if (fields.get("deletionPending") instanceof Boolean pending) {
+            user.setDeletionPending(pending);
+        }
+        return user;
+    }
+
+    // The document id wins over a stored id field; timestamps the document
+    // lacks keep the defaults the constructor set
+    private static void base(DocumentSnapshot d, Map<String, Object> fields, BaseEntity entity) {
+        entity.setId(d.getId());
+        Timestamp createdAt = timestamp(fields.get("createdAt"));
+        if (createdAt != null) {
+            entity.setCreatedAt(createdAt);
+        }
+        Timestamp updatedAt = timestamp(fields.get("updatedAt"));
+        if (updatedAt != null) {
+            entity.setUpdatedAt(updatedAt);
+        }
+        entity.setDeletedAt(timestamp(fields.get("deletedAt")));
+    }
+
+    private static String string(Object value) {
+        return value instanceof String s ? s : null;
+    }
+
+    private static <E extends Enum<E>> E constant(Class<E> type, Object value) {
+        if (!(value instanceof String s)) {
+            return null;
+        }
+        try {
+            return Enum.valueOf(type, s.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static BigDecimal decimal(Object value) {
+        if (value instanceof Long l) {
+            return BigDecimal.valueOf(l);
+        }
+        if (value instanceof Number n) {
+            return new BigDecimal(n.toString());
+        }
+        if (value instanceof String s) {
+            try {
+                return new BigDecimal(s);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static Timestamp timestamp(Object value) {
+        if (value instanceof Timestamp t) {
+            return t;
+        }
+        if (value instanceof Date date) {
+            return Timestamp.of(date);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,179 @@
+package com.expensetracker.app.repositories.storage.firestore;
+
+import com.expensetracker.app.models.Expense;
+import com.expensetracker.app.models.Goal;
+import com.expensetracker.app.repositories.storage.replica.ChangeFeed;
+import com.google.cloud.firestore.DocumentChange;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.FirestoreException;
+import com.google.cloud.firestore.ListenerRegistration;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.QuerySnapshot;
+import com.google.firebase.cloud.FirestoreClient;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Streams a user's expenses and goals from Firestore snapshot listeners: one
+ * on the user's expenses, one on their goals, and one per goal on its
+ * {@code progressShards}, so a goal is delivered with its full progress
+ * whenever either the document or a shard changes.
+ */
+public class FirestoreChangeFeed implements ChangeFeed {
+
+    @Override
+    public Subscription subscribe(String userId, Listener listener) {
+        return new UserFeed(FirestoreClient.getFirestore(), userId, listener).start();
+    }
+
+    private static final class UserFeed {
+
+        private final Firestore db;
+        private final String userId;
+        private final Listener listener;
+
+        // All guarded by this; snapshot callbacks of different listeners can overlap
+        private final List<ListenerRegistration> registrations = new ArrayList<>();
+        private final Map<String, QueryDocumentSnapshot> goalDocs = new HashMap<>();
+        private final Map<String, List<QueryDocumentSnapshot>> shardDocs = new HashMap<>();
+        private final Map<String, ListenerRegistration> shardListeners = new HashMap<>();
+        // Goals from the first snapshot whose shards haven't been read yet
+        private final Set<String> awaitingShards = new HashSet<>();
+        private boolean expensesLoaded;
+        private boolean goalsLoaded;
+        private boolean synced;
+        private boolean closed;
+
+        UserFeed(Firestore db, String userId, Listener listener) {
+            this.db = db;
+            this.userId = userId;
+            this.listener = listener;
+        }
+
+        Subscription start() {
+            synchronized (this) {
+                registrations.add(db.collection(FirestoreExpenseStore.COLLECTION_NAME)
+                        .whereEqualTo("userId", userId)
+                        .addSnapshotListener(this::onExpenses));
+                registrations.add(db.collection(FirestoreGoalStore.COLLECTION_NAME)
+                        .whereEqualTo("userId", userId)
+                        .addSnapshotListener(this::onGoals));
+            }
+            return this::close;
+        }
+
+        private synchronized void onExpenses(QuerySnapshot snapshot, FirestoreException error) {
+            if (closed) {
+                return;
+            }
+            if (error != null) {
+                fail(error);
+                return;
+            }
+            for (DocumentChange change : snapshot.getDocumentChanges()) {
+                QueryDocumentSnapshot doc = change.getDocument();
+                if (change.getType() == DocumentChange.Type.REMOVED) {
+                    listener.removed(doc.getId());
+                } else {
+                    Expense expense = FirestoreExpenseStore.toExpense(doc);
+                    if (expense != null) {
+                        listener.expense(expense);
+                    }
+                }
+            }
+            expensesLoaded = true;
+            checkSynced();
+        }
+
+        private synchronized void onGoals(QuerySnapshot snapshot, FirestoreException error) {
+            if (closed) {
+                return;
+            }
+            if (error != null) {
+                fail(error);
+                return;
+            }
+            for (DocumentChange change : snapshot.getDocumentChanges()) {
+                QueryDocumentSnapshot doc = change.getDocument();
+                String goalId = doc.getId();
+                if (change.getType() == DocumentChange.Type.REMOVED) {
+                    goalDocs.remove(goalId);
+                    shardDocs.remove(goalId);
+                    awaitingShards.remove(goalId);
+                    ListenerRegistration shards = shardListeners.remove(goalId);
+                    if (shards != null) {
+                        shards.remove();
+                    }
+                    listener.removed(goalId);
+                    continue;
+                }
+                goalDocs.put(goalId, doc);
+                if (!shardListeners.containsKey(goalId)) {
+                    if (!goalsLoaded) {
+                        awaitingShards.add(goalId);
+                    }
+                    shardListeners.put(goalId, doc.getReference().collection(FirestoreGoalStore.SHARDS)
+                            .addSnapshotListener((shards, shardError) -> onShards(goalId, shards, shardError)));
+                } else {
+                    deliverGoal(goalId);
+                }
+            }
+            goalsLoaded = true;
+            checkSynced();
+        }
+
+        private synchronized void onShards(String goalId, QuerySnapshot snapshot, FirestoreException error) {
+            if (closed || !goalDocs.containsKey(goalId)) {
+                return;
+            }
+            if (error != null) {
+                fail(error);
+                return;
+            }
+            shardDocs.put(goalId, snapshot.getDocuments());
+            awaitingShards.remove(goalId);
+            deliverGoal(goalId);
+            checkSynced();
+        }
+
+        // A goal is only delivered once its shards are known, so progress never reads low
+        private void deliverGoal(String goalId) {
+            List<QueryDocumentSnapshot> shards = shardDocs.get(goalId);
+            if (shards == null) {
+                return;
+            }
+            Goal goal = FirestoreGoalStore.toGoal(goalDocs.get(goalId), shards);
+            if (goal != null) {
+                listener.goal(goal);
+            }
+        }
+
+        private void checkSynced() {
+            if (!synced && expensesLoaded && goalsLoaded && awaitingShards.isEmpty()) {
+                synced = true;
+                listener.synced();
+            }
+        }
+
+        private void fail(FirestoreException error) {
+            close();
+            listener.failed(error);
+        }
+
+        private synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            registrations.forEach(ListenerRegistration::remove);
+            shardListeners.values().forEach(ListenerRegistration::remove);
+            registrations.clear();
+            shardListeners.clear();
+        }
+    }
+}
@@ -0,0 +1,773 @@
+package com.expensetracker.app.repositories.storage.firestore;
+
+import com.expensetracker.app.models.Expense;
+import com.expensetracker.app.repositories.storage.Entities;
+import com.expensetracker.app.repositories.storage.ExpenseStore;
+import com.expensetracker.app.repositories.storage.MonthlyRollup;
+import com.expensetracker.app.repositories.storage.PageCursor;
+import com.google.api.core.ApiFuture;
+import com.google.api.gax.rpc.FailedPreconditionException;
+import com.expensetracker.app.models.enums.ExpenseCategory;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.AggregateField;
+import com.google.cloud.firestore.AggregateQuerySnapshot;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.FieldValue;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.QuerySnapshot;
+import com.google.cloud.firestore.SetOptions;
+import com.google.cloud.firestore.Transaction;
+import com.google.cloud.firestore.WriteBatch;
+import com.google.firebase.cloud.FirestoreClient;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+public class FirestoreExpenseStore implements ExpenseStore {
+
+    static final String COLLECTION_NAME = "expenses";
+    private static final String AMOUNT_CENTS_FIELD = "amountCents";
+    private static final int BACKFILL_PAGE_SIZE = 500;
+    // One document per (userId, month, category), keyed by MonthlyRollup.key
+    private static final String ROLLUPS = "expenseRollups";
+    // Soft-deleted expenses moved out of the live collection, same ids and fields
+    static final String ARCHIVE = "expensesArchive";
+    private static final String SUM_CENTS_FIELD = "sumCents";
+    private static final String COUNT_FIELD = "count";
+    // Amounts with more than two decimals predate the cents fields. They have no
+    // amountCents, so totals add them up client-side, and rollups only count
+    // them here and are summed from their expenses when read
+    private static final String SUB_CENT_COUNT_FIELD = "subCentCount";
+    // A batch holds at most 500 writes; each expense adds at most one rollup write
+    private static final int MAX_BATCH_EXPENSES = 250;
+
+    // Totals via sum() aggregation over amountCents instead of downloading the
+    // matching expenses, once backfillAggregateFields() has completed: the
+    // aggregation skips documents without amountCents or deletedAt
+    private final boolean aggregateTotals;
+    private final MigrationMarker aggregateFieldsBackfilled = new MigrationMarker("expenseAggregateFields");
+    // Maintain monthly rollups in the same transaction as each expense write and,
+    // once rebuildRollups() has completed, answer whole months of a range total
+    // from them. Before that they miss older expenses and are not read.
+    private final boolean rollups;
+    private final MigrationMarker rollupsRebuilt = new MigrationMarker("expenseRollups");
+
+    public FirestoreExpenseStore() {
+        this(true);
+    }
+
+    public FirestoreExpenseStore(boolean aggregateTotals) {
+        this(aggregateTotals, true);
+    }
+
+    public FirestoreExpenseStore(boolean aggregateTotals, boolean rollups) {
+        this.aggregateTotals = aggregateTotals;
+        this.rollups = rollups;
+    }
+
+    @Override
+    public void save(Expense expense) throws ExecutionException, InterruptedException {
+        Firestore db = FirestoreClient.getFirestore();
+        if (rollups) {
+            saveWithRollups(db, expense).get();
+            return;
+        }
+        db.collection(COLLECTION_NAME)
+          .document(expense.getId())
+          .set(expense)
+          .get();
+    }
+
+    @Override
+    public Optional<Expense> findById(String id) throws ExecutionException, InterruptedException {
+        Firestore db = FirestoreClient.getFirestore();
+        return Optional.ofNullable(toExpense(db.collection(COLLECTION_NAME).document(id).get().get()));
+    }
+
+    @Override
+    public List<Expense> findByUserId(String userId) throws ExecutionException, InterruptedException {
+        Firestore db = FirestoreClient.getFirestore();
+        List<QueryDocumentSnapshot> docs = db.collection(COLLECTION_NAME)
+                .whereEqualTo("userId", userId)
+                .whereEqualTo("deletedAt", null)
+                .get()
+                .get()
+                .getDocuments();
+        return toExpenses(docs);
+    }
+
+    @Override
+    public List<Expense> findPageByUserId(String userId, PageCursor after, int limit)
+            throws ExecutionException, InterruptedException {
+        Firestore db = FirestoreClient.getFirestore();
+        // Needs the composite index userId ASC, deletedAt ASC, date ASC, __name__ ASC
+        Query q = db.collection(COLLECTION_NAME)
+                .whereEqualTo("userId", userId)
+                .whereEqualTo("deletedAt", null)
+                .orderBy("date")
+                .orderBy(FieldPath.documentId())
+                .limit(limit);
+        if (after != null) {
+            q = q.startAfter(after.date(), after.id());
+        }
+        return toExpenses(q.get().get().getDocuments());
+    }
+
+    @Override
+    public List<Expense> findAll() throws ExecutionException, InterruptedException {
+        Firestore db = FirestoreClient.getFirestore();
+        List<QueryDocumentSnapshot> docs = db.collection(COLLECTION_NAME)
+                .whereEqualTo("deletedAt", null)
+                .get()
+                .get()
+                .getDocuments();
+        return toExpenses(docs);
+    }
+
+    @Override
+    public List<Expense> findByUserIdAndDateRange(String userId, Timestamp startDate, Timestamp endDate)
+            throws ExecutionException, InterruptedException {
+        Firestore db = FirestoreClient.getFirestore();
+        Query q = db.collection(COLLECTION_NAME)
+                .whereEqualTo("userId", userId)
+                .whereEqualTo("deletedAt", null)
+                .whereGreaterThanOrEqualTo("date", startDate)
+                .whereLessThanOrEqualTo("date", endDate);
+        return toExpenses(q.get().get().getDocuments());
+    }
+
+    @Override
+    public List<Expense> findByGoalId(String goalId) throws ExecutionException, InterruptedException {
+        Firestore db = FirestoreClient.getFirestore();
+        List<QueryDocumentSnapshot> docs = db.collection(COLLECTION_NAME)
+                .whereEqualTo("goalId", goalId)
+                .get()
+                .get()
+                .getDocuments();
+        return toLiveExpenses(docs);
+    }
+
+    @Override
+    public List<Expense> findByGoalIdAndDateRange(String goalId, Timestamp startDate, Timestamp endDate)
+            throws ExecutionException, InterruptedException {
+        try {
+            Firestore db = FirestoreClient.getFirestore();
+            Query q = db.collection(COLLECTION_NAME)
+                    .whereEqualTo("goalId", goalId)
+                    .whereGreaterThanOrEqualTo("date", startDate)
+                    .whereLessThanOrEqualTo("date", endDate);
+            return toLiveExpenses(q.get().get().getDocuments());
+        } catch (Exception e) {
+            // Missing composite index: filter the goal's expenses client-side instead
+            if (e.getCause() instanceof FailedPreconditionException || e instanceof FailedPreconditionException) {
+                List<Expense> allByGoal = findByGoalId(goalId);
+                return allByGoal.stream()
+                        .filter(ex -> ex.getDate() != null
+                                && ex.getDate().compareTo(startDate) >= 0
+                                && ex.getDate().compareTo(endDate) <= 0)
+                        .collect(Collectors.toList());
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void update(String id, Map<String, Object> updates) throws ExecutionException, InterruptedException {
+        Firestore db = FirestoreClient.getFirestore();
+        if (rollups) {
+            updateWithRollups(db, id, updates).get();
+            return;
+        }
+        db.collection(COLLECTION_NAME)
+          .document(id)
+          .update(withAmountCents(updates))
+          .get();
+    }
+
+    /**
+     * Commits the deletes in write batches of up to {@value #MAX_BATCH_EXPENSES},
+     * each taking the expenses out of their rollups. The rollup decrements come
+     * from the expenses as passed in, so they must not have changed since they
+     * were read.
+     */
+    @Override
+    public void softDeleteAll(List<Expense> expenses, Timestamp deletedAt) throws ExecutionException, InterruptedException {
+        Firestore db = FirestoreClient.getFirestore();
+        List<ApiFuture<?>> commits = new ArrayList<>();
+        for (int from = 0; from < expenses.size(); from += MAX_BATCH_EXPENSES) {
+            List<Expense> chunk = expenses.subList(from, Math.min(from + MAX_BATCH_EXPENSES, expenses.size()));
+            WriteBatch batch = db.batch();
+            for (Expense expense : chunk) {
+                Map<String, Object> fields = new HashMap<>();
+                fields.put("deletedAt", deletedAt);
+                fields.put("updatedAt", deletedAt);
+                batch.update(db.collection(COLLECTION_NAME).document(expense.getId()), fields);
+            }
+            if (rollups) {
+                for (RollupTally t : RollupTally.of(chunk, List.of()).values()) {
+                    batch.set(db.collection(ROLLUPS).document(t.key()), t.increments(), SetOptions.merge());
+                }
+            }
+            commits.add(batch.commit());
+        }
+        for (ApiFuture<?> commit : commits) {
+            commit.get();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> saveAsync(Expense expense) {
+        Firestore db = FirestoreClient.getFirestore();
+        if (rollups) {
+            return FirestoreFutures.toCompletable(saveWithRollups(db, expense));
+        }
+        return FirestoreFutures.toCompletable(db.collection(COLLECTION_NAME).document(expense.getId()).set(expense))
+                .thenApply(r -> null);
+    }
+
+    @Override
+    public CompletableFuture<Optional<Expense>> findByIdAsync(String id) {
+        Firestore db = FirestoreClient.getFirestore();
+        return FirestoreFutures.toCompletable(db.collection(COLLECTION_NAME).document(id).get())
+                .thenApply(d -> Optional.ofNullable(toExpense(d)));
+    }
+
+    @Override
+    public CompletableFuture<List<Expense>> findByUserIdAsync(String userId) {
+        Firestore db = FirestoreClient.getFirestore();
+        Query q = db.collection(COLLECTION_NAME)
+                .whereEqualTo("userId", userId)
+                .whereEqualTo("deletedAt", null);
+        return FirestoreFutures.toCompletable(q.get()).thenApply(snap -> toExpenses(snap.getDocuments()));
+    }
+
+    @Override
+    public CompletableFuture<List<Expense>> findByUserIdAndDateRangeAsync(String userId, Timestamp startDate, Timestamp endDate) {
+        Firestore db = FirestoreClient.getFirestore();
+        Query q = db.collection(COLLECTION_NAME)
+                .whereEqualTo("userId", userId)
+                .whereEqualTo("deletedAt", null)
+                .whereGreaterThanOrEqualTo("date", startDate)
+                .whereLessThanOrEqualTo("date", endDate);
+        return FirestoreFutures.toCompletable(q.get()).thenApply(snap -> toExpenses(snap.getDocuments()));
+    }
+
+    @Override
+    public CompletableFuture<Void> updateAsync(String id, Map<String, Object> updates) {
+        Firestore db = FirestoreClient.getFirestore();
+        if (rollups) {
+            return FirestoreFutures.toCompletable(updateWithRollups(db, id, updates));
+        }
+        return FirestoreFutures.toCompletable(db.collection(COLLECTION_NAME).document(id).update(withAmountCents(updates)))
+                .thenApply(r -> null);
+    }
+
+    /**
+     * Commits the expenses in write batches of up to {@value #MAX_BATCH_EXPENSES},
+     * each together with its rollup increments. Expenses are created rather
+     * than set, so an id that already exists fails its batch instead of
+     * counting twice in the rollups.
+     */
+    @Override
+    public CompletableFuture<Void> saveAllAsync(List<Expense> expenses) {
+        Firestore db = FirestoreClient.getFirestore();
+        List<CompletableFuture<?>> commits = new ArrayList<>();
+        for (int from = 0; from < expenses.size(); from += MAX_BATCH_EXPENSES) {
+            List<Expense> chunk = expenses.subList(from, Math.min(from + MAX_BATCH_EXPENSES, expenses.size()));
+            WriteBatch batch = db.batch();
+            for (Expense expense : chunk) {
+                batch.create(db.collection(COLLECTION_NAME).document(expense.getId()), expense);
+            }
+            if (rollups) {
+                for (RollupTally t : RollupTally.of(List.of(), chunk).values()) {
+                    batch.set(db.collection(ROLLUPS).document(t.key()), t.increments(), SetOptions.merge());
+                }
+            }
+            commits.add(FirestoreFutures.toCompletable(batch.commit()));
+        }
+        return CompletableFuture.allOf(commits.toArray(CompletableFuture[]::new));
+    }
+
+    @Override
+    public BigDecimal sumAmountByUserIdAndDateRange(String userId, Timestamp startDate, Timestamp endDate)
+            throws ExecutionException, InterruptedException {
+        return sumByUserId(userId, null, startDate, endDate);
+    }
+
+    @Override
+    public BigDecimal sumAmountByUserIdCategoryAndDateRange(String userId, String category, Timestamp startDate, Timestamp endDate)
+            throws ExecutionException, InterruptedException {
+        // Categories are stored as enum names
+        String stored = ExpenseCategory.isValid(category)
+                ? ExpenseCategory.from(category).name()
+                : category.trim().toUpperCase(Locale.ROOT);
+        return sumByUserId(userId, stored, startDate, endDate);
+    }
+
+    // Whole months inside the range are read from the rollups and only the
+    // partial months at either edge are summed from the expenses
+    private BigDecimal sumByUserId(String userId, String category, Timestamp startDate, Timestamp endDate)
+            throws ExecutionException, InterruptedException {
+        if (!rollups || startDate == null || endDate == null || !rollupsRebuilt.isDone()) {
+            return sumExpenses(userId, category, startDate, endDate);
+        }
+        String first = MonthlyRollup.monthOf(startDate);
+        if (startDate.compareTo(MonthlyRollup.startOf(first)) > 0) {
+            first = MonthlyRollup.nextMonth(first);
+        }
+        String last = MonthlyRollup.monthOf(endDate);
+        if (endDate.compareTo(MonthlyRollup.endOf(last)) < 0) {
+            last = MonthlyRollup.previousMonth(last);
+        }
+        if (first.compareTo(last) > 0) {
+            return sumExpenses(userId, category, startDate, endDate);
+        }
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (MonthlyRollup r : findRollups(userId, first, last)) {
+            if (category == null || category.equals(r.category())) {
+                total = total.add(r.sum());
+            }
+        }
+        if (startDate.compareTo(MonthlyRollup.startOf(first)) < 0) {
+            total = total.add(sumExpenses(userId, category, startDate, MonthlyRollup.endOf(MonthlyRollup.previousMonth(first))));
+        }
+        if (endDate.compareTo(MonthlyRollup.endOf(last)) > 0) {
+            total = total.add(sumExpenses(userId, category, MonthlyRollup.startOf(MonthlyRollup.nextMonth(last)), endDate));
+        }
+        return total;
+    }
+
+    private BigDecimal sumExpenses(String userId, String category, Timestamp startDate, Timestamp endDate)
+            throws ExecutionException, InterruptedException {
+        if (aggregateTotals && aggregateFieldsBackfilled.isDone()) {
+            Firestore db = FirestoreClient.getFirestore();
+            Query q = db.collection(COLLECTION_NAME).whereEqualTo("userId", userId);
+            if (category != null) {
+                q = q.whereEqualTo("category", category);
+            }
+            BigDecimal total = sumCents(q
+                    .whereEqualTo("deletedAt", null)
+                    .whereGreaterThanOrEqualTo("date", startDate)
+                    .whereLessThanOrEqualTo("date", endDate));
+            if (total != null) return total;
+        }
+        return category == null
+                ? ExpenseStore.super.sumAmountByUserIdAndDateRange(userId, startDate, endDate)
+                : ExpenseStore.super.sumAmountByUserIdCategoryAndDateRange(userId, category, startDate, endDate);
+    }
+
+    @Override
+    public BigDecimal sumAmountByGoalId(String goalId, Timestamp startDate, Timestamp endDate)
+            throws ExecutionException, InterruptedException {
+        if (aggregateTotals && aggregateFieldsBackfilled.isDone()) {
+            Firestore db = FirestoreClient.getFirestore();
+            Query q = db.collection(COLLECTION_NAME)
+                    .whereEqualTo("goalId", goalId)
+                    .whereEqualTo("deletedAt", null);
+            if (startDate != null && endDate != null) {
+                q = q.whereGreaterThanOrEqualTo("date", startDate).whereLessThanOrEqualTo("date", endDate);
+            }
+            BigDecimal total = sumCents(q);
+            if (total != null) return total;
+        }
+        return ExpenseStore.super.sumAmountByGoalId(goalId, startDate, endDate);
+    }
+
+    /**
+     * Sets amountCents on every expense and an explicit null deletedAt where
+     * the field is missing, so the aggregate queries above see every live
+     * expense, then records that it has so they start being used. Safe to
+     * run repeatedly.
+     */
+    @Override
+    public int backfillAggregateFields() throws ExecutionException, InterruptedException {
+        Firestore db = FirestoreClient.getFirestore();
+        int updated = 0;
+        String lastId = null;
+        while (true) {
+            Query q = db.collection(COLLECTION_NAME).orderBy(FieldPath.documentId()).limit(BACKFILL_PAGE_SIZE);
+            if (lastId != null) {
+                q = q.startAfter(lastId);
+            }
+            List<QueryDocumentSnapshot> docs = q.get().get().getDocuments();
+            if (docs.isEmpty()) {
+                aggregateFieldsBackfilled.markDone();
+                return updated;
+            }
+            WriteBatch batch = db.batch();
+            int inBatch = 0;
+            for (QueryDocumentSnapshot d : docs) {
+                Map<String, Object> fields = new HashMap<>();
+                Expense exp = toExpense(d);
+                if (exp != null) {
+                    Long cents = exp.getAmountCents();
+                    Object stored = d.get(AMOUNT_CENTS_FIELD);
+                    // Sub-cent amounts get an explicit null, which the totals look for
+                    if (!d.contains(AMOUNT_CENTS_FIELD) || !Objects.equals(stored instanceof Number n ? n.longValue() : stored, cents)) {
+                        fields.put(AMOUNT_CENTS_FIELD, cents);
+                    }
+                }
+                if (!d.contains("deletedAt")) {
+                    fields.put("deletedAt", null);
+                }
+                if (!fields.isEmpty()) {
+                    batch.update(d.getReference(), fields);
+                    inBatch++;
+                }
+            }
+            if (inBatch > 0) {
+                batch.commit().get();
+                updated += inBatch;
+            }
+            lastId = docs.get(docs.size() - 1).getId();
+        }
+    }
+
+    @Override
+    public long countByUserId(String userId) throws ExecutionException, InterruptedException {
+        Firestore db = FirestoreClient.getFirestore();
+        return db.collection(COLLECTION_NAME)
+                .whereEqualTo("userId", userId)
+                .whereEqualTo("deletedAt", null)
+                .count().get().get().getCount();
+    }
+
+    @Override
+    public List<Expense> findDeletedBefore(Timestamp cutoff, int limit) throws ExecutionException, InterruptedException {
+        Firestore db = FirestoreClient.getFirestore();
+        List<Expense> list = new ArrayList<>();
+        for (QueryDocumentSnapshot d : db.collection(COLLECTION_NAME)
+                .whereLessThan("deletedAt", cutoff)
+                .orderBy("deletedAt")
+                .limit(limit)
+                .get().get().getDocuments()) {
+            Expense exp = toExpense(d);
+            if (exp != null) {
+                list.add(exp);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Copies each expense into the archive collection and deletes it from the
+     * live one in the same batch. Deleted expenses are already out of the
+     * rollups, so those stay as they are.
+     */
+    @Override
+    public void archive(List<Expense> deleted) throws ExecutionException, InterruptedException {
+        Firestore db = FirestoreClient.getFirestore();
+        List<ApiFuture<?>> commits = new ArrayList<>();
+        for (int from = 0; from < deleted.size(); from += MAX_BATCH_EXPENSES) {
+            WriteBatch batch = db.batch();
+            for (Expense expense : deleted.subList(from, Math.min(from + MAX_BATCH_EXPENSES, deleted.size()))) {
+                batch.set(db.collection(ARCHIVE).document(expense.getId()), expense);
+                batch.delete(db.collection(COLLECTION_NAME).document(expense.getId()));
+            }
+            commits.add(batch.commit());
+        }
+        for (ApiFuture<?> commit : commits) {
+            commit.get();
+        }
+    }
+
+    @Override
+    public List<MonthlyRollup> findRollups(String userId, String fromMonth, String toMonth)
+            throws ExecutionException, InterruptedException {
+        if (!rollups || !rollupsRebuilt.isDone()) {
+            return ExpenseStore.super.findRollups(userId, fromMonth, toMonth);
+        }
+        Firestore db = FirestoreClient.getFirestore();
+        // Needs the composite index userId ASC, month ASC
+        Query q = db.collection(ROLLUPS).whereEqualTo("userId", userId);
+        if (fromMonth != null) {
+            q = q.whereGreaterThanOrEqualTo("month", fromMonth);
+        }
+        if (toMonth != null) {
+            q = q.whereLessThanOrEqualTo("month", toMonth);
+        }
+        List<MonthlyRollup> list = new ArrayList<>();
+        Map<String, List<MonthlyRollup>> summedMonths = new HashMap<>();
+        for (QueryDocumentSnapshot d : q.orderBy("month").get().get().getDocuments()) {
+            Long cents = d.getLong(SUM_CENTS_FIELD);
+            Long count = d.getLong(COUNT_FIELD);
+            Long subCent = d.getLong(SUB_CENT_COUNT_FIELD);
+            if (count == null || count <= 0) {
+                continue;
+            }
+            if (subCent != null && subCent > 0) {
+                list.add(summedFromExpenses(userId, d.getString("month"), d.getString("category"), summedMonths));
+            } else {
+                list.add(new MonthlyRollup(userId, d.getString("month"), d.getString("category"),
+                        BigDecimal.valueOf(cents != null ? cents : 0, 2), count));
+            }
+        }
+        return list;
+    }
+
+    private MonthlyRollup summedFromExpenses(String userId, String month, String category,
+                                             Map<String, List<MonthlyRollup>> summedMonths)
+            throws ExecutionException, InterruptedException {
+        List<MonthlyRollup> monthRollups = summedMonths.get(month);
+        if (monthRollups == null) {
+            monthRollups = MonthlyRollup.of(findByUserIdAndDateRange(userId, MonthlyRollup.startOf(month), MonthlyRollup.endOf(month)));
+            summedMonths.put(month, monthRollups);
+        }
+        return monthRollups.stream()
+                .filter(r -> r.category().equals(category))
+                .findFirst()
+                .orElse(new MonthlyRollup(userId, month, category, BigDecimal.ZERO, 0));
+    }
+
+    /**
+     * Recomputes every rollup from the live expenses and deletes rollups
+     * nothing falls into any more. Each user's month is rebuilt in its own
+     * transaction that reads that month's expenses and rollups, so a write
+     * landing meanwhile makes the transaction retry instead of being
+     * overwritten. Rollups are read only after this has completed once.
+     * Returns the number of rollups written.
+     */
+    @Override
+    public int rebuildRollups() throws ExecutionException, InterruptedException {
+        Firestore db = FirestoreClient.getFirestore();
+        // Every (user, month) with an expense or a rollup document; only the
+        // keys are collected here, the totals come from the transactions
+        Set<UserMonth> months = new LinkedHashSet<>();
+        String lastId = null;
+        while (true) {
+            Query q = db.collection(COLLECTION_NAME).orderBy(FieldPath.documentId()).limit(BACKFILL_PAGE_SIZE);
+            if (lastId != null) {
+                q = q.startAfter(lastId);
+            }
+            List<QueryDocumentSnapshot> docs = q.get().get().getDocuments();
+            if (docs.isEmpty()) {
+                break;
+            }
+            for (QueryDocumentSnapshot d : docs) {
+                Expense exp = toExpense(d);
+                if (exp != null && exp.getUserId() != null && exp.getDate() != null) {
+                    months.add(new UserMonth(exp.getUserId(), MonthlyRollup.monthOf(exp.getDate())));
+                }
+            }
+            lastId = docs.get(docs.size() - 1).getId();
+        }
+        for (QueryDocumentSnapshot d : db.collection(ROLLUPS).get().get().getDocuments()) {
+            if (d.getString("userId") != null && d.getString("month") != null) {
+                months.add(new UserMonth(d.getString("userId"), d.getString("month")));
+            }
+        }
+
+        int written = 0;
+        for (UserMonth m : months) {
+            written += db.runTransaction(tx -> rebuildMonth(db, tx, m)).get();
+        }
+        rollupsRebuilt.markDone();
+        return written;
+    }
+
+    private record UserMonth(String userId, String month) {}
+
+    // Needs the composite index userId ASC, date ASC; expenses without a
+    // deletedAt field are live too, so that isn't filtered on
+    private static int rebuildMonth(Firestore db, Transaction tx, UserMonth m) throws ExecutionException, InterruptedException {
+        Query expenses = db.collection(COLLECTION_NAME)
+                .whereEqualTo("userId", m.userId())
+                .whereGreaterThanOrEqualTo("date", MonthlyRollup.startOf(m.month()))
+                .whereLessThanOrEqualTo("date", MonthlyRollup.endOf(m.month()));
+        Query stored = db.collection(ROLLUPS)
+                .whereEqualTo("userId", m.userId())
+                .whereEqualTo("month", m.month());
+        ApiFuture<QuerySnapshot> expenseDocs = tx.get(expenses);
+        ApiFuture<QuerySnapshot> rollupDocs = tx.get(stored);
+        Map<String, RollupTally> rebuilt = RollupTally.of(List.of(), toExpenses(expenseDocs.get().getDocuments()));
+        for (QueryDocumentSnapshot d : rollupDocs.get().getDocuments()) {
+            if (!rebuilt.containsKey(d.getId())) {
+                tx.delete(d.getReference());
+            }
+        }
+        for (RollupTally t : rebuilt.values()) {
+            tx.set(db.collection(ROLLUPS).document(t.key()), t.values());
+        }
+        return rebuilt.size();
+    }
+
+    // The expense and its rollups change in one transaction; reading the old
+    // version first tells which rollups it has to leave
+    private static ApiFuture<Void> saveWithRollups(Firestore db, Expense expense) {
+        DocumentReference ref = db.collection(COLLECTION_NAME).document(expense.getId());
+        return db.runTransaction(tx -> {
+            Expense before = toExpense(tx.get(ref).get());
+            tx.set(ref, expense);
+            adjustRollups(db, tx, before, expense);
+            return null;
+        });
+    }
+
+    private static ApiFuture<Void> updateWithRollups(Firestore db, String id, Map<String, Object> updates) {
+        DocumentReference ref = db.collection(COLLECTION_NAME).document(id);
+        return db.runTransaction(tx -> {
+            Expense before = toExpense(tx.get(ref).get());
+            // A missing expense fails the update itself at commit
+            tx.update(ref, withAmountCents(updates));
+            if (before != null) {
+                Expense after = Entities.copy(before);
+                Entities.apply(after, updates);
+                adjustRollups(db, tx, before, after);
+            }
+            return null;
+        });
+    }
+
+    private static void adjustRollups(Firestore db, Transaction tx, Expense before, Expense after) {
+        List<Expense> removed = before != null ? List.of(before) : List.of();
+        for (RollupTally t : RollupTally.of(removed, List.of(after)).values()) {
+            tx.set(db.collection(ROLLUPS).document(t.key()), t.increments(), SetOptions.merge());
+        }
+    }
+
+    /** What a set of expense writes adds to each rollup document, in stored units. */
+    private record RollupTally(String userId, String month, String category, long cents, long count, long subCent) {
+
+        // Rollups nothing changes in are left out
+        static Map<String, RollupTally> of(List<Expense> removed, List<Expense> added) {
+            Map<String, RollupTally> tallies = new HashMap<>();
+            removed.forEach(e -> add(tallies, e, -1));
+            added.forEach(e -> add(tallies, e, 1));
+            tallies.values().removeIf(t -> t.cents == 0 && t.count == 0 && t.subCent == 0);
+            return tallies;
+        }
+
+        private static void add(Map<String, RollupTally> tallies, Expense e, int sign) {
+            if (e.getDeletedAt() != null || e.getDate() == null || e.getAmount() == null) {
+                return;
+            }
+            Long cents = e.getAmountCents();
+            RollupTally one = new RollupTally(e.getUserId(), MonthlyRollup.monthOf(e.getDate()), e.getCategory(),
+                    cents != null ? sign * cents : 0, sign, cents != null ? 0 : sign);
+            tallies.merge(one.key(), one, RollupTally::plus);
+        }
+
+        String key() {
+            return MonthlyRollup.key(userId, month, category);
+        }
+
+        RollupTally plus(RollupTally other) {
+            return new RollupTally(userId, month, category, cents + other.cents, count + other.count, subCent + other.subCent);
+        }
+
+        // Merged into the rollup document, so concurrent writers add up
+        Map<String, Object> increments() {
+            Map<String, Object> fields = labels();
+            fields.put(SUM_CENTS_FIELD, FieldValue.increment(cents));
+            fields.put(COUNT_FIELD, FieldValue.increment(count));
+            fields.put(SUB_CENT_COUNT_FIELD, FieldValue.increment(subCent));
+            return fields;
+        }
+
+        Map<String, Object> values() {
+            Map<String, Object> fields = labels();
+            fields.put(SUM_CENTS_FIELD, cents);
+            fields.put(COUNT_FIELD, count);
+            fields.put(SUB_CENT_COUNT_FIELD, subCent);
+            return fields;
+        }
+
+        private Map<String, Object> labels() {
+            Map<String, Object> fields = new HashMap<>();
+            fields.put("userId", userId);
+            fields.put("month", month);
+            fields.put("category", category);
+            return fields;
+        }
+    }
+
+    static Expense toExpense(DocumentSnapshot d) {
+        return DocumentMappers.expense(d);
+    }
+
+    /**
+     * Sums amountCents server-side and adds the few expenses without it
+     * (sub-cent amounts, stored with a null amountCents) client-side. Returns
+     * null when the total can't be trusted as an exact integer (an
+     * overflowing sum comes back as a double) or a composite index is
+     * missing; callers then add up all the expenses client-side. The indexes
+     * for both queries are in firestore.indexes.json.
+     */
+    private static BigDecimal sumCents(Query q) throws ExecutionException, InterruptedException {
+        AggregateField sum = AggregateField.sum(AMOUNT_CENTS_FIELD);
+        try {
+            ApiFuture<AggregateQuerySnapshot> aggregate = q.aggregate(sum).get();
+            ApiFuture<QuerySnapshot> subCent = q.whereEqualTo(AMOUNT_CENTS_FIELD, null).get();
+            Object cents = aggregate.get().get(sum);
+            BigDecimal total;
+            if (cents == null) {
+                total = BigDecimal.ZERO;
+            } else if (cents instanceof Long l) {
+                total = BigDecimal.valueOf(l, 2);
+            } else {
+                return null;
+            }
+            for (Expense e : toExpenses(subCent.get().getDocuments())) {
+                if (e.getAmount() != null) {
+                    total = total.add(e.getAmount());
+                }
+            }
+            return total;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof FailedPreconditionException) {
+                System.err.println("Missing index for expense total, summing client-side: " + e.getCause().getMessage());
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    private static Map<String, Object> withAmountCents(Map<String, Object> updates) {
+        if (!updates.containsKey("amount")) {
+            return updates;
+        }
+        Map<String, Object> withCents = new HashMap<>(updates);
+        withCents.put(AMOUNT_CENTS_FIELD, Expense.toCents((BigDecimal) updates.get("amount")));
+        return withCents;
+    }
+
+    private static List<Expense> toExpenses(List<QueryDocumentSnapshot> docs) {
+        List<Expense> list = new ArrayList<>();
+        for (QueryDocumentSnapshot d : docs) {
+            Expense exp = toExpense(d);
+            if (exp != null) {
+                list.add(exp);
+            }
+        }
+        return list;
+    }
+
+    // Goal queries don't filter on deletedAt, so goal-linked expenses that
+    // predate the field are still found
+    private static List<Expense> toLiveExpenses(List<QueryDocumentSnapshot> docs) {
+        List<Expense> list = new ArrayList<>();
+        for (QueryDocumentSnapshot d : docs) {
+            Expense exp = toExpense(d);
+            if (exp != null && exp.getDeletedAt() == null) {
+                list.add(exp);
+            }
+        }
+        return list;
+    }
+}
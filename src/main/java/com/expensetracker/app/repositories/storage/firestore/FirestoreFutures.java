@@ -0,0 +1,34 @@
+package com.expensetracker.app.repositories.storage.firestore;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.util.concurrent.CompletableFuture;
+
+final class FirestoreFutures {
+
+    private FirestoreFutures() {
+    }
+
+    /**
+     * Bridges a client future without blocking. Completion runs on the
+     * client's callback thread, so dependent stages must stay short.
+     */
+    static <T> CompletableFuture<T> toCompletable(ApiFuture<T> apiFuture) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        ApiFutures.addCallback(apiFuture, new ApiFutureCallback<>() {
+            @Override
+            public void onFailure(Throwable t) {
+                future.completeExceptionally(t);
+            }
+
+            @Override
+            public void onSuccess(T result) {
+                future.complete(result);
+            }
+        }, MoreExecutors.directExecutor());
+        return future;
+    }
+}
@@ -0,0 +1,461 @@
+package com.expensetracker.app.repositories.storage.firestore;
+
+import com.expensetracker.app.models.Expense;
+import com.expensetracker.app.models.Goal;
+import com.expensetracker.app.repositories.storage.Entities;
+import com.expensetracker.app.repositories.storage.GoalStore;
+import com.expensetracker.app.repositories.storage.PageCursor;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
+import com.google.api.gax.rpc.AlreadyExistsException;
+import com.google.api.gax.rpc.FailedPreconditionException;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.FieldValue;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.QuerySnapshot;
+import com.google.cloud.firestore.SetOptions;
+import com.google.cloud.firestore.WriteBatch;
+import com.google.firebase.cloud.FirestoreClient;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+/**
+ * Goal store on Firestore. A goal's {@code currentAmount} is the value on the
+ * goal document plus the cents held in its {@code progressShards}
+ * subcollection: expense writes increment a shard instead of rewriting the
+ * goal, so one busy goal isn't held to a single document's sustained write
+ * rate. Writing an absolute {@code currentAmount} stores it minus the shard
+ * totals read in the same transaction and leaves the shards alone, so a
+ * retried write re-reads them and increments committed meanwhile still
+ * count.
+ */
+public class FirestoreGoalStore implements GoalStore {
+
+    static final String COLLECTION_NAME = "goals";
+    static final String SHARDS = "progressShards";
+    // Soft-deleted goals moved out of the live collection, progress folded in
+    static final String ARCHIVE = "goalsArchive";
+    private static final String CENTS = "cents";
+    // Stamped on shards so listings can read many goals' shards in one query
+    private static final String GOAL_ID = "goalId";
+    private static final int MAX_BATCH_WRITES = 500;
+    // Values per whereIn filter
+    private static final int MAX_IN_VALUES = 30;
+    private static final int BACKFILL_PAGE_SIZE = 500;
+
+    private final AdaptiveShards shards;
+    private final MigrationMarker shardGoalIdsBackfilled = new MigrationMarker("goalProgressShards");
+
+    public FirestoreGoalStore() {
+        this(16, 1.0);
+    }
+
+    public FirestoreGoalStore(int maxShards, double writesPerShardPerSecond) {
+        this.shards = new AdaptiveShards(maxShards, writesPerShardPerSecond);
+    }
+
+    @Override
+    public void save(Goal goal) throws ExecutionException, InterruptedException {
+        Firestore db = FirestoreClient.getFirestore();
+        DocumentReference ref = db.collection(COLLECTION_NAME).document(goal.getId());
+        try {
+            // A new goal has no shards to fold in, so it's a plain write
+            ref.create(withoutShards(goal, List.of())).get();
+            return;
+        } catch (ExecutionException e) {
+            if (!(e.getCause() instanceof AlreadyExistsException)) {
+                throw e;
+            }
+        }
+        // Overwriting resets currentAmount, so the shards are read and netted out
+        db.runTransaction(tx -> {
+            tx.set(ref, withoutShards(goal, tx.get(ref.collection(SHARDS)).get().getDocuments()));
+            return null;
+        }).get();
+    }
+
+    @Override
+    public void saveAll(List<Goal> goals) throws ExecutionException, InterruptedException {
+        Firestore db = FirestoreClient.getFirestore();
+        // One transaction per chunk, each write fenced like save(); callers only
+        // pass goals whose currentAmount is being reset
+        for (int from = 0; from < goals.size(); from += MAX_BATCH_WRITES) {
+            List<Goal> chunk = goals.subList(from, Math.min(from + MAX_BATCH_WRITES, goals.size()));
+            db.runTransaction(tx -> {
+                List<ApiFuture<QuerySnapshot>> shardQueries = new ArrayList<>(chunk.size());
+                for (Goal goal : chunk) {
+                    shardQueries.add(tx.get(db.collection(COLLECTION_NAME).document(goal.getId()).collection(SHARDS)));
+                }
+                for (int i = 0; i < chunk.size(); i++) {
+                    Goal goal = chunk.get(i);
+                    tx.set(db.collection(COLLECTION_NAME).document(goal.getId()),
+                            withoutShards(goal, shardQueries.get(i).get().getDocuments()));
+                }
+                return null;
+            }).get();
+        }
+    }
+
+    @Override
+    public Optional<Goal> findById(String id) throws ExecutionException, InterruptedException {
+        Firestore db = FirestoreClient.getFirestore();
+        DocumentReference ref = db.collection(COLLECTION_NAME).document(id);
+        ApiFuture<DocumentSnapshot> doc = ref.get();
+        ApiFuture<QuerySnapshot> shardDocs = ref.collection(SHARDS).get();
+        return Optional.ofNullable(toGoal(doc.get(), shardDocs.get().getDocuments()));
+    }
+
+    @Override
+    public List<Goal> findByUserId(String userId) throws ExecutionException, InterruptedException {
+        Firestore db = FirestoreClient.getFirestore();
+        List<QueryDocumentSnapshot> docs = db.collection(COLLECTION_NAME)
+                .whereEqualTo("userId", userId)
+                .whereEqualTo("deletedAt", null)
+                .get().get().getDocuments();
+        return withProgress(docs);
+    }
+
+    @Override
+    public List<Goal> findOpenByUserIdAt(String userId, Timestamp date) throws ExecutionException, InterruptedException {
+        Firestore db = FirestoreClient.getFirestore();
+        try {
+            // Needs the composite index userId ASC, deletedAt ASC, endDate ASC
+            List<QueryDocumentSnapshot> docs = db.collection(COLLECTION_NAME)
+                    .whereEqualTo("userId", userId)
+                    .whereEqualTo("deletedAt", null)
+                    .whereGreaterThanOrEqualTo("endDate", date)
+                    .get().get().getDocuments();
+            return withProgress(docs);
+        } catch (ExecutionException e) {
+            // Missing composite index: filter the user's goals client-side instead
+            if (e.getCause() instanceof FailedPreconditionException) {
+                System.err.println("Missing index for open goals, filtering client-side: " + e.getCause().getMessage());
+                return findByUserId(userId).stream()
+                        .filter(g -> g.getEndDate() != null && g.getEndDate().compareTo(date) >= 0)
+                        .toList();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public List<Goal> findPageByUserId(String userId, PageCursor after, int limit)
+            throws ExecutionException, InterruptedException {
+        Firestore db = FirestoreClient.getFirestore();
+        // Needs the composite index userId ASC, deletedAt ASC, startDate ASC, __name__ ASC
+        Query q = db.collection(COLLECTION_NAME)
+                .whereEqualTo("userId", userId)
+                .whereEqualTo("deletedAt", null)
+                .orderBy("startDate")
+                .orderBy(FieldPath.documentId())
+                .limit(limit);
+        if (after != null) {
+            q = q.startAfter(after.date(), after.id());
+        }
+        return withProgress(q.get().get().getDocuments());
+    }
+
+    @Override
+    public List<Goal> findPage(PageCursor after, int limit) throws ExecutionException, InterruptedException {
+        Firestore db = FirestoreClient.getFirestore();
+        // Needs the composite index deletedAt ASC, startDate ASC, __name__ ASC
+        Query q = db.collection(COLLECTION_NAME)
+                .whereEqualTo("deletedAt", null)
+                .orderBy("startDate")
+                .orderBy(FieldPath.documentId())
+                .limit(limit);
+        if (after != null) {
+            q = q.startAfter(after.date(), after.id());
+        }
+        return withProgress(q.get().get().getDocuments());
+    }
+
+    @Override
+    public List<Goal> findAll() throws ExecutionException, InterruptedException {
+        Firestore db = FirestoreClient.getFirestore();
+        List<QueryDocumentSnapshot> docs = db.collection(COLLECTION_NAME)
+                .whereEqualTo("deletedAt", null)
+                .get().get().getDocuments();
+        return withProgress(docs);
+    }
+
+    @Override
+    public void softDeleteAll(List<Goal> goals, Timestamp deletedAt) throws ExecutionException, InterruptedException {
+        Firestore db = FirestoreClient.getFirestore();
+        List<ApiFuture<?>> commits = new ArrayList<>();
+        for (int from = 0; from < goals.size(); from += MAX_BATCH_WRITES) {
+            WriteBatch batch = db.batch();
+            for (Goal goal : goals.subList(from, Math.min(from + MAX_BATCH_WRITES, goals.size()))) {
+                batch.update(db.collection(COLLECTION_NAME).document(goal.getId()), "deletedAt", deletedAt, "updatedAt", deletedAt);
+            }
+            commits.add(batch.commit());
+        }
+        for (ApiFuture<?> commit : commits) {
+            commit.get();
+        }
+    }
+
+    @Override
+    public void update(String id, Map<String, Object> updates) throws ExecutionException, InterruptedException {
+        Firestore db = FirestoreClient.getFirestore();
+        DocumentReference ref = db.collection(COLLECTION_NAME).document(id);
+        if (!updates.containsKey("currentAmount")) {
+            ref.update(updates).get();
+            return;
+        }
+        db.runTransaction(tx -> {
+            tx.update(ref, withoutShards(updates, tx.get(ref.collection(SHARDS)).get().getDocuments()));
+            return null;
+        }).get();
+    }
+
+    // Shards hold whole cents; a sub-cent delta from an older expense is added
+    // to the goal document in a transaction instead
+    @Override
+    public BigDecimal incrementProgress(String id, BigDecimal delta) throws ExecutionException, InterruptedException {
+        Long cents = Expense.toCents(delta);
+        if (cents == null) {
+            return GoalStore.super.incrementProgress(id, delta);
+        }
+        Firestore db = FirestoreClient.getFirestore();
+        String shard = Integer.toString(shards.next(id));
+        db.collection(COLLECTION_NAME).document(id).collection(SHARDS).document(shard)
+                .set(Map.of(CENTS, FieldValue.increment(cents), GOAL_ID, id), SetOptions.merge())
+                .get();
+        // A blind increment: whether the goal still exists isn't read here
+        return delta;
+    }
+
+    @Override
+    public void compute(String id, Function<Goal, Map<String, Object>> change)
+            throws ExecutionException, InterruptedException {
+        Firestore db = FirestoreClient.getFirestore();
+        DocumentReference ref = db.collection(COLLECTION_NAME).document(id);
+        // The transaction retries on contention, re-reading the goal each time
+        db.runTransaction(tx -> {
+            List<QueryDocumentSnapshot> shardDocs = tx.get(ref.collection(SHARDS)).get().getDocuments();
+            Goal goal = toGoal(tx.get(ref).get(), shardDocs);
+            if (goal == null) {
+                return null;
+            }
+            Map<String, Object> updates = change.apply(goal);
+            if (updates != null && !updates.isEmpty()) {
+                tx.update(ref, withoutShards(updates, shardDocs));
+            }
+            return null;
+        }).get();
+    }
+
+    @Override
+    public CompletableFuture<Optional<Goal>> findByIdAsync(String id) {
+        Firestore db = FirestoreClient.getFirestore();
+        DocumentReference ref = db.collection(COLLECTION_NAME).document(id);
+        return FirestoreFutures.toCompletable(ref.get())
+                .thenCombine(FirestoreFutures.toCompletable(ref.collection(SHARDS).get()),
+                        (doc, shardDocs) -> Optional.ofNullable(toGoal(doc, shardDocs.getDocuments())));
+    }
+
+    @Override
+    public CompletableFuture<List<Goal>> findByUserIdAsync(String userId) {
+        Firestore db = FirestoreClient.getFirestore();
+        return FirestoreFutures.toCompletable(db.collection(COLLECTION_NAME)
+                        .whereEqualTo("userId", userId)
+                        .whereEqualTo("deletedAt", null)
+                        .get())
+                .thenCompose(snap -> withProgressAsync(snap.getDocuments(), shardGoalIdsBackfilled.knownDone()));
+    }
+
+    @Override
+    public long countByUserId(String userId) throws ExecutionException, InterruptedException {
+        Firestore db = FirestoreClient.getFirestore();
+        return db.collection(COLLECTION_NAME)
+                .whereEqualTo("userId", userId)
+                .whereEqualTo("deletedAt", null)
+                .count().get().get().getCount();
+    }
+
+    @Override
+    public List<Goal> findDeletedBefore(Timestamp cutoff, int limit) throws ExecutionException, InterruptedException {
+        Firestore db = FirestoreClient.getFirestore();
+        List<QueryDocumentSnapshot> docs = db.collection(COLLECTION_NAME)
+                .whereLessThan("deletedAt", cutoff)
+                .orderBy("deletedAt")
+                .limit(limit)
+                .get().get().getDocuments();
+        return withProgress(docs);
+    }
+
+    /**
+     * Writes each goal, with its shards already folded into currentAmount,
+     * to the archive collection and deletes the goal and its shards.
+     */
+    @Override
+    public void archive(List<Goal> deleted) throws ExecutionException, InterruptedException {
+        if (deleted.isEmpty()) {
+            return;
+        }
+        Firestore db = FirestoreClient.getFirestore();
+        List<ApiFuture<QuerySnapshot>> shardQueries = new ArrayList<>(deleted.size());
+        for (Goal goal : deleted) {
+            shardQueries.add(db.collection(COLLECTION_NAME).document(goal.getId()).collection(SHARDS).get());
+        }
+        List<QuerySnapshot> shardDocs = ApiFutures.allAsList(shardQueries).get();
+
+        WriteBatch batch = db.batch();
+        int writes = 0;
+        for (int i = 0; i < deleted.size(); i++) {
+            int needed = 2 + shardDocs.get(i).size();
+            if (writes > 0 && writes + needed > MAX_BATCH_WRITES) {
+                batch.commit().get();
+                batch = db.batch();
+                writes = 0;
+            }
+            Goal goal = deleted.get(i);
+            batch.set(db.collection(ARCHIVE).document(goal.getId()), goal);
+            batch.delete(db.collection(COLLECTION_NAME).document(goal.getId()));
+            for (QueryDocumentSnapshot shard : shardDocs.get(i).getDocuments()) {
+                batch.delete(shard.getReference());
+            }
+            writes += needed;
+        }
+        batch.commit().get();
+    }
+
+    /** The shard count writes to the goal are currently spread over by this instance. */
+    public int progressShards(String goalId) {
+        return shards.shards(goalId);
+    }
+
+    /**
+     * Stamps the goal id on shards written before increments carried it and
+     * records that every shard has one, after which listings read shards
+     * with one query per {@value #MAX_IN_VALUES} goals instead of one per
+     * goal. Safe to run repeatedly.
+     */
+    @Override
+    public int backfillProgressShards() throws ExecutionException, InterruptedException {
+        Firestore db = FirestoreClient.getFirestore();
+        int updated = 0;
+        DocumentSnapshot last = null;
+        while (true) {
+            Query q = db.collectionGroup(SHARDS).orderBy(FieldPath.documentId()).limit(BACKFILL_PAGE_SIZE);
+            if (last != null) {
+                q = q.startAfter(last);
+            }
+            List<QueryDocumentSnapshot> docs = q.get().get().getDocuments();
+            if (docs.isEmpty()) {
+                shardGoalIdsBackfilled.markDone();
+                return updated;
+            }
+            WriteBatch batch = db.batch();
+            int inBatch = 0;
+            for (QueryDocumentSnapshot shard : docs) {
+                if (!shard.contains(GOAL_ID)) {
+                    batch.update(shard.getReference(), GOAL_ID, goalIdOf(shard));
+                    inBatch++;
+                }
+            }
+            if (inBatch > 0) {
+                batch.commit().get();
+                updated += inBatch;
+            }
+            last = docs.get(docs.size() - 1);
+        }
+    }
+
+    private List<Goal> withProgress(List<QueryDocumentSnapshot> docs) throws ExecutionException, InterruptedException {
+        return withProgressAsync(docs, shardGoalIdsBackfilled.isDone()).get();
+    }
+
+    // Reads the listed goals' shards concurrently: with a collection group
+    // query per MAX_IN_VALUES goals once every shard carries its goal id
+    // (needs the collection group index on progressShards.goalId), otherwise
+    // with one query per goal
+    private static CompletableFuture<List<Goal>> withProgressAsync(List<QueryDocumentSnapshot> docs, boolean grouped) {
+        Firestore db = FirestoreClient.getFirestore();
+        List<ApiFuture<QuerySnapshot>> queries = new ArrayList<>();
+        if (grouped) {
+            for (int from = 0; from < docs.size(); from += MAX_IN_VALUES) {
+                List<String> ids = docs.subList(from, Math.min(from + MAX_IN_VALUES, docs.size())).stream()
+                        .map(DocumentSnapshot::getId)
+                        .toList();
+                queries.add(db.collectionGroup(SHARDS).whereIn(GOAL_ID, ids).get());
+            }
+        } else {
+            for (QueryDocumentSnapshot d : docs) {
+                queries.add(d.getReference().collection(SHARDS).get());
+            }
+        }
+        return FirestoreFutures.toCompletable(ApiFutures.allAsList(queries)).thenApply(results -> {
+            Map<String, List<QueryDocumentSnapshot>> shardsByGoal = new HashMap<>();
+            for (QuerySnapshot result : results) {
+                for (QueryDocumentSnapshot shard : result.getDocuments()) {
+                    shardsByGoal.computeIfAbsent(goalIdOf(shard), id -> new ArrayList<>()).add(shard);
+                }
+            }
+            List<Goal> list = new ArrayList<>();
+            for (QueryDocumentSnapshot d : docs) {
+                Goal g = toGoal(d, shardsByGoal.getOrDefault(d.getId(), List.of()));
+                if (g != null) {
+                    list.add(g);
+                }
+            }
+            return list;
+        });
+    }
+
+    private static String goalIdOf(DocumentSnapshot shard) {
+        return shard.getReference().getParent().getParent().getId();
+    }
+
+    private static long shardCents(List<QueryDocumentSnapshot> shardDocs) {
+        long cents = 0;
+        for (QueryDocumentSnapshot shard : shardDocs) {
+            Long value = shard.getLong(CENTS);
+            if (value != null) {
+                cents += value;
+            }
+        }
+        return cents;
+    }
+
+    // The goal as stored: an absolute currentAmount less what the shards hold
+    private static Goal withoutShards(Goal goal, List<QueryDocumentSnapshot> shardDocs) {
+        Goal stored = Entities.copy(goal);
+        BigDecimal amount = goal.getCurrentAmount() != null ? goal.getCurrentAmount() : BigDecimal.ZERO;
+        stored.setCurrentAmount(amount.subtract(BigDecimal.valueOf(shardCents(shardDocs), 2)));
+        return stored;
+    }
+
+    private static Map<String, Object> withoutShards(Map<String, Object> updates, List<QueryDocumentSnapshot> shardDocs) {
+        if (!(updates.get("currentAmount") instanceof BigDecimal amount)) {
+            return updates;
+        }
+        Map<String, Object> stored = new HashMap<>(updates);
+        stored.put("currentAmount", amount.subtract(BigDecimal.valueOf(shardCents(shardDocs), 2)));
+        return stored;
+    }
+
+    static Goal toGoal(DocumentSnapshot doc, List<QueryDocumentSnapshot> shardDocs) {
+        Goal goal = DocumentMappers.goal(doc);
+        if (goal == null) {
+            return null;
+        }
+        BigDecimal base = goal.getCurrentAmount() != null ? goal.getCurrentAmount() : BigDecimal.ZERO;
+        goal.setCurrentAmount(base.add(BigDecimal.valueOf(shardCents(shardDocs), 2)));
+        return goal;
+    }
+}
@@ -0,0 +1,275 @@
+package com.expensetracker.app.repositories.storage.firestore;
+
+import com.expensetracker.app.exceptions.DuplicateEmailException;
+import com.expensetracker.app.models.User;
+import com.expensetracker.app.models.enums.UserRole;
+import com.expensetracker.app.repositories.UserChange;
+import com.expensetracker.app.repositories.storage.UserStore;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.Transaction;
+import com.google.firebase.cloud.FirestoreClient;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class FirestoreUserStore implements UserStore {
+
+    private static final String COLLECTION_NAME = "users";
+    private static final String DELETED_AT_FIELD = "deletedAt";
+
+    // One document per normalized email, holding the id of the user that owns it
+    private static final String EMAIL_INDEX_COLLECTION = "user_emails";
+    private static final String EMAIL_OWNER_FIELD = "userId";
+
+    @Override
+    public List<User> findAll() throws ExecutionException, InterruptedException {
+        Firestore dbFirestore = FirestoreClient.getFirestore();
+        List<User> users = new ArrayList<>();
+
+        // Only retrieve documents where deletedAt == null
+        List<QueryDocumentSnapshot> documents = dbFirestore.collection(COLLECTION_NAME)
+                .whereEqualTo(DELETED_AT_FIELD, null)
+                .get()
+                .get()
+                .getDocuments();
+
+        for (QueryDocumentSnapshot document : documents) {
+            User user = DocumentMappers.user(document);
+            if (user != null) {
+                users.add(user);
+            }
+        }
+
+        return users;
+    }
+
+    @Override
+    public List<User> findDeletionPending() throws ExecutionException, InterruptedException {
+        Firestore dbFirestore = FirestoreClient.getFirestore();
+        List<User> users = new ArrayList<>();
+        for (QueryDocumentSnapshot document : dbFirestore.collection(COLLECTION_NAME)
+                .whereEqualTo("deletionPending", true)
+                .get().get().getDocuments()) {
+            User user = DocumentMappers.user(document);
+            if (user != null) {
+                users.add(user);
+            }
+        }
+        return users;
+    }
+
+    @Override
+    public User findById(String id) throws ExecutionException, InterruptedException {
+        Firestore dbFirestore = FirestoreClient.getFirestore();
+        return DocumentMappers.user(dbFirestore.collection(COLLECTION_NAME).document(id).get().get());
+    }
+
+    @Override
+    public CompletableFuture<List<User>> findAllAsync() {
+        Firestore dbFirestore = FirestoreClient.getFirestore();
+        return FirestoreFutures.toCompletable(dbFirestore.collection(COLLECTION_NAME)
+                        .whereEqualTo(DELETED_AT_FIELD, null)
+                        .get())
+                .thenApply(snap -> {
+                    List<User> users = new ArrayList<>();
+                    for (QueryDocumentSnapshot document : snap.getDocuments()) {
+                        User user = DocumentMappers.user(document);
+                        if (user != null) {
+                            users.add(user);
+                        }
+                    }
+                    return users;
+                });
+    }
+
+    @Override
+    public CompletableFuture<User> findByIdAsync(String id) {
+        Firestore dbFirestore = FirestoreClient.getFirestore();
+        return FirestoreFutures.toCompletable(dbFirestore.collection(COLLECTION_NAME).document(id).get())
+                .thenApply(DocumentMappers::user);
+    }
+
+    @Override
+    public User findByEmail(String email) throws ExecutionException, InterruptedException {
+        Firestore dbFirestore = FirestoreClient.getFirestore();
+        DocumentReference claimRef = emailClaimRef(dbFirestore, email);
+        DocumentSnapshot claim = claimRef.get().get();
+        if (!claim.exists()) {
+            return findUnclaimedByEmail(dbFirestore, claimRef, email);
+        }
+        String userId = claim.getString(EMAIL_OWNER_FIELD);
+        if (userId == null) {
+            return null;
+        }
+        User user = findById(userId);
+        if (user == null || user.isDeleted()) {
+            return null;
+        }
+        return user;
+    }
+
+    // Users written before the email index existed have no claim: find them by
+    // the email field and claim it for them, so the next lookup is direct
+    private User findUnclaimedByEmail(Firestore dbFirestore, DocumentReference claimRef, String email)
+            throws ExecutionException, InterruptedException {
+        List<String> spellings = email.equals(UserStore.normalizeEmail(email))
+                ? List.of(email)
+                : List.of(email, UserStore.normalizeEmail(email));
+        List<User> found = new ArrayList<>();
+        for (QueryDocumentSnapshot document : dbFirestore.collection(COLLECTION_NAME)
+                .whereIn("email", spellings)
+                .whereEqualTo(DELETED_AT_FIELD, null)
+                .get()
+                .get()
+                .getDocuments()) {
+            User user = DocumentMappers.user(document);
+            if (user != null) {
+                found.add(user);
+            }
+        }
+        if (found.size() != 1) {
+            // Ambiguous until rebuildEmailIndex settles which account owns the address
+            return null;
+        }
+        User user = found.get(0);
+        String owner = dbFirestore.runTransaction(tx -> {
+            DocumentSnapshot claim = tx.get(claimRef).get();
+            if (claim.exists()) {
+                return claim.getString(EMAIL_OWNER_FIELD);
+            }
+            tx.set(claimRef, emailClaim(user.getId()));
+            return user.getId();
+        }).get();
+        if (user.getId().equals(owner)) {
+            return user;
+        }
+        // Claimed by a registration in the meantime, which now owns the address
+        User claimed = owner != null ? findById(owner) : null;
+        return claimed == null || claimed.isDeleted() ? null : claimed;
+    }
+
+    @Override
+    public void create(User user) throws ExecutionException, InterruptedException {
+        Firestore dbFirestore = FirestoreClient.getFirestore();
+        DocumentReference userRef = dbFirestore.collection(COLLECTION_NAME).document(user.getId());
+        DocumentReference claimRef = user.getEmail() != null ? emailClaimRef(dbFirestore, user.getEmail()) : null;
+
+        // Claim the email and write the user atomically so two concurrent
+        // registrations can't both pass the duplicate check
+        runUnwrapped(dbFirestore, tx -> {
+            if (claimRef != null) {
+                DocumentSnapshot claim = tx.get(claimRef).get();
+                if (claim.exists()) {
+                    throw new DuplicateEmailException("Email already exists");
+                }
+                tx.set(claimRef, emailClaim(user.getId()));
+            }
+            tx.set(userRef, user);
+            return null;
+        });
+    }
+
+    @Override
+    public UserChange update(String id, Map<String, Object> updates) throws ExecutionException, InterruptedException {
+        Firestore dbFirestore = FirestoreClient.getFirestore();
+        DocumentReference userRef = dbFirestore.collection(COLLECTION_NAME).document(id);
+        String newEmail = (String) updates.get("email");
+        UserRole newRole = (UserRole) updates.get("role");
+        boolean releaseEmail = updates.get("deletedAt") != null;
+        AtomicBoolean roleChanged = new AtomicBoolean(false);
+
+        runUnwrapped(dbFirestore, tx -> {
+            DocumentSnapshot current = tx.get(userRef).get();
+            String currentEmail = current.exists() ? current.getString("email") : null;
+            if (newRole != null) {
+                roleChanged.set(!newRole.name().equals(current.getString("role")));
+            }
+
+            DocumentReference newClaimRef = null;
+            if (newEmail != null && !releaseEmail) {
+                newClaimRef = emailClaimRef(dbFirestore, newEmail);
+                DocumentSnapshot claim = tx.get(newClaimRef).get();
+                String owner = claim.exists() ? claim.getString(EMAIL_OWNER_FIELD) : null;
+                if (owner != null && !owner.equals(id)) {
+                    throw new DuplicateEmailException("Email already exists");
+                }
+            }
+
+            DocumentReference oldClaimRef = null;
+            if (currentEmail != null) {
+                DocumentReference ref = emailClaimRef(dbFirestore, currentEmail);
+                boolean emailChanged = newClaimRef != null && !ref.getId().equals(newClaimRef.getId());
+                if (releaseEmail || emailChanged) {
+                    DocumentSnapshot claim = tx.get(ref).get();
+                    if (claim.exists() && id.equals(claim.getString(EMAIL_OWNER_FIELD))) {
+                        oldClaimRef = ref;
+                    }
+                }
+            }
+
+            // All reads must happen before the first write in a transaction
+            if (newClaimRef != null) tx.set(newClaimRef, emailClaim(id));
+            if (oldClaimRef != null) tx.delete(oldClaimRef);
+            tx.update(userRef, roleChanged.get() || releaseEmail ? UserStore.withTokensRevoked(updates) : updates);
+            return null;
+        });
+
+        return new UserChange(id, roleChanged.get(), releaseEmail);
+    }
+
+    @Override
+    public int rebuildEmailIndex() throws ExecutionException, InterruptedException {
+        Firestore dbFirestore = FirestoreClient.getFirestore();
+        int written = 0;
+        for (User user : findAll()) {
+            if (user.getEmail() == null) continue;
+            DocumentReference claimRef = emailClaimRef(dbFirestore, user.getEmail());
+            Boolean created = dbFirestore.runTransaction(tx -> {
+                DocumentSnapshot claim = tx.get(claimRef).get();
+                if (claim.exists()) return false;
+                tx.set(claimRef, emailClaim(user.getId()));
+                return true;
+            }).get();
+            if (Boolean.TRUE.equals(created)) written++;
+        }
+        return written;
+    }
+
+    private static DocumentReference emailClaimRef(Firestore db, String email) {
+        // Document ids can't contain '/', so the normalized address is URL-encoded
+        String key = URLEncoder.encode(UserStore.normalizeEmail(email), StandardCharsets.UTF_8);
+        return db.collection(EMAIL_INDEX_COLLECTION).document(key);
+    }
+
+    private static Map<String, Object> emailClaim(String userId) {
+        Map<String, Object> claim = new HashMap<>();
+        claim.put(EMAIL_OWNER_FIELD, userId);
+        claim.put("createdAt", Timestamp.now());
+        return claim;
+    }
+
+    // Surfaces DuplicateEmailException thrown inside a transaction as itself
+    // rather than wrapped in the ExecutionException of the transaction future
+    private static void runUnwrapped(Firestore db, Transaction.Function<Void> body)
+            throws ExecutionException, InterruptedException {
+        try {
+            db.runTransaction(body).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof DuplicateEmailException dup) {
+                throw dup;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.expensetracker.app.repositories.storage.firestore;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.firebase.cloud.FirestoreClient;
+
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records in Firestore that a one-off data migration has completed, so that
+ * reads depending on it stay off on every instance until then. Once seen the
+ * marker is remembered; until then it is looked up again at most once a
+ * minute, so an instance notices a migration another one ran.
+ */
+final class MigrationMarker {
+
+    private static final String COLLECTION = "migrations";
+    private static final long RECHECK_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final String name;
+    private volatile boolean done;
+    private volatile long checkedAt;
+    private volatile boolean checked;
+
+    MigrationMarker(String name) {
+        this.name = name;
+    }
+
+    boolean isDone() throws ExecutionException, InterruptedException {
+        if (done) {
+            return true;
+        }
+        long now = System.nanoTime();
+        if (checked && now - checkedAt < RECHECK_NANOS) {
+            return false;
+        }
+        done = ref().get().get().exists();
+        checkedAt = now;
+        checked = true;
+        return done;
+    }
+
+    /** What is known without a lookup, for callers that can't block. */
+    boolean knownDone() {
+        return done;
+    }
+
+    void markDone() throws ExecutionException, InterruptedException {
+        ref().set(Map.of("completedAt", Timestamp.now())).get();
+        done = true;
+    }
+
+    private DocumentReference ref() {
+        return FirestoreClient.getFirestore().collection(COLLECTION).document(name);
+    }
+}
@@ -0,0 +1,43 @@
+package com.expensetracker.app.repositories.storage.jpa;
+
+import com.google.cloud.Timestamp;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Row of the email index: the primary key is the normalized email, so a
+ * second claim on the same address fails at insert time.
+ */
+@Entity
+@Table(name = "user_emails")
+class EmailClaim {
+
+    @Id
+    @Column(nullable = false, updatable = false)
+    private String email;
+
+    @Column(nullable = false)
+    private String userId;
+
+    @Column(nullable = false, updatable = false)
+    private Timestamp createdAt;
+
+    protected EmailClaim() {
+    }
+
+    EmailClaim(String email, String userId) {
+        this.email = email;
+        this.userId = userId;
+        this.createdAt = Timestamp.now();
+    }
+
+    String getEmail() {
+        return email;
+    }
+
+    String getUserId() {
+        return userId;
+    }
+}
@@ -0,0 +1,155 @@
+package com.expensetracker.app.repositories.storage.jpa;
+
+import com.expensetracker.app.models.Expense;
+import com.expensetracker.app.models.enums.ExpenseCategory;
+import com.expensetracker.app.repositories.storage.Entities;
+import com.expensetracker.app.repositories.storage.ExpenseStore;
+import com.expensetracker.app.repositories.storage.PageCursor;
+import com.google.cloud.Timestamp;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Expense store backed by a relational database through JPA. Range queries
+ * are served by the (userId, date), (goalId, date) and (userId, category, date)
+ * indexes declared on {@link Expense}, and totals are SQL aggregates.
+ */
+@Transactional
+public class JpaExpenseStore implements ExpenseStore {
+
+    private static final String LIVE = "select e from Expense e where e.deletedAt is null";
+    private static final String ORDER = " order by e.date, e.id";
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Override
+    public void save(Expense expense) {
+        em.merge(expense);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Expense> findById(String id) {
+        return Optional.ofNullable(em.find(Expense.class, id));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Expense> findByUserId(String userId) {
+        return em.createQuery(LIVE + " and e.userId = :userId" + ORDER, Expense.class)
+                .setParameter("userId", userId)
+                .getResultList();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Expense> findPageByUserId(String userId, PageCursor after, int limit) {
+        TypedQuery<Expense> q = after == null
+                ? em.createQuery(LIVE + " and e.userId = :userId" + ORDER, Expense.class)
+                : em.createQuery(LIVE + " and e.userId = :userId"
+                        + " and (e.date > :date or (e.date = :date and e.id > :id))" + ORDER, Expense.class)
+                    .setParameter("date", after.date())
+                    .setParameter("id", after.id());
+        return q.setParameter("userId", userId).setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Expense> findAll() {
+        return em.createQuery(LIVE + ORDER, Expense.class).getResultList();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Expense> findByUserIdAndDateRange(String userId, Timestamp startDate, Timestamp endDate) {
+        return em.createQuery(LIVE + " and e.userId = :userId and e.date between :start and :end" + ORDER, Expense.class)
+                .setParameter("userId", userId)
+                .setParameter("start", startDate)
+                .setParameter("end", endDate)
+                .getResultList();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Expense> findByGoalId(String goalId) {
+        return em.createQuery(LIVE + " and e.goalId = :goalId" + ORDER, Expense.class)
+                .setParameter("goalId", goalId)
+                .getResultList();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Expense> findByGoalIdAndDateRange(String goalId, Timestamp startDate, Timestamp endDate) {
+        return em.createQuery(LIVE + " and e.goalId = :goalId and e.date between :start and :end" + ORDER, Expense.class)
+                .setParameter("goalId", goalId)
+                .setParameter("start", startDate)
+                .setParameter("end", endDate)
+                .getResultList();
+    }
+
+    @Override
+    public void update(String id, Map<String, Object> updates) {
+        Expense expense = em.find(Expense.class, id);
+        if (expense == null) {
+            throw new IllegalArgumentException("Expense not found: " + id);
+        }
+        Entities.apply(expense, updates);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public BigDecimal sumAmountByUserIdAndDateRange(String userId, Timestamp startDate, Timestamp endDate) {
+        return total(em.createQuery("select sum(e.amount) from Expense e where e.deletedAt is null"
+                        + " and e.userId = :userId and e.date between :start and :end", BigDecimal.class)
+                .setParameter("userId", userId)
+                .setParameter("start", startDate)
+                .setParameter("end", endDate));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public BigDecimal sumAmountByUserIdCategoryAndDateRange(String userId, String category, Timestamp startDate, Timestamp endDate) {
+        // Expense categories are stored as enum names, so an exact match keeps
+        // the (userId, category, date) index usable
+        String stored = ExpenseCategory.isValid(category)
+                ? ExpenseCategory.from(category).name()
+                : category.trim().toUpperCase(Locale.ROOT);
+        return total(em.createQuery("select sum(e.amount) from Expense e where e.deletedAt is null"
+                        + " and e.userId = :userId and e.category = :category"
+                        + " and e.date between :start and :end", BigDecimal.class)
+                .setParameter("userId", userId)
+                .setParameter("category", stored)
+                .setParameter("start", startDate)
+                .setParameter("end", endDate));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public BigDecimal sumAmountByGoalId(String goalId, Timestamp startDate, Timestamp endDate) {
+        if (startDate == null || endDate == null) {
+            return total(em.createQuery("select sum(e.amount) from Expense e where e.deletedAt is null"
+                            + " and e.goalId = :goalId", BigDecimal.class)
+                    .setParameter("goalId", goalId));
+        }
+        return total(em.createQuery("select sum(e.amount) from Expense e where e.deletedAt is null"
+                        + " and e.goalId = :goalId and e.date between :start and :end", BigDecimal.class)
+                .setParameter("goalId", goalId)
+                .setParameter("start", startDate)
+                .setParameter("end", endDate));
+    }
+
+    private static BigDecimal total(TypedQuery<BigDecimal> query) {
+        // SUM over no rows is NULL
+        BigDecimal sum = query.getSingleResult();
+        return sum != null ? sum : BigDecimal.ZERO;
+    }
+}
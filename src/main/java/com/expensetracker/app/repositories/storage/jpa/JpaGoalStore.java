@@ -0,0 +1,133 @@
+package com.expensetracker.app.repositories.storage.jpa;
+
+import com.expensetracker.app.models.Goal;
+import com.expensetracker.app.repositories.storage.Entities;
+import com.expensetracker.app.repositories.storage.GoalStore;
+import com.expensetracker.app.repositories.storage.PageCursor;
+import com.google.cloud.Timestamp;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Goal store backed by a relational database through JPA.
+ */
+@Transactional
+public class JpaGoalStore implements GoalStore {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Override
+    public void save(Goal goal) {
+        em.merge(goal);
+    }
+
+    @Override
+    public void saveAll(List<Goal> goals) {
+        // One transaction, so the changes flush together at commit
+        goals.forEach(em::merge);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Goal> findById(String id) {
+        return Optional.ofNullable(em.find(Goal.class, id));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Goal> findByUserId(String userId) {
+        return em.createQuery("select g from Goal g where g.deletedAt is null and g.userId = :userId", Goal.class)
+                .setParameter("userId", userId)
+                .getResultList();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Goal> findOpenByUserIdAt(String userId, Timestamp date) {
+        return em.createQuery("select g from Goal g where g.deletedAt is null and g.userId = :userId"
+                        + " and (g.endDate is null or g.endDate >= :date)", Goal.class)
+                .setParameter("userId", userId)
+                .setParameter("date", date)
+                .getResultList();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Goal> findPageByUserId(String userId, PageCursor after, int limit) {
+        String live = "select g from Goal g where g.deletedAt is null and g.userId = :userId";
+        String order = " order by g.startDate, g.id";
+        TypedQuery<Goal> q = after == null
+                ? em.createQuery(live + order, Goal.class)
+                : em.createQuery(live + " and (g.startDate > :date or (g.startDate = :date and g.id > :id))" + order, Goal.class)
+                    .setParameter("date", after.date())
+                    .setParameter("id", after.id());
+        return q.setParameter("userId", userId).setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Goal> findPage(PageCursor after, int limit) {
+        String live = "select g from Goal g where g.deletedAt is null";
+        String order = " order by g.startDate, g.id";
+        TypedQuery<Goal> q = after == null
+                ? em.createQuery(live + order, Goal.class)
+                : em.createQuery(live + " and (g.startDate > :date or (g.startDate = :date and g.id > :id))" + order, Goal.class)
+                    .setParameter("date", after.date())
+                    .setParameter("id", after.id());
+        return q.setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Goal> findAll() {
+        return em.createQuery("select g from Goal g where g.deletedAt is null", Goal.class).getResultList();
+    }
+
+    @Override
+    public void update(String id, Map<String, Object> updates) {
+        Goal goal = em.find(Goal.class, id);
+        if (goal == null) {
+            throw new IllegalArgumentException("Goal not found: " + id);
+        }
+        Entities.apply(goal, updates);
+    }
+
+    @Override
+    public void compute(String id, Function<Goal, Map<String, Object>> change) {
+        // Row lock held to commit, so concurrent expense writes apply one after another
+        Goal goal = em.find(Goal.class, id, LockModeType.PESSIMISTIC_WRITE);
+        if (goal == null) {
+            return;
+        }
+        Map<String, Object> updates = change.apply(Entities.copy(goal));
+        if (updates != null && !updates.isEmpty()) {
+            Entities.apply(goal, updates);
+        }
+    }
+
+    @Override
+    public BigDecimal incrementProgress(String id, BigDecimal delta) {
+        // A relative update takes the row lock only for the statement itself
+        int updated = em.createQuery("update Goal g set g.currentAmount = coalesce(g.currentAmount, 0) + :delta"
+                        + " where g.id = :id and g.deletedAt is null")
+                .setParameter("delta", delta)
+                .setParameter("id", id)
+                .executeUpdate();
+        // The bulk update bypassed the persistence context, so a managed copy is stale now
+        Goal managed = em.find(Goal.class, id);
+        if (managed != null) {
+            em.detach(managed);
+        }
+        return updated > 0 ? delta : BigDecimal.ZERO;
+    }
+}
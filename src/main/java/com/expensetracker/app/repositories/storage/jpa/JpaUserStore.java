@@ -0,0 +1,123 @@
+package com.expensetracker.app.repositories.storage.jpa;
+
+import com.expensetracker.app.exceptions.DuplicateEmailException;
+import com.expensetracker.app.models.User;
+import com.expensetracker.app.models.enums.UserRole;
+import com.expensetracker.app.repositories.UserChange;
+import com.expensetracker.app.repositories.storage.Entities;
+import com.expensetracker.app.repositories.storage.UserStore;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PersistenceException;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * User store backed by a relational database through JPA. Email uniqueness
+ * is enforced by the primary key of the {@code user_emails} table, written in
+ * the same transaction as the user.
+ */
+@Transactional
+public class JpaUserStore implements UserStore {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<User> findAll() {
+        return em.createQuery("select u from User u where u.deletedAt is null", User.class).getResultList();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<User> findDeletionPending() {
+        return em.createQuery("select u from User u where u.deletionPending = true", User.class).getResultList();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public User findById(String id) {
+        return em.find(User.class, id);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public User findByEmail(String email) {
+        EmailClaim claim = em.find(EmailClaim.class, UserStore.normalizeEmail(email));
+        if (claim == null) {
+            return null;
+        }
+        User user = em.find(User.class, claim.getUserId());
+        return user != null && !user.isDeleted() ? user : null;
+    }
+
+    @Override
+    public void create(User user) {
+        if (user.getEmail() != null) {
+            claim(UserStore.normalizeEmail(user.getEmail()), user.getId());
+        }
+        em.persist(user);
+    }
+
+    @Override
+    public UserChange update(String id, Map<String, Object> updates) {
+        User current = em.find(User.class, id);
+        if (current == null) {
+            throw new IllegalArgumentException("User not found: " + id);
+        }
+        String newEmail = (String) updates.get("email");
+        UserRole newRole = (UserRole) updates.get("role");
+        boolean releaseEmail = updates.get("deletedAt") != null;
+
+        String newKey = newEmail != null && !releaseEmail ? UserStore.normalizeEmail(newEmail) : null;
+        EmailClaim existing = newKey != null ? em.find(EmailClaim.class, newKey) : null;
+        if (existing != null && !existing.getUserId().equals(id)) {
+            throw new DuplicateEmailException("Email already exists");
+        }
+        String oldKey = current.getEmail() != null ? UserStore.normalizeEmail(current.getEmail()) : null;
+        if (oldKey != null && (releaseEmail || (newKey != null && !newKey.equals(oldKey)))) {
+            EmailClaim old = em.find(EmailClaim.class, oldKey);
+            if (old != null && old.getUserId().equals(id)) {
+                em.remove(old);
+            }
+        }
+        if (newKey != null && existing == null) {
+            claim(newKey, id);
+        }
+
+        boolean roleChanged = newRole != null && newRole != current.getRole();
+        Entities.apply(current, roleChanged || releaseEmail ? UserStore.withTokensRevoked(updates) : updates);
+        return new UserChange(id, roleChanged, releaseEmail);
+    }
+
+    @Override
+    public int rebuildEmailIndex() {
+        int written = 0;
+        List<User> users = em.createQuery("select u from User u where u.deletedAt is null and u.email is not null", User.class)
+                .getResultList();
+        for (User u : users) {
+            String key = UserStore.normalizeEmail(u.getEmail());
+            if (em.find(EmailClaim.class, key) == null) {
+                em.persist(new EmailClaim(key, u.getId()));
+                written++;
+            }
+        }
+        return written;
+    }
+
+    private void claim(String key, String userId) {
+        if (em.find(EmailClaim.class, key) != null) {
+            throw new DuplicateEmailException("Email already exists");
+        }
+        try {
+            em.persist(new EmailClaim(key, userId));
+            // Surface a concurrent claim on the same key here rather than at commit
+            em.flush();
+        } catch (PersistenceException e) {
+            throw new DuplicateEmailException("Email already exists");
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.expensetracker.app.repositories.storage.jpa;
+
+import com.google.cloud.Timestamp;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Maps the Firestore {@link Timestamp} used throughout the models to a SQL
+ * timestamp column, keeping nanosecond precision where the database allows.
+ */
+@Converter(autoApply = true)
+public class TimestampConverter implements AttributeConverter<Timestamp, java.sql.Timestamp> {
+
+    @Override
+    public java.sql.Timestamp convertToDatabaseColumn(Timestamp attribute) {
+        return attribute != null ? attribute.toSqlTimestamp() : null;
+    }
+
+    @Override
+    public Timestamp convertToEntityAttribute(java.sql.Timestamp dbData) {
+        return dbData != null ? Timestamp.of(dbData) : null;
+    }
+}
@@ -0,0 +1,186 @@
+package com.expensetracker.app.repositories.storage.log;
+
+import com.expensetracker.app.models.BaseEntity;
+import com.expensetracker.app.models.Expense;
+import com.expensetracker.app.models.Goal;
+import com.expensetracker.app.models.User;
+import com.expensetracker.app.models.enums.GoalMode;
+import com.expensetracker.app.models.enums.GoalStatus;
+import com.expensetracker.app.models.enums.UserRole;
+import com.google.cloud.Timestamp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+
+/**
+ * Compact binary encoding of full entity images for the log, its snapshots
+ * and the warm-restart file. Fields are written in a fixed order per type, so
+ * no reflection is involved; timestamps keep their nanosecond precision.
+ * Fields added later go at the end of their type and are read only when
+ * present, so older records still decode.
+ */
+public final class EntityCodec {
+
+    private static final byte VERSION = 1;
+    private static final byte EXPENSE = 1;
+    private static final byte GOAL = 2;
+    private static final byte USER = 3;
+
+    private EntityCodec() {
+    }
+
+    public static byte[] encode(BaseEntity entity) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(VERSION);
+            if (entity instanceof Expense e) {
+                out.writeByte(EXPENSE);
+                writeBase(out, e);
+                writeString(out, e.getDescription());
+                writeDecimal(out, e.getAmount());
+                writeString(out, e.getCategory());
+                writeTimestamp(out, e.getDate());
+                writeString(out, e.getUserId());
+                writeString(out, e.getGoalId());
+            } else if (entity instanceof Goal g) {
+                out.writeByte(GOAL);
+                writeBase(out, g);
+                writeString(out, g.getUserId());
+                writeString(out, g.getTitle());
+                writeString(out, g.getDescription());
+                writeDecimal(out, g.getTargetAmount());
+                writeDecimal(out, g.getCurrentAmount());
+                writeTimestamp(out, g.getStartDate());
+                writeTimestamp(out, g.getEndDate());
+                writeString(out, g.getCategory());
+                out.writeBoolean(g.isCompleted());
+                writeString(out, g.getMode() != null ? g.getMode().name() : null);
+                writeString(out, g.getStatus() != null ? g.getStatus().name() : null);
+            } else if (entity instanceof User u) {
+                out.writeByte(USER);
+                writeBase(out, u);
+                writeString(out, u.getName());
+                writeString(out, u.getEmail());
+                writeString(out, u.getPassword());
+                writeString(out, u.getRole() != null ? u.getRole().name() : null);
+                writeTimestamp(out, u.getTokensRevokedAt());
+                out.writeByte(u.getDeletionPending() == null ? 0 : u.getDeletionPending() ? 2 : 1);
+            } else {
+                throw new IllegalArgumentException("Unsupported entity type: " + entity.getClass().getName());
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static BaseEntity decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported record version " + version);
+        }
+        byte type = in.readByte();
+        switch (type) {
+            case EXPENSE -> {
+                Expense e = new Expense();
+                readBase(in, e);
+                e.setDescription(readString(in));
+                e.setAmount(readDecimal(in));
+                String category = readString(in);
+                if (category != null) e.setCategory(category);
+                e.setDate(readTimestamp(in));
+                e.setUserId(readString(in));
+                e.setGoalId(readString(in));
+                return e;
+            }
+            case GOAL -> {
+                Goal g = new Goal();
+                readBase(in, g);
+                g.setUserId(readString(in));
+                g.setTitle(readString(in));
+                g.setDescription(readString(in));
+                g.setTargetAmount(readDecimal(in));
+                g.setCurrentAmount(readDecimal(in));
+                g.setStartDate(readTimestamp(in));
+                g.setEndDate(readTimestamp(in));
+                g.setCategory(readString(in));
+                g.setCompleted(in.readBoolean());
+                String mode = readString(in);
+                g.setMode(mode != null ? GoalMode.valueOf(mode) : null);
+                String status = readString(in);
+                g.setStatus(status != null ? GoalStatus.valueOf(status) : null);
+                return g;
+            }
+            case USER -> {
+                User u = new User();
+                readBase(in, u);
+                u.setName(readString(in));
+                u.setEmail(readString(in));
+                u.setPassword(readString(in));
+                String role = readString(in);
+                u.setRole(role != null ? UserRole.valueOf(role) : null);
+                if (in.available() > 0) {
+                    u.setTokensRevokedAt(readTimestamp(in));
+                }
+                if (in.available() > 0) {
+                    byte pending = in.readByte();
+                    u.setDeletionPending(pending == 0 ? null : pending == 2);
+                }
+                return u;
+            }
+            default -> throw new IOException("Unknown record type " + type);
+        }
+    }
+
+    private static void writeBase(DataOutputStream out, BaseEntity entity) throws IOException {
+        writeString(out, entity.getId());
+        writeTimestamp(out, entity.getCreatedAt());
+        writeTimestamp(out, entity.getUpdatedAt());
+        writeTimestamp(out, entity.getDeletedAt());
+    }
+
+    private static void readBase(DataInputStream in, BaseEntity entity) throws IOException {
+        entity.setId(readString(in));
+        entity.setCreatedAt(readTimestamp(in));
+        entity.setUpdatedAt(readTimestamp(in));
+        entity.setDeletedAt(readTimestamp(in));
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) out.writeUTF(value);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeDecimal(DataOutputStream out, BigDecimal value) throws IOException {
+        writeString(out, value != null ? value.toPlainString() : null);
+    }
+
+    private static BigDecimal readDecimal(DataInputStream in) throws IOException {
+        String value = readString(in);
+        return value != null ? new BigDecimal(value) : null;
+    }
+
+    private static void writeTimestamp(DataOutputStream out, Timestamp value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value.getSeconds());
+            out.writeInt(value.getNanos());
+        }
+    }
+
+    private static Timestamp readTimestamp(DataInputStream in) throws IOException {
+        return in.readBoolean() ? Timestamp.ofTimeSecondsAndNanos(in.readLong(), in.readInt()) : null;
+    }
+}
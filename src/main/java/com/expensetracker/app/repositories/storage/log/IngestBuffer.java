@@ -0,0 +1,842 @@
+package com.expensetracker.app.repositories.storage.log;
+
+import com.expensetracker.app.models.BaseEntity;
+import com.expensetracker.app.models.Expense;
+import com.expensetracker.app.repositories.storage.Entities;
+import com.expensetracker.app.repositories.storage.ExpenseStore;
+import com.expensetracker.app.repositories.storage.MonthlyRollup;
+import com.expensetracker.app.repositories.storage.PageCursor;
+import com.expensetracker.app.repositories.storage.StoreFutures;
+import com.google.cloud.Timestamp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Acknowledges new expenses once they are in a local {@link WriteAheadLog}
+ * and writes them to the wrapped store in the background. Until an expense
+ * has drained, reads through this store see it on top of the wrapped store's
+ * results, so its owner reads their own writes.
+ *
+ * <p>A single drainer takes pending expenses in the order they were
+ * acknowledged, commits each user's share as one batch, and only then marks
+ * them drained in the log. A user's expenses therefore reach the wrapped
+ * store in order, except that an expense being retried may land after later
+ * ones of its user; a failed batch stays pending and is retried one expense
+ * at a time with {@link ExpenseStore#save}, which is safe to repeat. Only
+ * the user whose commit failed backs off; the others keep draining. An
+ * expense that has failed {@code maxAttempts} times is parked in a
+ * dead-letter log under {@code dir} and counted in {@link #stats()}. An
+ * update to a pending expense waits for it to drain first.
+ *
+ * <p>Saves of the same id are serialized, so at most one image per id is
+ * pending. Each logged image carries a sequence number and drained markers
+ * name the sequence they cover, so a marker never removes a newer write of
+ * the same id on recovery.
+ *
+ * <p>On startup everything logged but not marked drained is pending again.
+ * When the log has grown past {@code compactAfterBytes} it is rotated, the
+ * pending expenses are copied into the new segment and the old segments are
+ * deleted.
+ */
+public class IngestBuffer implements ExpenseStore, AutoCloseable {
+
+    private static final byte ENQUEUED = 'Q';
+    private static final byte DRAINED = 'R';
+    // Records of logs written before sequence numbers, keyed by id alone
+    private static final byte LEGACY_ENQUEUED = 'E';
+    private static final byte LEGACY_DRAINED = 'D';
+    private static final int SAVE_STRIPES = 64;
+    private static final Duration MAX_BACKOFF = Duration.ofSeconds(30);
+    private static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(10);
+
+    private static final class Entry {
+        final long seq;
+        final Expense expense;
+        final CompletableFuture<Void> drained = new CompletableFuture<>();
+        int attempts;
+
+        Entry(long seq, Expense expense, int attempts) {
+            this.seq = seq;
+            this.expense = expense;
+            this.attempts = attempts;
+        }
+    }
+
+    private record Logged(long seq, Expense expense) {}
+
+    private record Backoff(int failures, long retryAtNanos) {}
+
+    private static final String DEAD_LETTER_DIR = "dead-letter";
+    private static final int RECENT_DEAD_LETTERS = 20;
+
+    private final ExpenseStore delegate;
+    private final Path dir;
+    private final int batchSize;
+    private final long compactAfterBytes;
+    private final Duration retryBackoff;
+    private final int maxAttempts;
+    private final WriteAheadLog wal;
+    private final WriteAheadLog deadLetters;
+    private final Semaphore capacity;
+
+    // Pending expenses by id in acknowledgement order, and their ids per user
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition enqueued = lock.newCondition();
+    private final LinkedHashMap<String, Entry> pending = new LinkedHashMap<>();
+    private final Map<String, Set<String>> pendingByUser = new HashMap<>();
+    // Users whose last commit failed, and when the drainer may try them again
+    private final Map<String, Backoff> backoffs = new HashMap<>();
+
+    // Appends take the read side; rotation takes the write side so no
+    // expense is logged in a segment about to be deleted without being pending
+    private final ReentrantReadWriteLock barrier = new ReentrantReadWriteLock();
+    // Serializes saves of one id from the pending check through tracking
+    private final ReentrantLock[] saveStripes = new ReentrantLock[SAVE_STRIPES];
+    private final AtomicLong sequence = new AtomicLong();
+    private final Thread drainer;
+    private volatile boolean closed;
+
+    private final AtomicLong acknowledged = new AtomicLong();
+    private final AtomicLong drainedCount = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+    private final ArrayDeque<String> recentDeadLetters = new ArrayDeque<>();
+    private volatile String lastError;
+
+    public IngestBuffer(ExpenseStore delegate, Path dir, boolean fsync, int maxPending, int batchSize,
+                        long compactAfterBytes, Duration retryBackoff, int maxAttempts) throws IOException {
+        this.delegate = delegate;
+        this.dir = dir;
+        this.batchSize = batchSize;
+        this.compactAfterBytes = compactAfterBytes;
+        this.retryBackoff = retryBackoff;
+        this.maxAttempts = maxAttempts;
+        Files.createDirectories(dir);
+        this.deadLetters = openDeadLetters(dir.resolve(DEAD_LETTER_DIR), fsync);
+        for (int i = 0; i < SAVE_STRIPES; i++) saveStripes[i] = new ReentrantLock();
+
+        List<Long> segments = WriteAheadLog.listSegments(dir);
+        Map<String, Logged> recovered = recover(segments);
+        long last = segments.isEmpty() ? 0 : segments.get(segments.size() - 1);
+        this.wal = new WriteAheadLog(dir, last + 1, fsync);
+        // Recovered expenses may already have been committed, so they are
+        // retried one by one rather than created in a batch
+        for (Logged logged : recovered.values()) {
+            Entry entry = new Entry(sequence.incrementAndGet(), logged.expense(), 1);
+            wal.append(enqueuedRecord(entry));
+            track(entry);
+        }
+        wal.deleteSegmentsUpTo(last);
+        // Negative after a backlog larger than maxPending; it recovers as that drains
+        this.capacity = new Semaphore(maxPending - recovered.size());
+        if (!recovered.isEmpty()) {
+            System.out.println("Ingest buffer recovered " + recovered.size() + " undrained expenses from " + dir.toAbsolutePath());
+        }
+
+        this.drainer = new Thread(this::drainLoop, "ingest-drainer");
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            stats.put("pending", pending.size());
+            stats.put("pendingUsers", pendingByUser.size());
+            stats.put("backingOffUsers", backoffs.size());
+            stats.put("recentDeadLetters", List.copyOf(recentDeadLetters));
+        } finally {
+            lock.unlock();
+        }
+        stats.put("acknowledged", acknowledged.get());
+        stats.put("drained", drainedCount.get());
+        stats.put("failedBatches", failedBatches.get());
+        stats.put("deadLettered", deadLettered.get());
+        stats.put("lastError", lastError);
+        return stats;
+    }
+
+    /** Stops draining after a last attempt; what is left drains on the next start. */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        lock.lock();
+        try {
+            enqueued.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            drainer.join(CLOSE_TIMEOUT.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drainer.interrupt();
+        wal.close();
+        deadLetters.close();
+    }
+
+    // ---- writes ----
+
+    // Blocks while maxPending expenses are waiting, so a stalled store slows
+    // writers down instead of growing the buffer without bound
+    @Override
+    public void save(Expense expense) throws ExecutionException, InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("Ingest buffer is closed");
+        }
+        Expense image = Entities.copy(expense);
+        ReentrantLock stripe = saveStripes[Math.floorMod(image.getId().hashCode(), SAVE_STRIPES)];
+        while (true) {
+            Entry previous;
+            stripe.lock();
+            try {
+                // At most one pending image per id; a newer one waits for the older to drain
+                previous = entry(image.getId());
+                if (previous == null) {
+                    append(image);
+                    break;
+                }
+            } finally {
+                stripe.unlock();
+            }
+            // Outside the stripe, so other ids sharing it don't wait as well. A
+            // dead-lettered image doesn't stop the newer one from being logged
+            previous.drained.handle((v, t) -> null).get();
+        }
+        acknowledged.incrementAndGet();
+    }
+
+    private void append(Expense image) throws InterruptedException {
+        capacity.acquire();
+        barrier.readLock().lock();
+        try {
+            Entry entry = new Entry(sequence.incrementAndGet(), image, 0);
+            wal.append(enqueuedRecord(entry));
+            track(entry);
+        } catch (IOException e) {
+            capacity.release();
+            throw new UncheckedIOException("Failed to append to ingest log: " + e.getMessage(), e);
+        } finally {
+            barrier.readLock().unlock();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> saveAsync(Expense expense) {
+        // The log append is the only wait, and it is a local group commit
+        return StoreFutures.completed(() -> { save(expense); return null; });
+    }
+
+    // Bulk imports already wait for their commits, so they go straight through
+    @Override
+    public CompletableFuture<Void> saveAllAsync(List<Expense> expenses) {
+        return delegate.saveAllAsync(expenses);
+    }
+
+    @Override
+    public void update(String id, Map<String, Object> updates) throws ExecutionException, InterruptedException {
+        Entry entry = entry(id);
+        if (entry != null) {
+            entry.drained.get();
+        }
+        delegate.update(id, updates);
+    }
+
+    @Override
+    public void softDeleteAll(List<Expense> expenses, Timestamp deletedAt) throws ExecutionException, InterruptedException {
+        for (Expense expense : expenses) {
+            Entry entry = entry(expense.getId());
+            if (entry != null) {
+                entry.drained.get();
+            }
+        }
+        delegate.softDeleteAll(expenses, deletedAt);
+    }
+
+    @Override
+    public CompletableFuture<Void> updateAsync(String id, Map<String, Object> updates) {
+        Entry entry = entry(id);
+        if (entry == null) {
+            return delegate.updateAsync(id, updates);
+        }
+        return entry.drained.thenCompose(v -> delegate.updateAsync(id, updates));
+    }
+
+    // ---- reads: pending expenses on top of the wrapped store ----
+
+    @Override
+    public Optional<Expense> findById(String id) throws ExecutionException, InterruptedException {
+        Entry entry = entry(id);
+        return entry != null ? Optional.of(Entities.copy(entry.expense)) : delegate.findById(id);
+    }
+
+    @Override
+    public CompletableFuture<Optional<Expense>> findByIdAsync(String id) {
+        Entry entry = entry(id);
+        return entry != null
+                ? CompletableFuture.completedFuture(Optional.of(Entities.copy(entry.expense)))
+                : delegate.findByIdAsync(id);
+    }
+
+    @Override
+    public List<Expense> findByUserId(String userId) throws ExecutionException, InterruptedException {
+        List<Expense> overlay = pendingOf(userId, e -> true);
+        return overlay.isEmpty() ? delegate.findByUserId(userId) : merge(delegate.findByUserId(userId), overlay, false);
+    }
+
+    @Override
+    public CompletableFuture<List<Expense>> findByUserIdAsync(String userId) {
+        return delegate.findByUserIdAsync(userId)
+                .thenApply(found -> merge(found, pendingOf(userId, e -> true), false));
+    }
+
+    @Override
+    public List<Expense> findByUserIdAndDateRange(String userId, Timestamp startDate, Timestamp endDate)
+            throws ExecutionException, InterruptedException {
+        List<Expense> overlay = pendingOf(userId, inRange(startDate, endDate));
+        List<Expense> found = delegate.findByUserIdAndDateRange(userId, startDate, endDate);
+        return overlay.isEmpty() ? found : merge(found, overlay, true);
+    }
+
+    @Override
+    public CompletableFuture<List<Expense>> findByUserIdAndDateRangeAsync(String userId, Timestamp startDate, Timestamp endDate) {
+        return delegate.findByUserIdAndDateRangeAsync(userId, startDate, endDate)
+                .thenApply(found -> merge(found, pendingOf(userId, inRange(startDate, endDate)), true));
+    }
+
+    // Any expense on the merged page is either on the wrapped store's page or pending
+    @Override
+    public List<Expense> findPageByUserId(String userId, PageCursor after, int limit)
+            throws ExecutionException, InterruptedException {
+        List<Expense> overlay = pendingOf(userId,
+                e -> after == null || PageCursor.of(e.getDate(), e.getId()).compareTo(after) > 0);
+        List<Expense> found = delegate.findPageByUserId(userId, after, limit);
+        if (overlay.isEmpty()) {
+            return found;
+        }
+        List<Expense> merged = merge(found, overlay, true);
+        return merged.size() > limit ? List.copyOf(merged.subList(0, limit)) : merged;
+    }
+
+    @Override
+    public List<Expense> findAll() throws ExecutionException, InterruptedException {
+        return merge(delegate.findAll(), pendingWhere(e -> true), false);
+    }
+
+    @Override
+    public List<Expense> findByGoalId(String goalId) throws ExecutionException, InterruptedException {
+        return merge(delegate.findByGoalId(goalId), pendingWhere(e -> goalId.equals(e.getGoalId())), false);
+    }
+
+    @Override
+    public List<Expense> findByGoalIdAndDateRange(String goalId, Timestamp startDate, Timestamp endDate)
+            throws ExecutionException, InterruptedException {
+        List<Expense> overlay = pendingWhere(e -> goalId.equals(e.getGoalId()) && inRange(startDate, endDate).test(e));
+        return merge(delegate.findByGoalIdAndDateRange(goalId, startDate, endDate), overlay, true);
+    }
+
+    // Totals only leave the wrapped store's aggregates while something of
+    // the user or goal is pending; then they are added up from the merged rows
+
+    @Override
+    public BigDecimal sumAmountByUserIdAndDateRange(String userId, Timestamp startDate, Timestamp endDate)
+            throws ExecutionException, InterruptedException {
+        return hasPendingFor(userId)
+                ? ExpenseStore.super.sumAmountByUserIdAndDateRange(userId, startDate, endDate)
+                : delegate.sumAmountByUserIdAndDateRange(userId, startDate, endDate);
+    }
+
+    @Override
+    public BigDecimal sumAmountByUserIdCategoryAndDateRange(String userId, String category, Timestamp startDate, Timestamp endDate)
+            throws ExecutionException, InterruptedException {
+        return hasPendingFor(userId)
+                ? ExpenseStore.super.sumAmountByUserIdCategoryAndDateRange(userId, category, startDate, endDate)
+                : delegate.sumAmountByUserIdCategoryAndDateRange(userId, category, startDate, endDate);
+    }
+
+    @Override
+    public BigDecimal sumAmountByGoalId(String goalId, Timestamp startDate, Timestamp endDate)
+            throws ExecutionException, InterruptedException {
+        return pendingWhere(e -> goalId.equals(e.getGoalId())).isEmpty()
+                ? delegate.sumAmountByGoalId(goalId, startDate, endDate)
+                : ExpenseStore.super.sumAmountByGoalId(goalId, startDate, endDate);
+    }
+
+    @Override
+    public List<MonthlyRollup> findRollups(String userId, String fromMonth, String toMonth)
+            throws ExecutionException, InterruptedException {
+        return hasPendingFor(userId)
+                ? ExpenseStore.super.findRollups(userId, fromMonth, toMonth)
+                : delegate.findRollups(userId, fromMonth, toMonth);
+    }
+
+    // Pending expenses are not counted
+    @Override
+    public long countByUserId(String userId) throws ExecutionException, InterruptedException {
+        return delegate.countByUserId(userId);
+    }
+
+    // Only new expenses are pending, never deleted ones
+
+    @Override
+    public List<Expense> findDeletedBefore(Timestamp cutoff, int limit) throws ExecutionException, InterruptedException {
+        return delegate.findDeletedBefore(cutoff, limit);
+    }
+
+    @Override
+    public void archive(List<Expense> deleted) throws ExecutionException, InterruptedException {
+        delegate.archive(deleted);
+    }
+
+    @Override
+    public int rebuildRollups() throws ExecutionException, InterruptedException {
+        return delegate.rebuildRollups();
+    }
+
+    @Override
+    public int backfillAggregateFields() throws ExecutionException, InterruptedException {
+        return delegate.backfillAggregateFields();
+    }
+
+    // ---- pending set ----
+
+    private void track(Entry entry) {
+        lock.lock();
+        try {
+            pending.put(entry.expense.getId(), entry);
+            pendingByUser.computeIfAbsent(entry.expense.getUserId(), k -> new LinkedHashSet<>()).add(entry.expense.getId());
+            // The drainer may be waiting out another user's backoff
+            enqueued.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Entry entry(String id) {
+        lock.lock();
+        try {
+            return pending.get(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean hasPendingFor(String userId) {
+        lock.lock();
+        try {
+            return pendingByUser.containsKey(userId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<Expense> pendingOf(String userId, Predicate<Expense> filter) {
+        lock.lock();
+        try {
+            Set<String> ids = pendingByUser.get(userId);
+            if (ids == null) {
+                return List.of();
+            }
+            return ids.stream().map(id -> pending.get(id).expense).filter(filter).map(Entities::copy).toList();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<Expense> pendingWhere(Predicate<Expense> filter) {
+        lock.lock();
+        try {
+            return pending.values().stream().map(e -> e.expense).filter(filter).map(Entities::copy).toList();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Predicate<Expense> inRange(Timestamp startDate, Timestamp endDate) {
+        return e -> e.getDate() != null && e.getDate().compareTo(startDate) >= 0 && e.getDate().compareTo(endDate) <= 0;
+    }
+
+    // A pending expense may also have reached the wrapped store already; the
+    // pending copy wins
+    private static List<Expense> merge(List<Expense> found, List<Expense> overlay, boolean ordered) {
+        if (overlay.isEmpty()) {
+            return found;
+        }
+        Set<String> ids = new LinkedHashSet<>();
+        overlay.forEach(e -> ids.add(e.getId()));
+        List<Expense> merged = new ArrayList<>(Stream.concat(
+                found.stream().filter(e -> !ids.contains(e.getId())), overlay.stream()).toList());
+        if (ordered) {
+            merged.sort(Comparator.comparing((Expense e) -> PageCursor.of(e.getDate(), e.getId())));
+        }
+        return merged;
+    }
+
+    // ---- draining ----
+
+    private void drainLoop() {
+        while (true) {
+            List<Entry> round;
+            lock.lock();
+            try {
+                while (true) {
+                    long now = System.nanoTime();
+                    // Expenses of users backing off are left in place, so each
+                    // user's expenses still drain in order
+                    round = pending.values().stream()
+                            .filter(e -> !backingOff(e.expense.getUserId(), now))
+                            .limit(batchSize).toList();
+                    if (!round.isEmpty()) {
+                        break;
+                    }
+                    if (closed) {
+                        return;
+                    }
+                    if (pending.isEmpty()) {
+                        enqueued.await();
+                    } else {
+                        enqueued.awaitNanos(nextRetryNanos(now));
+                    }
+                }
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            drain(round);
+            compactIfNeeded();
+        }
+    }
+
+    private boolean backingOff(String userId, long now) {
+        Backoff backoff = backoffs.get(userId);
+        return backoff != null && backoff.retryAtNanos() - now > 0;
+    }
+
+    private long nextRetryNanos(long now) {
+        long next = Long.MAX_VALUE;
+        for (Backoff backoff : backoffs.values()) {
+            next = Math.min(next, backoff.retryAtNanos() - now);
+        }
+        return Math.max(next, TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    private void backOff(String userId) {
+        lock.lock();
+        try {
+            Backoff previous = backoffs.get(userId);
+            int failures = previous == null ? 1 : previous.failures() + 1;
+            long millis = Math.min(retryBackoff.toMillis() << Math.min(failures - 1, 16), MAX_BACKOFF.toMillis());
+            backoffs.put(userId, new Backoff(failures, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis)));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void clearBackoff(String userId) {
+        lock.lock();
+        try {
+            backoffs.remove(userId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Commits each user's share of the round concurrently. Failed expenses
+    // stay pending, or are dead-lettered once out of attempts
+    private void drain(List<Entry> round) {
+        Map<String, List<Entry>> byUser = new LinkedHashMap<>();
+        round.forEach(e -> byUser.computeIfAbsent(e.expense.getUserId(), k -> new ArrayList<>()).add(e));
+
+        Map<String, CompletableFuture<List<Entry>>> commits = new LinkedHashMap<>();
+        byUser.forEach((userId, entries) -> commits.put(userId, commit(entries)));
+
+        List<Entry> done = new ArrayList<>();
+        List<Entry> dead = new ArrayList<>();
+        for (Map.Entry<String, CompletableFuture<List<Entry>>> c : commits.entrySet()) {
+            List<Entry> failed = c.getValue().join();
+            List<Entry> entries = byUser.get(c.getKey());
+            if (failed.isEmpty()) {
+                clearBackoff(c.getKey());
+                done.addAll(entries);
+                continue;
+            }
+            failedBatches.incrementAndGet();
+            backOff(c.getKey());
+            System.err.println("Ingest drain failed for user " + c.getKey() + ", will retry: " + lastError);
+            for (Entry entry : entries) {
+                if (!failed.contains(entry)) {
+                    done.add(entry);
+                } else if (entry.attempts >= maxAttempts) {
+                    dead.add(entry);
+                }
+            }
+        }
+        if (!dead.isEmpty() && !deadLetter(dead)) {
+            dead = List.of();
+        }
+        if (done.isEmpty() && dead.isEmpty()) {
+            return;
+        }
+        try {
+            List<Entry> marked = new ArrayList<>(done);
+            marked.addAll(dead);
+            wal.append(drainedRecord(marked));
+        } catch (IOException e) {
+            // Not marked drained, so a restart commits them again; harmless
+            // because recovered expenses are saved idempotently
+            System.err.println("Failed to record drained expenses: " + e.getMessage());
+        }
+        untrack(done, null);
+        if (!dead.isEmpty()) {
+            untrack(dead, new IllegalStateException("Expense was moved to the ingest dead-letter log"));
+        }
+    }
+
+    // Completes with the entries that failed, each charged one attempt
+    private CompletableFuture<List<Entry>> commit(List<Entry> entries) {
+        if (entries.stream().allMatch(e -> e.attempts == 0)) {
+            List<Expense> expenses = entries.stream().map(e -> Entities.copy(e.expense)).toList();
+            return delegate.saveAllAsync(expenses).handle((v, t) -> t == null ? List.of() : failed(entries, t));
+        }
+        // A failed batch may have been partly committed; save is safe to
+        // repeat. Going one by one charges only the expense that fails
+        CompletableFuture<List<Entry>> chain = CompletableFuture.completedFuture(new ArrayList<>());
+        for (Entry entry : entries) {
+            Expense expense = Entities.copy(entry.expense);
+            chain = chain.thenCompose(failed -> delegate.saveAsync(expense).handle((v, t) -> {
+                if (t != null) {
+                    failed.addAll(failed(List.of(entry), t));
+                }
+                return failed;
+            }));
+        }
+        return chain;
+    }
+
+    private List<Entry> failed(List<Entry> entries, Throwable t) {
+        Throwable cause = t.getCause() != null ? t.getCause() : t;
+        lastError = cause.getMessage();
+        entries.forEach(entry -> entry.attempts++);
+        return entries;
+    }
+
+    // Parks the entries in the dead-letter log; false leaves them pending
+    private boolean deadLetter(List<Entry> entries) {
+        try {
+            for (Entry entry : entries) {
+                deadLetters.append(enqueuedRecord(entry));
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to record dead-lettered expenses: " + e.getMessage());
+            return false;
+        }
+        deadLettered.addAndGet(entries.size());
+        lock.lock();
+        try {
+            entries.forEach(entry -> rememberDeadLetter(entry.expense.getId()));
+        } finally {
+            lock.unlock();
+        }
+        for (Entry entry : entries) {
+            System.err.println("Ingest gave up on expense " + entry.expense.getId() + " of user "
+                    + entry.expense.getUserId() + " after " + entry.attempts + " attempts; moved to "
+                    + dir.resolve(DEAD_LETTER_DIR).toAbsolutePath());
+        }
+        return true;
+    }
+
+    private void rememberDeadLetter(String id) {
+        recentDeadLetters.addLast(id);
+        if (recentDeadLetters.size() > RECENT_DEAD_LETTERS) {
+            recentDeadLetters.removeFirst();
+        }
+    }
+
+    // Dead letters are kept until an operator deals with them; earlier runs'
+    // count toward the stats
+    private WriteAheadLog openDeadLetters(Path deadDir, boolean fsync) throws IOException {
+        Files.createDirectories(deadDir);
+        List<Long> segments = WriteAheadLog.listSegments(deadDir);
+        for (long n : segments) {
+            WriteAheadLog.readFrames(WriteAheadLog.segmentPath(deadDir, n), payload -> {
+                deadLettered.incrementAndGet();
+                if (payload[0] == ENQUEUED) {
+                    BaseEntity entity = EntityCodec.decode(Arrays.copyOfRange(payload, 1 + Long.BYTES, payload.length));
+                    rememberDeadLetter(entity.getId());
+                }
+            });
+        }
+        long last = segments.isEmpty() ? 0 : segments.get(segments.size() - 1);
+        return new WriteAheadLog(deadDir, last + 1, fsync);
+    }
+
+    private void untrack(List<Entry> done, Throwable failure) {
+        lock.lock();
+        try {
+            for (Entry entry : done) {
+                String id = entry.expense.getId();
+                // A newer write of the same id stays pending
+                if (pending.get(id) == entry) {
+                    pending.remove(id);
+                    Set<String> ids = pendingByUser.get(entry.expense.getUserId());
+                    if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                        pendingByUser.remove(entry.expense.getUserId());
+                        backoffs.remove(entry.expense.getUserId());
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        capacity.release(done.size());
+        if (failure == null) {
+            drainedCount.addAndGet(done.size());
+            done.forEach(entry -> entry.drained.complete(null));
+        } else {
+            done.forEach(entry -> entry.drained.completeExceptionally(failure));
+        }
+    }
+
+    // Runs on the drainer between rounds, so no drained marker is written
+    // while pending expenses are copied forward. Writers wait meanwhile, so
+    // the copies come before anything logged in the new segment
+    private void compactIfNeeded() {
+        if (wal.currentSegmentBytes() < compactAfterBytes) {
+            return;
+        }
+        try {
+            long rotated;
+            barrier.writeLock().lock();
+            try {
+                rotated = wal.rotate();
+                List<Entry> carried;
+                lock.lock();
+                try {
+                    carried = List.copyOf(pending.values());
+                } finally {
+                    lock.unlock();
+                }
+                for (Entry entry : carried) {
+                    wal.append(enqueuedRecord(entry));
+                }
+            } finally {
+                barrier.writeLock().unlock();
+            }
+            wal.deleteSegmentsUpTo(rotated);
+        } catch (IOException e) {
+            System.err.println("Ingest log compaction failed: " + e.getMessage());
+        }
+    }
+
+    // ---- log records ----
+
+    private static byte[] enqueuedRecord(Entry entry) {
+        byte[] entity = EntityCodec.encode(entry.expense);
+        ByteBuffer record = ByteBuffer.allocate(1 + Long.BYTES + entity.length);
+        record.put(ENQUEUED).putLong(entry.seq).put(entity);
+        return record.array();
+    }
+
+    private static byte[] drainedRecord(List<Entry> entries) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(DRAINED);
+            out.writeInt(entries.size());
+            for (Entry entry : entries) {
+                out.writeUTF(entry.expense.getId());
+                out.writeLong(entry.seq);
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Records are applied in log order: a drained marker only ever follows
+    // the write it covers. New sequence numbers start past every one seen, so
+    // a marker of this run can't match an image an older segment still holds
+    private Map<String, Logged> recover(List<Long> segments) throws IOException {
+        Map<String, Logged> logged = new LinkedHashMap<>();
+        for (int i = 0; i < segments.size(); i++) {
+            Path path = WriteAheadLog.segmentPath(dir, segments.get(i));
+            long valid = WriteAheadLog.readFrames(path, payload -> replay(payload, logged));
+            if (valid < Files.size(path)) {
+                if (i < segments.size() - 1) {
+                    throw new IOException("Corrupt record in " + path + " before the last segment");
+                }
+                try (FileChannel ch = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    ch.truncate(valid);
+                }
+                System.err.println("Truncated torn tail of " + path + " at byte " + valid);
+            }
+        }
+        return logged;
+    }
+
+    private void replay(byte[] payload, Map<String, Logged> logged) {
+        try {
+            if (payload[0] == ENQUEUED || payload[0] == LEGACY_ENQUEUED) {
+                ByteBuffer record = ByteBuffer.wrap(payload, 1, payload.length - 1);
+                long seq = payload[0] == ENQUEUED ? record.getLong() : -1;
+                BaseEntity entity = EntityCodec.decode(Arrays.copyOfRange(payload, record.position(), payload.length));
+                if (entity instanceof Expense e) {
+                    logged.put(e.getId(), new Logged(seq, e));
+                }
+                sequence.accumulateAndGet(seq, Math::max);
+            } else if (payload[0] == DRAINED || payload[0] == LEGACY_DRAINED) {
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload, 1, payload.length - 1));
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    String id = in.readUTF();
+                    if (payload[0] == LEGACY_DRAINED) {
+                        logged.remove(id);
+                    } else {
+                        long seq = in.readLong();
+                        logged.computeIfPresent(id, (k, current) -> current.seq() == seq ? null : current);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
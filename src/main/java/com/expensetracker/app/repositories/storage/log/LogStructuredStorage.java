@@ -0,0 +1,430 @@
+package com.expensetracker.app.repositories.storage.log;
+
+import com.expensetracker.app.exceptions.DuplicateEmailException;
+import com.expensetracker.app.models.BaseEntity;
+import com.expensetracker.app.models.Expense;
+import com.expensetracker.app.models.Goal;
+import com.expensetracker.app.models.User;
+import com.expensetracker.app.models.enums.UserRole;
+import com.expensetracker.app.repositories.UserChange;
+import com.expensetracker.app.repositories.storage.Entities;
+import com.expensetracker.app.repositories.storage.ExpenseStore;
+import com.expensetracker.app.repositories.storage.GoalStore;
+import com.expensetracker.app.repositories.storage.PageCursor;
+import com.expensetracker.app.repositories.storage.UserStore;
+import com.expensetracker.app.repositories.storage.memory.InMemoryExpenseStore;
+import com.expensetracker.app.repositories.storage.memory.InMemoryGoalStore;
+import com.expensetracker.app.repositories.storage.memory.InMemoryUserStore;
+import com.google.cloud.Timestamp;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Embedded durable storage for single-node deployments. Every write appends
+ * the entity's full post-write image to a {@link WriteAheadLog} and then
+ * applies it to the in-memory stores, which serve all reads. Because records
+ * are full images, replaying one that is already reflected in memory is
+ * harmless.
+ *
+ * <p>Compaction rotates the log, writes a snapshot of the live entities and
+ * deletes the segments it covers. Soft-deleted entities are left out of the
+ * snapshot, so they disappear at the next compaction instead of being carried
+ * forward. On startup the snapshot is loaded and the remaining segments are
+ * replayed, truncating a torn record at the tail.
+ */
+public class LogStructuredStorage implements AutoCloseable {
+
+    private static final String SNAPSHOT_FILE = "snapshot.dat";
+    private static final String SNAPSHOT_TMP_FILE = "snapshot.tmp";
+    private static final int SNAPSHOT_MAGIC = 0x45585453; // "EXTS"
+    private static final int LOCK_STRIPES = 64;
+
+    private final Path dir;
+    private final long compactAfterBytes;
+    private final InMemoryExpenseStore expenses = new InMemoryExpenseStore();
+    private final InMemoryGoalStore goals = new InMemoryGoalStore();
+    private final InMemoryUserStore users = new InMemoryUserStore();
+    private final WriteAheadLog wal;
+
+    // Writers share the read side; compaction takes the write side so that
+    // every record in the rotated segments is applied before state is copied
+    private final ReentrantReadWriteLock barrier = new ReentrantReadWriteLock();
+    // Explicit locks rather than monitors: writers wait on the log flush while
+    // holding them, which would pin the carrier of a virtual thread
+    private final Lock[] stripes = new Lock[LOCK_STRIPES];
+    private final Lock userLock = new ReentrantLock();
+    private final ScheduledExecutorService compactor;
+
+    public LogStructuredStorage(Path dir, boolean fsync, long compactAfterBytes, Duration compactionCheckInterval) throws IOException {
+        this.dir = dir;
+        this.compactAfterBytes = compactAfterBytes;
+        for (int i = 0; i < LOCK_STRIPES; i++) stripes[i] = new ReentrantLock();
+        Files.createDirectories(dir);
+
+        long started = System.nanoTime();
+        long lastSegment = recover();
+        this.wal = new WriteAheadLog(dir, lastSegment + 1, fsync);
+        System.out.println("Log storage recovered " + expenses.findAll().size() + " expenses, "
+                + goals.findAll().size() + " goals, " + users.findAll().size() + " users from " + dir.toAbsolutePath()
+                + " in " + Duration.ofNanos(System.nanoTime() - started).toMillis() + " ms");
+
+        this.compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "log-compactor");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = compactionCheckInterval.toMillis();
+        compactor.scheduleWithFixedDelay(this::compactIfNeeded, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public ExpenseStore expenseStore() {
+        return new LogExpenseStore();
+    }
+
+    public GoalStore goalStore() {
+        return new LogGoalStore();
+    }
+
+    public UserStore userStore() {
+        return new LogUserStore();
+    }
+
+    /**
+     * Writes a snapshot of the live entities and drops the log segments it
+     * covers, along with soft-deleted entities.
+     */
+    public synchronized void compact() throws IOException {
+        long coveredSegment;
+        List<BaseEntity> live = new ArrayList<>();
+        barrier.writeLock().lock();
+        try {
+            coveredSegment = wal.rotate();
+            live.addAll(users.findAll());
+            live.addAll(goals.findAll());
+            live.addAll(expenses.findAll());
+            expenses.purgeDeleted();
+            goals.purgeDeleted();
+            users.purgeDeleted();
+        } finally {
+            barrier.writeLock().unlock();
+        }
+        writeSnapshot(coveredSegment, live);
+        wal.deleteSegmentsUpTo(coveredSegment);
+    }
+
+    @Override
+    public void close() throws IOException {
+        compactor.shutdownNow();
+        wal.close();
+    }
+
+    private void compactIfNeeded() {
+        try {
+            if (wal.currentSegmentBytes() >= compactAfterBytes) {
+                compact();
+            }
+        } catch (Exception e) {
+            System.err.println("Log compaction failed: " + e.getMessage());
+        }
+    }
+
+    private <T extends BaseEntity, R> R write(Lock lock, Supplier<T> image, Function<T, R> apply) {
+        barrier.readLock().lock();
+        lock.lock();
+        try {
+            T post = image.get();
+            wal.append(EntityCodec.encode(post));
+            return apply.apply(post);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to write-ahead log: " + e.getMessage(), e);
+        } finally {
+            lock.unlock();
+            barrier.readLock().unlock();
+        }
+    }
+
+    private Lock stripe(String id) {
+        return stripes[Math.floorMod(id.hashCode(), LOCK_STRIPES)];
+    }
+
+    // ---- recovery and snapshots ----
+
+    private long recover() throws IOException {
+        long covered = loadSnapshot();
+        long last = covered;
+        List<Long> segments = WriteAheadLog.listSegments(dir);
+        for (int i = 0; i < segments.size(); i++) {
+            long n = segments.get(i);
+            if (n <= covered) continue;
+            Path path = WriteAheadLog.segmentPath(dir, n);
+            long valid = WriteAheadLog.readFrames(path, this::replay);
+            if (valid < Files.size(path)) {
+                if (i < segments.size() - 1) {
+                    throw new IOException("Corrupt record in " + path + " before the last segment");
+                }
+                // Torn write from a crash: drop the partial tail
+                try (FileChannel ch = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    ch.truncate(valid);
+                }
+                System.err.println("Truncated torn tail of " + path + " at byte " + valid);
+            }
+            last = n;
+        }
+        return last;
+    }
+
+    private void replay(byte[] payload) {
+        BaseEntity entity;
+        try {
+            entity = EntityCodec.decode(payload);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (entity instanceof Expense e) expenses.save(e);
+        else if (entity instanceof Goal g) goals.save(g);
+        else if (entity instanceof User u) users.restore(u);
+    }
+
+    private long loadSnapshot() throws IOException {
+        Path path = dir.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(path)) return 0;
+        long covered;
+        Path records = dir.resolve(SNAPSHOT_TMP_FILE + ".records");
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(path))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) throw new IOException("Not a snapshot file: " + path);
+            covered = in.readLong();
+            Files.copy(in, records, StandardCopyOption.REPLACE_EXISTING);
+        }
+        try {
+            WriteAheadLog.readFrames(records, this::replay);
+        } finally {
+            Files.deleteIfExists(records);
+        }
+        return covered;
+    }
+
+    private void writeSnapshot(long coveredSegment, List<BaseEntity> live) throws IOException {
+        Path tmp = dir.resolve(SNAPSHOT_TMP_FILE);
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(12);
+            header.putInt(SNAPSHOT_MAGIC).putLong(coveredSegment).flip();
+            while (header.hasRemaining()) ch.write(header);
+            for (BaseEntity entity : live) {
+                byte[] payload = EntityCodec.encode(entity);
+                ByteBuffer frame = ByteBuffer.allocate(8 + payload.length);
+                WriteAheadLog.frame(frame, payload);
+                frame.flip();
+                while (frame.hasRemaining()) ch.write(frame);
+            }
+            ch.force(true);
+        }
+        Files.move(tmp, dir.resolve(SNAPSHOT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // ---- store views ----
+
+    private final class LogExpenseStore implements ExpenseStore {
+
+        @Override
+        public void save(Expense expense) {
+            Expense image = Entities.copy(expense);
+            write(stripe(image.getId()), () -> image, post -> { expenses.save(post); return null; });
+        }
+
+        @Override
+        public Optional<Expense> findById(String id) {
+            return expenses.findById(id);
+        }
+
+        @Override
+        public List<Expense> findByUserId(String userId) {
+            return expenses.findByUserId(userId);
+        }
+
+        @Override
+        public List<Expense> findPageByUserId(String userId, PageCursor after, int limit) {
+            return expenses.findPageByUserId(userId, after, limit);
+        }
+
+        @Override
+        public List<Expense> findAll() {
+            return expenses.findAll();
+        }
+
+        @Override
+        public List<Expense> findByUserIdAndDateRange(String userId, Timestamp startDate, Timestamp endDate) {
+            return expenses.findByUserIdAndDateRange(userId, startDate, endDate);
+        }
+
+        @Override
+        public List<Expense> findByGoalId(String goalId) {
+            return expenses.findByGoalId(goalId);
+        }
+
+        @Override
+        public List<Expense> findByGoalIdAndDateRange(String goalId, Timestamp startDate, Timestamp endDate) {
+            return expenses.findByGoalIdAndDateRange(goalId, startDate, endDate);
+        }
+
+        @Override
+        public void update(String id, Map<String, Object> updates) {
+            write(stripe(id), () -> {
+                Expense post = expenses.findById(id).orElseThrow(() -> new IllegalArgumentException("Expense not found: " + id));
+                Entities.apply(post, updates);
+                return post;
+            }, post -> { expenses.save(post); return null; });
+        }
+
+        @Override
+        public BigDecimal sumAmountByUserIdAndDateRange(String userId, Timestamp startDate, Timestamp endDate) {
+            return expenses.sumAmountByUserIdAndDateRange(userId, startDate, endDate);
+        }
+
+        @Override
+        public BigDecimal sumAmountByUserIdCategoryAndDateRange(String userId, String category, Timestamp startDate, Timestamp endDate) {
+            return expenses.sumAmountByUserIdCategoryAndDateRange(userId, category, startDate, endDate);
+        }
+    }
+
+    private final class LogGoalStore implements GoalStore {
+
+        @Override
+        public void save(Goal goal) {
+            Goal image = Entities.copy(goal);
+            write(stripe(image.getId()), () -> image, post -> { goals.save(post); return null; });
+        }
+
+        @Override
+        public Optional<Goal> findById(String id) {
+            return goals.findById(id);
+        }
+
+        @Override
+        public List<Goal> findByUserId(String userId) {
+            return goals.findByUserId(userId);
+        }
+
+        @Override
+        public List<Goal> findAll() {
+            return goals.findAll();
+        }
+
+        @Override
+        public void update(String id, Map<String, Object> updates) {
+            write(stripe(id), () -> {
+                Goal post = goals.findById(id).orElseThrow(() -> new IllegalArgumentException("Goal not found: " + id));
+                Entities.apply(post, updates);
+                return post;
+            }, post -> { goals.save(post); return null; });
+        }
+
+        @Override
+        public void compute(String id, Function<Goal, Map<String, Object>> change) {
+            // Same lock order as write(), which re-enters both
+            Lock lock = stripe(id);
+            barrier.readLock().lock();
+            lock.lock();
+            try {
+                Optional<Goal> current = goals.findById(id);
+                if (current.isEmpty()) {
+                    return;
+                }
+                Map<String, Object> updates = change.apply(current.get());
+                if (updates != null && !updates.isEmpty()) {
+                    update(id, updates);
+                }
+            } finally {
+                lock.unlock();
+                barrier.readLock().unlock();
+            }
+        }
+    }
+
+    private final class LogUserStore implements UserStore {
+
+        @Override
+        public List<User> findAll() {
+            return users.findAll();
+        }
+
+        @Override
+        public List<User> findDeletionPending() {
+            return users.findDeletionPending();
+        }
+
+        @Override
+        public User findById(String id) {
+            return users.findById(id);
+        }
+
+        @Override
+        public User findByEmail(String email) {
+            return users.findByEmail(email);
+        }
+
+        @Override
+        public void create(User user) {
+            User image = Entities.copy(user);
+            write(userLock, () -> {
+                if (image.getEmail() != null && users.findByEmail(image.getEmail()) != null) {
+                    throw new DuplicateEmailException("Email already exists");
+                }
+                return image;
+            }, post -> { users.create(post); return null; });
+        }
+
+        @Override
+        public UserChange update(String id, Map<String, Object> updates) {
+            return write(userLock, () -> {
+                User post = users.findById(id);
+                if (post == null) throw new IllegalArgumentException("User not found: " + id);
+                UserRole newRole = (UserRole) updates.get("role");
+                boolean revoke = (newRole != null && newRole != post.getRole()) || updates.get("deletedAt") != null;
+                Entities.apply(post, revoke ? UserStore.withTokensRevoked(updates) : updates);
+                if (post.getEmail() != null && post.getDeletedAt() == null) {
+                    User owner = users.findByEmail(post.getEmail());
+                    if (owner != null && !owner.getId().equals(id)) {
+                        throw new DuplicateEmailException("Email already exists");
+                    }
+                }
+                return post;
+            }, post -> {
+                // The memory store keeps the logged revocation stamp rather than taking its own
+                Map<String, Object> applied = new HashMap<>(updates);
+                if (post.getTokensRevokedAt() != null) {
+                    applied.put("tokensRevokedAt", post.getTokensRevokedAt());
+                }
+                return users.update(id, applied);
+            });
+        }
+
+        @Override
+        public int rebuildEmailIndex() {
+            // The index is rebuilt from the log on every start
+            return users.rebuildEmailIndex();
+        }
+    }
+}
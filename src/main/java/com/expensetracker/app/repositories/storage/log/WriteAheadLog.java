@@ -0,0 +1,282 @@
+package com.expensetracker.app.repositories.storage.log;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, segmented log with group commit. Callers block in
+ * {@link #append} until their record is on disk; a single flusher thread
+ * writes everything queued so far with one write and one fsync, so
+ * concurrent writers share the cost of the sync.
+ *
+ * <p>Each record is framed as {@code [int length][int crc32][payload]}.
+ * A torn or corrupt frame at the tail of the last segment marks the end of
+ * the log and is truncated away on recovery.
+ *
+ * <p>A batch that fails to write is cut off the end of the segment again,
+ * so no later record lands behind a torn frame, where recovery would stop
+ * reading. If the cut fails too, the log refuses every append from then on.
+ *
+ * <p>Closing writes out every record appended before it and fails appends
+ * from then on; an append never waits on a log that will not write it.
+ */
+final class WriteAheadLog implements Closeable {
+
+    private static final int MAX_BATCH = 4096;
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private record Pending(byte[] payload, CompletableFuture<Void> done) {}
+
+    /** Writes a batch of frames to the segment; replaceable to inject failures in tests. */
+    interface FrameWriter {
+        void write(FileChannel channel, ByteBuffer frames) throws IOException;
+    }
+
+    private static final FrameWriter FULL_WRITE = (channel, frames) -> {
+        while (frames.hasRemaining()) {
+            channel.write(frames);
+        }
+    };
+
+    // Queued by close() behind the last append, telling the flusher to stop
+    private static final Pending CLOSE = new Pending(new byte[0], new CompletableFuture<>());
+
+    private final Path dir;
+    private final boolean fsync;
+    private final FrameWriter writer;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread flusher;
+    // Orders appends against close, so nothing is queued behind CLOSE. Not the
+    // monitor of this, which is held while a batch is synced
+    private final Object admission = new Object();
+
+    private FileChannel channel;
+    private long segment;
+    private long segmentBytes;
+    private boolean closed;
+    // Set once a failed batch couldn't be cut off the segment again
+    private volatile IOException broken;
+
+    WriteAheadLog(Path dir, long firstSegment, boolean fsync) throws IOException {
+        this(dir, firstSegment, fsync, FULL_WRITE);
+    }
+
+    WriteAheadLog(Path dir, long firstSegment, boolean fsync, FrameWriter writer) throws IOException {
+        this.dir = dir;
+        this.fsync = fsync;
+        this.writer = writer;
+        Files.createDirectories(dir);
+        openSegment(firstSegment);
+        this.flusher = new Thread(this::flushLoop, "wal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /** Blocks until the record is durably written (or written, when fsync is off). */
+    void append(byte[] payload) throws IOException {
+        Pending pending = new Pending(payload, new CompletableFuture<>());
+        synchronized (admission) {
+            if (closed) {
+                throw new IOException("Write-ahead log is closed");
+            }
+            if (broken != null) {
+                throw new IOException("Write-ahead log is unusable: " + broken.getMessage(), broken);
+            }
+            queue.add(pending);
+        }
+        try {
+            pending.done().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for log commit", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Log commit failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Closes the current segment and starts the next one. Returns the number of
+     * the segment that was closed; everything up to it can be compacted away
+     * once a snapshot covering it is durable.
+     */
+    synchronized long rotate() throws IOException {
+        long closedSegment = segment;
+        channel.force(true);
+        channel.close();
+        openSegment(segment + 1);
+        return closedSegment;
+    }
+
+    synchronized long currentSegmentBytes() {
+        return segmentBytes;
+    }
+
+    void deleteSegmentsUpTo(long lastSegment) throws IOException {
+        for (long n : listSegments(dir)) {
+            if (n <= lastSegment) {
+                Files.deleteIfExists(segmentPath(dir, n));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (admission) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.add(CLOSE);
+        }
+        try {
+            flusher.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Whatever the flusher didn't reach in time fails rather than waiting forever
+        List<Pending> abandoned = new ArrayList<>();
+        queue.drainTo(abandoned);
+        IOException closedError = new IOException("Write-ahead log is closed");
+        abandoned.forEach(p -> p.done().completeExceptionally(closedError));
+        synchronized (this) {
+            if (channel.isOpen()) {
+                channel.force(true);
+                channel.close();
+            }
+        }
+    }
+
+    // Not interrupted to stop: an interrupt during a write would close the channel
+    private void flushLoop() {
+        List<Pending> batch = new ArrayList<>();
+        boolean stopping = false;
+        while (!stopping) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH - 1);
+            } catch (InterruptedException e) {
+                continue;
+            }
+            // CLOSE is always the last thing queued
+            if (batch.get(batch.size() - 1) == CLOSE) {
+                batch.remove(batch.size() - 1);
+                stopping = true;
+            }
+            if (!batch.isEmpty()) {
+                try {
+                    writeBatch(batch);
+                    batch.forEach(p -> p.done().complete(null));
+                } catch (IOException | RuntimeException e) {
+                    batch.forEach(p -> p.done().completeExceptionally(e));
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    private synchronized void writeBatch(List<Pending> batch) throws IOException {
+        int size = 0;
+        for (Pending p : batch) size += 8 + p.payload().length;
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (Pending p : batch) frame(buffer, p.payload());
+        buffer.flip();
+        if (broken != null) {
+            throw broken;
+        }
+        try {
+            writer.write(channel, buffer);
+            if (fsync) {
+                channel.force(false);
+            }
+        } catch (IOException | RuntimeException e) {
+            discardTail();
+            throw e;
+        }
+        segmentBytes += size;
+    }
+
+    // Cuts whatever part of a failed batch reached the segment, so the next
+    // batch starts right after the last acknowledged frame
+    private void discardTail() {
+        try {
+            channel.truncate(segmentBytes);
+            if (fsync) {
+                channel.force(false);
+            }
+        } catch (IOException | RuntimeException e) {
+            broken = e instanceof IOException io ? io : new IOException(e);
+            System.err.println("Write-ahead log segment " + segment + " could not be repaired, refusing appends: "
+                    + e.getMessage());
+        }
+    }
+
+    private void openSegment(long n) throws IOException {
+        segment = n;
+        Path path = segmentPath(dir, n);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segmentBytes = channel.size();
+    }
+
+    static void frame(ByteBuffer buffer, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        buffer.putInt(payload.length);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(payload);
+    }
+
+    /**
+     * Feeds every intact record of {@code file} to {@code consumer} and returns
+     * the byte offset just past the last intact record.
+     */
+    static long readFrames(Path file, Consumer<byte[]> consumer) throws IOException {
+        byte[] data = Files.readAllBytes(file);
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        long valid = 0;
+        while (buffer.remaining() >= 8) {
+            int length = buffer.getInt();
+            int expectedCrc = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) break;
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != expectedCrc) break;
+            consumer.accept(payload);
+            valid = buffer.position();
+        }
+        return valid;
+    }
+
+    static List<Long> listSegments(Path dir) throws IOException {
+        List<Long> segments = new ArrayList<>();
+        if (!Files.isDirectory(dir)) return segments;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path p : stream) {
+                String name = p.getFileName().toString();
+                segments.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        segments.sort(null);
+        return segments;
+    }
+
+    static Path segmentPath(Path dir, long n) {
+        return dir.resolve(String.format("%s%012d%s", SEGMENT_PREFIX, n, SEGMENT_SUFFIX));
+    }
+}
@@ -0,0 +1,31 @@
+package com.expensetracker.app.repositories.storage.memory;
+
+import com.google.cloud.Timestamp;
+
+/**
+ * Sort key for date-ordered indexes: date first, document id as tie-breaker.
+ */
+record DateKey(Timestamp date, String id) implements Comparable<DateKey> {
+
+    // Ids are UUIDs or other ASCII strings, so these bracket every real id
+    private static final String MIN_ID = "";
+    private static final String MAX_ID = "\uffff";
+
+    static DateKey of(Timestamp date, String id) {
+        return new DateKey(date != null ? date : Timestamp.MIN_VALUE, id);
+    }
+
+    static DateKey lowerBound(Timestamp date) {
+        return new DateKey(date, MIN_ID);
+    }
+
+    static DateKey upperBound(Timestamp date) {
+        return new DateKey(date, MAX_ID);
+    }
+
+    @Override
+    public int compareTo(DateKey other) {
+        int cmp = date.compareTo(other.date);
+        return cmp != 0 ? cmp : id.compareTo(other.id);
+    }
+}
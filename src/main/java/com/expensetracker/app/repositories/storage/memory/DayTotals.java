@@ -0,0 +1,126 @@
+package com.expensetracker.app.repositories.storage.memory;
+
+import com.expensetracker.app.models.enums.ExpenseCategory;
+
+import java.util.TreeMap;
+
+/**
+ * Per-day expense totals of one user in cents, as Fenwick trees over the
+ * epoch day: one across all categories and one per category, allocated on
+ * first use. Adding to a day and summing any run of days are both
+ * O(log days). The covered span starts at the day it is created with and doubles
+ * as later or earlier days arrive, up to {@value #MAX_CAPACITY} days. Days
+ * that would widen it further, such as a mistyped year, are kept in a sorted
+ * map next to the trees instead. Not thread-safe.
+ */
+final class DayTotals {
+
+    private static final int MIN_CAPACITY = 64;
+    // About 45 years, so each tree stays within 128 KiB
+    private static final int MAX_CAPACITY = 1 << 14;
+    private static final int CATEGORIES = ExpenseCategory.values().length;
+
+    private long firstDay;
+    private int capacity;
+    // [0] spans all categories, [1 + ordinal] a single one; 1-based Fenwick layout
+    private long[][] trees = new long[1 + CATEGORIES][];
+    // Days outside the span, laid out like the trees: [0] all categories, [1 + ordinal] one
+    private final TreeMap<Long, long[]> outliers = new TreeMap<>();
+
+    DayTotals(long firstDay) {
+        this.firstDay = firstDay;
+        this.capacity = MIN_CAPACITY;
+        this.trees[0] = new long[capacity + 1];
+    }
+
+    /** Adds {@code cents} on {@code epochDay}; {@code category} is null when not a known category. */
+    void add(long epochDay, ExpenseCategory category, long cents) {
+        if (!cover(epochDay)) {
+            long[] day = outliers.computeIfAbsent(epochDay, d -> new long[1 + CATEGORIES]);
+            day[0] += cents;
+            if (category != null) {
+                day[1 + category.ordinal()] += cents;
+            }
+            return;
+        }
+        int index = (int) (epochDay - firstDay) + 1;
+        add(trees[0], index, cents);
+        if (category != null) {
+            int c = 1 + category.ordinal();
+            if (trees[c] == null) {
+                trees[c] = new long[capacity + 1];
+            }
+            add(trees[c], index, cents);
+        }
+    }
+
+    /** Total of {@code fromDay..toDay} inclusive, for one category or all when null. */
+    long sum(long fromDay, long toDay, ExpenseCategory category) {
+        int slot = category == null ? 0 : 1 + category.ordinal();
+        long sum = 0;
+        if (fromDay <= toDay) {
+            for (long[] day : outliers.subMap(fromDay, true, toDay, true).values()) {
+                sum += day[slot];
+            }
+        }
+        long[] tree = trees[slot];
+        long from = Math.max(fromDay, firstDay);
+        long to = Math.min(toDay, firstDay + capacity - 1);
+        if (tree == null || from > to) {
+            return sum;
+        }
+        return sum + prefix(tree, (int) (to - firstDay) + 1) - prefix(tree, (int) (from - firstDay));
+    }
+
+    // Widens the span to include the day, rebuilding each tree from its daily
+    // values; false when that would take it past MAX_CAPACITY
+    private boolean cover(long epochDay) {
+        if (epochDay >= firstDay && epochDay < firstDay + capacity) {
+            return true;
+        }
+        long needed = Math.max(firstDay + capacity, epochDay + 1) - Math.min(firstDay, epochDay);
+        if (needed > MAX_CAPACITY) {
+            return false;
+        }
+        int newCapacity = capacity;
+        while (newCapacity < needed) {
+            newCapacity = Math.multiplyExact(newCapacity, 2);
+        }
+        // The added room goes on the side that grew, so a history extending
+        // backwards a day at a time doesn't double the span on every step
+        long newFirst = epochDay < firstDay ? firstDay + capacity - newCapacity : firstDay;
+        int shift = (int) (firstDay - newFirst);
+        for (int t = 0; t < trees.length; t++) {
+            if (trees[t] == null) continue;
+            long[] rebuilt = new long[newCapacity + 1];
+            for (int i = 1; i <= capacity; i++) {
+                rebuilt[i + shift] = prefix(trees[t], i) - prefix(trees[t], i - 1);
+            }
+            // Linear-time construction: push each node into its parent
+            for (int i = 1; i <= newCapacity; i++) {
+                int parent = i + (i & -i);
+                if (parent <= newCapacity) {
+                    rebuilt[parent] += rebuilt[i];
+                }
+            }
+            trees[t] = rebuilt;
+        }
+        firstDay = newFirst;
+        capacity = newCapacity;
+        return true;
+    }
+
+    private static void add(long[] tree, int index, long delta) {
+        for (int i = index; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    private static long prefix(long[] tree, int index) {
+        long sum = 0;
+        for (int i = index; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+}
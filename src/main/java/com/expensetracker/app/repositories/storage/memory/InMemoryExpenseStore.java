@@ -0,0 +1,274 @@
+package com.expensetracker.app.repositories.storage.memory;
+
+import com.expensetracker.app.models.Expense;
+import com.expensetracker.app.models.enums.ExpenseCategory;
+import com.expensetracker.app.repositories.storage.Entities;
+import com.expensetracker.app.repositories.storage.ExpenseStore;
+import com.expensetracker.app.repositories.storage.PageCursor;
+import com.google.cloud.Timestamp;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Expense store kept entirely in memory. Live expenses are indexed per user
+ * and per goal in date order, so user/goal listings and date-range queries
+ * are sub-map views rather than scans. Writes are serialized; reads are
+ * lock-free and return copies. Range totals come from per-user day totals
+ * ({@link DayTotals}), built on a user's first total and kept current by
+ * writes, so only the partial days at either end of a range are scanned.
+ */
+public class InMemoryExpenseStore implements ExpenseStore {
+
+    private static final long SECONDS_PER_DAY = 86_400;
+
+    private final Map<String, Expense> byId = new ConcurrentHashMap<>();
+    private final Map<String, NavigableMap<DateKey, Expense>> byUser = new ConcurrentHashMap<>();
+    private final Map<String, NavigableMap<DateKey, Expense>> byGoal = new ConcurrentHashMap<>();
+    // Guarded by this; absent until the user's first total
+    private final Map<String, DayTotals> totalsByUser = new HashMap<>();
+
+    @Override
+    public synchronized void save(Expense expense) {
+        Expense previous = byId.get(expense.getId());
+        if (previous != null) {
+            unindex(previous);
+        }
+        Expense stored = Entities.copy(expense);
+        byId.put(stored.getId(), stored);
+        index(stored);
+    }
+
+    @Override
+    public Optional<Expense> findById(String id) {
+        Expense e = byId.get(id);
+        return e != null ? Optional.of(Entities.copy(e)) : Optional.empty();
+    }
+
+    @Override
+    public List<Expense> findByUserId(String userId) {
+        return copies(byUser.get(userId));
+    }
+
+    @Override
+    public List<Expense> findPageByUserId(String userId, PageCursor after, int limit) {
+        NavigableMap<DateKey, Expense> index = byUser.get(userId);
+        if (index == null) {
+            return List.of();
+        }
+        Collection<Expense> tail = after == null
+                ? index.values()
+                : index.tailMap(new DateKey(after.date(), after.id()), false).values();
+        List<Expense> page = new ArrayList<>(Math.min(limit, 64));
+        for (Expense e : tail) {
+            if (page.size() == limit) break;
+            page.add(Entities.copy(e));
+        }
+        return page;
+    }
+
+    @Override
+    public List<Expense> findAll() {
+        List<Expense> list = new ArrayList<>();
+        for (Expense e : byId.values()) {
+            if (e.getDeletedAt() == null) list.add(Entities.copy(e));
+        }
+        return list;
+    }
+
+    @Override
+    public List<Expense> findByUserIdAndDateRange(String userId, Timestamp startDate, Timestamp endDate) {
+        return copies(range(byUser.get(userId), startDate, endDate));
+    }
+
+    @Override
+    public List<Expense> findByGoalId(String goalId) {
+        return copies(byGoal.get(goalId));
+    }
+
+    @Override
+    public List<Expense> findByGoalIdAndDateRange(String goalId, Timestamp startDate, Timestamp endDate) {
+        return copies(range(byGoal.get(goalId), startDate, endDate));
+    }
+
+    @Override
+    public synchronized void update(String id, Map<String, Object> updates) {
+        Expense current = byId.get(id);
+        if (current == null) {
+            throw new IllegalArgumentException("Expense not found: " + id);
+        }
+        // Replace rather than mutate so concurrent readers never see a half-applied patch
+        Expense next = Entities.copy(current);
+        Entities.apply(next, updates);
+        unindex(current);
+        byId.put(id, next);
+        index(next);
+    }
+
+    private void index(Expense e) {
+        if (e.getDeletedAt() != null) return;
+        DateKey key = DateKey.of(e.getDate(), e.getId());
+        if (e.getUserId() != null) {
+            byUser.computeIfAbsent(e.getUserId(), k -> new ConcurrentSkipListMap<>()).put(key, e);
+            track(e, 1);
+        }
+        if (e.getGoalId() != null) {
+            byGoal.computeIfAbsent(e.getGoalId(), k -> new ConcurrentSkipListMap<>()).put(key, e);
+        }
+    }
+
+    private void unindex(Expense e) {
+        DateKey key = DateKey.of(e.getDate(), e.getId());
+        if (e.getUserId() != null) {
+            NavigableMap<DateKey, Expense> m = byUser.get(e.getUserId());
+            if (m != null && m.remove(key) != null) track(e, -1);
+        }
+        if (e.getGoalId() != null) {
+            NavigableMap<DateKey, Expense> m = byGoal.get(e.getGoalId());
+            if (m != null) m.remove(key);
+        }
+    }
+
+    @Override
+    public synchronized BigDecimal sumAmountByUserIdAndDateRange(String userId, Timestamp startDate, Timestamp endDate) {
+        return sumByDays(userId, null, startDate, endDate);
+    }
+
+    @Override
+    public synchronized BigDecimal sumAmountByUserIdCategoryAndDateRange(String userId, String category, Timestamp startDate, Timestamp endDate) {
+        // Stored categories are enum names, so anything else matches nothing
+        if (!ExpenseCategory.isValid(category)) {
+            return BigDecimal.ZERO;
+        }
+        return sumByDays(userId, ExpenseCategory.from(category), startDate, endDate);
+    }
+
+    // Whole days come from the day totals; expenses on the partial first and
+    // last days are added one by one
+    private BigDecimal sumByDays(String userId, ExpenseCategory category, Timestamp start, Timestamp end) {
+        NavigableMap<DateKey, Expense> index = byUser.get(userId);
+        if (index == null || start == null || end == null || start.compareTo(end) > 0) {
+            return BigDecimal.ZERO;
+        }
+        DayTotals totals = totalsFor(userId, index);
+        if (totals == null) {
+            BigDecimal sum = BigDecimal.ZERO;
+            for (Expense e : index.subMap(DateKey.lowerBound(start), true, DateKey.upperBound(end), true).values()) {
+                if (matches(e, category)) sum = sum.add(e.getAmount());
+            }
+            return sum;
+        }
+
+        long firstWhole = epochDay(start) + (isStartOfDay(start) ? 0 : 1);
+        long lastWhole = epochDay(end) - (isEndOfDay(end) ? 0 : 1);
+        if (firstWhole > lastWhole) {
+            return BigDecimal.valueOf(cents(index.subMap(DateKey.lowerBound(start), true, DateKey.upperBound(end), true), category), 2);
+        }
+        long cents = totals.sum(firstWhole, lastWhole, category);
+        if (!isStartOfDay(start)) {
+            cents += cents(index.subMap(DateKey.lowerBound(start), true, DateKey.lowerBound(startOfDay(firstWhole)), false), category);
+        }
+        if (!isEndOfDay(end)) {
+            cents += cents(index.subMap(DateKey.lowerBound(startOfDay(lastWhole + 1)), true, DateKey.upperBound(end), true), category);
+        }
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    // Null when some amount isn't whole cents; those users' totals add up the expenses instead
+    private DayTotals totalsFor(String userId, NavigableMap<DateKey, Expense> index) {
+        DayTotals totals = totalsByUser.get(userId);
+        if (totals != null) {
+            return totals;
+        }
+        for (Expense e : index.values()) {
+            if (e.getDate() == null) continue;
+            Long cents = e.getAmountCents();
+            if (cents == null) {
+                return null;
+            }
+            if (totals == null) {
+                // Anchored at today, so the span grows over the user's real history
+                // and an outlying first date doesn't push that history out of it
+                totals = new DayTotals(epochDay(Timestamp.now()));
+            }
+            totals.add(epochDay(e.getDate()), category(e), cents);
+        }
+        if (totals != null) {
+            totalsByUser.put(userId, totals);
+        }
+        return totals;
+    }
+
+    private void track(Expense e, int sign) {
+        DayTotals totals = totalsByUser.get(e.getUserId());
+        if (totals == null || e.getDate() == null) {
+            return;
+        }
+        Long cents = e.getAmountCents();
+        if (cents == null) {
+            totalsByUser.remove(e.getUserId());
+            return;
+        }
+        totals.add(epochDay(e.getDate()), category(e), sign * cents);
+    }
+
+    private static long cents(NavigableMap<DateKey, Expense> expenses, ExpenseCategory category) {
+        long cents = 0;
+        for (Expense e : expenses.values()) {
+            if (matches(e, category)) cents += e.getAmountCents();
+        }
+        return cents;
+    }
+
+    private static boolean matches(Expense e, ExpenseCategory category) {
+        return e.getAmount() != null && (category == null || category.name().equals(e.getCategory()));
+    }
+
+    private static ExpenseCategory category(Expense e) {
+        return e.getCategory() != null && ExpenseCategory.isValid(e.getCategory()) ? ExpenseCategory.from(e.getCategory()) : null;
+    }
+
+    private static long epochDay(Timestamp t) {
+        return Math.floorDiv(t.getSeconds(), SECONDS_PER_DAY);
+    }
+
+    private static boolean isStartOfDay(Timestamp t) {
+        return Math.floorMod(t.getSeconds(), SECONDS_PER_DAY) == 0 && t.getNanos() == 0;
+    }
+
+    private static boolean isEndOfDay(Timestamp t) {
+        return Math.floorMod(t.getSeconds(), SECONDS_PER_DAY) == SECONDS_PER_DAY - 1 && t.getNanos() == 999_999_999;
+    }
+
+    private static Timestamp startOfDay(long epochDay) {
+        return Timestamp.ofTimeSecondsAndNanos(epochDay * SECONDS_PER_DAY, 0);
+    }
+
+    private static NavigableMap<DateKey, Expense> range(NavigableMap<DateKey, Expense> index, Timestamp start, Timestamp end) {
+        if (index == null || start == null || end == null || start.compareTo(end) > 0) return null;
+        return index.subMap(DateKey.lowerBound(start), true, DateKey.upperBound(end), true);
+    }
+
+    private static List<Expense> copies(NavigableMap<DateKey, Expense> index) {
+        if (index == null) return new ArrayList<>();
+        Collection<Expense> values = index.values();
+        List<Expense> list = new ArrayList<>(values.size());
+        for (Expense e : values) list.add(Entities.copy(e));
+        return list;
+    }
+
+    /** Drops soft-deleted expenses, which are no longer indexed anyway; returns how many were removed. */
+    public synchronized int purgeDeleted() {
+        int before = byId.size();
+        byId.values().removeIf(e -> e.getDeletedAt() != null);
+        return before - byId.size();
+    }
+}
@@ -0,0 +1,105 @@
+package com.expensetracker.app.repositories.storage.memory;
+
+import com.expensetracker.app.models.Goal;
+import com.expensetracker.app.repositories.storage.Entities;
+import com.expensetracker.app.repositories.storage.GoalStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Goal store kept entirely in memory, with a per-user index of live goals.
+ */
+public class InMemoryGoalStore implements GoalStore {
+
+    private final Map<String, Goal> byId = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> byUser = new ConcurrentHashMap<>();
+
+    @Override
+    public synchronized void save(Goal goal) {
+        Goal previous = byId.get(goal.getId());
+        if (previous != null) {
+            unindex(previous);
+        }
+        Goal stored = Entities.copy(goal);
+        byId.put(stored.getId(), stored);
+        index(stored);
+    }
+
+    @Override
+    public Optional<Goal> findById(String id) {
+        Goal g = byId.get(id);
+        return g != null ? Optional.of(Entities.copy(g)) : Optional.empty();
+    }
+
+    @Override
+    public List<Goal> findByUserId(String userId) {
+        List<Goal> list = new ArrayList<>();
+        Set<String> ids = byUser.get(userId);
+        if (ids == null) return list;
+        for (String id : ids) {
+            Goal g = byId.get(id);
+            if (g != null && g.getDeletedAt() == null) list.add(Entities.copy(g));
+        }
+        return list;
+    }
+
+    @Override
+    public List<Goal> findAll() {
+        List<Goal> list = new ArrayList<>();
+        for (Goal g : byId.values()) {
+            if (g.getDeletedAt() == null) list.add(Entities.copy(g));
+        }
+        return list;
+    }
+
+    @Override
+    public synchronized void update(String id, Map<String, Object> updates) {
+        Goal current = byId.get(id);
+        if (current == null) {
+            throw new IllegalArgumentException("Goal not found: " + id);
+        }
+        Goal next = Entities.copy(current);
+        Entities.apply(next, updates);
+        unindex(current);
+        byId.put(id, next);
+        index(next);
+    }
+
+    private void index(Goal g) {
+        if (g.getDeletedAt() == null && g.getUserId() != null) {
+            byUser.computeIfAbsent(g.getUserId(), k -> ConcurrentHashMap.newKeySet()).add(g.getId());
+        }
+    }
+
+    private void unindex(Goal g) {
+        if (g.getUserId() != null) {
+            Set<String> ids = byUser.get(g.getUserId());
+            if (ids != null) ids.remove(g.getId());
+        }
+    }
+
+    @Override
+    public synchronized void compute(String id, Function<Goal, Map<String, Object>> change) {
+        Goal current = byId.get(id);
+        if (current == null) {
+            return;
+        }
+        Map<String, Object> updates = change.apply(Entities.copy(current));
+        if (updates != null && !updates.isEmpty()) {
+            update(id, updates);
+        }
+    }
+
+    /** Drops soft-deleted goals, which are no longer indexed anyway; returns how many were removed. */
+    public synchronized int purgeDeleted() {
+        int before = byId.size();
+        byId.values().removeIf(g -> g.getDeletedAt() != null);
+        return before - byId.size();
+    }
+}
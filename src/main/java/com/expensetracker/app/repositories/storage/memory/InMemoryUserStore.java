@@ -0,0 +1,132 @@
+package com.expensetracker.app.repositories.storage.memory;
+
+import com.expensetracker.app.exceptions.DuplicateEmailException;
+import com.expensetracker.app.models.User;
+import com.expensetracker.app.models.enums.UserRole;
+import com.expensetracker.app.repositories.UserChange;
+import com.expensetracker.app.repositories.storage.Entities;
+import com.expensetracker.app.repositories.storage.UserStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * User store kept entirely in memory, with a normalized-email index.
+ */
+public class InMemoryUserStore implements UserStore {
+
+    private final Map<String, User> byId = new ConcurrentHashMap<>();
+    private final Map<String, String> emailOwners = new ConcurrentHashMap<>();
+
+    @Override
+    public List<User> findAll() {
+        List<User> list = new ArrayList<>();
+        for (User u : byId.values()) {
+            if (u.getDeletedAt() == null) list.add(Entities.copy(u));
+        }
+        return list;
+    }
+
+    @Override
+    public List<User> findDeletionPending() {
+        List<User> list = new ArrayList<>();
+        for (User u : byId.values()) {
+            if (Boolean.TRUE.equals(u.getDeletionPending())) list.add(Entities.copy(u));
+        }
+        return list;
+    }
+
+    @Override
+    public User findById(String id) {
+        User u = byId.get(id);
+        return u != null ? Entities.copy(u) : null;
+    }
+
+    @Override
+    public User findByEmail(String email) {
+        String owner = emailOwners.get(UserStore.normalizeEmail(email));
+        User u = owner != null ? byId.get(owner) : null;
+        return u != null && !u.isDeleted() ? Entities.copy(u) : null;
+    }
+
+    @Override
+    public synchronized void create(User user) {
+        if (user.getEmail() != null) {
+            String key = UserStore.normalizeEmail(user.getEmail());
+            if (emailOwners.containsKey(key)) {
+                throw new DuplicateEmailException("Email already exists");
+            }
+            emailOwners.put(key, user.getId());
+        }
+        byId.put(user.getId(), Entities.copy(user));
+    }
+
+    @Override
+    public synchronized UserChange update(String id, Map<String, Object> updates) {
+        User current = byId.get(id);
+        if (current == null) {
+            throw new IllegalArgumentException("User not found: " + id);
+        }
+        String newEmail = (String) updates.get("email");
+        UserRole newRole = (UserRole) updates.get("role");
+        boolean releaseEmail = updates.get("deletedAt") != null;
+
+        String newKey = newEmail != null && !releaseEmail ? UserStore.normalizeEmail(newEmail) : null;
+        if (newKey != null) {
+            String owner = emailOwners.get(newKey);
+            if (owner != null && !owner.equals(id)) {
+                throw new DuplicateEmailException("Email already exists");
+            }
+        }
+        String oldKey = current.getEmail() != null ? UserStore.normalizeEmail(current.getEmail()) : null;
+        if (oldKey != null && (releaseEmail || (newKey != null && !newKey.equals(oldKey)))) {
+            emailOwners.remove(oldKey, id);
+        }
+        if (newKey != null) {
+            emailOwners.put(newKey, id);
+        }
+
+        boolean roleChanged = newRole != null && newRole != current.getRole();
+        User next = Entities.copy(current);
+        Entities.apply(next, roleChanged || releaseEmail ? UserStore.withTokensRevoked(updates) : updates);
+        byId.put(id, next);
+        return new UserChange(id, roleChanged, releaseEmail);
+    }
+
+    @Override
+    public synchronized int rebuildEmailIndex() {
+        int written = 0;
+        for (User u : byId.values()) {
+            if (u.getDeletedAt() == null && u.getEmail() != null
+                    && emailOwners.putIfAbsent(UserStore.normalizeEmail(u.getEmail()), u.getId()) == null) {
+                written++;
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Upserts a user image as-is, moving its email claim along. Used when
+     * rebuilding state from a log or snapshot, where uniqueness was already
+     * enforced at write time.
+     */
+    public synchronized void restore(User user) {
+        User previous = byId.get(user.getId());
+        if (previous != null && previous.getEmail() != null) {
+            emailOwners.remove(UserStore.normalizeEmail(previous.getEmail()), user.getId());
+        }
+        if (user.getEmail() != null && user.getDeletedAt() == null) {
+            emailOwners.put(UserStore.normalizeEmail(user.getEmail()), user.getId());
+        }
+        byId.put(user.getId(), Entities.copy(user));
+    }
+
+    /** Drops soft-deleted users; returns how many were removed. */
+    public synchronized int purgeDeleted() {
+        int before = byId.size();
+        byId.values().removeIf(u -> u.getDeletedAt() != null);
+        return before - byId.size();
+    }
+}
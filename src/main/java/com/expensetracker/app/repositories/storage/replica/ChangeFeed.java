@@ -0,0 +1,38 @@
+package com.expensetracker.app.repositories.storage.replica;
+
+import com.expensetracker.app.models.Expense;
+import com.expensetracker.app.models.Goal;
+
+/**
+ * A stream of the current state of one user's expenses and goals, as a
+ * database's real-time listeners deliver it: every document once, then each
+ * change. Deliveries for one subscription may come from several threads.
+ */
+public interface ChangeFeed {
+
+    /** Starts streaming the user's documents to {@code listener} until the subscription is closed. */
+    Subscription subscribe(String userId, Listener listener);
+
+    interface Listener {
+
+        /** The expense as now stored, soft-deleted ones included. */
+        void expense(Expense expense);
+
+        /** The goal as now stored, with its full {@code currentAmount}. */
+        void goal(Goal goal);
+
+        /** The document with this id no longer belongs to the user. */
+        void removed(String id);
+
+        /** Every document that existed at subscription time has been delivered. */
+        void synced();
+
+        /** The stream broke and delivers nothing more. */
+        void failed(Throwable error);
+    }
+
+    interface Subscription extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,88 @@
+package com.expensetracker.app.repositories.storage.replica;
+
+import com.expensetracker.app.models.Expense;
+import com.expensetracker.app.models.Goal;
+import com.expensetracker.app.repositories.storage.Entities;
+import com.expensetracker.app.repositories.storage.ExpenseStore;
+import com.expensetracker.app.repositories.storage.GoalStore;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * Feed over stores in the same process, standing in for a database's
+ * listeners in tests. Subscribers get the stores' current documents, then
+ * whatever is {@link #publish published}; deliveries run on the executor, so
+ * a queueing executor can hold them back or reorder them like a network would.
+ */
+public class InProcessChangeFeed implements ChangeFeed {
+
+    private final ExpenseStore expenses;
+    private final GoalStore goals;
+    private final Executor executor;
+    private final Map<String, List<Listener>> listeners = new ConcurrentHashMap<>();
+
+    public InProcessChangeFeed(ExpenseStore expenses, GoalStore goals) {
+        this(expenses, goals, Runnable::run);
+    }
+
+    public InProcessChangeFeed(ExpenseStore expenses, GoalStore goals, Executor executor) {
+        this.expenses = expenses;
+        this.goals = goals;
+        this.executor = executor;
+    }
+
+    @Override
+    public Subscription subscribe(String userId, Listener listener) {
+        listeners.computeIfAbsent(userId, k -> new CopyOnWriteArrayList<>()).add(listener);
+        executor.execute(() -> {
+            try {
+                expenses.findByUserId(userId).forEach(listener::expense);
+                goals.findByUserId(userId).forEach(listener::goal);
+                listener.synced();
+            } catch (Exception e) {
+                listener.failed(e);
+            }
+        });
+        return () -> {
+            List<Listener> subscribed = listeners.get(userId);
+            if (subscribed != null) {
+                subscribed.remove(listener);
+            }
+        };
+    }
+
+    /** Delivers the expense's stored state to its owner's subscribers. */
+    public void publish(Expense expense) {
+        Expense image = Entities.copy(expense);
+        for (Listener listener : listeners.getOrDefault(image.getUserId(), List.of())) {
+            executor.execute(() -> listener.expense(image));
+        }
+    }
+
+    /** Delivers the goal's stored state to its owner's subscribers. */
+    public void publish(Goal goal) {
+        Goal image = Entities.copy(goal);
+        for (Listener listener : listeners.getOrDefault(image.getUserId(), List.of())) {
+            executor.execute(() -> listener.goal(image));
+        }
+    }
+
+    /** Tells the user's subscribers the document is gone. */
+    public void publishRemoval(String userId, String id) {
+        for (Listener listener : listeners.getOrDefault(userId, List.of())) {
+            executor.execute(() -> listener.removed(id));
+        }
+    }
+
+    /** Breaks every subscription of the user, as a dropped connection would. */
+    public void fail(String userId, Throwable error) {
+        List<Listener> dropped = listeners.remove(userId);
+        if (dropped != null) {
+            dropped.forEach(l -> executor.execute(() -> l.failed(error)));
+        }
+    }
+}
@@ -0,0 +1,464 @@
+package com.expensetracker.app.repositories.storage.replica;
+
+import com.expensetracker.app.models.BaseEntity;
+import com.expensetracker.app.models.Expense;
+import com.expensetracker.app.models.Goal;
+import com.expensetracker.app.repositories.storage.Entities;
+import com.expensetracker.app.repositories.storage.ExpenseStore;
+import com.expensetracker.app.repositories.storage.GoalStore;
+import com.expensetracker.app.repositories.storage.memory.InMemoryExpenseStore;
+import com.expensetracker.app.repositories.storage.memory.InMemoryGoalStore;
+import com.google.cloud.Timestamp;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Local copies of recently active users' expenses and goals, kept current by
+ * a {@link ChangeFeed}. A user is followed from their first list query; until
+ * the feed has delivered everything that existed then, reads go to the
+ * database. Users idle longer than {@code idleTimeout}, or beyond
+ * {@code maxUsers}, stop being followed.
+ *
+ * <p>Writes made through this instance are applied locally as soon as the
+ * database accepts them, so its own reads see them without waiting for the
+ * feed. Every write is stamped with {@code updatedAt}, and a feed delivery
+ * only replaces a local copy that isn't newer, so a delivery that was already
+ * in flight can't roll a local write back. Writes from other instances show
+ * up when the feed delivers them; ordering between instances relies on their
+ * clocks agreeing to within the time between two writes of one document.
+ * Goal progress increments carry no timestamp and can briefly read stale
+ * after a concurrent feed delivery, until the increment itself is delivered.
+ *
+ * <p>Copies {@link #restore restored} from a previous run serve reads right
+ * away; the feed's first delivery then refreshes every document that changed
+ * meanwhile and drops the ones that are gone.
+ */
+public class Replica implements AutoCloseable {
+
+    private final ChangeFeed feed;
+    private final boolean enabled;
+    private final int maxUsers;
+    private final long idleNanos;
+    private final LongSupplier nanoClock;
+
+    // Access-ordered, so the eldest entry is the least recently used user; guarded by itself
+    private final LinkedHashMap<String, UserReplica> users = new LinkedHashMap<>(16, 0.75f, true);
+    // Expense and goal id -> owning user, for queries and writes that only carry an id
+    private final Map<String, String> owners = new ConcurrentHashMap<>();
+
+    private final LongAdder localReads = new LongAdder();
+    private final LongAdder remoteReads = new LongAdder();
+    private final LongAdder deliveries = new LongAdder();
+    private final LongAdder staleDeliveries = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public Replica(ChangeFeed feed, boolean enabled, int maxUsers, Duration idleTimeout) {
+        this(feed, enabled, maxUsers, idleTimeout, System::nanoTime);
+    }
+
+    public Replica(ChangeFeed feed, boolean enabled, int maxUsers, Duration idleTimeout, LongSupplier nanoClock) {
+        if (maxUsers < 1) {
+            throw new IllegalArgumentException("maxUsers must be at least 1");
+        }
+        this.feed = feed;
+        this.enabled = enabled;
+        this.maxUsers = maxUsers;
+        this.idleNanos = idleTimeout.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    public ExpenseStore expenses(ExpenseStore store) {
+        return enabled ? new ReplicatedExpenseStore(store, this) : store;
+    }
+
+    public GoalStore goals(GoalStore store) {
+        return enabled ? new ReplicatedGoalStore(store, this) : store;
+    }
+
+    /**
+     * The user's copy when it can answer reads; otherwise starts following
+     * the user if needed and returns null.
+     */
+    UserReplica serving(String userId) {
+        UserReplica replica;
+        List<UserReplica> evicted = new ArrayList<>();
+        synchronized (users) {
+            long now = nanoClock.getAsLong();
+            evictIdle(now, evicted);
+            replica = users.get(userId);
+            if (replica == null) {
+                replica = new UserReplica(userId);
+                users.put(userId, replica);
+                if (users.size() > maxUsers) {
+                    Iterator<UserReplica> eldest = users.values().iterator();
+                    evicted.add(eldest.next());
+                    eldest.remove();
+                }
+            }
+            replica.lastUsed = now;
+        }
+        evicted.forEach(this::stop);
+        // Subscribe outside the lock: an in-process feed may deliver on this thread
+        replica.start();
+        if (!replica.synced && !replica.warm) {
+            remoteReads.increment();
+            return null;
+        }
+        localReads.increment();
+        return replica;
+    }
+
+    /** The copy holding the goal, when its owner is being followed and caught up. */
+    UserReplica servingGoal(String goalId) {
+        String owner = owners.get(goalId);
+        return owner != null ? serving(owner) : null;
+    }
+
+    // Local writes, applied after the database accepted them
+
+    void wrote(Expense expense) {
+        UserReplica replica = followed(expense.getUserId());
+        if (replica != null) {
+            replica.accept(Entities.copy(expense), true);
+        }
+    }
+
+    void wrote(Goal goal) {
+        UserReplica replica = followed(goal.getUserId());
+        if (replica != null) {
+            replica.accept(Entities.copy(goal), true);
+        }
+    }
+
+    void updatedExpense(String id, Map<String, Object> updates) {
+        UserReplica replica = followed(owners.get(id));
+        if (replica != null) {
+            replica.patchExpense(id, updates);
+        }
+    }
+
+    void updatedGoal(String id, Map<String, Object> updates) {
+        UserReplica replica = followed(owners.get(id));
+        if (replica != null) {
+            replica.patchGoal(id, updates);
+        }
+    }
+
+    void incrementedGoal(String id, BigDecimal delta) {
+        UserReplica replica = followed(owners.get(id));
+        if (replica != null) {
+            replica.incrementGoal(id, delta);
+        }
+    }
+
+    /** The followed users' live documents, for carrying them over a restart. */
+    public Map<String, List<BaseEntity>> snapshot() {
+        List<UserReplica> all;
+        synchronized (users) {
+            all = new ArrayList<>(users.values());
+        }
+        Map<String, List<BaseEntity>> documents = new LinkedHashMap<>();
+        for (UserReplica replica : all) {
+            if (replica.synced || replica.warm) {
+                documents.put(replica.userId, replica.documents());
+            }
+        }
+        return documents;
+    }
+
+    /**
+     * Follows the user starting from documents saved by a previous run. Does
+     * nothing when disabled or when the user is already followed.
+     */
+    public void restore(String userId, List<BaseEntity> documents) {
+        if (!enabled) {
+            return;
+        }
+        List<UserReplica> evicted = new ArrayList<>();
+        synchronized (users) {
+            if (users.containsKey(userId)) {
+                return;
+            }
+            UserReplica replica = new UserReplica(userId);
+            replica.restore(documents);
+            replica.lastUsed = nanoClock.getAsLong();
+            users.put(userId, replica);
+            if (users.size() > maxUsers) {
+                Iterator<UserReplica> eldest = users.values().iterator();
+                evicted.add(eldest.next());
+                eldest.remove();
+            }
+        }
+        evicted.forEach(this::stop);
+    }
+
+    /** Number of users currently followed. */
+    public int followedUsers() {
+        synchronized (users) {
+            return users.size();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("followedUsers", followedUsers());
+        stats.put("maxUsers", maxUsers);
+        stats.put("localReads", localReads.sum());
+        stats.put("remoteReads", remoteReads.sum());
+        stats.put("deliveries", deliveries.sum());
+        stats.put("staleDeliveries", staleDeliveries.sum());
+        stats.put("failures", failures.sum());
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        List<UserReplica> all;
+        synchronized (users) {
+            all = new ArrayList<>(users.values());
+            users.clear();
+        }
+        all.forEach(this::stop);
+    }
+
+    // A write counts as activity too, but doesn't start following the user
+    private UserReplica followed(String userId) {
+        if (userId == null) {
+            return null;
+        }
+        synchronized (users) {
+            UserReplica replica = users.get(userId);
+            if (replica != null) {
+                replica.lastUsed = nanoClock.getAsLong();
+            }
+            return replica;
+        }
+    }
+
+    private void evictIdle(long now, List<UserReplica> evicted) {
+        Iterator<UserReplica> it = users.values().iterator();
+        while (it.hasNext()) {
+            UserReplica replica = it.next();
+            if (now - replica.lastUsed <= idleNanos) {
+                // Access order: everything after this was used more recently
+                return;
+            }
+            evicted.add(replica);
+            it.remove();
+        }
+    }
+
+    private void stop(UserReplica replica) {
+        replica.stop();
+        owners.values().removeIf(replica.userId::equals);
+    }
+
+    private void drop(UserReplica replica) {
+        synchronized (users) {
+            users.remove(replica.userId, replica);
+        }
+        stop(replica);
+    }
+
+    // Micros, the precision the database keeps timestamps at
+    private static long version(BaseEntity entity) {
+        Timestamp t = entity.getUpdatedAt();
+        return t == null ? Long.MIN_VALUE : t.getSeconds() * 1_000_000 + t.getNanos() / 1_000;
+    }
+
+    /** One followed user's documents. */
+    final class UserReplica implements ChangeFeed.Listener {
+
+        final String userId;
+        final InMemoryExpenseStore expenses = new InMemoryExpenseStore();
+        final InMemoryGoalStore goals = new InMemoryGoalStore();
+        volatile boolean synced;
+        // Restored from a previous run and serving reads before the feed caught up
+        volatile boolean warm;
+        long lastUsed;
+        // Restored ids the feed hasn't delivered yet; those left at sync are gone
+        private final Set<String> unconfirmed = new HashSet<>();
+        private ChangeFeed.Subscription subscription;
+        private boolean started;
+        private boolean stopped;
+
+        UserReplica(String userId) {
+            this.userId = userId;
+        }
+
+        void start() {
+            synchronized (this) {
+                if (started) {
+                    return;
+                }
+                started = true;
+            }
+            ChangeFeed.Subscription s = feed.subscribe(userId, this);
+            boolean close;
+            synchronized (this) {
+                subscription = s;
+                close = stopped;
+            }
+            if (close) {
+                s.close();
+            }
+        }
+
+        void stop() {
+            ChangeFeed.Subscription s;
+            synchronized (this) {
+                stopped = true;
+                synced = false;
+                warm = false;
+                s = subscription;
+            }
+            if (s != null) {
+                s.close();
+            }
+        }
+
+        @Override
+        public void expense(Expense expense) {
+            deliveries.increment();
+            accept(expense, false);
+        }
+
+        @Override
+        public void goal(Goal goal) {
+            deliveries.increment();
+            accept(goal, false);
+        }
+
+        @Override
+        public synchronized void removed(String id) {
+            deliveries.increment();
+            Timestamp now = Timestamp.now();
+            if (expenses.findById(id).isPresent()) {
+                expenses.update(id, Map.of("deletedAt", now, "updatedAt", now));
+            } else if (goals.findById(id).isPresent()) {
+                goals.update(id, Map.of("deletedAt", now, "updatedAt", now));
+            }
+            owners.remove(id, userId);
+        }
+
+        @Override
+        public synchronized void synced() {
+            if (stopped) {
+                return;
+            }
+            for (String id : new ArrayList<>(unconfirmed)) {
+                removed(id);
+            }
+            unconfirmed.clear();
+            synced = true;
+        }
+
+        synchronized void restore(List<BaseEntity> documents) {
+            for (BaseEntity document : documents) {
+                if (document instanceof Expense e) {
+                    expenses.save(e);
+                } else if (document instanceof Goal g) {
+                    goals.save(g);
+                } else {
+                    continue;
+                }
+                owners.put(document.getId(), userId);
+                unconfirmed.add(document.getId());
+            }
+            warm = true;
+        }
+
+        synchronized List<BaseEntity> documents() {
+            List<BaseEntity> documents = new ArrayList<>();
+            documents.addAll(expenses.findAll());
+            documents.addAll(goals.findAll());
+            return documents;
+        }
+
+        @Override
+        public void failed(Throwable error) {
+            failures.increment();
+            System.err.println("Replica feed for user " + userId + " failed, reading from the database: " + error.getMessage());
+            drop(this);
+        }
+
+        synchronized void accept(Expense expense, boolean local) {
+            if (stopped) {
+                return;
+            }
+            if (!local) {
+                unconfirmed.remove(expense.getId());
+            }
+            Optional<Expense> current = expenses.findById(expense.getId());
+            if (!local && current.isPresent() && version(current.get()) > version(expense)) {
+                staleDeliveries.increment();
+                return;
+            }
+            if (!userId.equals(expense.getUserId())) {
+                // Moved to another user: it leaves this user's listings
+                if (current.isPresent()) {
+                    removed(expense.getId());
+                }
+                return;
+            }
+            expenses.save(expense);
+            owners.put(expense.getId(), userId);
+        }
+
+        synchronized void accept(Goal goal, boolean local) {
+            if (stopped) {
+                return;
+            }
+            if (!local) {
+                unconfirmed.remove(goal.getId());
+            }
+            Optional<Goal> current = goals.findById(goal.getId());
+            if (!local && current.isPresent() && version(current.get()) > version(goal)) {
+                staleDeliveries.increment();
+                return;
+            }
+            goals.save(goal);
+            owners.put(goal.getId(), userId);
+        }
+
+        synchronized void patchExpense(String id, Map<String, Object> updates) {
+            Optional<Expense> current = expenses.findById(id);
+            if (current.isPresent()) {
+                Expense next = current.get();
+                Entities.apply(next, updates);
+                accept(next, true);
+            }
+        }
+
+        synchronized void patchGoal(String id, Map<String, Object> updates) {
+            Optional<Goal> current = goals.findById(id);
+            if (current.isPresent()) {
+                Goal next = current.get();
+                Entities.apply(next, updates);
+                accept(next, true);
+            }
+        }
+
+        synchronized void incrementGoal(String id, BigDecimal delta) {
+            Optional<Goal> current = goals.findById(id);
+            if (current.isPresent() && current.get().getDeletedAt() == null) {
+                Goal next = current.get();
+                next.setCurrentAmount((next.getCurrentAmount() != null ? next.getCurrentAmount() : BigDecimal.ZERO).add(delta));
+                goals.save(next);
+            }
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.expensetracker.app.repositories.storage.replica;
+
+import com.expensetracker.app.models.Expense;
+import com.expensetracker.app.repositories.storage.ExpenseStore;
+import com.expensetracker.app.repositories.storage.MonthlyRollup;
+import com.expensetracker.app.repositories.storage.PageCursor;
+import com.google.cloud.Timestamp;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Answers a user's expense listings, ranges and totals from the {@link Replica}
+ * once it follows them, and everything else from the database. Writes go to
+ * the database first and are then applied to the replica. A goal's expenses
+ * are read locally when the goal's owner is followed, since expenses are only
+ * ever assigned to their own user's goals.
+ */
+public class ReplicatedExpenseStore implements ExpenseStore {
+
+    private final ExpenseStore delegate;
+    private final Replica replica;
+
+    public ReplicatedExpenseStore(ExpenseStore delegate, Replica replica) {
+        this.delegate = delegate;
+        this.replica = replica;
+    }
+
+    @Override
+    public void save(Expense expense) throws ExecutionException, InterruptedException {
+        expense.setUpdatedAt(Timestamp.now());
+        delegate.save(expense);
+        replica.wrote(expense);
+    }
+
+    // Straight to the store, so counting a user doesn't start following them
+    @Override
+    public long countByUserId(String userId) throws ExecutionException, InterruptedException {
+        return delegate.countByUserId(userId);
+    }
+
+    // Archived expenses were soft-deleted long before, so the replica no longer lists them
+
+    @Override
+    public List<Expense> findDeletedBefore(Timestamp cutoff, int limit) throws ExecutionException, InterruptedException {
+        return delegate.findDeletedBefore(cutoff, limit);
+    }
+
+    @Override
+    public void archive(List<Expense> deleted) throws ExecutionException, InterruptedException {
+        delegate.archive(deleted);
+    }
+
+    @Override
+    public void softDeleteAll(List<Expense> expenses, Timestamp deletedAt) throws ExecutionException, InterruptedException {
+        delegate.softDeleteAll(expenses, deletedAt);
+        Map<String, Object> deleted = Map.of("deletedAt", deletedAt, "updatedAt", deletedAt);
+        expenses.forEach(e -> replica.updatedExpense(e.getId(), deleted));
+    }
+
+    @Override
+    public Optional<Expense> findById(String id) throws ExecutionException, InterruptedException {
+        return delegate.findById(id);
+    }
+
+    @Override
+    public List<Expense> findByUserId(String userId) throws ExecutionException, InterruptedException {
+        Replica.UserReplica local = replica.serving(userId);
+        return local != null ? local.expenses.findByUserId(userId) : delegate.findByUserId(userId);
+    }
+
+    @Override
+    public List<Expense> findAll() throws ExecutionException, InterruptedException {
+        return delegate.findAll();
+    }
+
+    @Override
+    public List<Expense> findByUserIdAndDateRange(String userId, Timestamp startDate, Timestamp endDate)
+            throws ExecutionException, InterruptedException {
+        Replica.UserReplica local = replica.serving(userId);
+        return local != null
+                ? local.expenses.findByUserIdAndDateRange(userId, startDate, endDate)
+                : delegate.findByUserIdAndDateRange(userId, startDate, endDate);
+    }
+
+    @Override
+    public List<Expense> findByGoalId(String goalId) throws ExecutionException, InterruptedException {
+        Replica.UserReplica local = replica.servingGoal(goalId);
+        return local != null ? local.expenses.findByGoalId(goalId) : delegate.findByGoalId(goalId);
+    }
+
+    @Override
+    public List<Expense> findByGoalIdAndDateRange(String goalId, Timestamp startDate, Timestamp endDate)
+            throws ExecutionException, InterruptedException {
+        Replica.UserReplica local = replica.servingGoal(goalId);
+        return local != null
+                ? local.expenses.findByGoalIdAndDateRange(goalId, startDate, endDate)
+                : delegate.findByGoalIdAndDateRange(goalId, startDate, endDate);
+    }
+
+    @Override
+    public void update(String id, Map<String, Object> updates) throws ExecutionException, InterruptedException {
+        Map<String, Object> stamped = stamped(updates);
+        delegate.update(id, stamped);
+        replica.updatedExpense(id, stamped);
+    }
+
+    @Override
+    public List<Expense> findPageByUserId(String userId, PageCursor after, int limit)
+            throws ExecutionException, InterruptedException {
+        Replica.UserReplica local = replica.serving(userId);
+        return local != null
+                ? local.expenses.findPageByUserId(userId, after, limit)
+                : delegate.findPageByUserId(userId, after, limit);
+    }
+
+    @Override
+    public CompletableFuture<Void> saveAsync(Expense expense) {
+        expense.setUpdatedAt(Timestamp.now());
+        return delegate.saveAsync(expense).thenRun(() -> replica.wrote(expense));
+    }
+
+    @Override
+    public CompletableFuture<Void> saveAllAsync(List<Expense> expenses) {
+        Timestamp now = Timestamp.now();
+        expenses.forEach(e -> e.setUpdatedAt(now));
+        return delegate.saveAllAsync(expenses).thenRun(() -> expenses.forEach(replica::wrote));
+    }
+
+    @Override
+    public CompletableFuture<Optional<Expense>> findByIdAsync(String id) {
+        return delegate.findByIdAsync(id);
+    }
+
+    @Override
+    public CompletableFuture<List<Expense>> findByUserIdAsync(String userId) {
+        Replica.UserReplica local = replica.serving(userId);
+        return local != null
+                ? CompletableFuture.completedFuture(local.expenses.findByUserId(userId))
+                : delegate.findByUserIdAsync(userId);
+    }
+
+    @Override
+    public CompletableFuture<List<Expense>> findByUserIdAndDateRangeAsync(String userId, Timestamp startDate, Timestamp endDate) {
+        Replica.UserReplica local = replica.serving(userId);
+        return local != null
+                ? CompletableFuture.completedFuture(local.expenses.findByUserIdAndDateRange(userId, startDate, endDate))
+                : delegate.findByUserIdAndDateRangeAsync(userId, startDate, endDate);
+    }
+
+    @Override
+    public CompletableFuture<Void> updateAsync(String id, Map<String, Object> updates) {
+        Map<String, Object> stamped = stamped(updates);
+        return delegate.updateAsync(id, stamped).thenRun(() -> replica.updatedExpense(id, stamped));
+    }
+
+    @Override
+    public BigDecimal sumAmountByUserIdAndDateRange(String userId, Timestamp startDate, Timestamp endDate)
+            throws ExecutionException, InterruptedException {
+        Replica.UserReplica local = replica.serving(userId);
+        return local != null
+                ? local.expenses.sumAmountByUserIdAndDateRange(userId, startDate, endDate)
+                : delegate.sumAmountByUserIdAndDateRange(userId, startDate, endDate);
+    }
+
+    @Override
+    public BigDecimal sumAmountByUserIdCategoryAndDateRange(String userId, String category, Timestamp startDate, Timestamp endDate)
+            throws ExecutionException, InterruptedException {
+        Replica.UserReplica local = replica.serving(userId);
+        return local != null
+                ? local.expenses.sumAmountByUserIdCategoryAndDateRange(userId, category, startDate, endDate)
+                : delegate.sumAmountByUserIdCategoryAndDateRange(userId, category, startDate, endDate);
+    }
+
+    @Override
+    public BigDecimal sumAmountByGoalId(String goalId, Timestamp startDate, Timestamp endDate)
+            throws ExecutionException, InterruptedException {
+        Replica.UserReplica local = replica.servingGoal(goalId);
+        return local != null
+                ? local.expenses.sumAmountByGoalId(goalId, startDate, endDate)
+                : delegate.sumAmountByGoalId(goalId, startDate, endDate);
+    }
+
+    @Override
+    public List<MonthlyRollup> findRollups(String userId, String fromMonth, String toMonth)
+            throws ExecutionException, InterruptedException {
+        Replica.UserReplica local = replica.serving(userId);
+        return local != null
+                ? local.expenses.findRollups(userId, fromMonth, toMonth)
+                : delegate.findRollups(userId, fromMonth, toMonth);
+    }
+
+    @Override
+    public int rebuildRollups() throws ExecutionException, InterruptedException {
+        return delegate.rebuildRollups();
+    }
+
+    @Override
+    public int backfillAggregateFields() throws ExecutionException, InterruptedException {
+        return delegate.backfillAggregateFields();
+    }
+
+    // Versions the write so the replica can tell it from older feed deliveries
+    static Map<String, Object> stamped(Map<String, Object> updates) {
+        Map<String, Object> stamped = new HashMap<>(updates);
+        stamped.put("updatedAt", Timestamp.now());
+        return stamped;
+    }
+}
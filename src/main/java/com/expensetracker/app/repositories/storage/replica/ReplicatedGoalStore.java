@@ -0,0 +1,158 @@
+package com.expensetracker.app.repositories.storage.replica;
+
+import com.expensetracker.app.models.Goal;
+import com.expensetracker.app.repositories.storage.Entities;
+import com.expensetracker.app.repositories.storage.GoalStore;
+import com.expensetracker.app.repositories.storage.PageCursor;
+import com.google.cloud.Timestamp;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/** Answers a followed user's goal listings from the {@link Replica}; see {@link ReplicatedExpenseStore}. */
+public class ReplicatedGoalStore implements GoalStore {
+
+    private final GoalStore delegate;
+    private final Replica replica;
+
+    public ReplicatedGoalStore(GoalStore delegate, Replica replica) {
+        this.delegate = delegate;
+        this.replica = replica;
+    }
+
+    @Override
+    public void save(Goal goal) throws ExecutionException, InterruptedException {
+        goal.setUpdatedAt(Timestamp.now());
+        delegate.save(goal);
+        replica.wrote(goal);
+    }
+
+    @Override
+    public void saveAll(List<Goal> goals) throws ExecutionException, InterruptedException {
+        Timestamp now = Timestamp.now();
+        goals.forEach(g -> g.setUpdatedAt(now));
+        delegate.saveAll(goals);
+        goals.forEach(replica::wrote);
+    }
+
+    // Straight to the store, so counting a user doesn't start following them
+    @Override
+    public long countByUserId(String userId) throws ExecutionException, InterruptedException {
+        return delegate.countByUserId(userId);
+    }
+
+    @Override
+    public int backfillProgressShards() throws ExecutionException, InterruptedException {
+        return delegate.backfillProgressShards();
+    }
+
+    // Archived goals were soft-deleted long before, so the replica no longer lists them
+
+    @Override
+    public List<Goal> findDeletedBefore(Timestamp cutoff, int limit) throws ExecutionException, InterruptedException {
+        return delegate.findDeletedBefore(cutoff, limit);
+    }
+
+    @Override
+    public void archive(List<Goal> deleted) throws ExecutionException, InterruptedException {
+        delegate.archive(deleted);
+    }
+
+    @Override
+    public void softDeleteAll(List<Goal> goals, Timestamp deletedAt) throws ExecutionException, InterruptedException {
+        delegate.softDeleteAll(goals, deletedAt);
+        Map<String, Object> deleted = Map.of("deletedAt", deletedAt, "updatedAt", deletedAt);
+        goals.forEach(g -> replica.updatedGoal(g.getId(), deleted));
+    }
+
+    @Override
+    public Optional<Goal> findById(String id) throws ExecutionException, InterruptedException {
+        return delegate.findById(id);
+    }
+
+    @Override
+    public List<Goal> findByUserId(String userId) throws ExecutionException, InterruptedException {
+        Replica.UserReplica local = replica.serving(userId);
+        return local != null ? local.goals.findByUserId(userId) : delegate.findByUserId(userId);
+    }
+
+    @Override
+    public List<Goal> findOpenByUserIdAt(String userId, Timestamp date) throws ExecutionException, InterruptedException {
+        Replica.UserReplica local = replica.serving(userId);
+        return local != null ? local.goals.findOpenByUserIdAt(userId, date) : delegate.findOpenByUserIdAt(userId, date);
+    }
+
+    @Override
+    public List<Goal> findAll() throws ExecutionException, InterruptedException {
+        return delegate.findAll();
+    }
+
+    @Override
+    public void update(String id, Map<String, Object> updates) throws ExecutionException, InterruptedException {
+        Map<String, Object> stamped = ReplicatedExpenseStore.stamped(updates);
+        delegate.update(id, stamped);
+        replica.updatedGoal(id, stamped);
+    }
+
+    // The goal the change was applied to is the stored one, so the replica takes the result as is
+    @Override
+    public void compute(String id, Function<Goal, Map<String, Object>> change)
+            throws ExecutionException, InterruptedException {
+        AtomicReference<Goal> written = new AtomicReference<>();
+        delegate.compute(id, g -> {
+            Map<String, Object> updates = change.apply(g);
+            if (updates == null || updates.isEmpty()) {
+                written.set(null);
+                return updates;
+            }
+            Map<String, Object> stamped = ReplicatedExpenseStore.stamped(updates);
+            Goal next = Entities.copy(g);
+            Entities.apply(next, stamped);
+            written.set(next);
+            return stamped;
+        });
+        if (written.get() != null) {
+            replica.wrote(written.get());
+        }
+    }
+
+    @Override
+    public BigDecimal incrementProgress(String id, BigDecimal delta) throws ExecutionException, InterruptedException {
+        BigDecimal written = delegate.incrementProgress(id, delta);
+        replica.incrementedGoal(id, written);
+        return written;
+    }
+
+    @Override
+    public List<Goal> findPageByUserId(String userId, PageCursor after, int limit)
+            throws ExecutionException, InterruptedException {
+        Replica.UserReplica local = replica.serving(userId);
+        return local != null
+                ? local.goals.findPageByUserId(userId, after, limit)
+                : delegate.findPageByUserId(userId, after, limit);
+    }
+
+    @Override
+    public List<Goal> findPage(PageCursor after, int limit) throws ExecutionException, InterruptedException {
+        return delegate.findPage(after, limit);
+    }
+
+    @Override
+    public CompletableFuture<Optional<Goal>> findByIdAsync(String id) {
+        return delegate.findByIdAsync(id);
+    }
+
+    @Override
+    public CompletableFuture<List<Goal>> findByUserIdAsync(String userId) {
+        Replica.UserReplica local = replica.serving(userId);
+        return local != null
+                ? CompletableFuture.completedFuture(local.goals.findByUserId(userId))
+                : delegate.findByUserIdAsync(userId);
+    }
+}
@@ -0,0 +1,11 @@
+package com.expensetracker.app.services;
+
+import com.expensetracker.app.models.enums.UserRole;
+
+import java.time.Instant;
+
+/**
+ * Claims carried by a signed access token issued by {@link TokenService}.
+ */
+public record AccessToken(String userId, UserRole role, Instant issuedAt, Instant expiresAt) {
+}
@@ -0,0 +1,164 @@
+package com.expensetracker.app.services;
+
+import com.expensetracker.app.models.User;
+import com.expensetracker.app.repositories.ExpenseRepository;
+import com.expensetracker.app.repositories.GoalRepository;
+import com.expensetracker.app.repositories.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cascades a user's soft delete to their goals and expenses. Started by the
+ * user change that deletes the account and run in the background, one
+ * account at a time, so the delete request doesn't wait for it. Goals go
+ * first so that deleting the expenses has no goal progress left to adjust.
+ * Running it again for the same user is harmless.
+ *
+ * <p>The delete marks the user as pending deletion in the same write, and
+ * only a finished cascade clears the mark. Pending users are picked up
+ * again at startup and every {@code retry-minutes}, so cascades lost to a
+ * restart or failed midway are resumed. Eager even under lazy
+ * initialization, so deletes are followed from startup.
+ */
+@Service
+@Lazy(false)
+public class AccountDeletion implements AutoCloseable {
+
+    private static final int MAX_TRACKED = 1000;
+
+    public enum State { QUEUED, RUNNING, DONE, FAILED }
+
+    public record Progress(String userId, State state, int goalsDeleted, int expensesDeleted,
+                           Instant queuedAt, Instant finishedAt, String error) {
+
+        Progress with(State state, int goalsDeleted, int expensesDeleted, String error) {
+            Instant finished = state == State.DONE || state == State.FAILED ? Instant.now() : null;
+            return new Progress(userId, state, goalsDeleted, expensesDeleted, queuedAt, finished, error);
+        }
+    }
+
+    private final UserRepository userRepository;
+    private final GoalRepository goalRepository;
+    private final ExpenseRepository expenseRepository;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "account-deletion");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Latest run per user, oldest dropped first
+    private final Map<String, Progress> runs = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Progress> eldest) {
+            return size() > MAX_TRACKED;
+        }
+    };
+
+    @Autowired
+    public AccountDeletion(UserRepository userRepository, GoalRepository goalRepository, ExpenseRepository expenseRepository,
+                           @Value("${app.account-deletion.retry-minutes:15}") long retryMinutes) {
+        this(userRepository, goalRepository, expenseRepository);
+        executor.scheduleWithFixedDelay(this::resumeQuietly, 0, retryMinutes, TimeUnit.MINUTES);
+    }
+
+    public AccountDeletion(UserRepository userRepository, GoalRepository goalRepository, ExpenseRepository expenseRepository) {
+        this.userRepository = userRepository;
+        this.goalRepository = goalRepository;
+        this.expenseRepository = expenseRepository;
+        userRepository.addUserChangeListener(change -> {
+            if (change.deleted()) {
+                start(change.userId());
+            }
+        });
+    }
+
+    /** Queues the cascade unless one is already queued or running for the user. */
+    public Progress start(String userId) {
+        Progress queued;
+        synchronized (runs) {
+            Progress current = runs.get(userId);
+            if (current != null && (current.state() == State.QUEUED || current.state() == State.RUNNING)) {
+                return current;
+            }
+            queued = new Progress(userId, State.QUEUED, 0, 0, Instant.now(), null, null);
+            runs.put(userId, queued);
+        }
+        executor.execute(() -> run(userId));
+        return queued;
+    }
+
+    /**
+     * Starts the cascade for every user still marked pending deletion, unless
+     * one is queued or running already; returns how many users are pending.
+     */
+    public int resumePending() throws ExecutionException, InterruptedException {
+        List<User> pending = userRepository.findDeletionPending();
+        pending.forEach(u -> start(u.getId()));
+        return pending.size();
+    }
+
+    private void resumeQuietly() {
+        try {
+            int pending = resumePending();
+            if (pending > 0) {
+                System.out.println("Resuming account deletion for " + pending + " users");
+            }
+        } catch (Exception e) {
+            System.err.println("Failed to look up pending account deletions: " + e.getMessage());
+        }
+    }
+
+    public Optional<Progress> progress(String userId) {
+        synchronized (runs) {
+            return Optional.ofNullable(runs.get(userId));
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void run(String userId) {
+        int[] goals = {0};
+        int[] expenses = {0};
+        update(userId, State.RUNNING, 0, 0, null);
+        try {
+            goalRepository.deleteByUserId(userId, n -> {
+                goals[0] = n;
+                update(userId, State.RUNNING, n, 0, null);
+            });
+            expenseRepository.deleteByUserId(userId, false, n -> {
+                expenses[0] = n;
+                update(userId, State.RUNNING, goals[0], n, null);
+            });
+            userRepository.markDeletionCascaded(userId);
+            update(userId, State.DONE, goals[0], expenses[0], null);
+            System.out.println("Deleted " + goals[0] + " goals and " + expenses[0] + " expenses of user " + userId);
+        } catch (ExecutionException | InterruptedException | RuntimeException e) {
+            update(userId, State.FAILED, goals[0], expenses[0], e.getMessage());
+            System.err.println("Cascading delete of user " + userId + " failed, will retry: " + e.getMessage());
+        }
+    }
+
+    private void update(String userId, State state, int goalsDeleted, int expensesDeleted, String error) {
+        synchronized (runs) {
+            Progress current = runs.get(userId);
+            if (current != null) {
+                runs.put(userId, current.with(state, goalsDeleted, expensesDeleted, error));
+            }
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.expensetracker.app.services;
+
+import com.expensetracker.app.models.BaseEntity;
+import com.expensetracker.app.models.Expense;
+import com.expensetracker.app.models.Goal;
+import com.expensetracker.app.repositories.storage.ExpenseStore;
+import com.expensetracker.app.repositories.storage.GoalStore;
+import com.google.cloud.Timestamp;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Moves goals and expenses that were soft-deleted more than the retention
+ * window ago out of the live collections, so queries stop scanning past
+ * them. Runs in the background at a fixed interval, in batches with a pause
+ * between them so it doesn't compete with requests, and stops at a per-run
+ * limit. Goals go first, like the account cascade.
+ *
+ * <p>Around every batch the job times a count of the owning user's live
+ * documents, and reports the average before and after so the effect on
+ * query latency shows up next to the number of documents reclaimed. The
+ * count goes straight to the database, so it neither downloads the user's
+ * documents nor makes the replica follow them.
+ *
+ * <p>Eager even under lazy initialization, since the schedule starts in the
+ * constructor.
+ */
+@Service
+@Lazy(false)
+public class Archival implements AutoCloseable {
+
+    private final ExpenseStore expenseStore;
+    private final GoalStore goalStore;
+    private final Duration retention;
+    private final int batchSize;
+    private final Duration batchPause;
+    private final int maxPerRun;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "archival");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Totals since startup, guarded by this
+    private long runs;
+    private long expensesArchived;
+    private long goalsArchived;
+    private long failures;
+    private long probes;
+    private long probeNanosBefore;
+    private long probeNanosAfter;
+    private Instant lastRunAt;
+    private long lastRunMillis;
+    private int lastRunArchived;
+    private String lastError;
+
+    @Autowired
+    public Archival(ExpenseStore expenseStore, GoalStore goalStore,
+                    @Value("${app.archive.enabled:false}") boolean enabled,
+                    @Value("${app.archive.retention-days:30}") long retentionDays,
+                    @Value("${app.archive.interval-minutes:60}") long intervalMinutes,
+                    @Value("${app.archive.batch-size:200}") int batchSize,
+                    @Value("${app.archive.batch-pause-millis:500}") long batchPauseMillis,
+                    @Value("${app.archive.max-per-run:10000}") int maxPerRun) {
+        this(expenseStore, goalStore, Duration.ofDays(retentionDays), batchSize, Duration.ofMillis(batchPauseMillis), maxPerRun);
+        if (enabled) {
+            executor.scheduleWithFixedDelay(this::runQuietly, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+        }
+    }
+
+    public Archival(ExpenseStore expenseStore, GoalStore goalStore, Duration retention,
+                    int batchSize, Duration batchPause, int maxPerRun) {
+        this.expenseStore = expenseStore;
+        this.goalStore = goalStore;
+        this.retention = retention;
+        this.batchSize = batchSize;
+        this.batchPause = batchPause;
+        this.maxPerRun = maxPerRun;
+    }
+
+    /** Starts a run in the background unless one is already going. */
+    public boolean runNow() {
+        if (running.get()) {
+            return false;
+        }
+        executor.execute(this::runQuietly);
+        return true;
+    }
+
+    /**
+     * Archives everything past the retention window, up to the per-run limit;
+     * returns how many goals and expenses were moved. Skipped, returning 0,
+     * while another run is going.
+     */
+    public int run() throws ExecutionException, InterruptedException {
+        if (!running.compareAndSet(false, true)) {
+            return 0;
+        }
+        long started = System.nanoTime();
+        int archived = 0;
+        try {
+            Timestamp cutoff = Timestamp.ofTimeSecondsAndNanos(Instant.now().minus(retention).getEpochSecond(), 0);
+            archived += drain(cutoff, maxPerRun, true);
+            archived += drain(cutoff, maxPerRun - archived, false);
+            return archived;
+        } finally {
+            synchronized (this) {
+                runs++;
+                lastRunAt = Instant.now();
+                lastRunMillis = (System.nanoTime() - started) / 1_000_000;
+                lastRunArchived = archived;
+            }
+            running.set(false);
+        }
+    }
+
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("retentionDays", retention.toDays());
+        stats.put("running", running.get());
+        stats.put("runs", runs);
+        stats.put("goalsArchived", goalsArchived);
+        stats.put("expensesArchived", expensesArchived);
+        stats.put("failures", failures);
+        stats.put("lastRunAt", lastRunAt == null ? null : lastRunAt.toString());
+        stats.put("lastRunMillis", lastRunMillis);
+        stats.put("lastRunArchived", lastRunArchived);
+        stats.put("lastError", lastError);
+        stats.put("probes", probes);
+        stats.put("avgProbeMillisBefore", probes == 0 ? 0.0 : probeNanosBefore / 1e6 / probes);
+        stats.put("avgProbeMillisAfter", probes == 0 ? 0.0 : probeNanosAfter / 1e6 / probes);
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private int drain(Timestamp cutoff, int budget, boolean goals) throws ExecutionException, InterruptedException {
+        int archived = 0;
+        while (archived < budget) {
+            List<? extends BaseEntity> batch = goals
+                    ? goalStore.findDeletedBefore(cutoff, Math.min(batchSize, budget - archived))
+                    : expenseStore.findDeletedBefore(cutoff, Math.min(batchSize, budget - archived));
+            if (batch.isEmpty()) {
+                break;
+            }
+            String userId = goals ? ((Goal) batch.get(0)).getUserId() : ((Expense) batch.get(0)).getUserId();
+            long before = probe(userId, goals);
+            if (goals) {
+                goalStore.archive(batch.stream().map(Goal.class::cast).toList());
+            } else {
+                expenseStore.archive(batch.stream().map(Expense.class::cast).toList());
+            }
+            long after = probe(userId, goals);
+            archived += batch.size();
+            synchronized (this) {
+                if (goals) {
+                    goalsArchived += batch.size();
+                } else {
+                    expensesArchived += batch.size();
+                }
+                probes++;
+                probeNanosBefore += before;
+                probeNanosAfter += after;
+            }
+            if (batch.size() < batchSize) {
+                break;
+            }
+            Thread.sleep(batchPause.toMillis());
+        }
+        return archived;
+    }
+
+    // Time of one count of the user's live documents, over the index archival shrinks
+    private long probe(String userId, boolean goals) throws ExecutionException, InterruptedException {
+        long started = System.nanoTime();
+        if (goals) {
+            goalStore.countByUserId(userId);
+        } else {
+            expenseStore.countByUserId(userId);
+        }
+        return System.nanoTime() - started;
+    }
+
+    private void runQuietly() {
+        try {
+            int archived = run();
+            if (archived > 0) {
+                System.out.println("Archived " + archived + " soft-deleted goals and expenses");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | RuntimeException e) {
+            synchronized (this) {
+                failures++;
+                lastError = e.getMessage();
+            }
+            System.err.println("Archiving soft-deleted documents failed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.expensetracker.app.services;
+
+import com.expensetracker.app.repositories.storage.StoreFutures;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs independent reads of a request concurrently on the fan-out executor,
+ * carrying the caller's security context into each task.
+ */
+@Component
+public class FanOut {
+
+    private final Executor executor;
+    private final SecurityService securityService;
+
+    public FanOut(@Qualifier("fanOutExecutor") Executor executor, SecurityService securityService) {
+        this.executor = executor;
+        this.securityService = securityService;
+    }
+
+    public <T> CompletableFuture<T> fork(Callable<T> task) {
+        Callable<T> withContext = securityService.propagate(task);
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return withContext.call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    /** Waits for a forked task, rethrowing its failure unwrapped. */
+    public static <T> T join(CompletableFuture<T> future) {
+        return StoreFutures.join(future);
+    }
+}
@@ -0,0 +1,22 @@
+package com.expensetracker.app.services;
+
+import com.expensetracker.app.models.enums.UserRole;
+
+/**
+ * The authenticated caller, captured so access checks can run off the
+ * request thread, e.g. in the continuation of a repository future.
+ */
+public record Principal(String userId, UserRole role) {
+
+    public void validateAccess(String targetUserId) {
+        // Admin can access anyone's data
+        if (role == UserRole.ADMIN) {
+            return;
+        }
+
+        // Regular users can only access their own data
+        if (!userId.equals(targetUserId)) {
+            throw new SecurityException("Access denied: Cannot access other user's data");
+        }
+    }
+}
@@ -1,27 +1,134 @@
 package com.expensetracker.app.services;
 
+import com.expensetracker.app.cache.TtlCache;
 import com.expensetracker.app.models.User;
 import com.expensetracker.app.models.enums.UserRole;
 import com.expensetracker.app.repositories.UserRepository;
+import com.google.cloud.Timestamp;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+// Eager so its cache invalidation listener is registered before the first user write
 @Service
+@Lazy(false)
 public class SecurityService {
 
+    private static final int DEFAULT_PRINCIPAL_CACHE_SIZE = 10_000;
+    private static final long DEFAULT_PRINCIPAL_CACHE_TTL_SECONDS = 60;
+
     private final UserRepository userRepository;
     private final ThreadLocal<String> currentUserId = new ThreadLocal<>();
+    // Role taken from a verified access token; null when only the user id is known
+    private final ThreadLocal<UserRole> currentRole = new ThreadLocal<>();
+    // Memoizes the resolved user for the rest of the request
+    private final ThreadLocal<User> currentUser = new ThreadLocal<>();
+    private final TtlCache<String, User> principalCache;
 
     public SecurityService(UserRepository userRepository) {
+        this(userRepository, DEFAULT_PRINCIPAL_CACHE_SIZE, DEFAULT_PRINCIPAL_CACHE_TTL_SECONDS);
+    }
+
+    @Autowired
+    public SecurityService(UserRepository userRepository,
+                           @Value("${app.security.principal-cache.max-size:10000}") int principalCacheSize,
+                           @Value("${app.security.principal-cache.ttl-seconds:60}") long principalCacheTtlSeconds) {
         this.userRepository = userRepository;
+        this.principalCache = new TtlCache<>("principals", principalCacheSize, Duration.ofSeconds(principalCacheTtlSeconds));
+        // Role changes and soft deletes must not be served from the cache
+        userRepository.addUserChangeListener(change -> principalCache.invalidate(change.userId()));
     }
 
     // New methods for current user management
     public void setCurrentUser(String userId) {
         currentUserId.set(userId);
+        currentRole.remove();
+        currentUser.remove();
+    }
+
+    /**
+     * Authenticates the request from a verified token. Role checks are then
+     * answered from the token without loading the user.
+     */
+    public void setCurrentPrincipal(AccessToken token) {
+        currentUserId.set(token.userId());
+        currentRole.set(token.role());
+        currentUser.remove();
+    }
+
+    /**
+     * Whether a verified token still speaks for its user: the user exists and
+     * had no role change or delete since the token was issued. Reads through
+     * the principal cache, so a change made on another instance is seen once
+     * the cached principal expires.
+     */
+    public boolean isCurrent(AccessToken token) {
+        User user;
+        try {
+            user = principalCache.get(token.userId(), userRepository::findById);
+        } catch (Exception e) {
+            throw new SecurityException("Error fetching user: " + e.getMessage());
+        }
+        if (user == null || user.isDeleted()) {
+            return false;
+        }
+        Timestamp revokedAt = user.getTokensRevokedAt();
+        return revokedAt == null
+                || token.issuedAt().isAfter(Instant.ofEpochSecond(revokedAt.getSeconds(), revokedAt.getNanos()));
     }
 
     public void clearCurrentUser() {
         currentUserId.remove();
+        currentRole.remove();
+        currentUser.remove();
+    }
+
+    /**
+     * Wraps a task so it runs with the caller's security context. The context
+     * is per thread, so work forked onto an executor would otherwise run
+     * unauthenticated; the worker's previous context is restored afterwards.
+     */
+    public <T> Callable<T> propagate(Callable<T> task) {
+        String userId = currentUserId.get();
+        UserRole role = currentRole.get();
+        User user = currentUser.get();
+        return () -> {
+            String previousUserId = currentUserId.get();
+            UserRole previousRole = currentRole.get();
+            User previousUser = currentUser.get();
+            restore(currentUserId, userId);
+            restore(currentRole, role);
+            restore(currentUser, user);
+            try {
+                return task.call();
+            } finally {
+                restore(currentUserId, previousUserId);
+                restore(currentRole, previousRole);
+                restore(currentUser, previousUser);
+            }
+        };
+    }
+
+    private static <T> void restore(ThreadLocal<T> local, T value) {
+        if (value != null) {
+            local.set(value);
+        } else {
+            local.remove();
+        }
+    }
+
+    public UserRole getCurrentRole() {
+        UserRole role = currentRole.get();
+        if (role != null) {
+            return role;
+        }
+        return getCurrentUser().getRole();
     }
 
     public String getCurrentUserId() {
@@ -34,36 +141,39 @@ public class SecurityService {
 
     public User getCurrentUser() {
         String userId = getCurrentUserId();
+        User memoized = currentUser.get();
+        if (memoized != null) {
+            return memoized;
+        }
+        User user;
         try {
-            User user = userRepository.findById(userId);
-            if (user == null) {
-                throw new SecurityException("User not found: " + userId);
-            }
-            return user;
+            user = principalCache.get(userId, userRepository::findById);
         } catch (Exception e) {
             throw new SecurityException("Error fetching user: " + e.getMessage());
         }
+        if (user == null || user.isDeleted()) {
+            throw new SecurityException("User not found: " + userId);
+        }
+        currentUser.set(user);
+        return user;
+    }
+
+    public Map<String, Object> getPrincipalCacheStats() {
+        return principalCache.stats();
     }
 
     // Updated existing methods
     public void requireAdmin() {
-        User user = getCurrentUser();
-        if (user.getRole() != UserRole.ADMIN) {
+        if (getCurrentRole() != UserRole.ADMIN) {
             throw new SecurityException("Access denied: Admin role required");
         }
     }
 
     public void validateUserAccess(String targetUserId) {
-        User currentUser = getCurrentUser();
-        
-        // Admin can access anyone's data
-        if (currentUser.getRole() == UserRole.ADMIN) {
-            return;
-        }
-        
-        // Regular users can only access their own data
-        if (!currentUser.getId().equals(targetUserId)) {
-            throw new SecurityException("Access denied: Cannot access other user's data");
-        }
+        currentPrincipal().validateAccess(targetUserId);
+    }
+
+    public Principal currentPrincipal() {
+        return new Principal(getCurrentUserId(), getCurrentRole());
     }
-}
\ No newline at end of file
+}
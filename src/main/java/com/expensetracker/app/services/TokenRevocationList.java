@@ -0,0 +1,33 @@
+package com.expensetracker.app.services;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-user "not valid before" instants. A token issued before its user's
+ * revocation instant is rejected even if its signature and expiry are fine.
+ * Entries only need to outlive the longest token lifetime, after which every
+ * token they could reject has expired anyway.
+ */
+public class TokenRevocationList {
+
+    private final Map<String, Instant> revokedBefore = new ConcurrentHashMap<>();
+
+    public void revoke(String userId, Instant notValidBefore) {
+        revokedBefore.merge(userId, notValidBefore, (a, b) -> a.isAfter(b) ? a : b);
+    }
+
+    public boolean isRevoked(AccessToken token) {
+        Instant cutoff = revokedBefore.get(token.userId());
+        return cutoff != null && !token.issuedAt().isAfter(cutoff);
+    }
+
+    public void purgeOlderThan(Instant instant) {
+        revokedBefore.values().removeIf(cutoff -> cutoff.isBefore(instant));
+    }
+
+    public int size() {
+        return revokedBefore.size();
+    }
+}
@@ -0,0 +1,170 @@
+package com.expensetracker.app.services;
+
+import com.expensetracker.app.models.User;
+import com.expensetracker.app.models.enums.UserRole;
+import com.expensetracker.app.repositories.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * Issues and verifies HMAC-SHA256 signed access tokens of the form
+ * {@code v1.<payload>.<signature>}, where the payload carries the user id,
+ * role, issue time and expiry. Verification is purely in memory; revocations
+ * made on this instance apply at once, and the authentication filter checks
+ * the user's stored revocation instant for changes made elsewhere.
+ *
+ * <p>The signing key must be configured and shared by every instance. Only
+ * the test profile falls back to a random key.
+ */
+// Eager so its revocation listener is registered before the first user write
+@Service
+@Lazy(false)
+public class TokenService {
+
+    public static final String TOKEN_PREFIX = "v1.";
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec key;
+    private final Duration ttl;
+    private final Clock clock;
+    private final TokenRevocationList revocations = new TokenRevocationList();
+    private final ThreadLocal<Mac> macs;
+
+    @Autowired
+    public TokenService(UserRepository userRepository, Environment environment,
+                        @Value("${app.auth.token-secret:}") String secret,
+                        @Value("${app.auth.token-ttl-minutes:60}") long ttlMinutes) {
+        this(resolveSecret(secret, environment), Duration.ofMinutes(ttlMinutes), Clock.systemUTC());
+        // Deleted users and role changes invalidate every token issued so far
+        userRepository.addUserChangeListener(change -> {
+            if (change.roleChanged() || change.deleted()) {
+                revoke(change.userId());
+            }
+        });
+    }
+
+    public TokenService(byte[] secret, Duration ttl, Clock clock) {
+        this.key = new SecretKeySpec(secret, ALGORITHM);
+        this.ttl = ttl;
+        this.clock = clock;
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HMAC not available: " + e.getMessage(), e);
+            }
+        });
+    }
+
+    public String issue(User user) {
+        Instant now = clock.instant();
+        UserRole role = user.getRole() != null ? user.getRole() : UserRole.USER;
+        String payload = user.getId() + "|" + role.name() + "|" + now.toEpochMilli() + "|" + now.plus(ttl).toEpochMilli();
+        String encoded = base64(payload.getBytes(StandardCharsets.UTF_8));
+        return TOKEN_PREFIX + encoded + "." + base64(sign(encoded));
+    }
+
+    /**
+     * Returns the token's claims if the signature matches, it hasn't expired
+     * and it wasn't revoked; empty otherwise.
+     */
+    public Optional<AccessToken> verify(String token) {
+        if (token == null || !token.startsWith(TOKEN_PREFIX)) {
+            return Optional.empty();
+        }
+        String body = token.substring(TOKEN_PREFIX.length());
+        int dot = body.indexOf('.');
+        if (dot <= 0) {
+            return Optional.empty();
+        }
+        String encoded = body.substring(0, dot);
+        byte[] signature;
+        try {
+            signature = Base64.getUrlDecoder().decode(body.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+        if (!MessageDigest.isEqual(sign(encoded), signature)) {
+            return Optional.empty();
+        }
+
+        AccessToken claims;
+        try {
+            claims = parse(new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+        if (!clock.instant().isBefore(claims.expiresAt()) || revocations.isRevoked(claims)) {
+            return Optional.empty();
+        }
+        return Optional.of(claims);
+    }
+
+    public void revoke(String userId) {
+        revocations.revoke(userId, clock.instant());
+        revocations.purgeOlderThan(clock.instant().minus(ttl));
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    // userId|ROLE|issuedAtMillis|expiresAtMillis; the id is split off last so it may contain '|'
+    private static AccessToken parse(String payload) {
+        int expSep = payload.lastIndexOf('|');
+        int iatSep = payload.lastIndexOf('|', expSep - 1);
+        int roleSep = payload.lastIndexOf('|', iatSep - 1);
+        if (roleSep <= 0) {
+            throw new IllegalArgumentException("Malformed token payload");
+        }
+        try {
+            return new AccessToken(
+                    payload.substring(0, roleSep),
+                    UserRole.valueOf(payload.substring(roleSep + 1, iatSep)),
+                    Instant.ofEpochMilli(Long.parseLong(payload.substring(iatSep + 1, expSep))),
+                    Instant.ofEpochMilli(Long.parseLong(payload.substring(expSep + 1))));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed token payload", e);
+        }
+    }
+
+    private byte[] sign(String encodedPayload) {
+        Mac mac = macs.get();
+        return mac.doFinal(encodedPayload.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static String base64(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static byte[] resolveSecret(String secret, Environment environment) {
+        if (secret != null && !secret.isBlank()) {
+            return Base64.getDecoder().decode(secret.trim());
+        }
+        if (!environment.acceptsProfiles(Profiles.of("test"))) {
+            throw new IllegalStateException("app.auth.token-secret (APP_AUTH_TOKEN_SECRET) is not set; "
+                    + "a random key would reject tokens after a restart and on every other instance");
+        }
+        byte[] random = new byte[32];
+        new SecureRandom().nextBytes(random);
+        return random;
+    }
+}
@@ -0,0 +1,190 @@
+package com.expensetracker.app.services;
+
+import com.expensetracker.app.models.BaseEntity;
+import com.expensetracker.app.repositories.storage.cache.EntityCaches;
+import com.expensetracker.app.repositories.storage.log.EntityCodec;
+import com.expensetracker.app.repositories.storage.replica.Replica;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Carries the in-memory caches over a restart: the cached expenses and goals
+ * and the replica's followed users are written to a file when the
+ * application stops and put back before it starts taking requests. Restored
+ * entries are served straight away and checked against the database's
+ * {@code updatedAt} on first use, so the first requests after a restart
+ * don't all go to the database. Users and principals are never carried
+ * over: one revoked or deleted while the application was down must not be
+ * honoured, and saved users would lack their passwords.
+ */
+@Component
+public class WarmSnapshot implements SmartLifecycle {
+
+    private static final int MAGIC = 0x45545753; // "ETWS"
+    // 2 dropped the principal section
+    private static final byte VERSION = 2;
+
+    private final EntityCaches entityCaches;
+    // Only the Firestore engine has one
+    private final Replica replica;
+    private final boolean enabled;
+    private final Path file;
+    private final Duration maxAge;
+    private volatile boolean running;
+
+    @Autowired
+    public WarmSnapshot(EntityCaches entityCaches, ObjectProvider<Replica> replica,
+                        @Value("${app.warm-snapshot.enabled:true}") boolean enabled,
+                        @Value("${app.warm-snapshot.path:./data/warm-snapshot.bin}") String file,
+                        @Value("${app.warm-snapshot.max-age-hours:24}") long maxAgeHours) {
+        this(entityCaches, replica.getIfAvailable(), enabled, Path.of(file), Duration.ofHours(maxAgeHours));
+    }
+
+    public WarmSnapshot(EntityCaches entityCaches, Replica replica, boolean enabled, Path file, Duration maxAge) {
+        this.entityCaches = entityCaches;
+        this.replica = replica;
+        this.enabled = enabled;
+        this.file = file;
+        this.maxAge = maxAge;
+    }
+
+    @Override
+    public void start() {
+        if (enabled) {
+            load();
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        if (running && enabled) {
+            save();
+        }
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Starts before the web server and stops after it has drained, so the
+    // caches are filled before the first request and written after the last
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    /** Writes the caches to the file; returns the number of entities written. */
+    public int save() {
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            int written = 0;
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(Files.newOutputStream(tmp))))) {
+                out.writeInt(MAGIC);
+                out.writeByte(VERSION);
+                out.writeLong(System.currentTimeMillis());
+
+                written += writeEntities(out, entityCaches.snapshot());
+
+                Map<String, List<BaseEntity>> followed = replica != null ? replica.snapshot() : Map.of();
+                out.writeInt(followed.size());
+                for (Entry<String, List<BaseEntity>> user : followed.entrySet()) {
+                    out.writeUTF(user.getKey());
+                    written += writeEntities(out, user.getValue());
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            System.out.println("Saved " + written + " cached entities to " + file);
+            return written;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to save warm snapshot " + file + ": " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Restores the caches from the file if there is a recent enough one;
+     * returns the number of entities restored. A missing or unreadable file
+     * only means a cold start.
+     */
+    public int load() {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                System.err.println("Ignoring warm snapshot " + file + ": unknown format");
+                return 0;
+            }
+            long savedAt = in.readLong();
+            if (System.currentTimeMillis() - savedAt > maxAge.toMillis()) {
+                System.out.println("Ignoring warm snapshot " + file + ": older than " + maxAge.toHours() + "h");
+                return 0;
+            }
+            int restored = 0;
+            for (BaseEntity entity : readEntities(in)) {
+                entityCaches.restore(entity);
+                restored++;
+            }
+            int users = in.readInt();
+            for (int i = 0; i < users; i++) {
+                String userId = in.readUTF();
+                List<BaseEntity> documents = readEntities(in);
+                if (replica != null) {
+                    replica.restore(userId, documents);
+                    restored += documents.size();
+                }
+            }
+            System.out.println("Restored " + restored + " cached entities from " + file);
+            return restored;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring warm snapshot " + file + ": " + e.getMessage());
+            return 0;
+        }
+    }
+
+    private static int writeEntities(DataOutputStream out, List<BaseEntity> entities) throws IOException {
+        out.writeInt(entities.size());
+        for (BaseEntity entity : entities) {
+            byte[] payload = EntityCodec.encode(entity);
+            out.writeInt(payload.length);
+            out.write(payload);
+        }
+        return entities.size();
+    }
+
+    private static List<BaseEntity> readEntities(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<BaseEntity> entities = new ArrayList<>(Math.min(count, 10_000));
+        for (int i = 0; i < count; i++) {
+            byte[] payload = new byte[in.readInt()];
+            in.readFully(payload);
+            entities.add(EntityCodec.decode(payload));
+        }
+        return entities;
+    }
+}
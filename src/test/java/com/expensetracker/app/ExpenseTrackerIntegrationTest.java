@@ -10,6 +10,9 @@ import com.expensetracker.app.controllers.UserController;
 import com.expensetracker.app.controllers.ExpenseController;
 import com.expensetracker.app.dto.ExpenseRequest;
 import com.expensetracker.app.controllers.GoalController;
+import com.expensetracker.app.repositories.storage.memory.InMemoryExpenseStore;
+import com.expensetracker.app.repositories.storage.memory.InMemoryGoalStore;
+import com.expensetracker.app.repositories.storage.memory.InMemoryUserStore;
 import com.expensetracker.app.services.SecurityService;
 import com.google.cloud.Timestamp;
 
@@ -17,6 +20,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.ContextConfiguration;
 
@@ -29,7 +33,8 @@ import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
-@SpringBootTest
+@SpringBootTest(properties = "app.storage=memory")
+@ActiveProfiles("test")
 @ContextConfiguration(classes = {AppApplication.class, TestConfig.class})
 public class ExpenseTrackerIntegrationTest {
 
@@ -43,9 +48,9 @@ public class ExpenseTrackerIntegrationTest {
 
     @BeforeEach
     void setUp() {
-        userRepository = new UserRepository();
-        expenseRepository = new ExpenseRepository();
-        goalRepository = new GoalRepository(expenseRepository);
+        userRepository = new UserRepository(new InMemoryUserStore());
+        expenseRepository = new ExpenseRepository(new InMemoryExpenseStore());
+        goalRepository = new GoalRepository(new InMemoryGoalStore(), expenseRepository);
         securityService = new SecurityService(userRepository);
         userController = new UserController(userRepository, securityService);
         expenseController = new ExpenseController(expenseRepository, securityService);
@@ -0,0 +1,122 @@
+package com.expensetracker.app.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TtlCacheTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    private TtlCache<String, String> cache(int maxSize, Duration ttl) {
+        return new TtlCache<>("test", maxSize, ttl, now::get);
+    }
+
+    @Test
+    void get_loadsOnceThenHits() throws Exception {
+        TtlCache<String, String> cache = cache(10, Duration.ofSeconds(30));
+        AtomicLong loads = new AtomicLong();
+        TtlCache.Loader<String, String> loader = k -> { loads.incrementAndGet(); return k.toUpperCase(); };
+
+        assertEquals("A", cache.get("a", loader));
+        assertEquals("A", cache.get("a", loader));
+        assertEquals(1, loads.get());
+        assertEquals(1L, cache.stats().get("hits"));
+        assertEquals(1L, cache.stats().get("misses"));
+    }
+
+    @Test
+    void entriesExpireAfterTtl() {
+        TtlCache<String, String> cache = cache(10, Duration.ofSeconds(30));
+        cache.put("a", "A");
+        now.addAndGet(Duration.ofSeconds(31).toNanos());
+        assertNull(cache.getIfPresent("a"));
+        assertEquals(1L, cache.stats().get("expirations"));
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvictedWhenFull() {
+        TtlCache<String, String> cache = cache(2, Duration.ofSeconds(30));
+        cache.put("a", "A");
+        cache.put("b", "B");
+        cache.getIfPresent("a");
+        cache.put("c", "C");
+        assertNull(cache.getIfPresent("b"));
+        assertEquals("A", cache.getIfPresent("a"));
+        assertEquals(1L, cache.stats().get("evictions"));
+    }
+
+    @Test
+    void invalidateRemovesEntry() {
+        TtlCache<String, String> cache = cache(10, Duration.ofSeconds(30));
+        cache.put("a", "A");
+        cache.invalidate("a");
+        assertNull(cache.getIfPresent("a"));
+    }
+
+    @Test
+    void loadsAreTimedAndFailuresCounted() throws Exception {
+        TtlCache<String, String> cache = cache(10, Duration.ofSeconds(30));
+        cache.get("a", k -> { now.addAndGet(Duration.ofMillis(40).toNanos()); return "A"; });
+        assertThrows(IllegalStateException.class, () -> cache.get("b", k -> {
+            now.addAndGet(Duration.ofMillis(20).toNanos());
+            throw new IllegalStateException("down");
+        }));
+
+        assertEquals(2L, cache.stats().get("loads"));
+        assertEquals(1L, cache.stats().get("loadFailures"));
+        assertEquals(30.0, (double) cache.stats().get("averageLoadMillis"), 1e-9);
+        assertEquals(40.0, (double) cache.stats().get("maxLoadMillis"), 1e-9);
+    }
+
+    @Test
+    void loadOverlappingAnInvalidationIsNotCached() throws Exception {
+        TtlCache<String, String> cache = cache(10, Duration.ofSeconds(30));
+        assertEquals("old", cache.get("a", k -> { cache.invalidate("a"); return "old"; }));
+        assertNull(cache.getIfPresent("a"));
+    }
+
+    @Test
+    void invalidatingAnotherKeyDoesNotDropALoad() throws Exception {
+        TtlCache<String, String> cache = cache(10, Duration.ofSeconds(30));
+        assertEquals("A", cache.get("a", k -> { cache.invalidate("b"); return "A"; }));
+        assertEquals("A", cache.getIfPresent("a"));
+
+        long version = cache.version("a");
+        cache.invalidateAll();
+        cache.putIfCurrent("a", "stale", version);
+        assertNull(cache.getIfPresent("a"));
+    }
+
+    @Test
+    void restoredEntriesAreClaimedOnceAndNeverOverwriteFreshOnes() {
+        TtlCache<String, String> cache = cache(10, Duration.ofSeconds(30));
+        cache.put("a", "fresh");
+        cache.restore("a", "saved");
+        cache.restore("b", "saved");
+
+        assertEquals("fresh", cache.getIfPresent("a"));
+        assertNull(cache.claimRestored("a"));
+        assertEquals("saved", cache.claimRestored("b"));
+        assertNull(cache.claimRestored("b"));
+        assertEquals(1L, cache.stats().get("restored"));
+    }
+
+    @Test
+    void snapshotListsLiveEntriesLeastRecentlyUsedFirst() {
+        TtlCache<String, String> cache = cache(10, Duration.ofSeconds(30));
+        cache.put("a", "A");
+        cache.put("b", "B");
+        cache.getIfPresent("a");
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+        cache.put("c", "C");
+        now.addAndGet(Duration.ofSeconds(25).toNanos());
+
+        assertEquals(List.of(Map.entry("c", "C")), cache.snapshot());
+    }
+}
@@ -0,0 +1,142 @@
+package com.expensetracker.app.cache;
+
+import com.expensetracker.app.models.Expense;
+import com.expensetracker.app.models.User;
+import com.expensetracker.app.models.enums.UserRole;
+import com.expensetracker.app.repositories.UserRepository;
+import com.expensetracker.app.repositories.storage.ExpenseStore;
+import com.expensetracker.app.repositories.storage.cache.EntityCaches;
+import com.expensetracker.app.repositories.storage.memory.InMemoryExpenseStore;
+import com.expensetracker.app.repositories.storage.memory.InMemoryGoalStore;
+import com.expensetracker.app.repositories.storage.memory.InMemoryUserStore;
+import com.expensetracker.app.repositories.storage.replica.InProcessChangeFeed;
+import com.expensetracker.app.repositories.storage.replica.Replica;
+import com.expensetracker.app.services.SecurityService;
+import com.expensetracker.app.services.WarmSnapshot;
+import com.google.cloud.Timestamp;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static com.expensetracker.app.testutil.TestDataBuilders.day;
+import static com.expensetracker.app.testutil.TestDataBuilders.expense;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WarmSnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    // The database outlives the instances
+    private final InMemoryUserStore dbUsers = new InMemoryUserStore();
+    private final InMemoryExpenseStore dbExpenses = new InMemoryExpenseStore();
+    private final InMemoryGoalStore dbGoals = new InMemoryGoalStore();
+
+    /** One application instance's caches over the shared database. */
+    private class Instance {
+        final SecurityService security = new SecurityService(new UserRepository(dbUsers));
+        final EntityCaches caches = new EntityCaches(true, 100, Duration.ofMinutes(5));
+        final Replica replica = new Replica(new InProcessChangeFeed(dbExpenses, dbGoals), true, 10, Duration.ofMinutes(30));
+        final ExpenseStore expenses = replica.expenses(caches.expenses(dbExpenses));
+        final WarmSnapshot snapshot = new WarmSnapshot(caches, replica, true,
+                dir.resolve("warm-snapshot.bin"), Duration.ofHours(1));
+    }
+
+    private Instance warmedUp() throws Exception {
+        User user = new User();
+        user.setId("u1");
+        user.setEmail("u1@mail");
+        user.setName("User One");
+        user.setPassword("hunter2");
+        user.setRole(UserRole.USER);
+        dbUsers.create(user);
+        dbExpenses.save(expense("a", "u1", null, "1.00", "Food", day("2025-01-01")));
+        dbExpenses.save(expense("b", "u1", null, "2.00", "Food", day("2025-01-01")));
+
+        Instance before = new Instance();
+        before.security.setCurrentUser("u1");
+        before.security.getCurrentUser();
+        before.expenses.findById("a");
+        before.expenses.findByUserId("u1");
+        before.expenses.findByUserId("u1");
+        assertTrue(before.snapshot.save() > 0);
+        return before;
+    }
+
+    @Test
+    void aRestartedInstanceAnswersItsFirstRequestsFromTheSnapshot() throws Exception {
+        warmedUp();
+
+        Instance after = new Instance();
+        assertTrue(after.snapshot.load() > 0);
+
+        assertEquals(new BigDecimal("1.00"), after.expenses.findById("a").orElseThrow().getAmount());
+        assertEquals(0L, after.caches.stats().get(0).get("loads"));
+
+        assertEquals(2, after.expenses.findByUserId("u1").size());
+        assertEquals(0L, after.replica.stats().get("remoteReads"));
+    }
+
+    @Test
+    void usersAreNotWrittenOut() throws Exception {
+        warmedUp();
+        try (GZIPInputStream in = new GZIPInputStream(Files.newInputStream(dir.resolve("warm-snapshot.bin")))) {
+            String saved = new String(in.readAllBytes(), StandardCharsets.ISO_8859_1);
+            assertFalse(saved.contains("hunter2"));
+            assertFalse(saved.contains("u1@mail"));
+        }
+    }
+
+    @Test
+    void aUserDeletedWhileDownIsNotHonoured() throws Exception {
+        warmedUp();
+        dbUsers.update("u1", Map.of("deletedAt", Timestamp.now()));
+
+        Instance after = new Instance();
+        after.snapshot.load();
+
+        after.security.setCurrentUser("u1");
+        assertThrows(SecurityException.class, after.security::getCurrentUser);
+    }
+
+    @Test
+    void entriesChangedWhileDownAreRefreshedOnFirstUse() throws Exception {
+        warmedUp();
+        dbExpenses.update("a", Map.of("amount", new BigDecimal("9.00"), "updatedAt", Timestamp.now()));
+        dbExpenses.update("b", Map.of("deletedAt", Timestamp.now()));
+
+        Instance after = new Instance();
+        after.snapshot.load();
+
+        // The first hit is the saved copy while the stored one is re-read
+        after.expenses.findById("a");
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (after.expenses.findById("a").orElseThrow().getAmount().compareTo(new BigDecimal("9.00")) != 0) {
+            assertTrue(System.nanoTime() < deadline, "restored entry was not refreshed");
+            Thread.sleep(10);
+        }
+
+        // Following the user again drops what the feed no longer has
+        assertEquals(List.of("a"), after.expenses.findByUserId("u1").stream().map(Expense::getId).toList());
+    }
+
+    @Test
+    void aMissingOrStaleFileMeansAColdStart() throws Exception {
+        Instance cold = new Instance();
+        assertEquals(0, cold.snapshot.load());
+
+        warmedUp();
+        WarmSnapshot expired = new WarmSnapshot(cold.caches, cold.replica, true, dir.resolve("warm-snapshot.bin"),
+                Duration.ZERO);
+        Thread.sleep(5);
+        assertEquals(0, expired.load());
+    }
+}
@@ -0,0 +1,110 @@
+package com.expensetracker.app.dto;
+
+import com.expensetracker.app.models.Expense;
+import com.expensetracker.app.repositories.ExpenseImport;
+import com.expensetracker.app.repositories.ExpenseRepository;
+import com.expensetracker.app.repositories.storage.memory.InMemoryExpenseStore;
+import com.google.cloud.Timestamp;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExpenseImportRowsTest {
+
+    private static List<ExpenseImportRows.Row> all(Iterator<ExpenseImportRows.Row> rows) {
+        List<ExpenseImportRows.Row> list = new ArrayList<>();
+        rows.forEachRemaining(list::add);
+        return list;
+    }
+
+    @Test
+    void csvColumnsAreMatchedByHeaderAndQuotedFieldsKeepCommasAndLineBreaks() {
+        String body = "Amount,Category,Description,Date\r\n"
+                + "12.50,Food,\"Lunch, with \"\"Ana\"\"\",01/15/2025\r\n"
+                + "\n"
+                + "3,Travel,\"Bus\nticket\",01/16/2025\n";
+
+        List<ExpenseImportRows.Row> rows = all(ExpenseImportRows.csv(new StringReader(body)));
+
+        assertEquals(2, rows.size());
+        assertEquals("Lunch, with \"Ana\"", rows.get(0).request().getDescription());
+        assertEquals("12.50", rows.get(0).request().getAmount().toPlainString());
+        assertEquals("Bus\nticket", rows.get(1).request().getDescription());
+        assertEquals(2, rows.get(1).number());
+    }
+
+    @Test
+    void unparseableRowsCarryAnErrorAndTheRestAreStillRead() {
+        List<ExpenseImportRows.Row> csv = all(ExpenseImportRows.csv(new StringReader(
+                "description,amount,category,date\nA,twelve,Food,01/15/2025\nB,1,Food,01/15/2025\n")));
+        assertNotNull(csv.get(0).error());
+        assertNull(csv.get(1).error());
+
+        List<ExpenseImportRows.Row> ndjson = all(ExpenseImportRows.ndjson(Ndjson.defaultMapper(), new StringReader(
+                "{\"description\":\"A\",\"amount\":1}\n{not json\n\n{\"description\":\"C\"}\n")));
+        assertEquals(3, ndjson.size());
+        assertNull(ndjson.get(0).error());
+        assertNotNull(ndjson.get(1).error());
+        assertEquals("C", ndjson.get(2).request().getDescription());
+    }
+
+    @Test
+    void anOverLongRowIsRejectedAndReadingResumesOnTheNextLine() {
+        String unterminated = "\"" + "x".repeat(ExpenseImportRows.MAX_ROW_CHARS);
+        List<ExpenseImportRows.Row> csv = all(ExpenseImportRows.csv(new StringReader(
+                "description,amount,category,date\n" + unterminated + ",1,Food,01/15/2025\nB,1,Food,01/15/2025\n")));
+        assertEquals(2, csv.size());
+        assertNotNull(csv.get(0).error());
+        assertEquals("B", csv.get(1).request().getDescription());
+        assertEquals(2, csv.get(1).number());
+
+        List<ExpenseImportRows.Row> ndjson = all(ExpenseImportRows.ndjson(Ndjson.defaultMapper(), new StringReader(
+                "x".repeat(ExpenseImportRows.MAX_ROW_CHARS + 1) + "\n{\"description\":\"C\"}\n")));
+        assertEquals(2, ndjson.size());
+        assertNotNull(ndjson.get(0).error());
+        assertEquals("C", ndjson.get(1).request().getDescription());
+    }
+
+    @Test
+    void csvWithoutARequiredColumnIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> ExpenseImportRows.csv(new StringReader("description,amount,date\nA,1,01/15/2025\n")));
+    }
+
+    @Test
+    void importWritesValidRowsInBatchesAndReportsTheOthers() {
+        InMemoryExpenseStore store = new InMemoryExpenseStore();
+        ExpenseRepository repository = new ExpenseRepository(store);
+        List<Expense> published = new ArrayList<>();
+        repository.addExpenseChangeListener(change -> published.add(change.after()));
+        List<String> imported = new ArrayList<>();
+        repository.addExpenseImportListener(imported::add);
+
+        ExpenseImport run = repository.startImport(2, 1);
+        for (int row = 1; row <= 7; row++) {
+            Expense e = new Expense();
+            e.setUserId("u1");
+            e.setDescription("row " + row);
+            e.setAmount(new BigDecimal(row == 3 ? "1.001" : "1.00"));
+            e.setCategory(row == 5 ? "Groceries" : "food");
+            e.setDate(Timestamp.now());
+            run.add(row, e);
+        }
+        run.reject(8, "Invalid JSON");
+        ExpenseImport.Report report = run.finish();
+
+        assertEquals(8, report.received());
+        assertEquals(5, report.imported());
+        assertEquals(3, report.failed());
+        assertEquals(List.of(3L, 5L, 8L), report.errors().stream().map(ExpenseImport.RowError::row).toList());
+        assertEquals(5, store.findByUserId("u1").size());
+        assertEquals(List.of(), published);
+        assertEquals(List.of("u1"), imported);
+    }
+}
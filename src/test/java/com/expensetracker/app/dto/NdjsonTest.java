@@ -0,0 +1,31 @@
+package com.expensetracker.app.dto;
+
+import com.expensetracker.app.repositories.Page;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NdjsonTest {
+
+    @Test
+    void writesEveryPageOneDocumentPerLine() throws Exception {
+        List<String> requestedCursors = new ArrayList<>();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        Ndjson.pages(Ndjson.defaultMapper(), cursor -> {
+            requestedCursors.add(cursor);
+            return cursor == null
+                    ? new Page<>(List.of(Map.of("id", "a"), Map.of("id", "b")), "next")
+                    : new Page<>(List.of(Map.of("id", "c")), null);
+        }).writeTo(out);
+
+        assertEquals("{\"id\":\"a\"}\n{\"id\":\"b\"}\n{\"id\":\"c\"}\n", out.toString(StandardCharsets.UTF_8));
+        assertEquals(java.util.Arrays.asList(null, "next"), requestedCursors);
+    }
+}
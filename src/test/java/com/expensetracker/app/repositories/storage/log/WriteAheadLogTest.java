@@ -0,0 +1,74 @@
+package com.expensetracker.app.repositories.storage.log;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// In the engine's package, since the log itself is package-private
+public class WriteAheadLogTest {
+
+    @TempDir
+    Path dir;
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private List<String> records() throws IOException {
+        List<String> records = new ArrayList<>();
+        WriteAheadLog.readFrames(WriteAheadLog.segmentPath(dir, 1),
+                payload -> records.add(new String(payload, StandardCharsets.UTF_8)));
+        return records;
+    }
+
+    @Test
+    void aFailedWriteLeavesNoTornFrameBeforeLaterRecords() throws Exception {
+        AtomicBoolean fail = new AtomicBoolean();
+        // Gets half of the batch onto disk before failing, like a full disk would
+        WriteAheadLog.FrameWriter tearing = (channel, frames) -> {
+            if (fail.get()) {
+                frames.limit(frames.position() + frames.remaining() / 2);
+                channel.write(frames);
+                throw new IOException("No space left on device");
+            }
+            while (frames.hasRemaining()) {
+                channel.write(frames);
+            }
+        };
+
+        try (WriteAheadLog wal = new WriteAheadLog(dir, 1, true, tearing)) {
+            wal.append(bytes("first"));
+            fail.set(true);
+            assertThrows(IOException.class, () -> wal.append(bytes("lost")));
+            fail.set(false);
+            wal.append(bytes("second"));
+            assertEquals(2L * 8 + "first".length() + "second".length(), wal.currentSegmentBytes());
+        }
+
+        assertEquals(List.of("first", "second"), records());
+    }
+
+    @Test
+    void aSegmentThatCannotBeRepairedRefusesLaterAppends() throws Exception {
+        WriteAheadLog.FrameWriter closing = (channel, frames) -> {
+            channel.write(frames.limit(frames.position() + 4));
+            // Leaves the tail impossible to cut off
+            channel.close();
+            throw new IOException("I/O error");
+        };
+
+        try (WriteAheadLog wal = new WriteAheadLog(dir, 1, true, closing)) {
+            assertThrows(IOException.class, () -> wal.append(bytes("lost")));
+            IOException refused = assertThrows(IOException.class, () -> wal.append(bytes("later")));
+            assertTrue(refused.getMessage().contains("unusable"));
+        }
+    }
+}
@@ -2,17 +2,34 @@ package com.expensetracker.app.security;
 
 import com.expensetracker.app.models.User;
 import com.expensetracker.app.models.enums.UserRole;
+import com.expensetracker.app.repositories.UserChange;
 import com.expensetracker.app.repositories.UserRepository;
+import com.expensetracker.app.repositories.storage.memory.InMemoryUserStore;
+import com.expensetracker.app.services.AccessToken;
 import com.expensetracker.app.services.SecurityService;
+import com.expensetracker.app.services.TokenService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 public class SecurityServiceTest {
 
+    private static final byte[] SECRET = "0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+
     private SecurityService securityService;
     private UserRepository userRepository;
 
@@ -80,4 +97,80 @@ public class SecurityServiceTest {
         when(userRepository.findById(adminId)).thenReturn(buildUser(adminId, UserRole.ADMIN));
         assertDoesNotThrow(() -> securityService.validateUserAccess("someone-else"));
     }
+
+    @Test
+    void getCurrentUser_isServedFromPrincipalCacheAcrossRequests() throws Exception {
+        String userId = "u-cached";
+        when(userRepository.findById(userId)).thenReturn(buildUser(userId, UserRole.USER));
+
+        securityService.setCurrentUser(userId);
+        securityService.validateUserAccess(userId);
+        securityService.clearCurrentUser();
+        securityService.setCurrentUser(userId);
+        securityService.validateUserAccess(userId);
+
+        verify(userRepository, times(1)).findById(userId);
+        assertEquals(1L, securityService.getPrincipalCacheStats().get("hits"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void getCurrentUser_doesNotCacheAPrincipalChangedWhileLoading() throws Exception {
+        ArgumentCaptor<Consumer<UserChange>> listener = ArgumentCaptor.forClass(Consumer.class);
+        verify(userRepository).addUserChangeListener(listener.capture());
+        String userId = "u-demoted";
+        when(userRepository.findById(userId))
+                .thenAnswer(inv -> {
+                    // The role changes after this read and before the load completes
+                    listener.getValue().accept(new UserChange(userId, true, false));
+                    return buildUser(userId, UserRole.ADMIN);
+                })
+                .thenReturn(buildUser(userId, UserRole.USER));
+
+        securityService.setCurrentUser(userId);
+        assertEquals(UserRole.ADMIN, securityService.getCurrentRole());
+        securityService.clearCurrentUser();
+        securityService.setCurrentUser(userId);
+
+        assertEquals(UserRole.USER, securityService.getCurrentRole());
+        verify(userRepository, times(2)).findById(userId);
+    }
+
+    @Test
+    void propagate_carriesContextToAnotherThreadAndLeavesItClean() throws Exception {
+        String userId = "u-forked";
+        securityService.setCurrentUser(userId);
+        Callable<String> task = securityService.propagate(securityService::getCurrentUserId);
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            assertEquals(userId, pool.submit(task).get());
+            // The worker's own context is empty again once the task is done
+            Future<?> after = pool.submit(() -> securityService.getCurrentUserId());
+            ExecutionException ex = assertThrows(ExecutionException.class, after::get);
+            assertInstanceOf(SecurityException.class, ex.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void isCurrent_refusesTokensIssuedBeforeARoleChangeMadeOnAnotherInstance() throws Exception {
+        InMemoryUserStore database = new InMemoryUserStore();
+        UserRepository here = new UserRepository(database);
+        // Its own repository, so it hears nothing of the other instance's writes
+        SecurityService elsewhere = new SecurityService(new UserRepository(database));
+        TokenService tokens = new TokenService(SECRET, Duration.ofMinutes(60), Clock.systemUTC());
+        User admin = buildUser("u1", UserRole.ADMIN);
+        here.createUser(admin);
+        AccessToken before = tokens.verify(tokens.issue(admin)).orElseThrow();
+
+        admin.setRole(UserRole.USER);
+        here.update(admin);
+
+        assertFalse(elsewhere.isCurrent(before));
+        TokenService later = new TokenService(SECRET, Duration.ofMinutes(60),
+                Clock.offset(Clock.systemUTC(), Duration.ofSeconds(1)));
+        assertTrue(elsewhere.isCurrent(later.verify(later.issue(admin)).orElseThrow()));
+    }
 }
@@ -0,0 +1,70 @@
+package com.expensetracker.app.security;
+
+import com.expensetracker.app.models.User;
+import com.expensetracker.app.models.enums.UserRole;
+import com.expensetracker.app.services.AccessToken;
+import com.expensetracker.app.services.TokenService;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenServiceTest {
+
+    private static final byte[] SECRET = "0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+    private static final Instant NOW = Instant.parse("2025-10-02T13:00:00Z");
+
+    private TokenService tokenService(Instant now) {
+        return new TokenService(SECRET, Duration.ofMinutes(60), Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    private User buildUser(String id, UserRole role) {
+        User u = new User();
+        u.setId(id);
+        u.setRole(role);
+        return u;
+    }
+
+    @Test
+    void issuedTokenVerifiesWithClaims() {
+        TokenService service = tokenService(NOW);
+        String token = service.issue(buildUser("u1", UserRole.ADMIN));
+
+        Optional<AccessToken> claims = service.verify(token);
+        assertTrue(claims.isPresent());
+        assertEquals("u1", claims.get().userId());
+        assertEquals(UserRole.ADMIN, claims.get().role());
+        assertEquals(NOW.plus(Duration.ofMinutes(60)), claims.get().expiresAt());
+    }
+
+    @Test
+    void tamperedTokenIsRejected() {
+        TokenService service = tokenService(NOW);
+        String token = service.issue(buildUser("u1", UserRole.USER));
+        String forged = service.issue(buildUser("u1", UserRole.ADMIN));
+        // Admin payload with the user token's signature
+        String mixed = forged.substring(0, forged.lastIndexOf('.')) + token.substring(token.lastIndexOf('.'));
+        assertTrue(service.verify(mixed).isEmpty());
+        assertTrue(service.verify("u1").isEmpty());
+    }
+
+    @Test
+    void expiredTokenIsRejected() {
+        String token = tokenService(NOW).issue(buildUser("u1", UserRole.USER));
+        assertTrue(tokenService(NOW.plus(Duration.ofMinutes(61))).verify(token).isEmpty());
+    }
+
+    @Test
+    void revokedUserTokensAreRejected() {
+        TokenService service = tokenService(NOW);
+        String token = service.issue(buildUser("u1", UserRole.ADMIN));
+        service.revoke("u1");
+        assertTrue(service.verify(token).isEmpty());
+    }
+}
@@ -0,0 +1,112 @@
+package com.expensetracker.app.storage;
+
+import com.expensetracker.app.models.Expense;
+import com.expensetracker.app.models.Goal;
+import com.expensetracker.app.models.enums.GoalMode;
+import com.expensetracker.app.repositories.ExpenseRepository;
+import com.expensetracker.app.repositories.GoalRepository;
+import com.expensetracker.app.repositories.UserRepository;
+import com.expensetracker.app.repositories.storage.memory.InMemoryExpenseStore;
+import com.expensetracker.app.repositories.storage.memory.InMemoryGoalStore;
+import com.expensetracker.app.repositories.storage.memory.InMemoryUserStore;
+import com.expensetracker.app.services.AccountDeletion;
+import com.expensetracker.app.testutil.TestDataBuilders;
+import com.google.cloud.Timestamp;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AccountDeletionTest {
+
+    private final InMemoryExpenseStore expenseStore = new InMemoryExpenseStore();
+    private final InMemoryUserStore userStore = new InMemoryUserStore();
+    private final UserRepository users = new UserRepository(userStore);
+    private final ExpenseRepository expenses = new ExpenseRepository(expenseStore);
+    private final GoalRepository goals = new GoalRepository(new InMemoryGoalStore(), expenses);
+    private final AccountDeletion deletion = new AccountDeletion(users, goals, expenses);
+
+    @AfterEach
+    void tearDown() {
+        deletion.close();
+    }
+
+    private void seed(String userId, int expenseCount) {
+        Goal g = new Goal();
+        g.setUserId(userId);
+        g.setTitle("goal");
+        g.setTargetAmount(new BigDecimal("100.00"));
+        g.setMode(GoalMode.LIMIT);
+        g.setStartDate(Timestamp.ofTimeSecondsAndNanos(1_735_689_600L, 0));
+        g.setEndDate(Timestamp.ofTimeSecondsAndNanos(1_738_281_600L, 0));
+        goals.save(g);
+        for (int i = 0; i < expenseCount; i++) {
+            Expense e = new Expense();
+            e.setUserId(userId);
+            e.setDescription("expense " + i);
+            e.setAmount(new BigDecimal("1.00"));
+            e.setCategory("Food");
+            e.setDate(Timestamp.ofTimeSecondsAndNanos(1_735_689_600L + i, 0));
+            expenses.createExpense(e);
+        }
+    }
+
+    private AccountDeletion.Progress awaitFinished(String userId) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (true) {
+            AccountDeletion.Progress p = deletion.progress(userId).orElseThrow();
+            if (p.state() == AccountDeletion.State.DONE || p.state() == AccountDeletion.State.FAILED) {
+                return p;
+            }
+            assertTrue(System.nanoTime() < deadline, "deletion did not finish");
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void deletingAUserCascadesToTheirGoalsAndExpensesInBatches() throws Exception {
+        users.createUser(TestDataBuilders.user().withId("u1").withEmail("u1@example.com").build());
+        seed("u1", ExpenseRepository.DELETE_BATCH_SIZE + 20);
+        seed("u2", 3);
+
+        users.deleteById("u1");
+        AccountDeletion.Progress progress = awaitFinished("u1");
+
+        assertEquals(AccountDeletion.State.DONE, progress.state());
+        assertEquals(1, progress.goalsDeleted());
+        assertEquals(ExpenseRepository.DELETE_BATCH_SIZE + 20, progress.expensesDeleted());
+        assertTrue(expenses.findByUserId("u1").isEmpty());
+        assertTrue(goals.findByUserId("u1").isEmpty());
+        assertEquals(3, expenses.findByUserId("u2").size());
+        assertEquals(1, goals.findByUserId("u2").size());
+    }
+
+    @Test
+    void deletingExpensesAloneStillAdjustsGoalProgress() {
+        seed("u1", 2);
+        Goal goal = goals.findByUserId("u1").get(0);
+        assertEquals(0, new BigDecimal("2.00").compareTo(goals.findById(goal.getId()).orElseThrow().getCurrentAmount()));
+
+        expenses.deleteByUserId("u1");
+
+        assertEquals(0, BigDecimal.ZERO.compareTo(goals.findById(goal.getId()).orElseThrow().getCurrentAmount()));
+    }
+
+    @Test
+    void aCascadeCutShortIsResumedFromThePendingMark() throws Exception {
+        users.createUser(TestDataBuilders.user().withId("u1").withEmail("u1@example.com").build());
+        seed("u1", 3);
+        // Deleted through a repository nothing cascades from, like a delete whose run was lost to a restart
+        new UserRepository(userStore).deleteById("u1");
+        assertEquals(1, users.findDeletionPending().size());
+
+        assertEquals(1, deletion.resumePending());
+        assertEquals(AccountDeletion.State.DONE, awaitFinished("u1").state());
+        assertTrue(expenses.findByUserId("u1").isEmpty());
+        assertTrue(users.findDeletionPending().isEmpty());
+        assertEquals(0, deletion.resumePending());
+    }
+}
@@ -0,0 +1,48 @@
+package com.expensetracker.app.storage;
+
+import com.expensetracker.app.repositories.storage.firestore.AdaptiveShards;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdaptiveShardsTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    private final AtomicLong now = new AtomicLong();
+    private final AdaptiveShards shards = new AdaptiveShards(8, 1.0, now::get);
+
+    // Spreads the writes evenly over one second
+    private void writeFor(String counter, int writes) {
+        for (int i = 0; i < writes; i++) {
+            int shard = shards.next(counter);
+            assertTrue(shard >= 0 && shard < shards.shards(counter));
+            now.addAndGet(SECOND / writes);
+        }
+    }
+
+    @Test
+    void slowCounterStaysOnOneShard() {
+        for (int i = 0; i < 5; i++) {
+            writeFor("g1", 1);
+        }
+        assertEquals(1, shards.shards("g1"));
+    }
+
+    @Test
+    void hotCounterGrowsUpToTheCapAndShrinksWhenTrafficDrops() {
+        for (int i = 0; i < 6; i++) {
+            writeFor("g1", 50);
+        }
+        assertEquals(8, shards.shards("g1"));
+        assertEquals(1, shards.shards("g2"));
+
+        for (int i = 0; i < 6; i++) {
+            shards.next("g1");
+            now.addAndGet(10 * SECOND);
+        }
+        assertEquals(1, shards.shards("g1"));
+    }
+}
@@ -0,0 +1,148 @@
+package com.expensetracker.app.storage;
+
+import com.expensetracker.app.models.Expense;
+import com.expensetracker.app.models.Goal;
+import com.expensetracker.app.repositories.storage.memory.InMemoryExpenseStore;
+import com.expensetracker.app.repositories.storage.memory.InMemoryGoalStore;
+import com.expensetracker.app.services.Archival;
+import com.google.cloud.Timestamp;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ArchivalTest {
+
+    /** Keeps archived expenses aside, like the Firestore archive collection. */
+    private static final class ArchivingExpenseStore extends InMemoryExpenseStore {
+        final Set<String> ids = ConcurrentHashMap.newKeySet();
+        final Map<String, Expense> archived = new ConcurrentHashMap<>();
+        final List<Integer> batches = new ArrayList<>();
+
+        @Override
+        public synchronized void save(Expense expense) {
+            super.save(expense);
+            ids.add(expense.getId());
+        }
+
+        @Override
+        public List<Expense> findDeletedBefore(Timestamp cutoff, int limit) {
+            return ids.stream()
+                    .filter(id -> !archived.containsKey(id))
+                    .map(id -> findById(id).orElseThrow())
+                    .filter(e -> e.getDeletedAt() != null && e.getDeletedAt().compareTo(cutoff) < 0)
+                    .sorted(Comparator.comparing(Expense::getDeletedAt))
+                    .limit(limit)
+                    .toList();
+        }
+
+        @Override
+        public void archive(List<Expense> deleted) {
+            batches.add(deleted.size());
+            deleted.forEach(e -> archived.put(e.getId(), e));
+        }
+    }
+
+    private static final class ArchivingGoalStore extends InMemoryGoalStore {
+        final Set<String> ids = ConcurrentHashMap.newKeySet();
+        final Map<String, Goal> archived = new ConcurrentHashMap<>();
+
+        @Override
+        public synchronized void save(Goal goal) {
+            super.save(goal);
+            ids.add(goal.getId());
+        }
+
+        @Override
+        public List<Goal> findDeletedBefore(Timestamp cutoff, int limit) {
+            return ids.stream()
+                    .filter(id -> !archived.containsKey(id))
+                    .map(id -> findById(id).orElseThrow())
+                    .filter(g -> g.getDeletedAt() != null && g.getDeletedAt().compareTo(cutoff) < 0)
+                    .limit(limit)
+                    .toList();
+        }
+
+        @Override
+        public void archive(List<Goal> deleted) {
+            deleted.forEach(g -> archived.put(g.getId(), g));
+        }
+    }
+
+    private final ArchivingExpenseStore expenses = new ArchivingExpenseStore();
+    private final ArchivingGoalStore goals = new ArchivingGoalStore();
+    private final Archival archival = new Archival(expenses, goals, Duration.ofDays(30), 2, Duration.ZERO, 100);
+
+    @AfterEach
+    void tearDown() {
+        archival.close();
+    }
+
+    private static Timestamp daysAgo(int days) {
+        return Timestamp.ofTimeSecondsAndNanos(Instant.now().minus(Duration.ofDays(days)).getEpochSecond(), 0);
+    }
+
+    private void expense(String id, Timestamp deletedAt) {
+        Expense e = new Expense();
+        e.setId(id);
+        e.setUserId("u1");
+        e.setAmount(new BigDecimal("1.00"));
+        e.setDate(daysAgo(90));
+        e.setDeletedAt(deletedAt);
+        expenses.save(e);
+    }
+
+    private void goal(String id, Timestamp deletedAt) {
+        Goal g = new Goal();
+        g.setId(id);
+        g.setUserId("u1");
+        g.setTargetAmount(new BigDecimal("10.00"));
+        g.setDeletedAt(deletedAt);
+        goals.save(g);
+    }
+
+    @Test
+    void archivesOnlyDocumentsDeletedBeforeTheRetentionWindowInBatches() throws Exception {
+        expense("old-1", daysAgo(40));
+        expense("old-2", daysAgo(45));
+        expense("old-3", daysAgo(60));
+        expense("recent", daysAgo(5));
+        expense("live", null);
+        goal("old-goal", daysAgo(31));
+        goal("live-goal", null);
+
+        assertEquals(4, archival.run());
+
+        assertEquals(Set.of("old-1", "old-2", "old-3"), expenses.archived.keySet());
+        assertEquals(List.of(2, 1), expenses.batches);
+        assertEquals(Set.of("old-goal"), goals.archived.keySet());
+        Map<String, Object> stats = archival.stats();
+        assertEquals(3L, stats.get("expensesArchived"));
+        assertEquals(1L, stats.get("goalsArchived"));
+        assertEquals(3L, stats.get("probes"));
+        assertEquals(1L, stats.get("runs"));
+    }
+
+    @Test
+    void stopsAtThePerRunLimit() throws Exception {
+        try (Archival limited = new Archival(expenses, goals, Duration.ofDays(30), 2, Duration.ZERO, 3)) {
+            for (int i = 0; i < 5; i++) {
+                expense("old-" + i, daysAgo(40 + i));
+            }
+
+            assertEquals(3, limited.run());
+            assertEquals(2, limited.run());
+            assertEquals(0, limited.run());
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.expensetracker.app.storage;
+
+import com.expensetracker.app.models.Expense;
+import com.expensetracker.app.models.Goal;
+import com.expensetracker.app.models.User;
+import com.expensetracker.app.models.enums.GoalMode;
+import com.expensetracker.app.models.enums.GoalStatus;
+import com.expensetracker.app.models.enums.UserRole;
+import com.expensetracker.app.repositories.storage.firestore.DocumentMappers;
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.WriteBatch;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.FirebaseOptions;
+import com.google.firebase.cloud.FirestoreClient;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the hand-written mappers against the client's reflective
+ * {@code toObject} and prints how long each takes per document over a large
+ * result set. Runs against the Firestore emulator, e.g.
+ * {@code gcloud emulators firestore start --host-port=localhost:8085} with
+ * {@code FIRESTORE_EMULATOR_HOST=localhost:8085}. Skipped otherwise.
+ */
+@EnabledIfEnvironmentVariable(named = "FIRESTORE_EMULATOR_HOST", matches = ".+")
+public class DocumentMappersEmulatorTest {
+
+    private static final int DOCUMENTS = 2000;
+    private static final int ROUNDS = 20;
+
+    @BeforeAll
+    static void connect() {
+        if (FirebaseApp.getApps().isEmpty()) {
+            // The emulator accepts any credentials
+            FirebaseApp.initializeApp(FirebaseOptions.builder()
+                    .setProjectId("demo-expense-tracker")
+                    .setCredentials(GoogleCredentials.create(new AccessToken("owner", null)))
+                    .build());
+        }
+    }
+
+    private static List<QueryDocumentSnapshot> write(String collection, List<?> models, Function<Object, String> id)
+            throws Exception {
+        Firestore db = FirestoreClient.getFirestore();
+        for (int from = 0; from < models.size(); from += 500) {
+            WriteBatch batch = db.batch();
+            for (Object model : models.subList(from, Math.min(from + 500, models.size()))) {
+                batch.set(db.collection(collection).document(id.apply(model)), model);
+            }
+            batch.commit().get();
+        }
+        return db.collection(collection).get().get().getDocuments();
+    }
+
+    // Nanoseconds per document, after a warm-up round
+    private static double time(List<QueryDocumentSnapshot> docs, Function<DocumentSnapshot, Object> mapper) {
+        Object sink = null;
+        for (QueryDocumentSnapshot d : docs) {
+            sink = mapper.apply(d);
+        }
+        long started = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (QueryDocumentSnapshot d : docs) {
+                sink = mapper.apply(d);
+            }
+        }
+        assertNotNull(sink);
+        return (System.nanoTime() - started) / (double) (ROUNDS * docs.size());
+    }
+
+    private static void report(String model, List<QueryDocumentSnapshot> docs, Class<?> type,
+                               Function<DocumentSnapshot, Object> mapper) {
+        double reflective = time(docs, d -> d.toObject(type));
+        double handWritten = time(docs, mapper);
+        System.out.printf("%s: toObject %.0f ns/doc, mapper %.0f ns/doc over %d documents%n",
+                model, reflective, handWritten, docs.size());
+    }
+
+    @Test
+    void expensesMatchTheReflectiveMapping() throws Exception {
+        String collection = "mapperExpenses-" + UUID.randomUUID();
+        List<Expense> expenses = new ArrayList<>();
+        for (int i = 0; i < DOCUMENTS; i++) {
+            Expense e = new Expense();
+            e.setUserId("u1");
+            e.setGoalId(i % 2 == 0 ? "g1" : null);
+            e.setDescription("expense " + i);
+            e.setAmount(new BigDecimal(i + ".25"));
+            e.setCategory("Food");
+            e.setDate(Timestamp.ofTimeSecondsAndNanos(1_735_689_600L + i, 0));
+            e.setDeletedAt(i % 10 == 0 ? Timestamp.now() : null);
+            expenses.add(e);
+        }
+        List<QueryDocumentSnapshot> docs = write(collection, expenses, m -> ((Expense) m).getId());
+
+        for (QueryDocumentSnapshot d : docs) {
+            Expense reflective = d.toObject(Expense.class);
+            reflective.setId(d.getId());
+            Expense mapped = DocumentMappers.expense(d);
+            assertEquals(reflective, mapped);
+            assertEquals(reflective.getId(), mapped.getId());
+            assertEquals(reflective.getCreatedAt(), mapped.getCreatedAt());
+            assertEquals(reflective.getUpdatedAt(), mapped.getUpdatedAt());
+            assertEquals(reflective.getDeletedAt(), mapped.getDeletedAt());
+        }
+        report("Expense", docs, Expense.class, DocumentMappers::expense);
+    }
+
+    @Test
+    void legacyAmountsStoredAsNumbersAreRead() throws Exception {
+        Firestore db = FirestoreClient.getFirestore();
+        String collection = "mapperLegacy-" + UUID.randomUUID();
+        db.collection(collection).document("old").set(Map.of("amount", 12.5, "userId", "u1", "goalId", "g1")).get();
+
+        Expense mapped = DocumentMappers.expense(db.collection(collection).document("old").get().get());
+
+        assertEquals(0, new BigDecimal("12.5").compareTo(mapped.getAmount()));
+        assertEquals("g1", mapped.getGoalId());
+        assertNull(DocumentMappers.expense(db.collection(collection).document("missing").get().get()));
+    }
+
+    @Test
+    void enumNamesAreReadIgnoringCaseAndUnknownOnesKeepTheDefault() throws Exception {
+        Firestore db = FirestoreClient.getFirestore();
+        String collection = "mapperEnums-" + UUID.randomUUID();
+        db.collection(collection).document("lower").set(Map.of("mode", "limit", "status", "Exceeded", "role", "admin")).get();
+        db.collection(collection).document("unknown").set(Map.of("mode", "SAVINGS", "status", 3L, "role", "OWNER")).get();
+
+        DocumentSnapshot lower = db.collection(collection).document("lower").get().get();
+        assertEquals(GoalMode.LIMIT, DocumentMappers.goal(lower).getMode());
+        assertEquals(GoalStatus.EXCEEDED, DocumentMappers.goal(lower).getStatus());
+        assertEquals(UserRole.ADMIN, DocumentMappers.user(lower).getRole());
+
+        DocumentSnapshot unknown = db.collection(collection).document("unknown").get().get();
+        Goal defaults = new Goal();
+        assertEquals(defaults.getMode(), DocumentMappers.goal(unknown).getMode());
+        assertEquals(defaults.getStatus(), DocumentMappers.goal(unknown).getStatus());
+        assertEquals(UserRole.USER, DocumentMappers.user(unknown).getRole());
+    }
+
+    @Test
+    void goalsMatchTheReflectiveMapping() throws Exception {
+        String collection = "mapperGoals-" + UUID.randomUUID();
+        List<Goal> goals = new ArrayList<>();
+        for (int i = 0; i < DOCUMENTS; i++) {
+            Goal g = new Goal();
+            g.setUserId("u1");
+            g.setTitle("goal " + i);
+            g.setTargetAmount(new BigDecimal("100.00"));
+            g.setCurrentAmount(new BigDecimal(i + ".50"));
+            g.setStartDate(Timestamp.ofTimeSecondsAndNanos(1_735_689_600L, 0));
+            g.setEndDate(Timestamp.ofTimeSecondsAndNanos(1_738_281_600L, 0));
+            g.setCategory(i % 3 == 0 ? "Food" : null);
+            g.setCompleted(i % 4 == 0);
+            g.setMode(i % 2 == 0 ? GoalMode.LIMIT : GoalMode.INVESTMENT);
+            g.setStatus(GoalStatus.values()[i % GoalStatus.values().length]);
+            goals.add(g);
+        }
+        List<QueryDocumentSnapshot> docs = write(collection, goals, m -> ((Goal) m).getId());
+
+        for (QueryDocumentSnapshot d : docs) {
+            Goal reflective = d.toObject(Goal.class);
+            reflective.setId(d.getId());
+            Goal mapped = DocumentMappers.goal(d);
+            assertEquals(reflective, mapped);
+            assertEquals(reflective.getId(), mapped.getId());
+            assertEquals(reflective.getDeletedAt(), mapped.getDeletedAt());
+        }
+        report("Goal", docs, Goal.class, DocumentMappers::goal);
+    }
+
+    @Test
+    void usersMatchTheReflectiveMapping() throws Exception {
+        String collection = "mapperUsers-" + UUID.randomUUID();
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < DOCUMENTS; i++) {
+            User u = new User("user " + i, "user" + i + "@example.com", "hash-" + i);
+            u.setRole(i % 5 == 0 ? UserRole.ADMIN : UserRole.USER);
+            users.add(u);
+        }
+        List<QueryDocumentSnapshot> docs = write(collection, users, m -> ((User) m).getId());
+
+        for (QueryDocumentSnapshot d : docs) {
+            User reflective = d.toObject(User.class);
+            reflective.setId(d.getId());
+            User mapped = DocumentMappers.user(d);
+            assertEquals(reflective, mapped);
+            assertEquals(reflective.getId(), mapped.getId());
+            assertEquals(reflective.getCreatedAt(), mapped.getCreatedAt());
+        }
+        report("User", docs, User.class, DocumentMappers::user);
+    }
+}
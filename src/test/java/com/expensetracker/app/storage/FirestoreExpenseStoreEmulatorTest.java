@@ -0,0 +1,115 @@
+package com.expensetracker.app.storage;
+
+import com.expensetracker.app.models.Expense;
+import com.expensetracker.app.repositories.ExpenseRepository;
+import com.expensetracker.app.repositories.storage.firestore.FirestoreExpenseStore;
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.cloud.Timestamp;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.FirebaseOptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static com.expensetracker.app.testutil.TestDataBuilders.day;
+import static com.expensetracker.app.testutil.TestDataBuilders.expense;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs against the Firestore emulator, e.g.
+ * {@code gcloud emulators firestore start --host-port=localhost:8085} with
+ * {@code FIRESTORE_EMULATOR_HOST=localhost:8085}. Skipped otherwise.
+ */
+@EnabledIfEnvironmentVariable(named = "FIRESTORE_EMULATOR_HOST", matches = ".+")
+public class FirestoreExpenseStoreEmulatorTest {
+
+    private final FirestoreExpenseStore aggregating = new FirestoreExpenseStore(true);
+    private final FirestoreExpenseStore clientSide = new FirestoreExpenseStore(false, false);
+
+    @BeforeAll
+    static void connect() {
+        if (FirebaseApp.getApps().isEmpty()) {
+            // The emulator accepts any credentials
+            FirebaseApp.initializeApp(FirebaseOptions.builder()
+                    .setProjectId("demo-expense-tracker")
+                    .setCredentials(GoogleCredentials.create(new AccessToken("owner", null)))
+                    .build());
+        }
+        new FirestoreExpenseStore(true).backfillAggregateFields();
+        new FirestoreExpenseStore(true).rebuildRollups();
+    }
+
+    @Test
+    void aggregatedTotalsMatchClientSideBigDecimalSums() throws Exception {
+        String userId = "u-" + UUID.randomUUID();
+        String goalId = "g-" + UUID.randomUUID();
+        aggregating.save(expense(null, userId, goalId, "0.10", "Food", day("2025-01-01")));
+        aggregating.save(expense(null, userId, goalId, "0.20", "Food", day("2025-01-10")));
+        aggregating.save(expense(null, userId, null, "0.30", "Travel", day("2025-01-20")));
+        Expense deleted = expense(null, userId, goalId, "100.00", "Food", day("2025-01-05"));
+        aggregating.save(deleted);
+        aggregating.update(deleted.getId(), Map.of("deletedAt", Timestamp.now()));
+
+        Timestamp start = day("2025-01-01");
+        Timestamp end = day("2025-01-31");
+        assertEquals(new BigDecimal("0.60"), aggregating.sumAmountByUserIdAndDateRange(userId, start, end));
+        assertEquals(0, clientSide.sumAmountByUserIdAndDateRange(userId, start, end)
+                .compareTo(aggregating.sumAmountByUserIdAndDateRange(userId, start, end)));
+        assertEquals(new BigDecimal("0.30"), aggregating.sumAmountByUserIdCategoryAndDateRange(userId, "food", start, end));
+        assertEquals(new BigDecimal("0.30"), aggregating.sumAmountByGoalId(goalId, null, null));
+        assertEquals(0, BigDecimal.ZERO.compareTo(aggregating.sumAmountByUserIdAndDateRange("nobody", start, end)));
+    }
+
+    @Test
+    void amountUpdatesKeepCentsInStep() throws Exception {
+        String userId = "u-" + UUID.randomUUID();
+        Expense e = expense(null, userId, null, "1.00", "Food", day("2025-02-01"));
+        aggregating.save(e);
+        aggregating.update(e.getId(), Map.of("amount", new BigDecimal("2.35")));
+
+        assertEquals(new BigDecimal("2.35"),
+                aggregating.sumAmountByUserIdAndDateRange(userId, day("2025-02-01"), day("2025-02-01")));
+    }
+
+    @Test
+    void rollupsFollowWritesAndAnswerWholeMonths() throws Exception {
+        String userId = "u-" + UUID.randomUUID();
+        aggregating.save(expense(null, userId, null, "5.00", "Food", day("2025-01-15")));
+        Expense moved = expense(null, userId, null, "3.00", "Food", day("2025-02-10"));
+        aggregating.save(moved);
+        aggregating.save(expense(null, userId, null, "4.00", "Travel", day("2025-03-03")));
+        aggregating.update(moved.getId(), Map.of("date", day("2025-01-20"), "amount", new BigDecimal("3.50")));
+
+        Timestamp start = day("2024-12-20");
+        Timestamp end = day("2025-03-03");
+        assertEquals(0, clientSide.sumAmountByUserIdAndDateRange(userId, start, end)
+                .compareTo(aggregating.sumAmountByUserIdAndDateRange(userId, start, end)));
+        assertEquals(0, new BigDecimal("8.50").compareTo(
+                aggregating.sumAmountByUserIdCategoryAndDateRange(userId, "food", start, end)));
+
+        ExpenseRepository repository = new ExpenseRepository(aggregating);
+        assertEquals(List.of(), repository.verifyRollups(userId).get("mismatches"));
+        assertEquals(1, repository.findMonthlyRollups(userId, "2025-02", "2025-03").size());
+    }
+
+    @Test
+    void subCentAmountsAreKeptInTotalsAndRollups() throws Exception {
+        String userId = "u-" + UUID.randomUUID();
+        aggregating.save(expense(null, userId, null, "1.005", "Food", day("2025-04-02")));
+        aggregating.save(expense(null, userId, null, "2.00", "Food", day("2025-04-03")));
+        aggregating.save(expense(null, userId, null, "0.50", "Travel", day("2025-04-04")));
+
+        assertEquals(0, new BigDecimal("3.505").compareTo(
+                aggregating.sumAmountByUserIdAndDateRange(userId, day("2025-04-02"), day("2025-04-04"))));
+        assertEquals(0, new BigDecimal("3.505").compareTo(
+                aggregating.sumAmountByUserIdAndDateRange(userId, day("2025-04-01"), day("2025-05-01"))));
+        assertEquals(0, new BigDecimal("3.005").compareTo(
+                aggregating.sumAmountByUserIdCategoryAndDateRange(userId, "food", day("2025-04-01"), day("2025-05-01"))));
+    }
+}
@@ -0,0 +1,88 @@
+package com.expensetracker.app.storage;
+
+import com.expensetracker.app.models.Goal;
+import com.expensetracker.app.repositories.ExpenseRepository;
+import com.expensetracker.app.repositories.GoalRepository;
+import com.expensetracker.app.repositories.storage.firestore.FirestoreExpenseStore;
+import com.expensetracker.app.repositories.storage.firestore.FirestoreGoalStore;
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.FirebaseOptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.expensetracker.app.testutil.TestDataBuilders.day;
+import static com.expensetracker.app.testutil.TestDataBuilders.expense;
+import static com.expensetracker.app.testutil.TestDataBuilders.goal;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Concurrent expense ingestion into a single goal against the Firestore
+ * emulator; see {@link FirestoreExpenseStoreEmulatorTest} for setup. Prints
+ * the sustained rate so runs can be compared.
+ */
+@EnabledIfEnvironmentVariable(named = "FIRESTORE_EMULATOR_HOST", matches = ".+")
+public class FirestoreGoalProgressEmulatorTest {
+
+    private static final int WRITERS = 32;
+    private static final int EXPENSES_PER_WRITER = 50;
+
+    private final FirestoreGoalStore goalStore = new FirestoreGoalStore(16, 1.0);
+    private final ExpenseRepository expenses = new ExpenseRepository(new FirestoreExpenseStore());
+    private final GoalRepository goals = new GoalRepository(goalStore, expenses);
+
+    @BeforeAll
+    static void connect() {
+        if (FirebaseApp.getApps().isEmpty()) {
+            FirebaseApp.initializeApp(FirebaseOptions.builder()
+                    .setProjectId("demo-expense-tracker")
+                    .setCredentials(GoogleCredentials.create(new AccessToken("owner", null)))
+                    .build());
+        }
+    }
+
+    @Test
+    void concurrentIngestionIntoOneGoalKeepsAnExactTotal() throws Exception {
+        String userId = "u-" + UUID.randomUUID();
+        Goal goal = goal(userId, null, "1000000.00", day("2025-01-01"), day("2025-12-31"));
+        goals.save(goal);
+
+        ExecutorService pool = Executors.newFixedThreadPool(WRITERS);
+        long started = System.nanoTime();
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int w = 0; w < WRITERS; w++) {
+                writers.add(pool.submit(() -> {
+                    for (int i = 0; i < EXPENSES_PER_WRITER; i++) {
+                        expenses.createExpense(expense(null, userId, goal.getId(), "1.25", "General", day("2025-06-01")));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+        int written = WRITERS * EXPENSES_PER_WRITER;
+        System.out.printf("Ingested %d expenses into one goal in %.1fs (%.0f/s) over %d shards%n",
+                written, seconds, written / seconds, goalStore.progressShards(goal.getId()));
+
+        BigDecimal expected = new BigDecimal("1.25").multiply(BigDecimal.valueOf(written));
+        assertEquals(0, expected.compareTo(goals.findById(goal.getId()).orElseThrow().getCurrentAmount()));
+        assertTrue(goalStore.progressShards(goal.getId()) > 1);
+        assertEquals(0, expected.compareTo(goals.sync(goal.getId()).getCurrentAmount()));
+    }
+}
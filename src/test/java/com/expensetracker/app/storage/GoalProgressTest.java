@@ -0,0 +1,138 @@
+package com.expensetracker.app.storage;
+
+import com.expensetracker.app.models.Expense;
+import com.expensetracker.app.models.Goal;
+import com.expensetracker.app.models.enums.GoalStatus;
+import com.expensetracker.app.repositories.ExpenseRepository;
+import com.expensetracker.app.repositories.GoalRepository;
+import com.expensetracker.app.repositories.storage.memory.InMemoryExpenseStore;
+import com.expensetracker.app.repositories.storage.memory.InMemoryGoalStore;
+import com.google.cloud.Timestamp;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.expensetracker.app.testutil.TestDataBuilders.day;
+import static com.expensetracker.app.testutil.TestDataBuilders.expense;
+import static com.expensetracker.app.testutil.TestDataBuilders.goal;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GoalProgressTest {
+
+    /** Counts full listings of a user's goals. */
+    private static final class CountingGoalStore extends InMemoryGoalStore {
+        final AtomicInteger listings = new AtomicInteger();
+
+        @Override
+        public List<Goal> findByUserId(String userId) {
+            listings.incrementAndGet();
+            return super.findByUserId(userId);
+        }
+
+        // What an engine with a range query does, without listing the user's goals
+        @Override
+        public List<Goal> findOpenByUserIdAt(String userId, Timestamp date) {
+            return super.findByUserId(userId).stream()
+                    .filter(g -> g.getEndDate().compareTo(date) >= 0)
+                    .toList();
+        }
+    }
+
+    private final ExpenseRepository expenses = new ExpenseRepository(new InMemoryExpenseStore());
+    private final CountingGoalStore goalStore = new CountingGoalStore();
+    private final GoalRepository goals = new GoalRepository(goalStore, expenses);
+
+    private BigDecimal progress(Goal g) {
+        return goals.findById(g.getId()).orElseThrow().getCurrentAmount();
+    }
+
+    @Test
+    void expenseWritesMoveMatchingGoalsOnly() {
+        Goal all = goals.save(goal("u1", null, "100.00", day("2025-01-01"), day("2025-01-31")));
+        Goal food = goals.save(goal("u1", "food", "100.00", day("2025-01-01"), day("2025-01-31")));
+
+        Expense lunch = expenses.createExpense(expense(null, "u1", null, "12.50", "FOOD", day("2025-01-10")));
+        expenses.createExpense(expense(null, "u1", null, "40.00", "TRAVEL", day("2025-01-12")));
+        expenses.createExpense(expense(null, "u1", null, "99.00", "FOOD", day("2025-02-10")));
+
+        assertEquals(0, new BigDecimal("52.50").compareTo(progress(all)));
+        assertEquals(0, new BigDecimal("12.50").compareTo(progress(food)));
+
+        Expense change = new Expense();
+        change.setAmount(new BigDecimal("20.00"));
+        expenses.update(lunch.getId(), change);
+        assertEquals(0, new BigDecimal("20.00").compareTo(progress(food)));
+
+        expenses.deleteById(lunch.getId());
+        assertEquals(0, BigDecimal.ZERO.compareTo(progress(food)));
+        assertEquals(0, new BigDecimal("40.00").compareTo(progress(all)));
+    }
+
+    @Test
+    void linkedExpensesCountAcrossCategoriesAndUpdateStatus() {
+        Goal food = goals.save(goal("u1", "food", "30.00", day("2025-01-01"), day("2025-01-31")));
+
+        expenses.createExpense(expense(null, "u1", food.getId(), "35.00", "TRAVEL", day("2025-01-05")));
+
+        Goal stored = goals.findById(food.getId()).orElseThrow();
+        assertEquals(0, new BigDecimal("35.00").compareTo(stored.getCurrentAmount()));
+        assertEquals(GoalStatus.EXCEEDED, stored.getStatus());
+        assertTrue(stored.isCompleted());
+    }
+
+    @Test
+    void syncAgreesWithIncrementalProgress() {
+        Goal food = goals.save(goal("u1", "food", "100.00", day("2025-01-01"), day("2025-01-31")));
+        expenses.createExpense(expense(null, "u1", null, "10.00", "FOOD", day("2025-01-03")));
+        expenses.createExpense(expense(null, "u1", food.getId(), "5.00", "TRAVEL", day("2025-01-04")));
+        expenses.createExpense(expense(null, "u1", null, "7.00", "TRAVEL", day("2025-01-04")));
+        BigDecimal incremental = progress(food);
+
+        assertEquals(0, incremental.compareTo(goals.sync(food.getId()).getCurrentAmount()));
+        assertEquals(0, incremental.compareTo(goals.updateGoalProgress(food.getId()).getCurrentAmount()));
+    }
+
+    @Test
+    void bulkRecomputeSweepsAllGoalsInOnePass() {
+        // Written before the goals exist, so only a recompute picks them up
+        expenses.createExpense(expense(null, "u1", null, "10.00", "FOOD", day("2025-01-03")));
+        expenses.createExpense(expense(null, "u1", null, "20.00", "TRAVEL", day("2025-01-20")));
+        expenses.createExpense(expense(null, "u1", null, "40.00", "FOOD", day("2025-02-15")));
+        Goal all = goals.save(goal("u1", null, "25.00", day("2025-01-01"), day("2025-01-31")));
+        Goal food = goals.save(goal("u1", "food", "100.00", day("2025-01-01"), day("2025-01-31")));
+        Goal february = goals.save(goal("u1", null, "100.00", day("2025-01-01"), day("2025-01-31")));
+        Goal stored = goals.findById(february.getId()).orElseThrow();
+        stored.setStartDate(day("2025-02-01"));
+        stored.setEndDate(day("2025-02-28"));
+        goals.save(stored);
+
+        goals.updateAllGoalProgressForUser("u1");
+
+        assertEquals(0, new BigDecimal("30.00").compareTo(progress(all)));
+        assertEquals(0, new BigDecimal("10.00").compareTo(progress(food)));
+        assertEquals(0, new BigDecimal("40.00").compareTo(progress(february)));
+        assertEquals(GoalStatus.EXCEEDED, goals.findById(all.getId()).orElseThrow().getStatus());
+    }
+
+    @Test
+    void expenseWritesOnlyLookAtGoalsOpenAtTheExpenseDate() {
+        Goal food = goals.save(goal("u1", "food", "30.00", day("2025-01-01"), day("2025-01-31")));
+        Goal past = goals.save(goal("u1", null, "100.00", day("2025-01-01"), day("2025-01-31")));
+        Goal stored = goals.findById(past.getId()).orElseThrow();
+        stored.setStartDate(day("2024-12-01"));
+        stored.setEndDate(day("2024-12-31"));
+        goals.save(stored);
+
+        Expense lunch = expenses.createExpense(expense(null, "u1", null, "35.00", "FOOD", day("2025-01-10")));
+        assertEquals(GoalStatus.EXCEEDED, goals.findById(food.getId()).orElseThrow().getStatus());
+        expenses.deleteById(lunch.getId());
+
+        Goal after = goals.findById(food.getId()).orElseThrow();
+        assertEquals(0, BigDecimal.ZERO.compareTo(after.getCurrentAmount()));
+        assertEquals(GoalStatus.UNDER_LIMIT, after.getStatus());
+        assertEquals(0, BigDecimal.ZERO.compareTo(progress(past)));
+        assertEquals(0, goalStore.listings.get());
+    }
+}
@@ -0,0 +1,151 @@
+package com.expensetracker.app.storage;
+
+import com.expensetracker.app.models.Expense;
+import com.expensetracker.app.repositories.ExpenseRepository;
+import com.expensetracker.app.repositories.Page;
+import com.expensetracker.app.repositories.storage.memory.InMemoryExpenseStore;
+import com.google.cloud.Timestamp;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.expensetracker.app.testutil.TestDataBuilders.day;
+import static com.expensetracker.app.testutil.TestDataBuilders.expense;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InMemoryExpenseStoreTest {
+
+    private final InMemoryExpenseStore store = new InMemoryExpenseStore();
+
+    @Test
+    void dateRangeIsInclusiveAndOrdered() {
+        store.save(expense("c", "u1", null, "3.00", "Food", day("2025-03-01")));
+        store.save(expense("a", "u1", null, "1.00", "Food", day("2025-01-01")));
+        store.save(expense("b", "u1", null, "2.00", "Food", day("2025-02-01")));
+        store.save(expense("d", "u2", null, "4.00", "Food", day("2025-02-01")));
+
+        List<Expense> found = store.findByUserIdAndDateRange("u1", day("2025-01-01"), day("2025-02-01"));
+        assertEquals(List.of("a", "b"), found.stream().map(Expense::getId).toList());
+    }
+
+    @Test
+    void updateMovesExpenseBetweenIndexes() {
+        store.save(expense("a", "u1", "g1", "1.00", "Food", day("2025-01-01")));
+        store.update("a", Map.of("date", day("2025-06-01")));
+
+        assertTrue(store.findByGoalIdAndDateRange("g1", day("2025-01-01"), day("2025-01-31")).isEmpty());
+        assertEquals(1, store.findByGoalIdAndDateRange("g1", day("2025-06-01"), day("2025-06-30")).size());
+    }
+
+    @Test
+    void softDeletedExpensesDropOutOfListingsButNotFindById() {
+        store.save(expense("a", "u1", "g1", "1.00", "Food", day("2025-01-01")));
+        store.update("a", Map.of("deletedAt", Timestamp.now()));
+
+        assertTrue(store.findByUserId("u1").isEmpty());
+        assertTrue(store.findByGoalId("g1").isEmpty());
+        assertTrue(store.findById("a").isPresent());
+    }
+
+    @Test
+    void returnedEntitiesAreCopies() {
+        store.save(expense("a", "u1", null, "1.00", "Food", day("2025-01-01")));
+        store.findById("a").get().setAmount(new BigDecimal("99.00"));
+        assertEquals(new BigDecimal("1.00"), store.findById("a").get().getAmount());
+    }
+
+    @Test
+    void pagesWalkTheHistoryInDateOrderWithoutGapsOrRepeats() {
+        store.save(expense("e", "u1", null, "5.00", "Food", day("2025-01-03")));
+        store.save(expense("b", "u1", null, "2.00", "Food", day("2025-01-01")));
+        store.save(expense("a", "u1", null, "1.00", "Food", day("2025-01-01")));
+        store.save(expense("d", "u1", null, "4.00", "Food", day("2025-01-02")));
+        store.save(expense("c", "u1", null, "3.00", "Food", day("2025-01-02")));
+        store.save(expense("x", "u2", null, "9.00", "Food", day("2025-01-01")));
+        ExpenseRepository repository = new ExpenseRepository(store);
+
+        List<String> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            Page<Expense> page = repository.findPageByUserId("u1", cursor, 2);
+            page.items().forEach(e -> seen.add(e.getId()));
+            cursor = page.nextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(List.of("a", "b", "c", "d", "e"), seen);
+        assertEquals(3, pages);
+    }
+
+    @Test
+    void malformedCursorIsRejected() {
+        ExpenseRepository repository = new ExpenseRepository(store);
+        assertThrows(IllegalArgumentException.class, () -> repository.findPageByUserId("u1", "not-a-cursor", 10));
+    }
+
+    private BigDecimal bruteForce(String userId, String category, Timestamp start, Timestamp end) {
+        return store.findByUserIdAndDateRange(userId, start, end).stream()
+                .filter(e -> category == null || e.getCategory().equalsIgnoreCase(category))
+                .map(Expense::getAmount)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    @Test
+    void rangeTotalsMatchTheExpensesAcrossPartialDaysAndWrites() {
+        java.util.Random random = new java.util.Random(42);
+        long base = Instant.parse("2023-01-01T00:00:00Z").getEpochSecond();
+        String[] categories = {"Food", "Travel", "Housing"};
+        for (int i = 0; i < 400; i++) {
+            Expense e = new Expense();
+            e.setId("e" + i);
+            e.setUserId("u1");
+            e.setDescription("expense " + i);
+            e.setAmount(BigDecimal.valueOf(1 + random.nextInt(10_000), 2));
+            e.setCategory(categories[random.nextInt(categories.length)]);
+            // Spread over three years, with some written before the first total and growing backwards
+            e.setDate(Timestamp.ofTimeSecondsAndNanos(base + random.nextInt(3 * 365 * 86_400) - (i > 200 ? 400L * 86_400 : 0), 0));
+            store.save(e);
+            if (i == 100) {
+                store.sumAmountByUserIdAndDateRange("u1", Timestamp.MIN_VALUE, Timestamp.MAX_VALUE);
+            }
+        }
+        store.update("e7", Map.of("amount", new BigDecimal("12.34"), "category", "Food"));
+        store.update("e8", Map.of("deletedAt", Timestamp.now()));
+        store.update("e9", Map.of("date", day("2026-06-01")));
+
+        for (int i = 0; i < 200; i++) {
+            long a = base - 500L * 86_400 + random.nextInt(4 * 365 * 86_400);
+            long b = a + random.nextInt(400 * 86_400);
+            Timestamp start = Timestamp.ofTimeSecondsAndNanos(i % 3 == 0 ? a - Math.floorMod(a, 86_400) : a, 0);
+            Timestamp end = Timestamp.ofTimeSecondsAndNanos(b, 0);
+            String category = i % 2 == 0 ? null : categories[i % categories.length];
+            BigDecimal expected = bruteForce("u1", category, start, end);
+            BigDecimal actual = category == null
+                    ? store.sumAmountByUserIdAndDateRange("u1", start, end)
+                    : store.sumAmountByUserIdCategoryAndDateRange("u1", category, start, end);
+            assertEquals(0, expected.compareTo(actual), "range " + start + " .. " + end + " " + category);
+        }
+    }
+
+    @Test
+    void anOutlyingDateDoesNotStretchTheDayTotals() {
+        store.save(expense("a", "u1", null, "1.00", "Food", day("2025-01-01")));
+        store.save(expense("b", "u1", null, "2.00", "Travel", day("0001-01-01")));
+        store.save(expense("c", "u1", null, "4.00", "Food", day("9999-12-31")));
+
+        assertEquals(0, new BigDecimal("7.00").compareTo(
+                store.sumAmountByUserIdAndDateRange("u1", Timestamp.MIN_VALUE, Timestamp.MAX_VALUE)));
+        assertEquals(0, new BigDecimal("5.00").compareTo(
+                store.sumAmountByUserIdCategoryAndDateRange("u1", "Food", Timestamp.MIN_VALUE, Timestamp.MAX_VALUE)));
+        assertEquals(0, new BigDecimal("1.00").compareTo(
+                store.sumAmountByUserIdAndDateRange("u1", day("2024-01-01"), day("2026-01-01"))));
+        store.update("b", Map.of("deletedAt", Timestamp.now()));
+        assertEquals(0, new BigDecimal("5.00").compareTo(
+                store.sumAmountByUserIdAndDateRange("u1", Timestamp.MIN_VALUE, Timestamp.MAX_VALUE)));
+    }
+}
@@ -0,0 +1,199 @@
+package com.expensetracker.app.storage;
+
+import com.expensetracker.app.models.Expense;
+import com.expensetracker.app.repositories.storage.log.IngestBuffer;
+import com.expensetracker.app.repositories.storage.memory.InMemoryExpenseStore;
+import com.google.cloud.Timestamp;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.expensetracker.app.testutil.TestDataBuilders.day;
+import static com.expensetracker.app.testutil.TestDataBuilders.expense;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IngestBufferTest {
+
+    @TempDir
+    Path dir;
+
+    /** Holds or fails commits on demand, like a slow or unavailable Firestore. */
+    private static final class GatedStore extends InMemoryExpenseStore {
+        final AtomicBoolean open = new AtomicBoolean(true);
+        final AtomicBoolean failing = new AtomicBoolean();
+        final AtomicInteger batches = new AtomicInteger();
+        final Set<String> poison = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public CompletableFuture<Void> saveAllAsync(List<Expense> expenses) {
+            batches.incrementAndGet();
+            if (expenses.stream().anyMatch(e -> poison.contains(e.getId()))) {
+                return CompletableFuture.failedFuture(new IllegalArgumentException("rejected"));
+            }
+            return gate().thenCompose(v -> super.saveAllAsync(expenses));
+        }
+
+        @Override
+        public CompletableFuture<Void> saveAsync(Expense expense) {
+            if (poison.contains(expense.getId())) {
+                return CompletableFuture.failedFuture(new IllegalArgumentException("rejected"));
+            }
+            return gate().thenCompose(v -> super.saveAsync(expense));
+        }
+
+        private CompletableFuture<Void> gate() {
+            return CompletableFuture.runAsync(() -> {
+                while (!open.get()) {
+                    Thread.onSpinWait();
+                }
+                if (failing.get()) {
+                    throw new IllegalStateException("unavailable");
+                }
+            });
+        }
+    }
+
+    private IngestBuffer open(GatedStore store) throws Exception {
+        return new IngestBuffer(store, dir, true, 100, 50, Long.MAX_VALUE, Duration.ofMillis(10), 100);
+    }
+
+    private static void awaitDrained(IngestBuffer buffer) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (((Number) buffer.stats().get("pending")).intValue() > 0) {
+            assertTrue(System.nanoTime() < deadline, "buffer did not drain");
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void pendingExpensesAreReadBackBeforeTheyDrain() throws Exception {
+        GatedStore store = new GatedStore();
+        store.open.set(false);
+        try (IngestBuffer buffer = open(store)) {
+            buffer.save(expense("a", "u1", null, "1.50", "Food", day("2025-01-01")));
+            buffer.save(expense("b", "u1", null, "2.00", "Food", day("2025-01-01")));
+
+            assertTrue(store.findByUserId("u1").isEmpty());
+            assertEquals(2, buffer.findByUserId("u1").size());
+            assertTrue(buffer.findById("a").isPresent());
+            assertEquals(0, new BigDecimal("3.50").compareTo(buffer.sumAmountByUserIdAndDateRange("u1",
+                    Timestamp.MIN_VALUE, Timestamp.MAX_VALUE)));
+
+            store.open.set(true);
+            awaitDrained(buffer);
+            assertEquals(2, store.findByUserId("u1").size());
+        }
+    }
+
+    @Test
+    void updateOfAPendingExpenseWaitsForItToDrain() throws Exception {
+        GatedStore store = new GatedStore();
+        try (IngestBuffer buffer = open(store)) {
+            buffer.save(expense("a", "u1", null, "1.00", "Food", day("2025-01-01")));
+            buffer.update("a", Map.of("amount", new BigDecimal("4.00")));
+
+            assertEquals(new BigDecimal("4.00"), store.findById("a").orElseThrow().getAmount());
+        }
+    }
+
+    @Test
+    void failedBatchesAreRetried() throws Exception {
+        GatedStore store = new GatedStore();
+        store.failing.set(true);
+        try (IngestBuffer buffer = open(store)) {
+            buffer.save(expense("a", "u1", null, "1.00", "Food", day("2025-01-01")));
+            while (((Number) buffer.stats().get("failedBatches")).intValue() == 0) {
+                Thread.sleep(5);
+            }
+            store.failing.set(false);
+            awaitDrained(buffer);
+            assertTrue(store.findById("a").isPresent());
+        }
+    }
+
+    @Test
+    void undrainedExpensesSurviveRestartAndDrainedOnesAreNotReplayed() throws Exception {
+        GatedStore first = new GatedStore();
+        try (IngestBuffer buffer = open(first)) {
+            buffer.save(expense("a", "u1", null, "1.00", "Food", day("2025-01-01")));
+            awaitDrained(buffer);
+            first.open.set(false);
+            buffer.save(expense("b", "u2", null, "2.00", "Food", day("2025-01-01")));
+            first.failing.set(true);
+            first.open.set(true);
+        }
+
+        GatedStore second = new GatedStore();
+        try (IngestBuffer buffer = open(second)) {
+            assertTrue(buffer.findById("b").isPresent());
+            awaitDrained(buffer);
+            assertTrue(second.findById("b").isPresent());
+            assertTrue(second.findById("a").isEmpty());
+        }
+    }
+
+    @Test
+    void concurrentSavesOfOneIdAreAppliedInTurn() throws Exception {
+        GatedStore store = new GatedStore();
+        store.open.set(false);
+        try (IngestBuffer buffer = open(store)) {
+            buffer.save(expense("a", "u1", null, "1.00", "Food", day("2025-01-01")));
+            CompletableFuture<Void> newer = CompletableFuture.runAsync(() -> {
+                try {
+                    buffer.save(expense("a", "u1", null, "2.00", "Food", day("2025-01-01")));
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            Thread.sleep(50);
+            assertFalse(newer.isDone());
+            assertEquals(1, ((Number) buffer.stats().get("pending")).intValue());
+
+            store.open.set(true);
+            newer.get();
+            awaitDrained(buffer);
+            assertEquals(new BigDecimal("2.00"), store.findById("a").orElseThrow().getAmount());
+        }
+
+        GatedStore second = new GatedStore();
+        second.open.set(false);
+        try (IngestBuffer buffer = open(second)) {
+            assertEquals(0, ((Number) buffer.stats().get("pending")).intValue());
+        }
+    }
+
+    @Test
+    void aPoisonExpenseIsDeadLetteredWithoutHoldingUpOthers() throws Exception {
+        GatedStore store = new GatedStore();
+        store.poison.add("bad");
+        try (IngestBuffer buffer = new IngestBuffer(store, dir, true, 100, 50, Long.MAX_VALUE, Duration.ofMillis(10), 3)) {
+            buffer.save(expense("bad", "u1", null, "1.00", "Food", day("2025-01-01")));
+            buffer.save(expense("good", "u1", null, "2.00", "Food", day("2025-01-01")));
+            buffer.save(expense("other", "u2", null, "3.00", "Food", day("2025-01-01")));
+            awaitDrained(buffer);
+
+            assertTrue(store.findById("good").isPresent());
+            assertTrue(store.findById("other").isPresent());
+            assertTrue(store.findById("bad").isEmpty());
+            assertEquals(1L, buffer.stats().get("deadLettered"));
+            assertEquals(List.of("bad"), buffer.stats().get("recentDeadLetters"));
+            assertEquals(0, ((Number) buffer.stats().get("backingOffUsers")).intValue());
+        }
+
+        // Parked, not pending: a restart neither replays it nor forgets it
+        try (IngestBuffer buffer = open(new GatedStore())) {
+            assertEquals(0, ((Number) buffer.stats().get("pending")).intValue());
+            assertEquals(1L, buffer.stats().get("deadLettered"));
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.expensetracker.app.storage;
+
+import com.expensetracker.app.models.Expense;
+import com.expensetracker.app.repositories.storage.jpa.JpaExpenseStore;
+import com.google.cloud.Timestamp;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static com.expensetracker.app.testutil.TestDataBuilders.day;
+import static com.expensetracker.app.testutil.TestDataBuilders.expense;
+import static org.junit.jupiter.api.Assertions.*;
+
+// The relational database is only configured in jpa mode
+@DataJpaTest(properties = "app.storage=jpa")
+@Import(JpaExpenseStore.class)
+public class JpaExpenseStoreTest {
+
+    @Autowired
+    private JpaExpenseStore store;
+
+    @Test
+    void dateRangeIsInclusiveAndOrdered() {
+        store.save(expense("c", "u1", null, "3.00", "Food", day("2025-03-01")));
+        store.save(expense("a", "u1", null, "1.00", "Food", day("2025-01-01")));
+        store.save(expense("b", "u1", null, "2.00", "Food", day("2025-02-01")));
+        store.save(expense("d", "u2", null, "4.00", "Food", day("2025-02-01")));
+
+        List<Expense> found = store.findByUserIdAndDateRange("u1", day("2025-01-01"), day("2025-02-01"));
+        assertEquals(List.of("a", "b"), found.stream().map(Expense::getId).toList());
+    }
+
+    @Test
+    void totalsAreAggregatedAndSkipSoftDeleted() {
+        store.save(expense("a", "u1", "g1", "1.25", "Food", day("2025-01-01")));
+        store.save(expense("b", "u1", "g1", "2.50", "Travel", day("2025-01-15")));
+        store.save(expense("c", "u1", "g1", "4.00", "Food", day("2025-02-01")));
+        store.save(expense("d", "u1", null, "8.00", "Food", day("2025-01-20")));
+        store.update("c", Map.of("deletedAt", Timestamp.now()));
+
+        assertEquals(0, new BigDecimal("11.75").compareTo(
+                store.sumAmountByUserIdAndDateRange("u1", day("2025-01-01"), day("2025-01-31"))));
+        assertEquals(0, new BigDecimal("9.25").compareTo(
+                store.sumAmountByUserIdCategoryAndDateRange("u1", "food", day("2025-01-01"), day("2025-02-28"))));
+        assertEquals(0, new BigDecimal("3.75").compareTo(store.sumAmountByGoalId("g1", null, null)));
+        assertEquals(0, BigDecimal.ZERO.compareTo(
+                store.sumAmountByUserIdAndDateRange("nobody", day("2025-01-01"), day("2025-12-31"))));
+    }
+}
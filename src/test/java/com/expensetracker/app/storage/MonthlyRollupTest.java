@@ -0,0 +1,55 @@
+package com.expensetracker.app.storage;
+
+import com.expensetracker.app.models.Expense;
+import com.expensetracker.app.repositories.ExpenseRepository;
+import com.expensetracker.app.repositories.storage.MonthlyRollup;
+import com.expensetracker.app.repositories.storage.memory.InMemoryExpenseStore;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static com.expensetracker.app.testutil.TestDataBuilders.at;
+import static com.expensetracker.app.testutil.TestDataBuilders.expense;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MonthlyRollupTest {
+
+    private final ExpenseRepository repository = new ExpenseRepository(new InMemoryExpenseStore());
+
+    @Test
+    void monthBoundsCoverTheWholeMonthInUtc() {
+        assertEquals(at("2024-02-01T00:00:00Z"), MonthlyRollup.startOf("2024-02"));
+        assertEquals("2024-02", MonthlyRollup.monthOf(MonthlyRollup.endOf("2024-02")));
+        assertEquals("2024-03", MonthlyRollup.monthOf(at("2024-03-01T00:00:00Z")));
+        assertEquals("2025-01", MonthlyRollup.nextMonth("2024-12"));
+        assertThrows(IllegalArgumentException.class, () -> MonthlyRollup.parse("2024-13"));
+    }
+
+    @Test
+    void rollsUpLiveExpensesByMonthAndCategory() {
+        repository.createExpense(expense(null, "u1", null, "10.00", "Food", at("2025-01-05T10:00:00Z")));
+        repository.createExpense(expense(null, "u1", null, "2.50", "Food", at("2025-01-31T23:59:59Z")));
+        repository.createExpense(expense(null, "u1", null, "7.00", "Travel", at("2025-01-10T00:00:00Z")));
+        Expense deleted = repository.createExpense(expense(null, "u1", null, "99.00", "Food", at("2025-02-01T00:00:00Z")));
+        repository.createExpense(expense(null, "u1", null, "1.00", "Food", at("2025-02-02T00:00:00Z")));
+        repository.deleteById(deleted.getId());
+
+        List<MonthlyRollup> rollups = repository.findMonthlyRollups("u1", "2025-01", "2025-02");
+
+        assertEquals(List.of(
+                new MonthlyRollup("u1", "2025-01", "FOOD", new BigDecimal("12.50"), 2),
+                new MonthlyRollup("u1", "2025-01", "TRAVEL", new BigDecimal("7.00"), 1),
+                new MonthlyRollup("u1", "2025-02", "FOOD", new BigDecimal("1.00"), 1)), rollups);
+        assertEquals(1, repository.findMonthlyRollups("u1", "2025-02", null).size());
+    }
+
+    @Test
+    void verifierFindsNothingWhenRollupsAreComputedFromExpenses() {
+        repository.createExpense(expense(null, "u1", null, "10.00", "Food", at("2025-01-05T10:00:00Z")));
+        Map<String, Object> report = repository.verifyRollups("u1");
+        assertEquals(1, report.get("checked"));
+        assertEquals(List.of(), report.get("mismatches"));
+    }
+}
@@ -0,0 +1,158 @@
+package com.expensetracker.app.storage;
+
+import com.expensetracker.app.models.Expense;
+import com.expensetracker.app.models.Goal;
+import com.expensetracker.app.repositories.storage.ExpenseStore;
+import com.expensetracker.app.repositories.storage.GoalStore;
+import com.expensetracker.app.repositories.storage.memory.InMemoryExpenseStore;
+import com.expensetracker.app.repositories.storage.memory.InMemoryGoalStore;
+import com.expensetracker.app.repositories.storage.replica.InProcessChangeFeed;
+import com.expensetracker.app.repositories.storage.replica.Replica;
+import com.google.cloud.Timestamp;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.expensetracker.app.testutil.TestDataBuilders.day;
+import static com.expensetracker.app.testutil.TestDataBuilders.expense;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReplicaTest {
+
+    // The database both instances write to, and its listeners
+    private final InMemoryExpenseStore dbExpenses = new InMemoryExpenseStore();
+    private final InMemoryGoalStore dbGoals = new InMemoryGoalStore();
+    private final ArrayDeque<Runnable> inFlight = new ArrayDeque<>();
+    private final InProcessChangeFeed feed = new InProcessChangeFeed(dbExpenses, dbGoals, inFlight::add);
+
+    private final AtomicLong clock = new AtomicLong();
+    private final Replica replica = new Replica(feed, true, 2, Duration.ofMinutes(30), clock::get);
+    private final ExpenseStore expenses = replica.expenses(dbExpenses);
+    private final GoalStore goals = replica.goals(dbGoals);
+
+    private void deliver() {
+        while (!inFlight.isEmpty()) {
+            inFlight.poll().run();
+        }
+    }
+
+    private List<String> ids(List<Expense> list) {
+        return list.stream().map(Expense::getId).sorted().toList();
+    }
+
+    @Test
+    void readsGoToTheDatabaseUntilTheFeedHasCaughtUp() throws Exception {
+        dbExpenses.save(expense("a", "u1", null, "1.00", "Food", day("2025-01-01")));
+
+        assertEquals(List.of("a"), ids(expenses.findByUserId("u1")));
+        assertEquals(1L, replica.stats().get("remoteReads"));
+
+        deliver();
+        // Written behind the feed's back, so only the database has it
+        dbExpenses.save(expense("b", "u1", null, "2.00", "Food", day("2025-01-02")));
+        assertEquals(List.of("a"), ids(expenses.findByUserId("u1")));
+        assertEquals(1L, replica.stats().get("localReads"));
+    }
+
+    @Test
+    void ownWritesAreReadBackBeforeTheFeedDeliversThem() throws Exception {
+        expenses.findByUserId("u1");
+        deliver();
+
+        expenses.save(expense("a", "u1", null, "1.00", "Food", day("2025-01-01")));
+        expenses.update("a", Map.of("amount", new BigDecimal("5.00")));
+
+        assertEquals(List.of("a"), ids(expenses.findByUserIdAndDateRange("u1", day("2025-01-01"), day("2025-01-31"))));
+        assertEquals(0, new BigDecimal("5.00").compareTo(
+                expenses.sumAmountByUserIdAndDateRange("u1", day("2025-01-01"), day("2025-01-31"))));
+    }
+
+    @Test
+    void anOlderDeliveryDoesNotRollBackANewerWrite() throws Exception {
+        Expense a = expense("a", "u1", null, "1.00", "Food", day("2025-01-01"));
+        a.setUpdatedAt(Timestamp.ofTimeSecondsAndNanos(1_000, 0));
+        dbExpenses.save(a);
+        expenses.findByUserId("u1");
+        deliver();
+
+        // The database announces a's current state, but the delivery is still on its way
+        feed.publish(dbExpenses.findById("a").orElseThrow());
+        expenses.update("a", Map.of("amount", new BigDecimal("7.00")));
+        deliver();
+
+        assertEquals(new BigDecimal("7.00"), expenses.findByUserId("u1").get(0).getAmount());
+        assertEquals(1L, replica.stats().get("staleDeliveries"));
+    }
+
+    @Test
+    void otherInstancesWritesArriveThroughTheFeed() throws Exception {
+        Replica other = new Replica(feed, true, 2, Duration.ofMinutes(30), clock::get);
+        ExpenseStore otherExpenses = other.expenses(dbExpenses);
+        expenses.findByUserId("u1");
+        deliver();
+
+        otherExpenses.save(expense("a", "u1", null, "1.00", "Food", day("2025-01-01")));
+        assertTrue(expenses.findByUserId("u1").isEmpty());
+
+        feed.publish(dbExpenses.findById("a").orElseThrow());
+        deliver();
+        assertEquals(List.of("a"), ids(expenses.findByUserId("u1")));
+
+        otherExpenses.update("a", Map.of("deletedAt", Timestamp.now()));
+        feed.publish(dbExpenses.findById("a").orElseThrow());
+        deliver();
+        assertTrue(expenses.findByUserId("u1").isEmpty());
+    }
+
+    @Test
+    void goalsAndTheirExpensesAreServedFromTheOwnersCopy() throws Exception {
+        Goal g = new Goal();
+        g.setId("g1");
+        g.setUserId("u1");
+        g.setTitle("groceries");
+        g.setTargetAmount(new BigDecimal("100.00"));
+        goals.save(g);
+        expenses.save(expense("a", "u1", "g1", "3.00", "Food", day("2025-01-01")));
+        goals.findByUserId("u1");
+        deliver();
+
+        goals.incrementProgress("g1", new BigDecimal("3.00"));
+        dbExpenses.save(expense("b", "u1", "g1", "4.00", "Food", day("2025-01-02")));
+
+        assertEquals(new BigDecimal("3.00"), goals.findByUserId("u1").get(0).getCurrentAmount());
+        assertEquals(List.of("a"), ids(expenses.findByGoalId("g1")));
+        assertEquals(0, new BigDecimal("3.00").compareTo(expenses.sumAmountByGoalId("g1", null, null)));
+    }
+
+    @Test
+    void aBrokenFeedFallsBackToTheDatabaseAndResubscribes() throws Exception {
+        expenses.findByUserId("u1");
+        deliver();
+        dbExpenses.save(expense("a", "u1", null, "1.00", "Food", day("2025-01-01")));
+
+        feed.fail("u1", new IllegalStateException("connection reset"));
+        deliver();
+
+        assertEquals(List.of("a"), ids(expenses.findByUserId("u1")));
+        deliver();
+        assertEquals(List.of("a"), ids(expenses.findByUserId("u1")));
+        assertEquals(1L, replica.stats().get("failures"));
+    }
+
+    @Test
+    void leastRecentlyUsedAndIdleUsersStopBeingFollowed() throws Exception {
+        expenses.findByUserId("u1");
+        expenses.findByUserId("u2");
+        expenses.findByUserId("u3");
+        assertEquals(2, replica.followedUsers());
+
+        clock.addAndGet(Duration.ofMinutes(31).toNanos());
+        expenses.findByUserId("u1");
+        assertEquals(1, replica.followedUsers());
+    }
+}
@@ -10,6 +10,8 @@ import com.google.cloud.Timestamp;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.Date;
+import java.util.UUID;
 
 /**
  * Test data builders for creating test entities with sensible defaults.
@@ -28,6 +30,43 @@ public class TestDataBuilders {
         return new ExpenseBuilder();
     }
 
+    /** Midnight UTC on an ISO date such as {@code 2025-01-31}. */
+    public static Timestamp day(String isoDate) {
+        return at(isoDate + "T00:00:00Z");
+    }
+
+    /** An ISO instant such as {@code 2025-01-31T23:59:59Z}. */
+    public static Timestamp at(String isoInstant) {
+        return Timestamp.of(Date.from(Instant.parse(isoInstant)));
+    }
+
+    /** An expense described by its id; a null id gets a random one. */
+    public static Expense expense(String id, String userId, String goalId, String amount, String category, Timestamp date) {
+        String expenseId = id == null ? UUID.randomUUID().toString() : id;
+        return expense()
+                .withId(expenseId)
+                .withUserId(userId)
+                .withGoalId(goalId)
+                .withDescription("expense " + expenseId)
+                .withAmount(new BigDecimal(amount))
+                .withCategory(category)
+                .withDate(date)
+                .build();
+    }
+
+    /** A limit goal with a random id. */
+    public static Goal goal(String userId, String category, String targetAmount, Timestamp start, Timestamp end) {
+        return goal()
+                .withId(UUID.randomUUID().toString())
+                .withUserId(userId)
+                .withTitle("goal")
+                .withCategory(category)
+                .withTargetAmount(new BigDecimal(targetAmount))
+                .asLimit()
+                .withDates(start, end)
+                .build();
+    }
+
     public static class UserBuilder {
         private User user = new User();
 
@@ -36,7 +75,7 @@ public class TestDataBuilders {
             user.setName("Test User");
             user.setEmail("test@example.com");
             user.setRole(UserRole.USER);
-            user.setCreatedAt(Timestamp.of(java.util.Date.from(Instant.now())));
+            user.setCreatedAt(Timestamp.of(Date.from(Instant.now())));
         }
 
         public UserBuilder withId(String id) {
@@ -83,7 +122,7 @@ public class TestDataBuilders {
             goal.setMode(GoalMode.LIMIT);
             goal.setStatus(GoalStatus.ACTIVE);
             goal.setCompleted(false);
-            goal.setCreatedAt(Timestamp.of(java.util.Date.from(Instant.now())));
+            goal.setCreatedAt(Timestamp.of(Date.from(Instant.now())));
         }
 
         public GoalBuilder withId(String id) {
@@ -111,6 +150,11 @@ public class TestDataBuilders {
             return this;
         }
 
+        public GoalBuilder withCategory(String category) {
+            goal.setCategory(category);
+            return this;
+        }
+
         public GoalBuilder withMode(GoalMode mode) {
             goal.setMode(mode);
             return this;
@@ -151,8 +195,8 @@ public class TestDataBuilders {
             expense.setDescription("Test Expense");
             expense.setAmount(new BigDecimal("50.00"));
             expense.setCategory("TEST");
-            expense.setDate(Timestamp.of(java.util.Date.from(Instant.now())));
-            expense.setCreatedAt(Timestamp.of(java.util.Date.from(Instant.now())));
+            expense.setDate(Timestamp.of(Date.from(Instant.now())));
+            expense.setCreatedAt(Timestamp.of(Date.from(Instant.now())));
         }
 
         public ExpenseBuilder withId(String id) {